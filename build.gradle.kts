@@ -15,6 +15,21 @@ repositories {
     mavenCentral()
 }
 
+// End-to-end sync benchmark against local provider simulators (./gradlew bench --args="...")
+sourceSets {
+    create("bench") {
+        compileClasspath += sourceSets.main.get().output
+        runtimeClasspath += sourceSets.main.get().output
+    }
+}
+
+val benchImplementation by configurations.getting {
+    extendsFrom(configurations.implementation.get())
+}
+val benchRuntimeOnly by configurations.getting {
+    extendsFrom(configurations.runtimeOnly.get())
+}
+
 dependencies {
     // Spring Boot Starters
     implementation("org.springframework.boot:spring-boot-starter-web")
@@ -23,12 +38,32 @@ dependencies {
     implementation("org.springframework.boot:spring-boot-starter-validation")
     // OAuth handled manually - not using spring-boot-starter-oauth2-client
     implementation("org.springframework.boot:spring-boot-starter-mail")
+    implementation("org.springframework.boot:spring-boot-starter-actuator")
+
+    // Metrics (Prometheus scrape endpoint at /actuator/prometheus)
+    runtimeOnly("io.micrometer:micrometer-registry-prometheus")
+
+    // Analytics result cache (W-TinyLFU eviction)
+    implementation("com.github.ben-manes.caffeine:caffeine")
+
+    // Parquet snapshots for offline analysis; Hadoop is only needed for its Configuration API,
+    // so the shaded client jars are used to keep its transitive dependencies off the classpath
+    implementation("org.apache.parquet:parquet-hadoop:1.14.1")
+    implementation("org.apache.hadoop:hadoop-client-api:3.3.6")
+    runtimeOnly("org.apache.hadoop:hadoop-client-runtime:3.3.6")
+
+    // Embedded per-user mailbox index with faceted search
+    implementation("org.apache.lucene:lucene-core:9.9.1")
+    implementation("org.apache.lucene:lucene-facet:9.9.1")
+    implementation("org.apache.lucene:lucene-queryparser:9.9.1")
 
     // Email (Jakarta Mail)
     implementation("org.eclipse.angus:angus-mail:2.0.2")
 
     // Database
-    runtimeOnly("com.h2database:h2")
+    implementation("org.flywaydb:flyway-core")
+    // H2 backs the in-memory sync benchmark only; the application itself runs on PostgreSQL
+    benchRuntimeOnly("com.h2database:h2")
     runtimeOnly("org.postgresql:postgresql")
 
     // Lombok
@@ -46,3 +81,20 @@ dependencies {
 tasks.withType<Test> {
     useJUnitPlatform()
 }
+
+tasks.register<JavaExec>("bench") {
+    description = "Runs the end-to-end sync benchmark against simulated Gmail/Graph APIs"
+    group = "verification"
+    classpath = sourceSets["bench"].runtimeClasspath
+    mainClass.set("com.emailutilities.bench.SyncBenchmark")
+    jvmArgs("-Xms512m", "-Xmx2g")
+}
+
+// EXPLAIN regression check for the email_metadata indexes against a PostgreSQL server
+// (./gradlew indexPlanCheck --args="--jdbc-url=... --rows=500000")
+tasks.register<JavaExec>("indexPlanCheck") {
+    description = "Checks that the analytics queries use their intended indexes on a seeded PostgreSQL schema"
+    group = "verification"
+    classpath = sourceSets["bench"].runtimeClasspath
+    mainClass.set("com.emailutilities.bench.IndexPlanCheck")
+}
@@ -0,0 +1,53 @@
+package com.emailutilities.bench;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options for the sync benchmark, given as --name=value
+ */
+final class BenchmarkOptions {
+
+    String provider = "gmail";      // gmail, outlook or both
+    int accounts = 1;
+    int messages = 5000;            // per account
+    int senders = 500;              // distinct senders per account
+    int pageSize = 100;
+    int maxPages = 1000;
+    long pageDelayMs = 0;
+    long latencyMs = 2;             // added to every simulated provider call
+    double errorRate = 0.0;         // fraction of calls answered with 500
+    double throttleRate = 0.0;      // fraction of calls answered with 429
+    int serverThreads = 16;
+
+    static BenchmarkOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            values.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        BenchmarkOptions options = new BenchmarkOptions();
+        options.provider = values.getOrDefault("provider", options.provider);
+        options.accounts = Integer.parseInt(values.getOrDefault("accounts", String.valueOf(options.accounts)));
+        options.messages = Integer.parseInt(values.getOrDefault("messages", String.valueOf(options.messages)));
+        options.senders = Integer.parseInt(values.getOrDefault("senders", String.valueOf(options.senders)));
+        options.pageSize = Integer.parseInt(values.getOrDefault("page-size", String.valueOf(options.pageSize)));
+        options.maxPages = Integer.parseInt(values.getOrDefault("max-pages", String.valueOf(options.maxPages)));
+        options.pageDelayMs = Long.parseLong(values.getOrDefault("page-delay-ms", String.valueOf(options.pageDelayMs)));
+        options.latencyMs = Long.parseLong(values.getOrDefault("latency-ms", String.valueOf(options.latencyMs)));
+        options.errorRate = Double.parseDouble(values.getOrDefault("error-rate", String.valueOf(options.errorRate)));
+        options.throttleRate = Double.parseDouble(values.getOrDefault("throttle-rate", String.valueOf(options.throttleRate)));
+        options.serverThreads = Integer.parseInt(values.getOrDefault("server-threads", String.valueOf(options.serverThreads)));
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+            "provider=%s accounts=%d messages=%d senders=%d pageSize=%d latencyMs=%d errorRate=%.3f throttleRate=%.3f",
+            provider, accounts, messages, senders, pageSize, latencyMs, errorRate, throttleRate);
+    }
+}
@@ -0,0 +1,293 @@
+package com.emailutilities.bench;
+
+import com.emailutilities.config.V13__Rebuild_domain_sketches;
+import com.emailutilities.config.V4__Backfill_distinct_sketches;
+import com.emailutilities.config.V8__Backfill_registrable_domains;
+import com.emailutilities.service.PublicSuffixList;
+import org.flywaydb.core.Flyway;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Index regression check: migrates a scratch schema on a real PostgreSQL server with the Flyway
+ * scripts, seeds a skewed multi-account email_metadata table, and asserts that EXPLAIN picks the
+ * intended index (and never a sequential scan of email_metadata) for each EmailMetadataRepository
+ * analytics query, and that account-scoped queries are pruned to the account's own partition.
+ * Exits non-zero on any regression.
+ *
+ * Only the "index_plan_check" schema is touched; it is dropped and recreated on every run.
+ *
+ * Run with: ./gradlew indexPlanCheck --args="--jdbc-url=jdbc:postgresql://localhost:5432/emailutilities --rows=500000 --monthly=true"
+ */
+public final class IndexPlanCheck {
+
+    private static final String SCHEMA = "index_plan_check";
+
+    // Partitions named in a plan: email_metadata_a<account>[_m<yyyymm>|_default] or email_metadata_default
+    private static final Pattern PARTITION = Pattern.compile("on email_metadata_(a\\d+|default)");
+
+    // Sequential scans of email_metadata or its partitions; the (normally empty) defaults are exempt
+    private static final Pattern SEQ_SCAN = Pattern.compile("Seq Scan on email_metadata(?!\\w*_default)");
+
+    private IndexPlanCheck() {
+    }
+
+    private record Check(String name, String sql, String expectedIndex, boolean accountScoped) {
+    }
+
+    public static void main(String[] args) throws SQLException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got: " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        String url = options.getOrDefault("jdbc-url", "jdbc:postgresql://localhost:5432/emailutilities");
+        String username = options.getOrDefault("username", System.getenv().getOrDefault("DB_USERNAME", "emailapp"));
+        String password = options.getOrDefault("password", System.getenv().getOrDefault("DB_PASSWORD", ""));
+        int rows = Integer.parseInt(options.getOrDefault("rows", "200000"));
+        int accounts = Integer.parseInt(options.getOrDefault("accounts", "10"));
+        int senders = Integer.parseInt(options.getOrDefault("senders", "5000"));
+        boolean monthly = Boolean.parseBoolean(options.getOrDefault("monthly", "false"));
+
+        Flyway flyway = Flyway.configure()
+            .dataSource(url, username, password)
+            .schemas(SCHEMA)
+            .locations("classpath:db/migration/postgresql")
+            .javaMigrations(new V4__Backfill_distinct_sketches(),
+                new V8__Backfill_registrable_domains(new PublicSuffixList(false)),
+                new V13__Rebuild_domain_sketches())
+            .placeholders(Map.of("monthly-partitions", String.valueOf(monthly)))
+            // Same as spring.flyway.postgresql.transactional-lock: CONCURRENTLY index builds in V2
+            // would otherwise wait on the transaction holding Flyway's advisory lock
+            .configuration(Map.of("flyway.postgresql.transactional.lock", "false"))
+            .cleanDisabled(false)
+            .load();
+        flyway.clean();
+        flyway.migrate();
+
+        try (Connection connection = DriverManager.getConnection(url, username, password)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET search_path TO " + SCHEMA);
+            }
+            partition(connection, accounts, monthly);
+            seed(connection, rows, accounts, senders);
+
+            long sender;
+            try (Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery(
+                     "SELECT sender_id FROM email_metadata WHERE account_id = 1 AND is_from_me = false " +
+                     "GROUP BY sender_id ORDER BY COUNT(*) DESC LIMIT 1")) {
+                rs.next();
+                sender = rs.getLong(1);
+            }
+
+            int failures = 0;
+            for (Check check : checks(sender)) {
+                String plan = explain(connection, check.sql());
+                boolean ok = usesIndex(connection, plan, check.expectedIndex())
+                    && !SEQ_SCAN.matcher(plan).find()
+                    && (!check.accountScoped() || prunedToAccountOne(plan));
+                System.out.printf("[IndexPlan] %-24s %s (expected %s)%n", check.name(), ok ? "OK  " : "FAIL", check.expectedIndex());
+                if (!ok) {
+                    failures++;
+                    System.out.println(plan);
+                }
+            }
+
+            System.out.printf("[IndexPlan] %d rows, %d accounts, %d senders, monthly=%b: %d check(s) failed%n",
+                rows, accounts, senders, monthly, failures);
+            if (failures > 0) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * The repository queries as Hibernate renders them, for one account out of many
+     */
+    private static List<Check> checks(long sender) {
+        String window = "received_at >= now() - interval '30 days'";
+        return List.of(
+            new Check("top-senders-since",
+                "SELECT sender_id, COUNT(*) FROM email_metadata " +
+                "WHERE account_id IN (1) AND is_from_me = false AND " + window + " GROUP BY sender_id",
+                "idx_email_metadata_received_senders", true),
+            new Check("unique-senders-since",
+                "SELECT COUNT(DISTINCT sender_id) FROM email_metadata " +
+                "WHERE account_id IN (1) AND is_from_me = false AND " + window,
+                "idx_email_metadata_received_senders", true),
+            new Check("top-senders",
+                "SELECT sender_id, COUNT(*) FROM email_metadata " +
+                "WHERE account_id IN (1) AND is_from_me = false GROUP BY sender_id",
+                "idx_email_metadata_sender_rollup", true),
+            new Check("unique-senders",
+                "SELECT COUNT(DISTINCT sender_id) FROM email_metadata WHERE account_id IN (1) AND is_from_me = false",
+                "idx_email_metadata_sender_rollup", true),
+            new Check("thread-ids-by-sender",
+                "SELECT DISTINCT thread_id FROM email_metadata " +
+                "WHERE account_id IN (1) AND sender_id = " + sender + " AND is_from_me = false",
+                "idx_email_metadata_sender_rollup", true),
+            new Check("unread-senders",
+                "SELECT sender_id, COUNT(*) FROM email_metadata " +
+                "WHERE account_id IN (1) AND is_from_me = false AND is_read = false GROUP BY sender_id",
+                "idx_email_metadata_unread_senders", true),
+            new Check("unread-count",
+                "SELECT COUNT(*) FROM email_metadata WHERE account_id IN (1) AND is_read = false",
+                "idx_email_metadata_unread", true),
+            new Check("replies-in-threads",
+                "SELECT COUNT(*) FROM email_metadata " +
+                "WHERE account_id IN (1) AND is_from_me = true AND thread_id IN ('thread-10', 'thread-20', 'thread-30')",
+                "idx_email_metadata_sent_threads", true),
+            new Check("sender-by-account",
+                "SELECT account_id, COUNT(*) FROM email_metadata WHERE sender_id = " + sender + " GROUP BY account_id",
+                "idx_email_metadata_sender_account", false),
+            new Check("latest-email-date",
+                "SELECT MAX(received_at) FROM email_metadata WHERE account_id = 1",
+                "pk_email_metadata", true),
+            new Check("top-domains",
+                "SELECT domain_id, COUNT(*), COUNT(DISTINCT sender_id) FROM email_metadata " +
+                "WHERE account_id IN (1) AND is_from_me = false GROUP BY domain_id",
+                "idx_email_metadata_domain_rollup", true),
+            new Check("unread-by-domain",
+                "SELECT domain_id, COUNT(*) FROM email_metadata " +
+                "WHERE account_id IN (1) AND is_from_me = false AND is_read = false GROUP BY domain_id",
+                "idx_email_metadata_domain_rollup", true),
+            new Check("domain-trend",
+                "SELECT CAST(received_at AS DATE), COUNT(*), SUM(CASE WHEN is_read = false THEN 1 ELSE 0 END) " +
+                "FROM email_metadata WHERE account_id IN (1) AND is_from_me = false AND domain_id = 1 AND " + window +
+                " GROUP BY CAST(received_at AS DATE)",
+                "idx_email_metadata_domain_rollup", true),
+            new Check("rfc-message-lookup",
+                "SELECT rfc_message_id, sender_id, received_at, is_from_me FROM email_metadata " +
+                "WHERE account_id = 1 AND rfc_message_id IN ('<1@bench>', '<11@bench>')",
+                "idx_account_rfc_message", true)
+        );
+    }
+
+    /**
+     * Give each account its partition (and months, covering the seeded year) the way syncs and
+     * nightly maintenance do, so seeded rows land in their partitions rather than the default
+     */
+    private static void partition(Connection connection, int accounts, boolean monthly) throws SQLException {
+        try (PreparedStatement account = connection.prepareStatement("SELECT ensure_email_metadata_partition(?, ?)");
+             PreparedStatement month = connection.prepareStatement(
+                 "SELECT ensure_email_metadata_month(?, CAST(date_trunc('month', now()) - make_interval(months => ?) AS DATE))")) {
+            for (int id = 1; id <= accounts; id++) {
+                account.setLong(1, id);
+                account.setBoolean(2, monthly);
+                account.executeQuery().close();
+                for (int ago = 0; monthly && ago <= 12; ago++) {
+                    month.setLong(1, id);
+                    month.setInt(2, ago);
+                    month.executeQuery().close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Spread rows over accounts and a year of dates; sender popularity is skewed like a real inbox.
+     * Senders 1..n are external, n+1..n+accounts the account owners; domains 1..200 are the
+     * external senders' and 201 the owners'.
+     */
+    private static void seed(Connection connection, int rows, int accounts, int senders) throws SQLException {
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO domains (id, name) OVERRIDING SYSTEM VALUE " +
+                "SELECT d + 1, 'domain' || d || '.com' FROM generate_series(0, 199) d " +
+                "UNION ALL SELECT 201, 'example.com'");
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+            "INSERT INTO senders (id, email, domain, domain_id, name) OVERRIDING SYSTEM VALUE " +
+            "SELECT s, 'sender' || s || '@mail.domain' || (s % 200) || '.com', " +
+            "'mail.domain' || (s % 200) || '.com', s % 200 + 1, 'Sender ' || s FROM generate_series(1, ?) s " +
+            "UNION ALL " +
+            "SELECT ? + a, 'owner' || a || '@example.com', 'example.com', 201, NULL FROM generate_series(1, ?) a")) {
+            insert.setInt(1, senders);
+            insert.setInt(2, senders);
+            insert.setInt(3, accounts);
+            insert.executeUpdate();
+        }
+        try (PreparedStatement insert = connection.prepareStatement(
+            "INSERT INTO email_metadata (account_id, message_id, thread_id, sender_id, recipient_id, domain_id, " +
+            "subject, received_at, is_read, is_from_me, rfc_message_id, synced_at) " +
+            "SELECT g % ? + 1, 'msg-' || g, 'thread-' || (g / 4), " +
+            "CASE WHEN g % 10 = 0 THEN ? + g % ? + 1 ELSE s END, ? + g % ? + 1, " +
+            "CASE WHEN g % 10 = 0 THEN 201 ELSE s % 200 + 1 END, 'Subject ' || g, " +
+            "now() - random() * interval '365 days', g % 3 <> 0, g % 10 = 0, '<' || g || '@bench>', now() " +
+            "FROM (SELECT g, floor(? * power(random(), 3))::int + 1 AS s FROM generate_series(1, ?) g) x")) {
+            insert.setInt(1, accounts);
+            insert.setInt(2, senders);
+            insert.setInt(3, accounts);
+            insert.setInt(4, senders);
+            insert.setInt(5, accounts);
+            insert.setInt(6, senders);
+            insert.setInt(7, rows);
+            insert.executeUpdate();
+        }
+        try (Statement statement = connection.createStatement()) {
+            // Index-only scans need an up-to-date visibility map, as autovacuum keeps it in production
+            statement.execute("VACUUM ANALYZE email_metadata");
+            statement.execute("VACUUM ANALYZE senders");
+            statement.execute("VACUUM ANALYZE domains");
+        }
+        System.out.printf("[IndexPlan] Seeded %d rows in %.1f s%n", rows, (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Partitions get their own copy of each index, so accept the parent index or any descendant of it
+     */
+    private static boolean usesIndex(Connection connection, String plan, String parentIndex) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+            "WITH RECURSIVE tree AS (" +
+            "  SELECT c.oid, c.relname FROM pg_class c WHERE c.relname = ? AND c.relnamespace = to_regnamespace(?)" +
+            "  UNION ALL" +
+            "  SELECT c.oid, c.relname FROM pg_inherits i JOIN tree t ON i.inhparent = t.oid JOIN pg_class c ON c.oid = i.inhrelid" +
+            ") SELECT relname FROM tree")) {
+            statement.setString(1, parentIndex);
+            statement.setString(2, SCHEMA);
+            try (ResultSet rs = statement.executeQuery()) {
+                while (rs.next()) {
+                    if (plan.contains(" using " + rs.getString(1) + " ")) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean prunedToAccountOne(String plan) {
+        Set<String> partitions = new HashSet<>();
+        Matcher matcher = PARTITION.matcher(plan);
+        while (matcher.find()) {
+            partitions.add(matcher.group(1));
+        }
+        return partitions.equals(Set.of("a1"));
+    }
+
+    private static String explain(Connection connection, String sql) throws SQLException {
+        StringBuilder plan = new StringBuilder();
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+            while (rs.next()) {
+                plan.append("    ").append(rs.getString(1)).append('\n');
+            }
+        }
+        return plan.toString();
+    }
+}
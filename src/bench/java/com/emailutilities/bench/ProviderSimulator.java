@@ -0,0 +1,346 @@
+package com.emailutilities.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the Gmail API, Microsoft Graph and both OAuth token endpoints.
+ *
+ * Mailboxes are picked by bearer token ("bench-0", "bench-1", ...), so one simulator serves
+ * every benchmark account. Latency, 5xx errors and 429 throttling are injected per request.
+ */
+final class ProviderSimulator implements AutoCloseable {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<SyntheticMailbox> mailboxes;
+    private final BenchmarkOptions options;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicLong injectedThrottles = new AtomicLong();
+
+    ProviderSimulator(List<SyntheticMailbox> mailboxes, BenchmarkOptions options) throws IOException {
+        this.mailboxes = mailboxes;
+        this.options = options;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        this.executor = Executors.newFixedThreadPool(options.serverThreads);
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+    }
+
+    void start() {
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    String gmailApiBase() { return baseUrl() + "/gmail/v1/users/me"; }
+    String graphApiBase() { return baseUrl() + "/v1.0/me"; }
+    String graphApiBeta() { return baseUrl() + "/beta/me"; }
+    String tokenUri() { return baseUrl() + "/token"; }
+
+    long requests() { return requests.get(); }
+    long injectedErrors() { return injectedErrors.get(); }
+    long injectedThrottles() { return injectedThrottles.get(); }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            if (options.latencyMs > 0) {
+                Thread.sleep(options.latencyMs);
+            }
+
+            String path = exchange.getRequestURI().getPath();
+
+            // Token refreshes are never faulted, otherwise a run can fail before it measures anything
+            if (path.equals("/token")) {
+                respond(exchange, 200, Map.of("access_token", bearer(exchange, "bench-0"), "expires_in", 3600));
+                return;
+            }
+
+            double roll = ThreadLocalRandom.current().nextDouble();
+            if (roll < options.throttleRate) {
+                injectedThrottles.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                respond(exchange, 429, Map.of("error", Map.of("code", 429, "message", "Rate limit exceeded")));
+                return;
+            }
+            if (roll < options.throttleRate + options.errorRate) {
+                injectedErrors.incrementAndGet();
+                respond(exchange, 500, Map.of("error", Map.of("code", 500, "message", "Backend error")));
+                return;
+            }
+
+            SyntheticMailbox mailbox = mailboxFor(exchange);
+            if (mailbox == null) {
+                respond(exchange, 401, Map.of("error", Map.of("code", 401, "message", "Invalid credentials")));
+                return;
+            }
+
+            if (path.startsWith("/gmail/v1/users/me")) {
+                handleGmail(exchange, mailbox, path.substring("/gmail/v1/users/me".length()));
+            } else if (path.startsWith("/v1.0/me") || path.startsWith("/beta/me")) {
+                handleGraph(exchange, mailbox, path.substring(path.indexOf("/me") + 3));
+            } else {
+                respond(exchange, 404, Map.of("error", "Unknown path " + path));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- Gmail ----
+
+    private void handleGmail(HttpExchange exchange, SyntheticMailbox mailbox, String path) throws IOException {
+        Map<String, String> query = query(exchange);
+
+        if (path.equals("/messages")) {
+            int maxResults = Integer.parseInt(query.getOrDefault("maxResults", "100"));
+            int offset = Integer.parseInt(query.getOrDefault("pageToken", "0"));
+            int end = Math.min(offset + maxResults, mailbox.size());
+
+            List<Map<String, Object>> refs = new ArrayList<>(end - offset);
+            for (int i = offset; i < end; i++) {
+                refs.add(Map.of("id", mailbox.messageId(i), "threadId", mailbox.threadId(i)));
+            }
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            if (!refs.isEmpty()) {
+                body.put("messages", refs);
+            }
+            if (end < mailbox.size()) {
+                body.put("nextPageToken", String.valueOf(end));
+            }
+            body.put("resultSizeEstimate", mailbox.size());
+            respond(exchange, 200, body);
+            return;
+        }
+
+        if (path.equals("/messages/batchModify") || path.endsWith("/modify")) {
+            drain(exchange);
+            respond(exchange, 204, null);
+            return;
+        }
+
+        if (path.startsWith("/messages/")) {
+            int i = mailbox.messageIndex(path.substring("/messages/".length()));
+            if (i < 0) {
+                respond(exchange, 404, Map.of("error", Map.of("code", 404, "message", "Not Found")));
+                return;
+            }
+            respond(exchange, 200, gmailMessage(mailbox, i));
+            return;
+        }
+
+        if (path.startsWith("/labels")) {
+            if (exchange.getRequestMethod().equals("POST")) {
+                drain(exchange);
+                respond(exchange, 200, Map.of("id", "Label_bench", "name", "bench"));
+            } else {
+                respond(exchange, 200, Map.of("labels", List.of(
+                    Map.of("id", "INBOX", "name", "INBOX", "type", "system"),
+                    Map.of("id", "UNREAD", "name", "UNREAD", "type", "system"))));
+            }
+            return;
+        }
+
+        respond(exchange, 404, Map.of("error", "Unknown Gmail path " + path));
+    }
+
+    private Map<String, Object> gmailMessage(SyntheticMailbox mailbox, int i) {
+        List<Map<String, String>> headers = new ArrayList<>(List.of(
+            Map.of("name", "From", "value", mailbox.fromName(i) + " <" + mailbox.from(i) + ">"),
+            Map.of("name", "To", "value", mailbox.to(i)),
+            Map.of("name", "Subject", "value", mailbox.subject(i)),
+            Map.of("name", "Date", "value", mailbox.rfc2822Date(i)),
+            Map.of("name", "Message-ID", "value", mailbox.rfcMessageId(i))
+        ));
+        if (mailbox.inReplyTo(i) != null) {
+            headers.add(Map.of("name", "In-Reply-To", "value", mailbox.inReplyTo(i)));
+        }
+        if (mailbox.isListMail(i)) {
+            headers.add(Map.of("name", "List-Id", "value", mailbox.listId(i)));
+            headers.add(Map.of("name", "List-Unsubscribe", "value", mailbox.listUnsubscribe(i)));
+            headers.add(Map.of("name", "Precedence", "value", "bulk"));
+        }
+
+        List<String> labels = new ArrayList<>(List.of("INBOX"));
+        if (mailbox.isUnread(i)) labels.add("UNREAD");
+        if (mailbox.isFromMe(i)) labels.add("SENT");
+
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("id", mailbox.messageId(i));
+        message.put("threadId", mailbox.threadId(i));
+        message.put("labelIds", labels);
+        message.put("snippet", "Snippet for " + mailbox.subject(i));
+        message.put("payload", Map.of("mimeType", "text/plain", "headers", headers));
+        return message;
+    }
+
+    // ---- Microsoft Graph ----
+
+    private void handleGraph(HttpExchange exchange, SyntheticMailbox mailbox, String path) throws IOException {
+        Map<String, String> query = query(exchange);
+
+        if (path.equals("/messages") || path.endsWith("/messages") && path.startsWith("/mailFolders/")) {
+            // Archive and other folders are simulated as empty; everything lives in the inbox
+            if (path.startsWith("/mailFolders/")) {
+                respond(exchange, 200, Map.of("value", List.of()));
+                return;
+            }
+
+            int top = Integer.parseInt(query.getOrDefault("$top", "10"));
+            int skip = Integer.parseInt(query.getOrDefault("$skip", "0"));
+            int end = Math.min(skip + top, mailbox.size());
+
+            List<Map<String, Object>> value = new ArrayList<>(Math.max(0, end - skip));
+            for (int i = skip; i < end; i++) {
+                value.add(graphMessage(mailbox, i));
+            }
+
+            Map<String, Object> body = new LinkedHashMap<>();
+            body.put("value", value);
+            if (end < mailbox.size()) {
+                body.put("@odata.nextLink", graphApiBase() + "/messages?$top=" + top + "&$skip=" + end);
+            }
+            respond(exchange, 200, body);
+            return;
+        }
+
+        if (path.endsWith("/move")) {
+            drain(exchange);
+            respond(exchange, 201, Map.of("id", "moved"));
+            return;
+        }
+
+        if (path.startsWith("/mailFolders")) {
+            if (exchange.getRequestMethod().equals("POST")) {
+                drain(exchange);
+                respond(exchange, 201, Map.of("id", "folder-bench", "displayName", "bench"));
+            } else if (path.equals("/mailFolders/archive")) {
+                respond(exchange, 200, Map.of("id", "archive", "displayName", "Archive"));
+            } else {
+                respond(exchange, 200, Map.of("value", List.of(
+                    Map.of("id", "inbox", "displayName", "Inbox", "childFolderCount", 0),
+                    Map.of("id", "archive", "displayName", "Archive", "childFolderCount", 0))));
+            }
+            return;
+        }
+
+        if (path.startsWith("/messages/")) {
+            int i = mailbox.messageIndex(path.substring("/messages/".length()));
+            if (i < 0) {
+                respond(exchange, 404, Map.of("error", Map.of("code", "ErrorItemNotFound")));
+                return;
+            }
+            respond(exchange, 200, graphMessage(mailbox, i));
+            return;
+        }
+
+        respond(exchange, 404, Map.of("error", "Unknown Graph path " + path));
+    }
+
+    private Map<String, Object> graphMessage(SyntheticMailbox mailbox, int i) {
+        Map<String, Object> message = new LinkedHashMap<>();
+        message.put("id", mailbox.messageId(i));
+        message.put("conversationId", mailbox.threadId(i));
+        message.put("subject", mailbox.subject(i));
+        message.put("from", Map.of("emailAddress", Map.of("name", mailbox.fromName(i), "address", mailbox.from(i))));
+        message.put("toRecipients", List.of(Map.of("emailAddress", Map.of("name", "", "address", mailbox.to(i)))));
+        message.put("receivedDateTime", mailbox.isoDate(i));
+        message.put("bodyPreview", "Snippet for " + mailbox.subject(i));
+        message.put("isRead", !mailbox.isUnread(i));
+        message.put("parentFolderId", "inbox");
+        message.put("internetMessageId", mailbox.rfcMessageId(i));
+        List<Map<String, String>> internetHeaders = new ArrayList<>();
+        if (mailbox.inReplyTo(i) != null) {
+            internetHeaders.add(Map.of("name", "In-Reply-To", "value", mailbox.inReplyTo(i)));
+        }
+        if (mailbox.isListMail(i)) {
+            internetHeaders.add(Map.of("name", "List-Id", "value", mailbox.listId(i)));
+            internetHeaders.add(Map.of("name", "List-Unsubscribe", "value", mailbox.listUnsubscribe(i)));
+            internetHeaders.add(Map.of("name", "Precedence", "value", "bulk"));
+        }
+        if (!internetHeaders.isEmpty()) {
+            message.put("internetMessageHeaders", internetHeaders);
+        }
+        return message;
+    }
+
+    // ---- Plumbing ----
+
+    private SyntheticMailbox mailboxFor(HttpExchange exchange) {
+        String token = bearer(exchange, null);
+        if (token == null || !token.startsWith("bench-")) return null;
+        try {
+            int index = Integer.parseInt(token.substring("bench-".length()));
+            return index >= 0 && index < mailboxes.size() ? mailboxes.get(index) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private String bearer(HttpExchange exchange, String fallback) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) return fallback;
+        return authorization.substring("Bearer ".length());
+    }
+
+    private Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) continue;
+            params.putIfAbsent(
+                URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private void drain(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+    }
+
+    private void respond(HttpExchange exchange, int status, Object body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
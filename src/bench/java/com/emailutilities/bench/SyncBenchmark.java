@@ -0,0 +1,185 @@
+package com.emailutilities.bench;
+
+import com.emailutilities.EmailUtilitiesApplication;
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.entity.SyncJob;
+import com.emailutilities.entity.User;
+import com.emailutilities.repository.EmailAccountRepository;
+import com.emailutilities.repository.EmailMetadataRepository;
+import com.emailutilities.repository.SyncJobRepository;
+import com.emailutilities.repository.UserRepository;
+import com.emailutilities.service.BackgroundSyncService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end sync benchmark: boots the application against an in-memory H2 database and a local
+ * Gmail/Graph simulator, runs a full sync for synthetic mailboxes and reports throughput,
+ * allocation and per-page latency percentiles.
+ *
+ * Run with: ./gradlew bench --args="--provider=gmail --accounts=2 --messages=20000 --latency-ms=5"
+ */
+public final class SyncBenchmark {
+
+    private static final String BENCH_USER_EMAIL = "zintarweb@gmail.com";   // created by DataInitializer
+
+    private SyncBenchmark() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        BenchmarkOptions options = BenchmarkOptions.parse(args);
+        System.out.println("[Bench] " + options);
+
+        List<SyntheticMailbox> mailboxes = new ArrayList<>();
+        for (int i = 0; i < options.accounts; i++) {
+            mailboxes.add(new SyntheticMailbox(i, options.messages, options.senders));
+        }
+
+        try (ProviderSimulator simulator = new ProviderSimulator(mailboxes, options)) {
+            simulator.start();
+            System.out.println("[Bench] Provider simulator listening on " + simulator.baseUrl());
+
+            try (ConfigurableApplicationContext context = boot(simulator, options)) {
+                run(context, simulator, mailboxes, options);
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext boot(ProviderSimulator simulator, BenchmarkOptions options) {
+        return new SpringApplicationBuilder(EmailUtilitiesApplication.class)
+            .web(WebApplicationType.SERVLET)
+            .properties(
+                "server.port=0",
+                "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                "spring.datasource.driver-class-name=org.h2.Driver",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+                "spring.jpa.hibernate.ddl-auto=create-drop",
+                "spring.flyway.enabled=false",
+                "spring.jpa.show-sql=false",
+                "spring.jpa.properties.hibernate.format_sql=false",
+                "spring.devtools.restart.enabled=false",
+                "sync.scheduler.enabled=false",
+                "sync.max-pages=" + options.maxPages,
+                "sync.page-delay-ms=" + options.pageDelayMs,
+                "gmail.api-base=" + simulator.gmailApiBase(),
+                "graph.api-base=" + simulator.graphApiBase(),
+                "graph.api-beta=" + simulator.graphApiBeta(),
+                "oauth.google.token-uri=" + simulator.tokenUri(),
+                "oauth.microsoft.token-uri=" + simulator.tokenUri()
+            )
+            .run();
+    }
+
+    private static void run(ConfigurableApplicationContext context, ProviderSimulator simulator,
+                            List<SyntheticMailbox> mailboxes, BenchmarkOptions options) throws InterruptedException {
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        EmailAccountRepository accountRepository = context.getBean(EmailAccountRepository.class);
+        EmailMetadataRepository metadataRepository = context.getBean(EmailMetadataRepository.class);
+        SyncJobRepository syncJobRepository = context.getBean(SyncJobRepository.class);
+        BackgroundSyncService syncService = context.getBean(BackgroundSyncService.class);
+        MeterRegistry registry = context.getBean(MeterRegistry.class);
+
+        User user = userRepository.findByEmail(BENCH_USER_EMAIL)
+            .orElseThrow(() -> new IllegalStateException("Benchmark user not seeded: " + BENCH_USER_EMAIL));
+
+        for (int i = 0; i < mailboxes.size(); i++) {
+            EmailAccount account = new EmailAccount();
+            account.setUser(user);
+            account.setEmailAddress(mailboxes.get(i).owner());
+            account.setProvider(providerFor(options.provider, i));
+            account.setAccessToken("bench-" + i);
+            account.setRefreshToken("bench-refresh-" + i);
+            account.setTokenExpiresAt(LocalDateTime.now().plusYears(1));
+            accountRepository.save(account);
+        }
+
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+
+        SyncJob job = syncService.startSyncJob(user.getId(), SyncJob.JobType.FULL_SYNC);
+        job = awaitCompletion(syncJobRepository, job.getId());
+
+        long elapsedNanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        long stored = metadataRepository.count();
+        double seconds = elapsedNanos / 1e9;
+
+        System.out.println();
+        System.out.println("[Bench] Job " + job.getId() + " finished with status " + job.getStatus()
+            + (job.getErrorMessage() != null ? " (" + job.getErrorMessage() + ")" : ""));
+        System.out.printf("[Bench] Synced %d emails, skipped %d, stored %d rows in %.2f s%n",
+            job.getTotalEmailsSynced(), job.getTotalEmailsSkipped(), stored, seconds);
+        System.out.printf("[Bench] Throughput: %.0f emails/s%n", stored / seconds);
+        System.out.printf("[Bench] Allocated: %.1f MB (%.0f bytes/email)%n",
+            allocated / (1024.0 * 1024.0), stored > 0 ? (double) allocated / stored : 0);
+
+        for (Timer timer : registry.find("sync.page").timers()) {
+            System.out.printf("[Bench] sync.page[%s]: count=%d mean=%.1f ms max=%.1f ms%s%n",
+                timer.getId().getTag("provider"), timer.count(),
+                timer.mean(TimeUnit.MILLISECONDS), timer.max(TimeUnit.MILLISECONDS),
+                percentiles(timer));
+        }
+
+        System.out.printf("[Bench] Simulator: %d requests, %d injected 5xx, %d injected 429%n",
+            simulator.requests(), simulator.injectedErrors(), simulator.injectedThrottles());
+    }
+
+    private static SyncJob awaitCompletion(SyncJobRepository syncJobRepository, Long jobId) throws InterruptedException {
+        // startSyncJob currently runs inline, but poll in case the job was handed to the async executor
+        while (true) {
+            SyncJob job = syncJobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalStateException("Sync job disappeared: " + jobId));
+            if (job.getStatus() == SyncJob.JobStatus.COMPLETED
+                || job.getStatus() == SyncJob.JobStatus.FAILED
+                || job.getStatus() == SyncJob.JobStatus.CANCELLED) {
+                return job;
+            }
+            Thread.sleep(100);
+        }
+    }
+
+    private static EmailAccount.EmailProvider providerFor(String provider, int index) {
+        return switch (provider) {
+            case "gmail" -> EmailAccount.EmailProvider.GMAIL;
+            case "outlook" -> EmailAccount.EmailProvider.OUTLOOK;
+            case "both" -> index % 2 == 0 ? EmailAccount.EmailProvider.GMAIL : EmailAccount.EmailProvider.OUTLOOK;
+            default -> throw new IllegalArgumentException("Unknown provider: " + provider);
+        };
+    }
+
+    private static String percentiles(Timer timer) {
+        StringBuilder out = new StringBuilder();
+        for (ValueAtPercentile value : timer.takeSnapshot().percentileValues()) {
+            out.append(String.format(" p%.0f=%.1f ms", value.percentile() * 100, value.value(TimeUnit.MILLISECONDS)));
+        }
+        return out.toString();
+    }
+
+    /**
+     * Bytes allocated so far by live threads. Threads that exit between samples are not counted,
+     * which is fine here since sync work runs on long-lived threads.
+     */
+    private static long allocatedBytes() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads)) {
+            return 0;
+        }
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) total += allocated;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,100 @@
+package com.emailutilities.bench;
+
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+/**
+ * Deterministic synthetic mailbox. Message i is generated on demand, newest first,
+ * so arbitrarily large mailboxes cost no memory.
+ */
+final class SyntheticMailbox {
+
+    private static final DateTimeFormatter RFC_2822 =
+        DateTimeFormatter.ofPattern("EEE, d MMM yyyy HH:mm:ss Z", Locale.ENGLISH);
+
+    private final int index;
+    private final int size;
+    private final int senderCount;
+    private final String owner;
+    private final ZonedDateTime newest = ZonedDateTime.of(2025, 1, 1, 12, 0, 0, 0, ZoneOffset.UTC);
+
+    SyntheticMailbox(int index, int size, int senderCount) {
+        this.index = index;
+        this.size = size;
+        this.senderCount = senderCount;
+        this.owner = "bench" + index + "@example.com";
+    }
+
+    int size() { return size; }
+    String owner() { return owner; }
+
+    String messageId(int i) { return "a" + index + "m" + i; }
+    String threadId(int i) { return "a" + index + "t" + (i / 3); }
+
+    /**
+     * Parse a message ID produced by {@link #messageId}, or -1 if it isn't ours
+     */
+    int messageIndex(String messageId) {
+        String prefix = "a" + index + "m";
+        if (!messageId.startsWith(prefix)) return -1;
+        try {
+            int i = Integer.parseInt(messageId.substring(prefix.length()));
+            return i >= 0 && i < size ? i : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    boolean isFromMe(int i) { return i % 7 == 0; }
+    boolean isUnread(int i) { return (mix(i) & 3) == 0; }
+
+    /**
+     * Skewed sender distribution: a few senders account for most of the mail
+     */
+    String sender(int i) {
+        int s = senderIndex(i);
+        return "sender" + s + "@domain" + (s % 97) + ".example";
+    }
+
+    private int senderIndex(int i) {
+        double u = (mix(i) >>> 11) * 0x1.0p-53;
+        return (int) (senderCount * u * u * u);
+    }
+
+    /**
+     * Every fifth sender is a mailing list, so received mail from it carries List-* headers
+     */
+    boolean isListMail(int i) { return !isFromMe(i) && senderIndex(i) % 5 == 0; }
+    String listId(int i) { return "<list" + senderIndex(i) + ".domain" + (senderIndex(i) % 97) + ".example>"; }
+    String listUnsubscribe(int i) { return "<mailto:unsubscribe@domain" + (senderIndex(i) % 97) + ".example>"; }
+
+    String senderName(int i) {
+        return "Sender " + sender(i).substring(0, sender(i).indexOf('@'));
+    }
+
+    String from(int i) { return isFromMe(i) ? owner : sender(i); }
+    String fromName(int i) { return isFromMe(i) ? "Me" : senderName(i); }
+    String to(int i) { return isFromMe(i) ? sender(i) : owner; }
+    String subject(int i) { return "Synthetic message " + i + " in thread " + (i / 3); }
+
+    String rfcMessageId(int i) { return "<" + messageId(i) + "@bench.example>"; }
+
+    /**
+     * Sent messages answer the next older message, so replies arrive before their parents as in a real backfill
+     */
+    String inReplyTo(int i) { return isFromMe(i) && i + 1 < size ? rfcMessageId(i + 1) : null; }
+
+    ZonedDateTime receivedAt(int i) { return newest.minusMinutes(10L * i); }
+    String rfc2822Date(int i) { return RFC_2822.format(receivedAt(i)); }
+    String isoDate(int i) { return receivedAt(i).toInstant().toString(); }
+
+    private long mix(long x) {
+        // SplitMix64 finalizer - cheap, well-distributed, deterministic
+        x += 0x9E3779B97F4A7C15L * (index + 1);
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+}
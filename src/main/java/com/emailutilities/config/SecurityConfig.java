@@ -46,7 +46,7 @@ public class SecurityConfig {
         ));
         configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*", "X-User-Id", "Content-Type", "Authorization"));
-        configuration.setExposedHeaders(Arrays.asList("X-User-Id"));
+        configuration.setExposedHeaders(Arrays.asList("X-User-Id", "X-Next-Cursor", "ETag"));
         configuration.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
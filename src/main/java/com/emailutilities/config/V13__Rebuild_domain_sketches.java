@@ -0,0 +1,62 @@
+package com.emailutilities.config;
+
+import com.emailutilities.entity.DistinctSketch;
+import com.emailutilities.service.HyperLogLog;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rebuild the DOMAIN sketches by registrable domain. V4 and ingest before it hashed the host after
+ * the '@', so news.brand.com and brand.com were counted as two domains; they now hash the
+ * email_metadata domain ID (set by V8). Same per-account pass as V4; SENDER sketches are kept.
+ * Registered with Flyway as a bean; the class name carries the migration version.
+ */
+@Component
+public class V13__Rebuild_domain_sketches extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+
+        jdbcTemplate.update("DELETE FROM distinct_sketches WHERE kind = ?", DistinctSketch.Kind.DOMAIN.name());
+
+        int inserted = 0;
+        List<Long> accountIds = jdbcTemplate.queryForList(
+            "SELECT DISTINCT account_id FROM email_metadata WHERE is_from_me = FALSE", Long.class);
+        for (Long accountId : accountIds) {
+            Map<LocalDate, HyperLogLog> sketches = new HashMap<>();
+            jdbcTemplate.query(
+                "SELECT DISTINCT domain_id, CAST(received_at AS DATE) FROM email_metadata " +
+                "WHERE account_id = ? AND is_from_me = FALSE AND domain_id IS NOT NULL",
+                rs -> {
+                    if (rs.getDate(2) == null) return;
+                    String domain = Long.toString(rs.getLong(1));
+                    for (LocalDate day : List.of(rs.getDate(2).toLocalDate(), DistinctSketch.ALL_TIME)) {
+                        sketches.computeIfAbsent(day, d -> new HyperLogLog()).add(domain);
+                    }
+                },
+                accountId);
+
+            List<Object[]> rows = new ArrayList<>(sketches.size());
+            for (Map.Entry<LocalDate, HyperLogLog> entry : sketches.entrySet()) {
+                rows.add(new Object[]{accountId, DistinctSketch.Kind.DOMAIN.name(),
+                    java.sql.Date.valueOf(entry.getKey()), entry.getValue().toBytes()});
+            }
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO distinct_sketches (account_id, kind, sketch_day, registers) VALUES (?, ?, ?, ?)", rows);
+            inserted += rows.size();
+        }
+        if (inserted > 0) {
+            System.out.println("Rebuilt " + inserted + " domain distinct_sketches rows");
+        }
+    }
+}
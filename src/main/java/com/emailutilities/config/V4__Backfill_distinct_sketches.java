@@ -0,0 +1,70 @@
+package com.emailutilities.config;
+
+import com.emailutilities.entity.DistinctSketch;
+import com.emailutilities.service.HyperLogLog;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Build the HyperLogLog sketches from existing email_metadata on databases that predate them.
+ * Sketches can't be computed in SQL, so this is a Java migration: each account's distinct
+ * (sender, day) pairs are read and hashed here, one account at a time to bound memory.
+ * Registered with Flyway as a bean; the class name carries the migration version.
+ */
+@Component
+public class V4__Backfill_distinct_sketches extends BaseJavaMigration {
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+
+        Long sketchRows = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM distinct_sketches", Long.class);
+        if (sketchRows != null && sketchRows > 0) {
+            return;
+        }
+
+        int inserted = 0;
+        List<Long> accountIds = jdbcTemplate.queryForList(
+            "SELECT DISTINCT account_id FROM email_metadata WHERE is_from_me = FALSE", Long.class);
+        for (Long accountId : accountIds) {
+            Map<LocalDate, HyperLogLog[]> sketches = new HashMap<>();
+            jdbcTemplate.query(
+                "SELECT DISTINCT sender_email, CAST(received_at AS DATE) FROM email_metadata " +
+                "WHERE account_id = ? AND is_from_me = FALSE",
+                rs -> {
+                    String sender = rs.getString(1);
+                    if (sender == null || rs.getDate(2) == null) return;
+                    String domain = sender.substring(sender.indexOf('@') + 1);
+                    for (LocalDate day : List.of(rs.getDate(2).toLocalDate(), DistinctSketch.ALL_TIME)) {
+                        HyperLogLog[] pair = sketches.computeIfAbsent(day,
+                            d -> new HyperLogLog[]{new HyperLogLog(), new HyperLogLog()});
+                        pair[0].add(sender);
+                        pair[1].add(domain);
+                    }
+                },
+                accountId);
+
+            List<Object[]> rows = new ArrayList<>(sketches.size() * 2);
+            for (Map.Entry<LocalDate, HyperLogLog[]> entry : sketches.entrySet()) {
+                java.sql.Date day = java.sql.Date.valueOf(entry.getKey());
+                rows.add(new Object[]{accountId, DistinctSketch.Kind.SENDER.name(), day, entry.getValue()[0].toBytes()});
+                rows.add(new Object[]{accountId, DistinctSketch.Kind.DOMAIN.name(), day, entry.getValue()[1].toBytes()});
+            }
+            jdbcTemplate.batchUpdate(
+                "INSERT INTO distinct_sketches (account_id, kind, sketch_day, registers) VALUES (?, ?, ?, ?)", rows);
+            inserted += rows.size();
+        }
+        if (inserted > 0) {
+            System.out.println("Backfilled " + inserted + " distinct_sketches rows");
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.emailutilities.config;
+
+import com.emailutilities.service.PublicSuffixList;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Give existing senders, and the email_metadata rows that point at them, the ID of their
+ * registrable domain. The Public Suffix List lookup can't be done in SQL, so senders are resolved
+ * here and the email_metadata rows are then updated from senders in one statement.
+ * Registered with Flyway as a bean; the class name carries the migration version.
+ */
+@Component
+public class V8__Backfill_registrable_domains extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final PublicSuffixList publicSuffixList;
+
+    public V8__Backfill_registrable_domains(PublicSuffixList publicSuffixList) {
+        this.publicSuffixList = publicSuffixList;
+    }
+
+    @Override
+    public void migrate(Context context) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+
+        Map<Long, String> domainBySender = new HashMap<>();
+        jdbcTemplate.query("SELECT id, email FROM senders WHERE domain_id IS NULL",
+            rs -> {
+                domainBySender.put(rs.getLong(1), publicSuffixList.registrableDomain(rs.getString(2)));
+            });
+        if (domainBySender.isEmpty()) {
+            return;
+        }
+
+        List<Object[]> names = domainBySender.values().stream().distinct()
+            .map(name -> new Object[]{name})
+            .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO domains (name) VALUES (?) ON CONFLICT (name) DO NOTHING", names);
+
+        Map<String, Long> domainIds = new HashMap<>();
+        jdbcTemplate.query("SELECT id, name FROM domains",
+            rs -> {
+                domainIds.put(rs.getString(2), rs.getLong(1));
+            });
+
+        List<Object[]> updates = new ArrayList<>(BATCH_SIZE);
+        for (Map.Entry<Long, String> entry : domainBySender.entrySet()) {
+            updates.add(new Object[]{domainIds.get(entry.getValue()), entry.getKey()});
+            if (updates.size() == BATCH_SIZE) {
+                jdbcTemplate.batchUpdate("UPDATE senders SET domain_id = ? WHERE id = ?", updates);
+                updates.clear();
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE senders SET domain_id = ? WHERE id = ?", updates);
+
+        int rows = jdbcTemplate.update(
+            "UPDATE email_metadata e SET domain_id = s.domain_id FROM senders s " +
+            "WHERE s.id = e.sender_id AND e.domain_id IS NULL");
+        System.out.println("Backfilled registrable domains for " + domainBySender.size() + " senders ("
+            + names.size() + " domains, " + rows + " emails)");
+    }
+}
@@ -1,37 +1,84 @@
 package com.emailutilities.controller;
 
+import com.emailutilities.dto.RankingPage;
 import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.entity.SenderClassification;
 import com.emailutilities.entity.SyncJob;
+import com.emailutilities.entity.VolumeBucket;
 import com.emailutilities.repository.EmailAccountRepository;
 import com.emailutilities.repository.SyncJobRepository;
+import com.emailutilities.service.AnalyticsResultCache;
 import com.emailutilities.service.AnalyticsService;
 import com.emailutilities.service.BackgroundSyncService;
+import com.emailutilities.service.CombinedAnalyticsService;
+import com.emailutilities.service.DomainAnalyticsService;
+import com.emailutilities.service.LiveTopSendersService;
+import com.emailutilities.service.ReplyLatencyService;
+import com.emailutilities.service.SenderClassificationService;
+import com.emailutilities.service.SyncProgressPublisher;
+import com.emailutilities.service.TrendAnalyticsService;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/analytics")
 public class AnalyticsController {
 
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    private static final int DEFAULT_TREND_DAYS = 30;
+
     private final AnalyticsService analyticsService;
+    private final CombinedAnalyticsService combinedAnalyticsService;
+    private final TrendAnalyticsService trendAnalyticsService;
+    private final DomainAnalyticsService domainAnalyticsService;
+    private final LiveTopSendersService liveTopSendersService;
+    private final AnalyticsResultCache resultCache;
+    private final ReplyLatencyService replyLatencyService;
+    private final SenderClassificationService classificationService;
     private final BackgroundSyncService backgroundSyncService;
     private final SyncJobRepository syncJobRepository;
     private final EmailAccountRepository accountRepository;
+    private final SyncProgressPublisher progressPublisher;
 
     public AnalyticsController(AnalyticsService analyticsService,
+                              CombinedAnalyticsService combinedAnalyticsService,
+                              TrendAnalyticsService trendAnalyticsService,
+                              DomainAnalyticsService domainAnalyticsService,
+                              LiveTopSendersService liveTopSendersService,
+                              AnalyticsResultCache resultCache,
+                              ReplyLatencyService replyLatencyService,
+                              SenderClassificationService classificationService,
                               BackgroundSyncService backgroundSyncService,
                               SyncJobRepository syncJobRepository,
-                              EmailAccountRepository accountRepository) {
+                              EmailAccountRepository accountRepository,
+                              SyncProgressPublisher progressPublisher) {
         this.analyticsService = analyticsService;
+        this.combinedAnalyticsService = combinedAnalyticsService;
+        this.trendAnalyticsService = trendAnalyticsService;
+        this.domainAnalyticsService = domainAnalyticsService;
+        this.liveTopSendersService = liveTopSendersService;
+        this.resultCache = resultCache;
+        this.replyLatencyService = replyLatencyService;
+        this.classificationService = classificationService;
         this.backgroundSyncService = backgroundSyncService;
         this.syncJobRepository = syncJobRepository;
         this.accountRepository = accountRepository;
+        this.progressPublisher = progressPublisher;
     }
 
     /**
@@ -62,6 +109,13 @@ public class AnalyticsController {
     public ResponseEntity<?> getSyncStatus(@RequestHeader(value = "X-User-Id", required = false) Long userId) {
         try {
             Long effectiveUserId = userId != null ? userId : 1L;
+
+            // Jobs that ran since startup are answered from memory, without touching the DB
+            Optional<Map<String, Object>> latest = progressPublisher.latestForUser(effectiveUserId);
+            if (latest.isPresent()) {
+                return ResponseEntity.ok(latest.get());
+            }
+
             // Get the most recent running or completed job
             return syncJobRepository.findFirstByUserIdAndStatusOrderByStartedAtDesc(effectiveUserId, SyncJob.JobStatus.RUNNING)
                 .or(() -> syncJobRepository.findByUserIdOrderByStartedAtDesc(effectiveUserId).stream().findFirst())
@@ -78,6 +132,10 @@ public class AnalyticsController {
     @GetMapping("/sync/job/{jobId}")
     public ResponseEntity<?> getJobStatus(@PathVariable Long jobId) {
         try {
+            Optional<Map<String, Object>> latest = progressPublisher.latestForJob(jobId);
+            if (latest.isPresent()) {
+                return ResponseEntity.ok(latest.get());
+            }
             return syncJobRepository.findById(jobId)
                 .map(job -> ResponseEntity.ok(buildJobStatusMap(job)))
                 .orElse(ResponseEntity.notFound().build());
@@ -86,6 +144,33 @@ public class AnalyticsController {
         }
     }
 
+    /**
+     * Stream progress of the user's sync jobs as Server-Sent Events.
+     * EventSource can't send headers, so the user may also be given as a query parameter.
+     */
+    @GetMapping(value = "/sync/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamSyncStatus(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(value = "userId", required = false) Long userIdParam,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Long effectiveUserId = userId != null ? userId : (userIdParam != null ? userIdParam : 1L);
+        return progressPublisher.subscribeUser(effectiveUserId, lastEventId);
+    }
+
+    /**
+     * Stream progress of a specific job as Server-Sent Events; completes when the job finishes
+     */
+    @GetMapping(value = "/sync/job/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJobStatus(
+            @PathVariable Long jobId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        // Only jobs that finished before startup need the DB
+        SyncJob persisted = progressPublisher.latestForJob(jobId).isPresent()
+            ? null
+            : syncJobRepository.findById(jobId).orElse(null);
+        return progressPublisher.subscribeJob(jobId, persisted, lastEventId);
+    }
+
     /**
      * Cancel running sync job
      */
@@ -100,17 +185,34 @@ public class AnalyticsController {
     }
 
     /**
-     * Get top senders
+     * Get top senders. Pass the X-Next-Cursor response header back as ?cursor= for the next page.
      */
     @GetMapping("/top-senders")
     public ResponseEntity<?> getTopSenders(
             @RequestHeader(value = "X-User-Id", required = false) Long userId,
             @RequestParam(defaultValue = "20") int limit,
-            @RequestParam(required = false) Integer days) {
+            @RequestParam(required = false) Integer days,
+            @RequestParam(required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             List<Long> accountIds = getAccountIds(userId);
-            List<Map<String, Object>> results = analyticsService.getTopSenders(accountIds, limit, days);
-            return ResponseEntity.ok(results);
+            return cachedResponse(windowedKey(days, "top-senders", accountIds, limit, days, cursor), ifNoneMatch,
+                () -> analyticsService.getTopSenders(accountIds, limit, days, cursor));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Approximate top senders kept current by every synced page; cheap to poll during a sync
+     */
+    @GetMapping("/top-senders/live")
+    public ResponseEntity<?> getLiveTopSenders(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(defaultValue = "20") int limit) {
+        try {
+            Long effectiveUserId = userId != null ? userId : 1L;
+            return ResponseEntity.ok(liveTopSendersService.getTopSenders(effectiveUserId, limit));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -122,11 +224,13 @@ public class AnalyticsController {
     @GetMapping("/unread-by-sender")
     public ResponseEntity<?> getUnreadBySender(
             @RequestHeader(value = "X-User-Id", required = false) Long userId,
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             List<Long> accountIds = getAccountIds(userId);
-            List<Map<String, Object>> results = analyticsService.getUnreadBySender(accountIds, limit);
-            return ResponseEntity.ok(results);
+            return cachedResponse(resultCache.key("unread-by-sender", accountIds, limit, cursor), ifNoneMatch,
+                () -> analyticsService.getUnreadBySender(accountIds, limit, cursor));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -138,11 +242,13 @@ public class AnalyticsController {
     @GetMapping("/reply-ranking")
     public ResponseEntity<?> getReplyRanking(
             @RequestHeader(value = "X-User-Id", required = false) Long userId,
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             List<Long> accountIds = getAccountIds(userId);
-            List<Map<String, Object>> results = analyticsService.getReplyToRanking(accountIds, limit);
-            return ResponseEntity.ok(results);
+            return cachedResponse(resultCache.key("reply-ranking", accountIds, limit, cursor), ifNoneMatch,
+                () -> analyticsService.getReplyToRanking(accountIds, limit, cursor));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -154,11 +260,30 @@ public class AnalyticsController {
     @GetMapping("/low-reply-ratio")
     public ResponseEntity<?> getLowReplyRatio(
             @RequestHeader(value = "X-User-Id", required = false) Long userId,
-            @RequestParam(defaultValue = "20") int limit) {
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            List<Long> accountIds = getAccountIds(userId);
+            return cachedResponse(resultCache.key("low-reply-ratio", accountIds, limit), ifNoneMatch,
+                () -> analyticsService.getLowReplyRatioSenders(accountIds, limit));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * How fast the user replies to each correspondent and how fast they reply back
+     */
+    @GetMapping("/reply-latency")
+    public ResponseEntity<?> getReplyLatency(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String counterpart,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             List<Long> accountIds = getAccountIds(userId);
-            List<Map<String, Object>> results = analyticsService.getLowReplyRatioSenders(accountIds, limit);
-            return ResponseEntity.ok(results);
+            return cachedResponse(resultCache.key("reply-latency", accountIds, limit, counterpart), ifNoneMatch,
+                () -> replyLatencyService.getReplyLatency(accountIds, limit, counterpart));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
@@ -168,65 +293,247 @@ public class AnalyticsController {
      * Get summary statistics
      */
     @GetMapping("/summary")
-    public ResponseEntity<?> getSummary(@RequestHeader(value = "X-User-Id", required = false) Long userId) {
+    public ResponseEntity<?> getSummary(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(required = false) Integer days,
+            @RequestParam(defaultValue = "false") boolean exact,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            List<Long> accountIds = getAccountIds(userId);
+            return cachedResponse(windowedKey(days, "summary", accountIds, days, exact), ifNoneMatch,
+                () -> analyticsService.getSummaryStats(accountIds, days, exact));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Email volume per day or hour; defaults to the last 30 days
+     */
+    @GetMapping("/volume")
+    public ResponseEntity<?> getVolume(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "DAY") VolumeBucket.Granularity granularity,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            List<Long> accountIds = getAccountIds(userId);
+            LocalDate end = to != null ? to : LocalDate.now().plusDays(1);
+            LocalDate start = from != null ? from : end.minusDays(DEFAULT_TREND_DAYS);
+            return cachedResponse(resultCache.key("volume", accountIds, start, end, granularity), ifNoneMatch,
+                () -> trendAnalyticsService.getVolumeOverTime(accountIds, start, end, granularity));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Daily volume from one sender; defaults to the last 30 days
+     */
+    @GetMapping("/sender-trend")
+    public ResponseEntity<?> getSenderTrend(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam String sender,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            List<Long> accountIds = getAccountIds(userId);
+            LocalDate end = to != null ? to : LocalDate.now().plusDays(1);
+            LocalDate start = from != null ? from : end.minusDays(DEFAULT_TREND_DAYS);
+            return cachedResponse(resultCache.key("sender-trend", accountIds, sender, start, end), ifNoneMatch,
+                () -> trendAnalyticsService.getSenderTrend(accountIds, sender, start, end));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Registrable domains (e.g. brand.com for news.brand.com) ranked by received emails.
+     * Pass the X-Next-Cursor response header back as ?cursor= for the next page.
+     */
+    @GetMapping("/top-domains")
+    public ResponseEntity<?> getTopDomains(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) Integer days,
+            @RequestParam(required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             List<Long> accountIds = getAccountIds(userId);
-            Map<String, Object> stats = analyticsService.getSummaryStats(accountIds);
-            return ResponseEntity.ok(stats);
+            return cachedResponse(windowedKey(days, "top-domains", accountIds, limit, days, cursor), ifNoneMatch,
+                () -> domainAnalyticsService.getTopDomains(accountIds, limit, days, cursor));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
     /**
-     * Get all analytics data in one call
+     * Registrable domains ranked by unread emails
+     */
+    @GetMapping("/unread-by-domain")
+    public ResponseEntity<?> getUnreadByDomain(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            List<Long> accountIds = getAccountIds(userId);
+            return cachedResponse(resultCache.key("unread-by-domain", accountIds, limit, cursor), ifNoneMatch,
+                () -> domainAnalyticsService.getUnreadByDomain(accountIds, limit, cursor));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Daily volume from one registrable domain (any host under it may be given); defaults to the last 30 days
+     */
+    @GetMapping("/domain-trend")
+    public ResponseEntity<?> getDomainTrend(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam String domain,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            List<Long> accountIds = getAccountIds(userId);
+            LocalDate end = to != null ? to : LocalDate.now().plusDays(1);
+            LocalDate start = from != null ? from : end.minusDays(DEFAULT_TREND_DAYS);
+            return cachedResponse(resultCache.key("domain-trend", accountIds, domain, start, end), ifNoneMatch,
+                () -> domainAnalyticsService.getDomainTrend(accountIds, domain, start, end));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Newsletter cleanup: senders of one category (BULK by default, or TRANSACTIONAL / PERSONAL)
+     * ranked by received emails, with unread counts and the latest List-Unsubscribe header.
+     * Pass the X-Next-Cursor response header back as ?cursor= for the next page.
+     */
+    @GetMapping("/newsletters")
+    public ResponseEntity<?> getNewsletters(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(defaultValue = "BULK") SenderClassification.Category category,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            List<Long> accountIds = getAccountIds(userId);
+            return cachedResponse(resultCache.key("newsletters", accountIds, category, limit, cursor), ifNoneMatch,
+                () -> classificationService.getSendersByCategory(accountIds, category, limit, cursor));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Number of senders and received emails per category
+     */
+    @GetMapping("/sender-categories")
+    public ResponseEntity<?> getSenderCategories(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            List<Long> accountIds = getAccountIds(userId);
+            return cachedResponse(resultCache.key("sender-categories", accountIds), ifNoneMatch,
+                () -> classificationService.getCategorySummary(accountIds));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Received volume by hour of day and day of week; defaults to the last 30 days
+     */
+    @GetMapping("/busiest-hours")
+    public ResponseEntity<?> getBusiestHours(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        try {
+            List<Long> accountIds = getAccountIds(userId);
+            LocalDate end = to != null ? to : LocalDate.now().plusDays(1);
+            LocalDate start = from != null ? from : end.minusDays(DEFAULT_TREND_DAYS);
+            return cachedResponse(resultCache.key("busiest-hours", accountIds, start, end), ifNoneMatch,
+                () -> trendAnalyticsService.getBusiestHours(accountIds, start, end));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Get all analytics data in one call (a single pass over the sender rollup)
      */
     @GetMapping
     public ResponseEntity<?> getAllAnalytics(
             @RequestHeader(value = "X-User-Id", required = false) Long userId,
             @RequestParam(defaultValue = "10") int limit,
-            @RequestParam(required = false) Integer days) {
+            @RequestParam(required = false) Integer days,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
             List<Long> accountIds = getAccountIds(userId);
-
-            Map<String, Object> analytics = Map.of(
-                "summary", analyticsService.getSummaryStats(accountIds),
-                "topSenders", analyticsService.getTopSenders(accountIds, limit, days),
-                "unreadBySender", analyticsService.getUnreadBySender(accountIds, limit),
-                "replyRanking", analyticsService.getReplyToRanking(accountIds, limit),
-                "lowReplyRatio", analyticsService.getLowReplyRatioSenders(accountIds, limit)
-            );
-
-            return ResponseEntity.ok(analytics);
+            return cachedResponse(windowedKey(days, "all", accountIds, limit, days), ifNoneMatch,
+                () -> combinedAnalyticsService.getAllAnalytics(accountIds, limit, days));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
         }
     }
 
+    /**
+     * Serve a result from the analytics cache with its ETag, or 304 if the client's copy is current
+     */
+    private ResponseEntity<?> cachedResponse(AnalyticsResultCache.Key key, String ifNoneMatch, Supplier<?> loader) {
+        String etag = resultCache.etag(key);
+        if (etagMatches(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(CacheControl.noCache()).build();
+        }
+
+        Object result = resultCache.get(key, loader);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache());
+        if (result instanceof RankingPage page) {
+            return rankingResponse(response, page);
+        }
+        return response.body(result);
+    }
+
+    private AnalyticsResultCache.Key windowedKey(Integer days, String query, List<Long> accountIds, Object... params) {
+        return days != null
+            ? resultCache.windowedKey(query, accountIds, params)
+            : resultCache.key(query, accountIds, params);
+    }
+
+    private boolean etagMatches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(etag) || tag.equals("*")) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Rankings stay a plain JSON array; the cursor for the next page travels in a header
+     */
+    private ResponseEntity<?> rankingResponse(ResponseEntity.BodyBuilder response, RankingPage page) {
+        if (page.nextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.nextCursor());
+        }
+        return response.body(page.items());
+    }
+
     private List<Long> getAccountIds(Long userId) {
         Long effectiveUserId = userId != null ? userId : 1L;
-        return accountRepository.findByUserId(effectiveUserId).stream()
+        return resultCache.accountIds(effectiveUserId, () -> accountRepository.findByUserId(effectiveUserId).stream()
             .map(EmailAccount::getId)
-            .collect(Collectors.toList());
+            .collect(Collectors.toList()));
     }
 
     private Map<String, Object> buildJobStatusMap(SyncJob job) {
-        Map<String, Object> map = new LinkedHashMap<>();
-        map.put("jobId", job.getId());
-        map.put("status", job.getStatus());
-        map.put("progress", job.getProgressPercent());
-        map.put("totalAccounts", job.getTotalAccounts());
-        map.put("processedAccounts", job.getProcessedAccounts());
-        map.put("totalEmailsSynced", job.getTotalEmailsSynced());
-        map.put("totalEmailsSkipped", job.getTotalEmailsSkipped());
-        map.put("totalEmailsProcessed", job.getTotalEmailsProcessed());
-        map.put("currentPage", job.getCurrentPage());
-        map.put("emailsPerSecond", job.getEmailsPerSecond());
-        map.put("estimatedSecondsRemaining", job.getEstimatedSecondsRemaining());
-        map.put("currentAccount", job.getCurrentAccount() != null ? job.getCurrentAccount() : "");
-        map.put("statusMessage", job.getStatusMessage() != null ? job.getStatusMessage() : "");
-        map.put("startedAt", job.getStartedAt() != null ? job.getStartedAt().toString() : "");
-        map.put("completedAt", job.getCompletedAt() != null ? job.getCompletedAt().toString() : "");
-        return map;
+        return SyncProgressPublisher.toStatusMap(job);
     }
 }
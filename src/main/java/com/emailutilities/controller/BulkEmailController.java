@@ -1,16 +1,20 @@
 package com.emailutilities.controller;
 
+import com.emailutilities.entity.BulkJob;
 import com.emailutilities.entity.EmailAccount;
 import com.emailutilities.entity.SegregationHistory;
 import com.emailutilities.repository.EmailAccountRepository;
 import com.emailutilities.repository.EmailMetadataRepository;
 import com.emailutilities.repository.SegregationHistoryRepository;
+import com.emailutilities.service.BulkJobService;
 import com.emailutilities.service.GmailService;
 import com.emailutilities.service.OutlookService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.time.LocalDateTime;
 import java.util.*;
 
 @RestController
@@ -22,60 +26,38 @@ public class BulkEmailController {
     private final SegregationHistoryRepository segregationHistoryRepository;
     private final GmailService gmailService;
     private final OutlookService outlookService;
+    private final BulkJobService bulkJobService;
 
     public BulkEmailController(EmailAccountRepository accountRepository,
                                EmailMetadataRepository metadataRepository,
                                SegregationHistoryRepository segregationHistoryRepository,
                                GmailService gmailService,
-                               OutlookService outlookService) {
+                               OutlookService outlookService,
+                               BulkJobService bulkJobService) {
         this.accountRepository = accountRepository;
         this.metadataRepository = metadataRepository;
         this.segregationHistoryRepository = segregationHistoryRepository;
         this.gmailService = gmailService;
         this.outlookService = outlookService;
+        this.bulkJobService = bulkJobService;
     }
 
     /**
-     * Move all emails from specified senders to a folder
+     * Start moving all emails from the given senders to a folder in every account. The move runs as
+     * a background job; poll /jobs/{jobId} or subscribe to /jobs/{jobId}/stream for progress.
      */
     @PostMapping("/move")
-    public ResponseEntity<?> moveEmailsBySenders(@RequestBody MoveRequest request) {
+    public ResponseEntity<?> moveEmailsBySenders(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody MoveRequest request) {
         try {
-            Long userId = 1L; // TODO: Get from auth
-            List<EmailAccount> accounts = accountRepository.findByUserId(userId);
-
-            int totalMoved = 0;
-            Map<String, Object> results = new LinkedHashMap<>();
-
-            for (EmailAccount account : accounts) {
-                try {
-                    int moved = 0;
-                    if (account.getProvider() == EmailAccount.EmailProvider.GMAIL) {
-                        // Create folder if needed
-                        String folderId = request.getFolderId();
-                        if (request.isCreateNew() && request.getNewFolderName() != null) {
-                            folderId = gmailService.createLabel(account.getId(), request.getNewFolderName());
-                        }
-                        moved = gmailService.moveEmailsBySenders(account.getId(), request.getSenderEmails(), folderId);
-                    } else if (account.getProvider() == EmailAccount.EmailProvider.OUTLOOK) {
-                        String folderId = request.getFolderId();
-                        if (request.isCreateNew() && request.getNewFolderName() != null) {
-                            folderId = outlookService.createFolder(account.getId(), request.getNewFolderName(), null);
-                        }
-                        moved = outlookService.moveEmailsBySenders(account.getId(), request.getSenderEmails(), folderId);
-                    }
-                    totalMoved += moved;
-                    String accountKey = account.getEmailAddress() + " (" + account.getProvider() + ")";
-                    results.put(accountKey, Map.of("moved", moved, "status", "success"));
-                } catch (Exception e) {
-                    String accountKey = account.getEmailAddress() + " (" + account.getProvider() + ")";
-                    results.put(accountKey, Map.of("moved", 0, "status", "error", "error", e.getMessage()));
-                }
-            }
-
-            return ResponseEntity.ok(Map.of(
-                "totalMoved", totalMoved,
-                "results", results
+            Long effectiveUserId = userId != null ? userId : 1L;
+            BulkJob job = bulkJobService.startMove(effectiveUserId, request.getSenderEmails(), request.getFolderId(),
+                request.isCreateNew() ? request.getNewFolderName() : null);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "jobId", job.getId(),
+                "message", "Move started",
+                "totalItems", job.getTotalItems()
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -83,66 +65,104 @@ public class BulkEmailController {
     }
 
     /**
-     * Segregate emails - create a folder for each sender under "Segregated" root
+     * Start segregating emails - a folder for each sender under the "Segregated" root, in every
+     * account - as a background job
      */
     @PostMapping("/segregate")
-    public ResponseEntity<?> segregateEmailsBySenders(@RequestBody SegregateRequest request) {
+    public ResponseEntity<?> segregateEmailsBySenders(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestBody SegregateRequest request) {
         try {
-            Long userId = 1L;
-            List<EmailAccount> accounts = accountRepository.findByUserId(userId);
+            Long effectiveUserId = userId != null ? userId : 1L;
+            BulkJob job = bulkJobService.startSegregate(effectiveUserId, request.getSenderEmails());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "jobId", job.getId(),
+                "message", "Segregation started",
+                "totalItems", job.getTotalItems()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-            int totalMoved = 0;
-            Map<String, Object> results = new LinkedHashMap<>();
-            Map<String, Integer> senderTotals = new LinkedHashMap<>();
+    /**
+     * Status of the user's most recent bulk job
+     */
+    @GetMapping("/jobs/latest")
+    public ResponseEntity<?> getLatestJob(@RequestHeader(value = "X-User-Id", required = false) Long userId) {
+        Long effectiveUserId = userId != null ? userId : 1L;
+        return bulkJobService.getLatestStatus(effectiveUserId)
+            .<ResponseEntity<?>>map(ResponseEntity::ok)
+            .orElseGet(() -> ResponseEntity.ok(Map.of("status", "NO_JOBS")));
+    }
 
-            for (EmailAccount account : accounts) {
-                try {
-                    Map<String, Integer> accountResults = new LinkedHashMap<>();
+    /**
+     * Status of a bulk job, with per-account and per-sender progress
+     */
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<?> getJob(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @PathVariable Long jobId) {
+        try {
+            Long effectiveUserId = userId != null ? userId : 1L;
+            return ResponseEntity.ok(bulkJobService.getJobStatus(effectiveUserId, jobId));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-                    if (account.getProvider() == EmailAccount.EmailProvider.GMAIL) {
-                        // Ensure "Segregated" parent label exists
-                        String parentLabelId = gmailService.getOrCreateLabel(account.getId(), "Segregated");
-
-                        for (String senderEmail : request.getSenderEmails()) {
-                            String folderName = sanitizeFolderName(senderEmail);
-                            String labelId = gmailService.getOrCreateLabel(account.getId(), "Segregated/" + folderName);
-                            int moved = gmailService.moveEmailsBySenders(account.getId(), List.of(senderEmail), labelId);
-                            accountResults.put(senderEmail, moved);
-                            totalMoved += moved;
-                            senderTotals.merge(senderEmail, moved, Integer::sum);
-                        }
-                    } else if (account.getProvider() == EmailAccount.EmailProvider.OUTLOOK) {
-                        // Ensure "Segregated" parent folder exists
-                        String parentFolderId = outlookService.getOrCreateFolder(account.getId(), "Segregated", null);
-
-                        for (String senderEmail : request.getSenderEmails()) {
-                            String folderName = sanitizeFolderName(senderEmail);
-                            String folderId = outlookService.getOrCreateFolder(account.getId(), folderName, parentFolderId);
-                            int moved = outlookService.moveEmailsBySenders(account.getId(), List.of(senderEmail), folderId);
-                            accountResults.put(senderEmail, moved);
-                            totalMoved += moved;
-                            senderTotals.merge(senderEmail, moved, Integer::sum);
-                        }
-                    }
+    /**
+     * Stream progress of the user's bulk jobs as Server-Sent Events
+     */
+    @GetMapping(value = "/jobs/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJobs(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        Long effectiveUserId = userId != null ? userId : 1L;
+        return bulkJobService.subscribeUser(effectiveUserId, lastEventId);
+    }
 
-                    String accountKey = account.getEmailAddress() + " (" + account.getProvider() + ")";
-                    results.put(accountKey, Map.of("senders", accountResults, "status", "success"));
-                } catch (Exception e) {
-                    String accountKey = account.getEmailAddress() + " (" + account.getProvider() + ")";
-                    results.put(accountKey, Map.of("status", "error", "error", e.getMessage()));
-                }
-            }
+    /**
+     * Stream progress of one bulk job; the stream completes when the job finishes
+     */
+    @GetMapping(value = "/jobs/{jobId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamJob(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+            @PathVariable Long jobId) {
+        Long effectiveUserId = userId != null ? userId : 1L;
+        return bulkJobService.subscribeJob(effectiveUserId, jobId, lastEventId);
+    }
 
-            // Record segregation history for each sender
-            for (String senderEmail : request.getSenderEmails()) {
-                int movedForSender = senderTotals.getOrDefault(senderEmail, 0);
-                recordSegregation(userId, senderEmail, "Segregated/" + sanitizeFolderName(senderEmail),
-                    movedForSender, SegregationHistory.OperationType.SEGREGATE);
-            }
+    /**
+     * Stop a bulk job after the current page; finished senders stay moved
+     */
+    @PostMapping("/jobs/{jobId}/cancel")
+    public ResponseEntity<?> cancelJob(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @PathVariable Long jobId) {
+        try {
+            Long effectiveUserId = userId != null ? userId : 1L;
+            bulkJobService.cancelJob(effectiveUserId, jobId);
+            return ResponseEntity.ok(Map.of("message", "Job cancellation requested"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
 
-            return ResponseEntity.ok(Map.of(
-                "totalMoved", totalMoved,
-                "results", results
+    /**
+     * Resume a cancelled or failed bulk job, retrying the senders that did not finish
+     */
+    @PostMapping("/jobs/{jobId}/resume")
+    public ResponseEntity<?> resumeJob(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @PathVariable Long jobId) {
+        try {
+            Long effectiveUserId = userId != null ? userId : 1L;
+            BulkJob job = bulkJobService.resumeJob(effectiveUserId, jobId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "jobId", job.getId(),
+                "message", "Job resumed"
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
@@ -200,36 +220,6 @@ public class BulkEmailController {
         }
     }
 
-    /**
-     * Record or update segregation history
-     */
-    private void recordSegregation(Long userId, String senderEmail, String folderName,
-                                   int emailsMoved, SegregationHistory.OperationType opType) {
-        Optional<SegregationHistory> existing = segregationHistoryRepository
-            .findByUserIdAndSenderEmail(userId, senderEmail.toLowerCase());
-
-        if (existing.isPresent()) {
-            // Update existing record
-            SegregationHistory history = existing.get();
-            history.setEmailsMoved(history.getEmailsMoved() + emailsMoved);
-            history.setRunCount(history.getRunCount() + 1);
-            history.setLastRunAt(LocalDateTime.now());
-            history.setFolderName(folderName);
-            history.setOperationType(opType);
-            segregationHistoryRepository.save(history);
-        } else {
-            // Create new record
-            SegregationHistory history = new SegregationHistory();
-            history.setUserId(userId);
-            history.setSenderEmail(senderEmail.toLowerCase());
-            history.setFolderName(folderName);
-            history.setEmailsMoved(emailsMoved);
-            history.setOperationType(opType);
-            history.setRunCount(1);
-            segregationHistoryRepository.save(history);
-        }
-    }
-
     /**
      * Debug: Check which account has emails from a specific sender
      */
@@ -317,13 +307,6 @@ public class BulkEmailController {
         }
     }
 
-    private String sanitizeFolderName(String email) {
-        // Extract the part before @ and sanitize for folder name
-        String name = email.contains("@") ? email.substring(0, email.indexOf("@")) : email;
-        // Remove invalid characters
-        return name.replaceAll("[^a-zA-Z0-9._-]", "_");
-    }
-
     // Request DTOs
     public static class MoveRequest {
         private List<String> senderEmails;
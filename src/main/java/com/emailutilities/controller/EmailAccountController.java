@@ -1,10 +1,17 @@
 package com.emailutilities.controller;
 
 import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.entity.SyncJob;
 import com.emailutilities.repository.EmailAccountRepository;
 import com.emailutilities.repository.UserRepository;
+import com.emailutilities.service.AnalyticsResultCache;
+import com.emailutilities.service.AnalyticsSnapshotCache;
 import com.emailutilities.service.GmailService;
+import com.emailutilities.service.LiveTopSendersService;
+import com.emailutilities.service.MailboxIndexService;
+import com.emailutilities.service.MetadataPartitionService;
 import com.emailutilities.service.OutlookService;
+import com.emailutilities.service.SyncSchedulerService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -19,15 +26,33 @@ public class EmailAccountController {
     private final UserRepository userRepository;
     private final GmailService gmailService;
     private final OutlookService outlookService;
+    private final SyncSchedulerService syncSchedulerService;
+    private final AnalyticsSnapshotCache snapshotCache;
+    private final LiveTopSendersService liveTopSendersService;
+    private final AnalyticsResultCache analyticsResultCache;
+    private final MetadataPartitionService partitionService;
+    private final MailboxIndexService mailboxIndexService;
 
     public EmailAccountController(EmailAccountRepository emailAccountRepository,
                                   UserRepository userRepository,
                                   GmailService gmailService,
-                                  OutlookService outlookService) {
+                                  OutlookService outlookService,
+                                  SyncSchedulerService syncSchedulerService,
+                                  AnalyticsSnapshotCache snapshotCache,
+                                  LiveTopSendersService liveTopSendersService,
+                                  AnalyticsResultCache analyticsResultCache,
+                                  MetadataPartitionService partitionService,
+                                  MailboxIndexService mailboxIndexService) {
         this.emailAccountRepository = emailAccountRepository;
         this.userRepository = userRepository;
         this.gmailService = gmailService;
         this.outlookService = outlookService;
+        this.syncSchedulerService = syncSchedulerService;
+        this.snapshotCache = snapshotCache;
+        this.liveTopSendersService = liveTopSendersService;
+        this.analyticsResultCache = analyticsResultCache;
+        this.partitionService = partitionService;
+        this.mailboxIndexService = mailboxIndexService;
     }
 
     @GetMapping
@@ -64,11 +89,30 @@ public class EmailAccountController {
     }
 
     @PostMapping("/{id}/sync")
-    public ResponseEntity<?> syncAccount(@PathVariable Long id) {
-        return ResponseEntity.ok(Map.of(
-            "message", "Sync initiated",
-            "accountId", id
-        ));
+    public ResponseEntity<?> syncAccount(
+            @PathVariable Long id,
+            @RequestHeader(value = "X-User-Id", required = false) Long userId) {
+        try {
+            Long effectiveUserId = userId != null ? userId : 1L;
+            EmailAccount account = emailAccountRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Account not found"));
+
+            // Verify the account belongs to the user
+            if (!account.getUser().getId().equals(effectiveUserId)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Account does not belong to this user"));
+            }
+
+            SyncJob job = syncSchedulerService.syncNow(id);
+            return ResponseEntity.ok(Map.of(
+                "message", "Sync initiated",
+                "accountId", id,
+                "jobId", job.getId()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", e.getMessage()
+            ));
+        }
     }
 
     @DeleteMapping("/{id}")
@@ -85,6 +129,14 @@ public class EmailAccountController {
             }
 
             emailAccountRepository.delete(account);
+            // Drops the account's email_metadata partition and its rollup rows
+            partitionService.purgeAccount(id);
+            // In-memory analytics would otherwise keep counting the removed account's mail
+            snapshotCache.invalidateAccount(id);
+            liveTopSendersService.invalidateUser(account.getUser().getId());
+            analyticsResultCache.invalidateUser(account.getUser().getId());
+            // Search hits would otherwise still return the removed account's mail
+            mailboxIndexService.removeAccount(account.getUser().getId(), id);
             return ResponseEntity.ok(Map.of(
                 "message", "Account deleted successfully",
                 "accountId", id
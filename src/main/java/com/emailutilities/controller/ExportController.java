@@ -0,0 +1,121 @@
+package com.emailutilities.controller;
+
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.repository.EmailAccountRepository;
+import com.emailutilities.service.MetadataExportService;
+import com.emailutilities.service.ParquetSnapshotService;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/export")
+public class ExportController {
+
+    private final MetadataExportService exportService;
+    private final ParquetSnapshotService parquetSnapshotService;
+    private final EmailAccountRepository accountRepository;
+
+    public ExportController(MetadataExportService exportService,
+                            ParquetSnapshotService parquetSnapshotService,
+                            EmailAccountRepository accountRepository) {
+        this.exportService = exportService;
+        this.parquetSnapshotService = parquetSnapshotService;
+        this.accountRepository = accountRepository;
+    }
+
+    /**
+     * Download the user's email metadata as NDJSON or CSV (gzipped unless gzip=false), optionally
+     * for one account, a receivedAt range [from, to) and one sender. The body is streamed as rows
+     * are read, on the request thread, so large exports are not cut off by an async timeout.
+     */
+    @GetMapping("/metadata")
+    public ResponseEntity<?> exportMetadata(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(defaultValue = "NDJSON") MetadataExportService.Format format,
+            @RequestParam(defaultValue = "true") boolean gzip,
+            @RequestParam(required = false) Long accountId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String sender,
+            HttpServletResponse response) {
+        Long effectiveUserId = userId != null ? userId : 1L;
+        List<Long> accountIds = accountRepository.findByUserId(effectiveUserId).stream()
+            .map(EmailAccount::getId)
+            .collect(Collectors.toList());
+        if (accountId != null) {
+            if (!accountIds.contains(accountId)) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Account not found"));
+            }
+            accountIds = List.of(accountId);
+        }
+        if (accountIds.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "No email accounts to export"));
+        }
+        LocalDate start = from != null ? from : LocalDate.of(1970, 1, 1);
+        LocalDate end = to != null ? to : LocalDate.now().plusDays(1);
+        if (!start.isBefore(end)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "'from' must be before 'to'"));
+        }
+
+        String extension = format == MetadataExportService.Format.CSV ? "csv" : "ndjson";
+        String filename = "email-metadata-" + LocalDate.now() + "." + extension + (gzip ? ".gz" : "");
+        response.setContentType(gzip ? "application/gzip"
+            : format == MetadataExportService.Format.CSV ? "text/csv;charset=UTF-8" : "application/x-ndjson");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+            ContentDisposition.attachment().filename(filename).build().toString());
+
+        try {
+            exportService.export(accountIds, start.atStartOfDay(), end.atStartOfDay(), sender, format, gzip,
+                response.getOutputStream());
+        } catch (IOException e) {
+            // The response is already committed; all that's left is to stop
+            System.err.println("Metadata export for user " + effectiveUserId + " aborted: " + e.getMessage());
+        }
+        // The body has been written
+        return null;
+    }
+
+    /**
+     * Start a Parquet snapshot of the user's accounts (or just one) in the background. By default
+     * only rows added since the last snapshot are appended; full=true rewrites the accounts.
+     */
+    @PostMapping("/parquet")
+    public ResponseEntity<?> startParquetSnapshot(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(required = false) Long accountId,
+            @RequestParam(defaultValue = "false") boolean full) {
+        try {
+            Long effectiveUserId = userId != null ? userId : 1L;
+            List<EmailAccount> accounts = accountRepository.findByUserId(effectiveUserId);
+            if (accountId != null) {
+                accounts = accounts.stream()
+                    .filter(account -> account.getId().equals(accountId))
+                    .collect(Collectors.toList());
+            }
+            if (accounts.isEmpty()) {
+                return ResponseEntity.badRequest().body(Map.of("error", "Account not found"));
+            }
+
+            parquetSnapshotService.snapshotAccountsAsync(accounts, full);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of(
+                "message", "Snapshot started",
+                "accounts", accounts.stream().map(EmailAccount::getId).collect(Collectors.toList()),
+                "full", full,
+                "directory", parquetSnapshotService.getDirectory()
+            ));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
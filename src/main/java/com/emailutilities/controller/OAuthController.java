@@ -4,6 +4,7 @@ import com.emailutilities.entity.EmailAccount;
 import com.emailutilities.entity.User;
 import com.emailutilities.repository.EmailAccountRepository;
 import com.emailutilities.repository.UserRepository;
+import com.emailutilities.service.AnalyticsResultCache;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
@@ -25,6 +26,7 @@ public class OAuthController {
 
     private final EmailAccountRepository emailAccountRepository;
     private final UserRepository userRepository;
+    private final AnalyticsResultCache analyticsResultCache;
     private final RestTemplate restTemplate = new RestTemplate();
 
     @Value("${oauth.google.client-id:}")
@@ -45,9 +47,11 @@ public class OAuthController {
     @Value("${oauth.microsoft.redirect-uri:}")
     private String microsoftRedirectUri;
 
-    public OAuthController(EmailAccountRepository emailAccountRepository, UserRepository userRepository) {
+    public OAuthController(EmailAccountRepository emailAccountRepository, UserRepository userRepository,
+                           AnalyticsResultCache analyticsResultCache) {
         this.emailAccountRepository = emailAccountRepository;
         this.userRepository = userRepository;
+        this.analyticsResultCache = analyticsResultCache;
     }
 
     /**
@@ -198,6 +202,7 @@ public class OAuthController {
             account.setLastSyncError(null);
 
             emailAccountRepository.save(account);
+            analyticsResultCache.invalidateUser(user.getId());
 
             return ResponseEntity.ok(generateCallbackHtml(true, "Account connected: " + email, email));
 
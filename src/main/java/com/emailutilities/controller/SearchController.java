@@ -0,0 +1,116 @@
+package com.emailutilities.controller;
+
+import com.emailutilities.dto.RankingPage;
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.repository.EmailAccountRepository;
+import com.emailutilities.service.MailboxIndexService;
+import com.emailutilities.service.MetadataSearchService;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+@RestController
+@RequestMapping("/api/search")
+public class SearchController {
+
+    private final MetadataSearchService searchService;
+    private final MailboxIndexService mailboxIndexService;
+    private final EmailAccountRepository accountRepository;
+
+    public SearchController(MetadataSearchService searchService,
+                            MailboxIndexService mailboxIndexService,
+                            EmailAccountRepository accountRepository) {
+        this.searchService = searchService;
+        this.mailboxIndexService = mailboxIndexService;
+        this.accountRepository = accountRepository;
+    }
+
+    /**
+     * Search the locally synced emails of all the user's accounts (or one) by subject, sender name
+     * and sender address, best match first. On PostgreSQL the query takes web-search syntax
+     * ("quoted phrase", or, -word).
+     * Pass the X-Next-Cursor response header back as ?cursor= for the next page.
+     */
+    @GetMapping
+    public ResponseEntity<?> search(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam String q,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Long accountId) {
+        try {
+            Long effectiveUserId = userId != null ? userId : 1L;
+            List<Long> accountIds = accountRepository.findByUserId(effectiveUserId).stream()
+                .map(EmailAccount::getId)
+                .collect(Collectors.toList());
+            if (accountId != null) {
+                if (!accountIds.contains(accountId)) {
+                    return ResponseEntity.badRequest().body(Map.of("error", "Account not found"));
+                }
+                accountIds = List.of(accountId);
+            }
+
+            RankingPage page = searchService.search(accountIds, q, limit, cursor);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (page.nextCursor() != null) {
+                response.header(AnalyticsController.NEXT_CURSOR_HEADER, page.nextCursor());
+            }
+            return response.body(page.items());
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Faceted search of the user's mailbox index: subject text (+, |, -, "phrase", prefix*) within
+     * facet filters. Repeat a filter for OR within a facet, e.g. ?domain=a.com&domain=b.com&read=false.
+     * Returns the hits, the total and per-facet counts; pass nextCursor back as ?cursor=.
+     */
+    @GetMapping("/mailbox")
+    public ResponseEntity<?> searchMailbox(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) List<String> account,
+            @RequestParam(required = false) List<String> domain,
+            @RequestParam(required = false) List<String> read,
+            @RequestParam(required = false) List<String> fromMe,
+            @RequestParam(required = false) List<String> month,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(required = false) String cursor) {
+        try {
+            Long effectiveUserId = userId != null ? userId : 1L;
+            Map<String, List<String>> filters = new LinkedHashMap<>();
+            if (account != null) filters.put("account", account);
+            if (domain != null) filters.put("domain", domain);
+            if (read != null) filters.put("read", read);
+            if (fromMe != null) filters.put("fromMe", fromMe);
+            if (month != null) filters.put("month", month);
+            return ResponseEntity.ok(mailboxIndexService.search(effectiveUserId, q, filters, limit, cursor));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Build (or rebuild) the user's mailbox index from the database in the background. The first
+     * build opts the user in; from then on synced pages are indexed as they arrive.
+     */
+    @PostMapping("/mailbox/rebuild")
+    public ResponseEntity<?> rebuildMailboxIndex(
+            @RequestHeader(value = "X-User-Id", required = false) Long userId) {
+        Long effectiveUserId = userId != null ? userId : 1L;
+        if (!mailboxIndexService.isEnabled()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Mailbox index is disabled"));
+        }
+        if (mailboxIndexService.isRebuilding(effectiveUserId)) {
+            return ResponseEntity.badRequest().body(Map.of("error", "A rebuild is already running"));
+        }
+        mailboxIndexService.rebuildAsync(effectiveUserId);
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(Map.of("message", "Mailbox index rebuild started"));
+    }
+}
@@ -0,0 +1,10 @@
+package com.emailutilities.dto;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One page of a ranking endpoint. nextCursor is null on the last page.
+ */
+public record RankingPage(List<Map<String, Object>> items, String nextCursor) {
+}
@@ -0,0 +1,88 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * A bulk move or segregation run in the background. The work is split into one
+ * {@link BulkJobItem} per account and sender, so an interrupted job can be resumed
+ * where it stopped.
+ */
+@Entity
+@Table(name = "bulk_jobs", indexes = {
+    @Index(name = "idx_bulk_jobs_user", columnList = "userId, startedAt"),
+    @Index(name = "idx_bulk_jobs_status", columnList = "status")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private JobType type;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private JobStatus status;
+
+    private String folderId;       // MOVE: existing folder/label to move into
+    private String newFolderName;  // MOVE: folder/label to create (or reuse) in each account instead
+
+    // Progress tracking
+    private int totalItems;
+    private int completedItems;
+    private int failedItems;
+    private long totalMoved;
+
+    private String statusMessage;
+
+    @Column(length = 1024)
+    private String errorMessage;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        startedAt = LocalDateTime.now();
+        updatedAt = startedAt;
+        if (status == null) {
+            status = JobStatus.PENDING;
+        }
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum JobStatus {
+        PENDING,
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+
+    public enum JobType {
+        MOVE,       // Move to a chosen folder
+        SEGREGATE   // Move to Segregated/<sender>
+    }
+
+    public int getProgressPercent() {
+        if (totalItems == 0) return 0;
+        return (int) (((completedItems + failedItems) * 100.0) / totalItems);
+    }
+}
@@ -0,0 +1,66 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * One sender's emails in one account, within a {@link BulkJob}
+ */
+@Entity
+@Table(name = "bulk_job_items", indexes = {
+    @Index(name = "idx_bulk_job_items_job", columnList = "jobId, id")
+})
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkJobItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long jobId;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    private String accountEmail;
+
+    @Column(nullable = false)
+    private String senderEmail;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private ItemStatus status;
+
+    private int moved;              // Emails moved so far, across resumes
+    private String targetFolderId;  // Resolved folder/label, kept so a resume doesn't look it up again
+    private boolean recorded;       // Already counted in segregation_history
+    private Long messageCursor;     // Gmail: email_metadata ID of the last synced message labeled, resumed after
+    private int skipped;            // Gmail: synced messages Gmail no longer has (deleted since the sync)
+
+    @Column(length = 1024)
+    private String error;
+
+    private LocalDateTime startedAt;
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (status == null) {
+            status = ItemStatus.PENDING;
+        }
+    }
+
+    public enum ItemStatus {
+        PENDING,
+        RUNNING,
+        DONE,
+        FAILED,
+        CANCELLED
+    }
+}
@@ -0,0 +1,45 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDate;
+
+/**
+ * Serialized HyperLogLog sketch of the distinct senders or registrable sender domains (hashed by
+ * domain ID) an account received mail from, either on one day or over all time
+ * (sketchDay = ALL_TIME). Maintained on ingest.
+ */
+@Entity
+@Table(name = "distinct_sketches",
+    uniqueConstraints = @UniqueConstraint(name = "uk_distinct_sketch",
+        columnNames = {"accountId", "kind", "sketchDay"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DistinctSketch {
+
+    public static final LocalDate ALL_TIME = LocalDate.EPOCH;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Kind kind;
+
+    @Column(nullable = false)
+    private LocalDate sketchDay;
+
+    @Column(nullable = false, length = 4096)
+    private byte[] registers;
+
+    public enum Kind {
+        SENDER, DOMAIN
+    }
+}
@@ -0,0 +1,26 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Registrable domains (eTLD+1, e.g. brand.com for news.brand.com) of every address in senders.
+ * Domain and organization analytics group email_metadata by its ID.
+ */
+@Entity
+@Table(name = "domains",
+    uniqueConstraints = @UniqueConstraint(name = "uk_domains_name", columnNames = "name"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Domain {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String name;    // Lower-cased registrable domain
+}
@@ -64,6 +64,10 @@ public class EmailAccount {
     private LocalDateTime lastSyncAt;
     private String lastSyncError;
 
+    // Background sync scheduling (adapted to mailbox activity)
+    private LocalDateTime nextSyncAt;
+    private Integer syncIntervalMinutes;
+
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
@@ -7,11 +7,13 @@ import lombok.AllArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "email_metadata", indexes = {
-    @Index(name = "idx_sender_email", columnList = "senderEmail"),
-    @Index(name = "idx_account_id", columnList = "accountId"),
-    @Index(name = "idx_thread_id", columnList = "threadId"),
-    @Index(name = "idx_received_at", columnList = "receivedAt")
+// The partial and covering indexes the analytics queries use are defined in db/migration. A message
+// ID is unique within its account; PostgreSQL enforces that per partition (see V5).
+@Table(name = "email_metadata", uniqueConstraints = @UniqueConstraint(
+    name = "uk_email_metadata_account_message", columnNames = {"accountId", "messageId"}), indexes = {
+    @Index(name = "idx_email_metadata_sender_account", columnList = "senderId, accountId"),
+    @Index(name = "idx_account_received", columnList = "accountId, receivedAt"),
+    @Index(name = "idx_account_rfc_message", columnList = "accountId, rfcMessageId")
 })
 @Data
 @NoArgsConstructor
@@ -25,18 +27,39 @@ public class EmailMetadata {
     @Column(nullable = false)
     private Long accountId;
 
-    @Column(nullable = false, unique = true)
+    @Column(nullable = false)
     private String messageId;
 
     private String threadId;
 
     @Column(nullable = false)
+    private Long senderId;  // senders.id
+
+    private Long recipientId;  // senders.id
+
+    @Column(nullable = false)
+    private Long domainId;  // domains.id of the sender's registrable domain
+
+    // Addresses as parsed at ingest; stored only through the senders dimension
+    @Transient
     private String senderEmail;
 
+    @Transient
     private String senderName;
 
+    @Transient
     private String recipientEmail;
 
+    // Mailing-list headers as parsed at ingest; they feed sender_classifications and are not stored per email
+    @Transient
+    private String listUnsubscribe;
+
+    @Transient
+    private String listId;
+
+    @Transient
+    private String precedence;
+
     private String subject;
 
     @Column(nullable = false)
@@ -46,7 +69,9 @@ public class EmailMetadata {
 
     private boolean isFromMe;  // true if sent by the account owner
 
-    private String inReplyTo;  // messageId this is replying to
+    private String rfcMessageId;  // Message-ID header, e.g. <abc@mail.example.com>
+
+    private String inReplyTo;  // Message-ID header of the email this replies to
 
     private LocalDateTime syncedAt;
 
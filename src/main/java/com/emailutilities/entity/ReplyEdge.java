@@ -0,0 +1,51 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * One reply in the account, linked to the email it answers by Message-ID. fromMe edges are
+ * replies the owner sent; the others are replies the owner received.
+ *
+ * For the owner's replies counterpartEmail starts as the reply's recipient and is corrected to
+ * the parent's sender once the parent email has been ingested (resolved = true). Providers list
+ * newest first, so during a backfill the reply usually arrives before its parent.
+ */
+@Entity
+@Table(name = "reply_edges",
+    uniqueConstraints = @UniqueConstraint(name = "uk_reply_edges_account_reply",
+        columnNames = {"accountId", "replyMessageId"}),
+    indexes = {
+        @Index(name = "idx_reply_edge_parent", columnList = "accountId, parentRfcMessageId"),
+        @Index(name = "idx_reply_edge_counterpart", columnList = "accountId, counterpartEmail")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplyEdge {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private String replyMessageId;  // Provider message ID of the reply
+
+    @Column(nullable = false)
+    private String parentRfcMessageId;
+
+    private boolean fromMe;
+
+    private String counterpartEmail;
+
+    @Column(nullable = false)
+    private LocalDateTime repliedAt;
+
+    private boolean resolved;
+}
@@ -0,0 +1,47 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Running reply-latency statistics for one counterpart of an account, in one direction:
+ * how fast the owner replies to them (ME) or how fast they reply to the owner (THEM).
+ * Updated incrementally as reply edges resolve; the digest yields p50/p90.
+ */
+@Entity
+@Table(name = "reply_latency_stats",
+    uniqueConstraints = @UniqueConstraint(name = "uk_reply_latency",
+        columnNames = {"accountId", "counterpartEmail", "direction"}),
+    indexes = @Index(name = "idx_reply_latency_count", columnList = "accountId, replyCount"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReplyLatencyStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private String counterpartEmail;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Direction direction;
+
+    private long replyCount;
+
+    private long totalSeconds;
+
+    @Column(nullable = false, length = 2048)
+    private byte[] digest;
+
+    public enum Direction {
+        ME, THEM
+    }
+}
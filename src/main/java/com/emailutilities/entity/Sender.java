@@ -0,0 +1,36 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Dimension of every address seen as a sender or recipient, shared by all accounts.
+ * email_metadata refers to it by ID, so analytics group by integers and only look up
+ * addresses and names for the rows they return.
+ */
+@Entity
+@Table(name = "senders",
+    uniqueConstraints = @UniqueConstraint(name = "uk_senders_email", columnNames = "email"),
+    indexes = @Index(name = "idx_senders_domain", columnList = "domain"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Sender {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String email;   // Lower-cased
+
+    @Column(nullable = false)
+    private String domain;  // Lower-cased part after the '@'
+
+    @Column(nullable = false)
+    private Long domainId;  // domains.id of the registrable domain
+
+    private String name;    // Display name as first seen
+}
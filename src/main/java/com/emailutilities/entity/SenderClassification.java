@@ -0,0 +1,72 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Per-account classification of one sender as bulk (newsletters, marketing), transactional
+ * (receipts, notifications) or personal. The header counters are kept up to date on ingest and
+ * the category is re-scored from them whenever they change, so dashboards read it directly.
+ */
+@Entity
+@Table(name = "sender_classifications",
+    uniqueConstraints = @UniqueConstraint(name = "uk_sender_classifications_account_sender",
+        columnNames = {"accountId", "senderId"}),
+    indexes = @Index(name = "idx_sender_classifications_category",
+        columnList = "accountId, category, receivedCount, senderId"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SenderClassification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private Long senderId;  // senders.id
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Category category;
+
+    private int score;  // 0-100 likelihood of bulk mail
+
+    private boolean automatedAddress;  // noreply@, notifications@ and the like
+
+    private long receivedCount;
+    private long listUnsubscribeCount;  // Received with a List-Unsubscribe header
+    private long listIdCount;           // Received with a List-Id header
+    private long bulkPrecedenceCount;   // Received with Precedence: bulk, list or junk
+    private long sentToCount;           // Emails the owner sent to this address
+
+    @Column(length = 255)
+    private String listId;  // Latest List-Id seen
+
+    @Column(length = 1024)
+    private String listUnsubscribe;  // Latest List-Unsubscribe seen
+
+    private LocalDateTime lastSeenAt;
+
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = LocalDateTime.now();
+    }
+
+    public enum Category {
+        BULK, TRANSACTIONAL, PERSONAL
+    }
+}
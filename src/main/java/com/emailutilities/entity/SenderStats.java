@@ -0,0 +1,44 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Per-account rollup of email_metadata by counterpart address, maintained on ingest.
+ * Received/unread count mail from the address; sent/replied count mail we sent to it.
+ */
+@Entity
+@Table(name = "sender_stats",
+    uniqueConstraints = @UniqueConstraint(name = "uk_sender_stats_account_sender", columnNames = {"accountId", "senderEmail"}),
+    indexes = {
+        @Index(name = "idx_sender_stats_received", columnList = "accountId, receivedCount"),
+        @Index(name = "idx_sender_stats_unread", columnList = "accountId, unreadCount")
+    })
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SenderStats {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Column(nullable = false)
+    private String senderEmail;
+
+    private String senderName;
+
+    private long receivedCount;
+    private long unreadCount;
+    private long sentToCount;     // Emails we sent to this address
+    private long repliedCount;    // Of those, how many were replies
+
+    private LocalDateTime firstSeenAt;
+    private LocalDateTime lastSeenAt;
+}
@@ -28,6 +28,9 @@ public class SyncJob {
     @Column(nullable = false)
     private JobType type;
 
+    private Long accountId;      // Set when the job syncs a single account
+    private boolean scheduled;   // Enqueued by the background scheduler rather than a user
+
     // Progress tracking
     private int totalAccounts;
     private int processedAccounts;
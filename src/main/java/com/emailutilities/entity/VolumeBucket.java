@@ -0,0 +1,48 @@
+package com.emailutilities.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import java.time.LocalDateTime;
+
+/**
+ * Time-bucketed email volume, maintained on ingest. Daily buckets exist per sender and for
+ * all senders combined (senderEmail = ALL_SENDERS); hourly buckets only for all senders.
+ */
+@Entity
+@Table(name = "volume_buckets",
+    uniqueConstraints = @UniqueConstraint(name = "uk_volume_bucket",
+        columnNames = {"accountId", "granularity", "senderEmail", "bucketStart"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VolumeBucket {
+
+    public static final String ALL_SENDERS = "*";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private Long accountId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Granularity granularity;
+
+    @Column(nullable = false)
+    private String senderEmail;
+
+    @Column(nullable = false)
+    private LocalDateTime bucketStart;
+
+    private long receivedCount;   // Not from me
+    private long unreadCount;     // Received and still unread
+    private long fromMeCount;     // Sent by the account owner
+
+    public enum Granularity {
+        HOUR, DAY
+    }
+}
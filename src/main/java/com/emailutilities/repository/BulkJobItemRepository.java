@@ -0,0 +1,13 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.BulkJobItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BulkJobItemRepository extends JpaRepository<BulkJobItem, Long> {
+
+    List<BulkJobItem> findByJobIdOrderById(Long jobId);
+}
@@ -0,0 +1,20 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.BulkJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface BulkJobRepository extends JpaRepository<BulkJob, Long> {
+
+    Optional<BulkJob> findFirstByUserIdOrderByStartedAtDesc(Long userId);
+
+    // Jobs interrupted by a restart
+    List<BulkJob> findByStatusIn(Collection<BulkJob.JobStatus> statuses);
+
+    boolean existsByUserIdAndStatusIn(Long userId, Collection<BulkJob.JobStatus> statuses);
+}
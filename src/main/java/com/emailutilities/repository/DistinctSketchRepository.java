@@ -0,0 +1,34 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.DistinctSketch;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface DistinctSketchRepository extends JpaRepository<DistinctSketch, Long> {
+
+    List<DistinctSketch> findByAccountIdAndSketchDayIn(Long accountId, Collection<LocalDate> sketchDays);
+
+    // (kind, registers) for one day across accounts; pass DistinctSketch.ALL_TIME for the all-time sketches
+    @Query("SELECT s.kind, s.registers FROM DistinctSketch s " +
+           "WHERE s.accountId IN :accountIds AND s.sketchDay = :day")
+    List<Object[]> findSketchesForDay(@Param("accountIds") List<Long> accountIds,
+                                      @Param("day") LocalDate day);
+
+    // (kind, registers) for every day in a window, streamed so a long window is merged without holding it all
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT s.kind, s.registers FROM DistinctSketch s " +
+           "WHERE s.accountId IN :accountIds AND s.sketchDay >= :from")
+    Stream<Object[]> streamSketchesSince(@Param("accountIds") List<Long> accountIds,
+                                         @Param("from") LocalDate from);
+}
@@ -0,0 +1,18 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.Domain;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DomainRepository extends JpaRepository<Domain, Long> {
+
+    Optional<Domain> findByName(String name);
+
+    // Batch lookup for the domains of newly interned senders
+    List<Domain> findByNameIn(Collection<String> names);
+}
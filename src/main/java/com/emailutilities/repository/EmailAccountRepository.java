@@ -1,8 +1,17 @@
 package com.emailutilities.repository;
 
 import com.emailutilities.entity.EmailAccount;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import jakarta.persistence.LockModeType;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -12,4 +21,28 @@ public interface EmailAccountRepository extends JpaRepository<EmailAccount, Long
     List<EmailAccount> findByUserIdAndSyncStatus(Long userId, EmailAccount.SyncStatus status);
     Optional<EmailAccount> findByEmailAddressAndProvider(String emailAddress, EmailAccount.EmailProvider provider);
     Optional<EmailAccount> findByUserIdAndEmailAddressAndProvider(Long userId, String emailAddress, EmailAccount.EmailProvider provider);
+
+    // Accounts whose background sync is due (never scheduled ones first)
+    @Query("SELECT a FROM EmailAccount a " +
+           "WHERE a.provider IN :providers AND (a.nextSyncAt IS NULL OR a.nextSyncAt <= :now) " +
+           "ORDER BY a.nextSyncAt ASC NULLS FIRST")
+    List<EmailAccount> findDueForSync(@Param("providers") Collection<EmailAccount.EmailProvider> providers,
+                                      @Param("now") LocalDateTime now,
+                                      Pageable pageable);
+
+    // Row lock held for an ingest page transaction, so pages of the same account (scheduled sync,
+    // manual sync, analytics sync) apply their rollup read-modify-writes one at a time. Parquet
+    // snapshots take it briefly to read a watermark no in-flight page can fall below
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT a FROM EmailAccount a WHERE a.id = :accountId")
+    Optional<EmailAccount> lockForIngest(@Param("accountId") Long accountId);
+
+    // Targeted update so scheduling never overwrites tokens refreshed concurrently
+    @Modifying
+    @Transactional
+    @Query("UPDATE EmailAccount a SET a.nextSyncAt = :nextSyncAt, a.syncIntervalMinutes = :intervalMinutes " +
+           "WHERE a.id = :accountId")
+    int updateSyncSchedule(@Param("accountId") Long accountId,
+                           @Param("intervalMinutes") Integer intervalMinutes,
+                           @Param("nextSyncAt") LocalDateTime nextSyncAt);
 }
@@ -1,78 +1,153 @@
 package com.emailutilities.repository;
 
 import com.emailutilities.entity.EmailMetadata;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface EmailMetadataRepository extends JpaRepository<EmailMetadata, Long> {
 
-    Optional<EmailMetadata> findByMessageId(String messageId);
-
     List<EmailMetadata> findByAccountId(Long accountId);
 
-    boolean existsByMessageId(String messageId);
-
-    // Batch check for existing message IDs (for deduplication)
-    @Query("SELECT e.messageId FROM EmailMetadata e WHERE e.messageId IN :messageIds")
-    List<String> findExistingMessageIds(@Param("messageIds") List<String> messageIds);
-
-    // Most frequent senders (excluding emails from me)
-    @Query("SELECT e.senderEmail, e.senderName, COUNT(e) as cnt " +
+    // Deduplication plus the stored read flag, so read/unread changes can be reconciled.
+    // Scoped to the account so only its partition is searched
+    @Query("SELECT e.messageId, e.isRead, s.email, e.isFromMe, e.receivedAt FROM EmailMetadata e " +
+           "JOIN Sender s ON s.id = e.senderId " +
+           "WHERE e.accountId = :accountId AND e.messageId IN :messageIds")
+    List<Object[]> findReadStates(@Param("accountId") Long accountId, @Param("messageIds") List<String> messageIds);
+
+    @Modifying
+    @Query("UPDATE EmailMetadata e SET e.isRead = :read WHERE e.accountId = :accountId AND e.messageId IN :messageIds")
+    int updateReadFlag(@Param("accountId") Long accountId, @Param("messageIds") List<String> messageIds,
+                       @Param("read") boolean read);
+
+    // Columns of the in-memory analytics snapshot, streamed so it can be built without materializing entities
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query("SELECT e.messageId, s.email, s.name, r.email, e.receivedAt, " +
+           "e.isRead, e.isFromMe, CASE WHEN e.inReplyTo IS NULL THEN false ELSE true END " +
+           "FROM EmailMetadata e JOIN Sender s ON s.id = e.senderId LEFT JOIN Sender r ON r.id = e.recipientId " +
+           "WHERE e.accountId IN :accountIds")
+    Stream<Object[]> streamSnapshotRows(@Param("accountIds") List<Long> accountIds);
+
+    // Export rows ordered by (accountId, receivedAt, id), which is the partitioned table's composite primary key
+    // index, streamed through a server-side cursor (null senderId = all senders):
+    // (messageId, threadId, accountId, sender, senderName, recipient, domain, subject, receivedAt,
+    //  isRead, isFromMe, rfcMessageId, inReplyTo)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e.messageId, e.threadId, e.accountId, s.email, s.name, r.email, d.name, e.subject, e.receivedAt, " +
+           "e.isRead, e.isFromMe, e.rfcMessageId, e.inReplyTo " +
+           "FROM EmailMetadata e JOIN Sender s ON s.id = e.senderId LEFT JOIN Sender r ON r.id = e.recipientId " +
+           "JOIN Domain d ON d.id = e.domainId " +
+           "WHERE e.accountId IN :accountIds AND e.receivedAt >= :from AND e.receivedAt < :to " +
+           "AND (:senderId IS NULL OR e.senderId = :senderId) " +
+           "ORDER BY e.accountId, e.receivedAt, e.id")
+    Stream<Object[]> streamExportRows(@Param("accountIds") List<Long> accountIds,
+                                      @Param("from") LocalDateTime from,
+                                      @Param("to") LocalDateTime to,
+                                      @Param("senderId") Long senderId);
+
+    // One account's rows with afterId < id <= upToId for a Parquet snapshot, in receivedAt order so each
+    // month's rows arrive together: (id, messageId, threadId, senderId, sender, senderName, recipientId,
+    // recipient, domain, subject, receivedAt, isRead, isFromMe, rfcMessageId, inReplyTo)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e.id, e.messageId, e.threadId, e.senderId, s.email, s.name, e.recipientId, r.email, d.name, " +
+           "e.subject, e.receivedAt, e.isRead, e.isFromMe, e.rfcMessageId, e.inReplyTo " +
+           "FROM EmailMetadata e JOIN Sender s ON s.id = e.senderId LEFT JOIN Sender r ON r.id = e.recipientId " +
+           "JOIN Domain d ON d.id = e.domainId " +
+           "WHERE e.accountId = :accountId AND e.id > :afterId AND e.id <= :upToId " +
+           "ORDER BY e.receivedAt, e.id")
+    Stream<Object[]> streamParquetRows(@Param("accountId") Long accountId,
+                                       @Param("afterId") long afterId,
+                                       @Param("upToId") long upToId);
+
+    @Query("SELECT MAX(e.id) FROM EmailMetadata e WHERE e.accountId = :accountId")
+    Optional<Long> findMaxId(@Param("accountId") Long accountId);
+
+    @Query("SELECT MIN(e.id) FROM EmailMetadata e WHERE e.accountId = :accountId")
+    Optional<Long> findMinId(@Param("accountId") Long accountId);
+
+    // (id, messageId) of one sender's emails in an account after a row ID, in ID order so a bulk
+    // move can resume after the last row it labeled (idx_email_metadata_sender_account)
+    @Query("SELECT e.id, e.messageId FROM EmailMetadata e " +
+           "WHERE e.senderId = :senderId AND e.accountId = :accountId AND e.id > :afterId ORDER BY e.id")
+    List<Object[]> findMessageIdsBySender(@Param("accountId") Long accountId, @Param("senderId") Long senderId,
+                                          @Param("afterId") long afterId);
+
+    // One ID range of an account's emails for a mailbox index rebuild; ranges are read in parallel:
+    // (messageId, sender, domain, subject, receivedAt, isRead, isFromMe)
+    @QueryHints({
+        @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"),
+        @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT e.messageId, s.email, d.name, e.subject, e.receivedAt, e.isRead, e.isFromMe " +
+           "FROM EmailMetadata e JOIN Sender s ON s.id = e.senderId JOIN Domain d ON d.id = e.domainId " +
+           "WHERE e.accountId = :accountId AND e.id > :afterId AND e.id <= :upToId")
+    Stream<Object[]> streamIndexRows(@Param("accountId") Long accountId,
+                                     @Param("afterId") long afterId,
+                                     @Param("upToId") long upToId);
+
+    // Rankings group by sender ID; SenderDirectory.describe labels just the returned page
+
+    // Most frequent senders (excluding emails from me): (senderId, count)
+    @Query("SELECT e.senderId, COUNT(e) as cnt " +
            "FROM EmailMetadata e " +
            "WHERE e.accountId IN :accountIds AND e.isFromMe = false " +
-           "GROUP BY e.senderEmail, e.senderName " +
+           "GROUP BY e.senderId " +
            "ORDER BY cnt DESC")
-    List<Object[]> findTopSenders(@Param("accountIds") List<Long> accountIds);
+    List<Object[]> findTopSenders(@Param("accountIds") List<Long> accountIds, Pageable pageable);
 
-    // Most frequent senders with date range
-    @Query("SELECT e.senderEmail, e.senderName, COUNT(e) as cnt " +
+    // Most frequent senders with date range, keyset-paginated on (count, senderId): (senderId, count)
+    @Query("SELECT e.senderId, COUNT(e) as cnt " +
            "FROM EmailMetadata e " +
            "WHERE e.accountId IN :accountIds AND e.isFromMe = false " +
            "AND e.receivedAt >= :since " +
-           "GROUP BY e.senderEmail, e.senderName " +
-           "ORDER BY cnt DESC")
+           "GROUP BY e.senderId " +
+           "HAVING COUNT(e) < :afterCount OR (COUNT(e) = :afterCount AND e.senderId > :afterSenderId) " +
+           "ORDER BY cnt DESC, e.senderId ASC")
     List<Object[]> findTopSendersSince(@Param("accountIds") List<Long> accountIds,
-                                        @Param("since") LocalDateTime since);
+                                        @Param("since") LocalDateTime since,
+                                        @Param("afterCount") long afterCount,
+                                        @Param("afterSenderId") long afterSenderId,
+                                        Pageable pageable);
 
-    // Senders ranked by unread emails
-    @Query("SELECT e.senderEmail, e.senderName, COUNT(e) as cnt " +
+    // Senders ranked by unread emails: (senderId, count)
+    @Query("SELECT e.senderId, COUNT(e) as cnt " +
            "FROM EmailMetadata e " +
            "WHERE e.accountId IN :accountIds AND e.isFromMe = false AND e.isRead = false " +
-           "GROUP BY e.senderEmail, e.senderName " +
+           "GROUP BY e.senderId " +
            "ORDER BY cnt DESC")
-    List<Object[]> findSendersByUnreadCount(@Param("accountIds") List<Long> accountIds);
-
-    // Count emails received from each sender
-    @Query("SELECT e.senderEmail, COUNT(e) as received " +
-           "FROM EmailMetadata e " +
-           "WHERE e.accountId IN :accountIds AND e.isFromMe = false " +
-           "GROUP BY e.senderEmail")
-    List<Object[]> countEmailsReceivedBySender(@Param("accountIds") List<Long> accountIds);
+    List<Object[]> findSendersByUnreadCount(@Param("accountIds") List<Long> accountIds, Pageable pageable);
 
-    // Count replies sent to each recipient (emails from me that are replies)
-    @Query("SELECT e.recipientEmail, COUNT(e) as sent " +
-           "FROM EmailMetadata e " +
-           "WHERE e.accountId IN :accountIds AND e.isFromMe = true AND e.inReplyTo IS NOT NULL " +
-           "GROUP BY e.recipientEmail")
-    List<Object[]> countRepliesSentToRecipient(@Param("accountIds") List<Long> accountIds);
-
-    // Count all emails sent to each recipient (for reply-to ranking)
-    @Query("SELECT e.recipientEmail, COUNT(e) as sent " +
-           "FROM EmailMetadata e " +
-           "WHERE e.accountId IN :accountIds AND e.isFromMe = true " +
-           "GROUP BY e.recipientEmail")
-    List<Object[]> countEmailsSentToRecipient(@Param("accountIds") List<Long> accountIds);
+    // Emails in the account with one of these Message-IDs: (rfcMessageId, senderEmail, receivedAt, isFromMe)
+    @Query("SELECT e.rfcMessageId, s.email, e.receivedAt, e.isFromMe FROM EmailMetadata e " +
+           "JOIN Sender s ON s.id = e.senderId " +
+           "WHERE e.accountId = :accountId AND e.rfcMessageId IN :rfcMessageIds")
+    List<Object[]> findByRfcMessageIds(@Param("accountId") Long accountId,
+                                       @Param("rfcMessageIds") Collection<String> rfcMessageIds);
 
     // Get thread IDs for emails from a specific sender
     @Query("SELECT DISTINCT e.threadId FROM EmailMetadata e " +
-           "WHERE e.accountId IN :accountIds AND e.senderEmail = :senderEmail AND e.isFromMe = false")
+           "WHERE e.accountId IN :accountIds AND e.isFromMe = false " +
+           "AND e.senderId = (SELECT s.id FROM Sender s WHERE s.email = :senderEmail)")
     List<String> findThreadIdsBySender(@Param("accountIds") List<Long> accountIds,
                                         @Param("senderEmail") String senderEmail);
 
@@ -93,10 +168,70 @@ public interface EmailMetadataRepository extends JpaRepository<EmailMetadata, Lo
     @Query("SELECT COUNT(e) FROM EmailMetadata e WHERE e.accountId IN :accountIds AND e.isRead = false")
     Long countUnreadEmails(@Param("accountIds") List<Long> accountIds);
 
-    @Query("SELECT COUNT(DISTINCT e.senderEmail) FROM EmailMetadata e WHERE e.accountId IN :accountIds AND e.isFromMe = false")
+    @Query("SELECT COUNT(DISTINCT e.senderId) FROM EmailMetadata e WHERE e.accountId IN :accountIds AND e.isFromMe = false")
     Long countUniqueSenders(@Param("accountIds") List<Long> accountIds);
 
+    @Query("SELECT COUNT(DISTINCT e.senderId) FROM EmailMetadata e " +
+           "WHERE e.accountId IN :accountIds AND e.isFromMe = false AND e.receivedAt >= :since")
+    Long countUniqueSendersSince(@Param("accountIds") List<Long> accountIds, @Param("since") LocalDateTime since);
+
+    // Registrable domains, like the DOMAIN sketches
+    @Query("SELECT COUNT(DISTINCT e.domainId) FROM EmailMetadata e " +
+           "WHERE e.accountId IN :accountIds AND e.isFromMe = false AND e.receivedAt >= :since")
+    Long countUniqueDomainsSince(@Param("accountIds") List<Long> accountIds, @Param("since") LocalDateTime since);
+
     // Count emails by sender and account
-    @Query("SELECT e.accountId, COUNT(e) FROM EmailMetadata e WHERE e.senderEmail = :senderEmail GROUP BY e.accountId")
+    @Query("SELECT e.accountId, COUNT(e) FROM EmailMetadata e " +
+           "WHERE e.senderId = (SELECT s.id FROM Sender s WHERE s.email = :senderEmail) GROUP BY e.accountId")
     List<Object[]> countBySenderAndAccount(@Param("senderEmail") String senderEmail);
+
+    // Registrable domains ranked by received emails, keyset-paginated on (count, domainId):
+    // (domainId, count, distinct senders)
+    @Query("SELECT e.domainId, COUNT(e) as cnt, COUNT(DISTINCT e.senderId) " +
+           "FROM EmailMetadata e " +
+           "WHERE e.accountId IN :accountIds AND e.isFromMe = false " +
+           "GROUP BY e.domainId " +
+           "HAVING COUNT(e) < :afterCount OR (COUNT(e) = :afterCount AND e.domainId > :afterDomainId) " +
+           "ORDER BY cnt DESC, e.domainId ASC")
+    List<Object[]> findTopDomains(@Param("accountIds") List<Long> accountIds,
+                                  @Param("afterCount") long afterCount,
+                                  @Param("afterDomainId") long afterDomainId,
+                                  Pageable pageable);
+
+    // Same ranking over emails received since a date
+    @Query("SELECT e.domainId, COUNT(e) as cnt, COUNT(DISTINCT e.senderId) " +
+           "FROM EmailMetadata e " +
+           "WHERE e.accountId IN :accountIds AND e.isFromMe = false AND e.receivedAt >= :since " +
+           "GROUP BY e.domainId " +
+           "HAVING COUNT(e) < :afterCount OR (COUNT(e) = :afterCount AND e.domainId > :afterDomainId) " +
+           "ORDER BY cnt DESC, e.domainId ASC")
+    List<Object[]> findTopDomainsSince(@Param("accountIds") List<Long> accountIds,
+                                       @Param("since") LocalDateTime since,
+                                       @Param("afterCount") long afterCount,
+                                       @Param("afterDomainId") long afterDomainId,
+                                       Pageable pageable);
+
+    // Registrable domains ranked by unread emails: (domainId, count)
+    @Query("SELECT e.domainId, COUNT(e) as cnt " +
+           "FROM EmailMetadata e " +
+           "WHERE e.accountId IN :accountIds AND e.isFromMe = false AND e.isRead = false " +
+           "GROUP BY e.domainId " +
+           "HAVING COUNT(e) < :afterCount OR (COUNT(e) = :afterCount AND e.domainId > :afterDomainId) " +
+           "ORDER BY cnt DESC, e.domainId ASC")
+    List<Object[]> findDomainsByUnreadCount(@Param("accountIds") List<Long> accountIds,
+                                            @Param("afterCount") long afterCount,
+                                            @Param("afterDomainId") long afterDomainId,
+                                            Pageable pageable);
+
+    // Daily received and unread emails from one registrable domain: (day, received, unread)
+    @Query("SELECT CAST(e.receivedAt AS LocalDate), COUNT(e), SUM(CASE WHEN e.isRead = false THEN 1 ELSE 0 END) " +
+           "FROM EmailMetadata e " +
+           "WHERE e.accountId IN :accountIds AND e.isFromMe = false AND e.domainId = :domainId " +
+           "AND e.receivedAt >= :from AND e.receivedAt < :to " +
+           "GROUP BY CAST(e.receivedAt AS LocalDate) " +
+           "ORDER BY CAST(e.receivedAt AS LocalDate)")
+    List<Object[]> countDailyByDomain(@Param("accountIds") List<Long> accountIds,
+                                      @Param("domainId") Long domainId,
+                                      @Param("from") LocalDateTime from,
+                                      @Param("to") LocalDateTime to);
 }
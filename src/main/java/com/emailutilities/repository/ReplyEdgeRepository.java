@@ -0,0 +1,15 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.ReplyEdge;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ReplyEdgeRepository extends JpaRepository<ReplyEdge, Long> {
+
+    // Replies still waiting for one of these parents to be ingested
+    List<ReplyEdge> findByAccountIdAndParentRfcMessageIdInAndResolvedFalse(Long accountId, Collection<String> parentRfcMessageIds);
+}
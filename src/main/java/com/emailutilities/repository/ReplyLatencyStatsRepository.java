@@ -0,0 +1,27 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.ReplyLatencyStats;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ReplyLatencyStatsRepository extends JpaRepository<ReplyLatencyStats, Long> {
+
+    List<ReplyLatencyStats> findByAccountIdAndCounterpartEmailIn(Long accountId, Collection<String> counterpartEmails);
+
+    List<ReplyLatencyStats> findByAccountIdInAndCounterpartEmailIn(List<Long> accountIds, Collection<String> counterpartEmails);
+
+    // Counterparts with the most measured replies in either direction
+    @Query("SELECT r.counterpartEmail, SUM(r.replyCount) as cnt " +
+           "FROM ReplyLatencyStats r " +
+           "WHERE r.accountId IN :accountIds " +
+           "GROUP BY r.counterpartEmail " +
+           "ORDER BY cnt DESC, r.counterpartEmail ASC")
+    List<Object[]> findTopCounterparts(@Param("accountIds") List<Long> accountIds, Pageable pageable);
+}
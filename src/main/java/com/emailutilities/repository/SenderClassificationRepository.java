@@ -0,0 +1,41 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.SenderClassification;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface SenderClassificationRepository extends JpaRepository<SenderClassification, Long> {
+
+    List<SenderClassification> findByAccountIdAndSenderIdIn(Long accountId, Collection<Long> senderIds);
+
+    // Senders in one category ranked by received emails, summed across the user's accounts and
+    // keyset-paginated on (count DESC, senderId ASC); served by idx_sender_classifications_category.
+    // (senderId, received, score, lastSeenAt, listId, listUnsubscribe)
+    @Query("SELECT c.senderId, SUM(c.receivedCount) as cnt, MAX(c.score), MAX(c.lastSeenAt), " +
+           "MAX(c.listId), MAX(c.listUnsubscribe) " +
+           "FROM SenderClassification c " +
+           "WHERE c.accountId IN :accountIds AND c.category = :category AND c.receivedCount > 0 " +
+           "GROUP BY c.senderId " +
+           "HAVING SUM(c.receivedCount) < :afterCount " +
+           "OR (SUM(c.receivedCount) = :afterCount AND c.senderId > :afterSenderId) " +
+           "ORDER BY cnt DESC, c.senderId ASC")
+    List<Object[]> findSendersByCategory(@Param("accountIds") List<Long> accountIds,
+                                         @Param("category") SenderClassification.Category category,
+                                         @Param("afterCount") long afterCount,
+                                         @Param("afterSenderId") long afterSenderId,
+                                         Pageable pageable);
+
+    // Senders and received emails per category: (category, senders, received)
+    @Query("SELECT c.category, COUNT(DISTINCT c.senderId), SUM(c.receivedCount) " +
+           "FROM SenderClassification c " +
+           "WHERE c.accountId IN :accountIds AND c.receivedCount > 0 " +
+           "GROUP BY c.category")
+    List<Object[]> summarizeByCategory(@Param("accountIds") List<Long> accountIds);
+}
@@ -0,0 +1,18 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.Sender;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface SenderRepository extends JpaRepository<Sender, Long> {
+
+    Optional<Sender> findByEmail(String email);
+
+    // Batch lookup for interning one ingest page's addresses
+    List<Sender> findByEmailIn(Collection<String> emails);
+}
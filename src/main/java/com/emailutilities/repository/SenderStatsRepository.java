@@ -0,0 +1,104 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.SenderStats;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface SenderStatsRepository extends JpaRepository<SenderStats, Long> {
+
+    List<SenderStats> findByAccountIdAndSenderEmailIn(Long accountId, Collection<String> senderEmails);
+
+    // Rollup rows for a page of senders across the user's accounts, e.g. to add unread counts
+    List<SenderStats> findByAccountIdInAndSenderEmailIn(Collection<Long> accountIds, Collection<String> senderEmails);
+
+    // Rankings are keyset-paginated on (count DESC, senderEmail ASC): pass the last row's count and
+    // email to continue after it, or Long.MAX_VALUE and '' for the first page. Emails are compared
+    // by code point (ucs_basic) rather than the database collation, like the in-memory snapshot does
+
+    // Most frequent senders, summed across the user's accounts
+    @Query("SELECT s.senderEmail, MAX(s.senderName), SUM(s.receivedCount) as cnt " +
+           "FROM SenderStats s " +
+           "WHERE s.accountId IN :accountIds AND s.receivedCount > 0 " +
+           "GROUP BY s.senderEmail " +
+           "HAVING SUM(s.receivedCount) < :afterCount " +
+           "OR (SUM(s.receivedCount) = :afterCount AND collate(s.senderEmail as ucs_basic) > :afterSender) " +
+           "ORDER BY cnt DESC, collate(s.senderEmail as ucs_basic) ASC")
+    List<Object[]> findTopSenders(@Param("accountIds") List<Long> accountIds,
+                                  @Param("afterCount") long afterCount,
+                                  @Param("afterSender") String afterSender,
+                                  Pageable pageable);
+
+    // Senders ranked by unread emails
+    @Query("SELECT s.senderEmail, MAX(s.senderName), SUM(s.unreadCount) as cnt " +
+           "FROM SenderStats s " +
+           "WHERE s.accountId IN :accountIds AND s.unreadCount > 0 " +
+           "GROUP BY s.senderEmail " +
+           "HAVING SUM(s.unreadCount) < :afterCount " +
+           "OR (SUM(s.unreadCount) = :afterCount AND collate(s.senderEmail as ucs_basic) > :afterSender) " +
+           "ORDER BY cnt DESC, collate(s.senderEmail as ucs_basic) ASC")
+    List<Object[]> findSendersByUnreadCount(@Param("accountIds") List<Long> accountIds,
+                                            @Param("afterCount") long afterCount,
+                                            @Param("afterSender") String afterSender,
+                                            Pageable pageable);
+
+    // Addresses the user sends to most
+    @Query("SELECT s.senderEmail, SUM(s.sentToCount) as sent " +
+           "FROM SenderStats s " +
+           "WHERE s.accountId IN :accountIds AND s.sentToCount > 0 AND s.senderEmail <> '' " +
+           "GROUP BY s.senderEmail " +
+           "HAVING SUM(s.sentToCount) < :afterCount " +
+           "OR (SUM(s.sentToCount) = :afterCount AND collate(s.senderEmail as ucs_basic) > :afterSender) " +
+           "ORDER BY sent DESC, collate(s.senderEmail as ucs_basic) ASC")
+    List<Object[]> findTopRecipients(@Param("accountIds") List<Long> accountIds,
+                                     @Param("afterCount") long afterCount,
+                                     @Param("afterSender") String afterSender,
+                                     Pageable pageable);
+
+    // Senders with at least :minReceived emails, lowest replies-per-received first
+    @Query("SELECT s.senderEmail, SUM(s.receivedCount) as received, SUM(s.repliedCount) as replies " +
+           "FROM SenderStats s " +
+           "WHERE s.accountId IN :accountIds " +
+           "GROUP BY s.senderEmail " +
+           "HAVING SUM(s.receivedCount) >= :minReceived " +
+           "ORDER BY SUM(s.repliedCount) * 1.0 / SUM(s.receivedCount) ASC, received DESC")
+    List<Object[]> findLowReplyRatioSenders(@Param("accountIds") List<Long> accountIds,
+                                            @Param("minReceived") long minReceived,
+                                            Pageable pageable);
+
+    // Every counter per address in one grouped pass, streamed so callers can keep only what they rank
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT s.senderEmail, MAX(s.senderName), SUM(s.receivedCount), SUM(s.unreadCount), " +
+           "SUM(s.sentToCount), SUM(s.repliedCount) " +
+           "FROM SenderStats s " +
+           "WHERE s.accountId IN :accountIds " +
+           "GROUP BY s.senderEmail")
+    Stream<Object[]> streamSenderTotals(@Param("accountIds") List<Long> accountIds);
+
+    // One account's rollup rows for a Parquet snapshot:
+    // (senderEmail, senderName, received, unread, sentTo, replied, firstSeenAt, lastSeenAt)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query("SELECT s.senderEmail, s.senderName, s.receivedCount, s.unreadCount, s.sentToCount, s.repliedCount, " +
+           "s.firstSeenAt, s.lastSeenAt " +
+           "FROM SenderStats s WHERE s.accountId = :accountId")
+    Stream<Object[]> streamSnapshotRows(@Param("accountId") Long accountId);
+
+    @Query("SELECT COUNT(DISTINCT s.senderEmail) FROM SenderStats s " +
+           "WHERE s.accountId IN :accountIds AND s.receivedCount > 0")
+    Long countUniqueSenders(@Param("accountIds") List<Long> accountIds);
+
+    // Registrable domains, like the DOMAIN sketches
+    @Query("SELECT COUNT(DISTINCT d.domainId) FROM SenderStats s JOIN Sender d ON d.email = s.senderEmail " +
+           "WHERE s.accountId IN :accountIds AND s.receivedCount > 0")
+    Long countUniqueDomains(@Param("accountIds") List<Long> accountIds);
+}
@@ -4,6 +4,7 @@ import com.emailutilities.entity.SyncJob;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,4 +18,6 @@ public interface SyncJobRepository extends JpaRepository<SyncJob, Long> {
     List<SyncJob> findByStatus(SyncJob.JobStatus status);
 
     boolean existsByUserIdAndStatus(Long userId, SyncJob.JobStatus status);
+
+    boolean existsByUserIdAndStatusIn(Long userId, Collection<SyncJob.JobStatus> statuses);
 }
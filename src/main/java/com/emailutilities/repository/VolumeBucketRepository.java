@@ -0,0 +1,62 @@
+package com.emailutilities.repository;
+
+import com.emailutilities.entity.VolumeBucket;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface VolumeBucketRepository extends JpaRepository<VolumeBucket, Long> {
+
+    // Candidate rows for an ingest page; a superset of the exact (granularity, sender, start) keys
+    @Query("SELECT b FROM VolumeBucket b " +
+           "WHERE b.accountId = :accountId AND b.bucketStart IN :starts AND b.senderEmail IN :senders")
+    List<VolumeBucket> findForUpdate(@Param("accountId") Long accountId,
+                                     @Param("starts") Collection<LocalDateTime> starts,
+                                     @Param("senders") Collection<String> senders);
+
+    // Volume per bucket across accounts: (bucketStart, received, unread, fromMe)
+    @Query("SELECT b.bucketStart, SUM(b.receivedCount), SUM(b.unreadCount), SUM(b.fromMeCount) " +
+           "FROM VolumeBucket b " +
+           "WHERE b.accountId IN :accountIds AND b.granularity = :granularity AND b.senderEmail = :senderEmail " +
+           "AND b.bucketStart >= :from AND b.bucketStart < :to " +
+           "GROUP BY b.bucketStart " +
+           "ORDER BY b.bucketStart")
+    List<Object[]> sumByBucket(@Param("accountIds") List<Long> accountIds,
+                               @Param("granularity") VolumeBucket.Granularity granularity,
+                               @Param("senderEmail") String senderEmail,
+                               @Param("from") LocalDateTime from,
+                               @Param("to") LocalDateTime to);
+
+    // Totals since a bucket start across accounts: one row of (received, unread, fromMe)
+    @Query("SELECT SUM(b.receivedCount), SUM(b.unreadCount), SUM(b.fromMeCount) " +
+           "FROM VolumeBucket b " +
+           "WHERE b.accountId IN :accountIds AND b.granularity = :granularity AND b.senderEmail = :senderEmail " +
+           "AND b.bucketStart >= :from")
+    List<Object[]> sumSince(@Param("accountIds") List<Long> accountIds,
+                            @Param("granularity") VolumeBucket.Granularity granularity,
+                            @Param("senderEmail") String senderEmail,
+                            @Param("from") LocalDateTime from);
+
+    // Top senders over a date range from daily buckets, keyset-paginated on (count DESC, senderEmail ASC)
+    @Query("SELECT b.senderEmail, MAX(s.senderName), SUM(b.receivedCount) as cnt " +
+           "FROM VolumeBucket b " +
+           "LEFT JOIN SenderStats s ON s.accountId = b.accountId AND s.senderEmail = b.senderEmail " +
+           "WHERE b.accountId IN :accountIds AND b.granularity = com.emailutilities.entity.VolumeBucket.Granularity.DAY " +
+           "AND b.senderEmail <> '*' AND b.receivedCount > 0 AND b.bucketStart >= :from " +
+           "GROUP BY b.senderEmail " +
+           "HAVING SUM(b.receivedCount) < :afterCount " +
+           "OR (SUM(b.receivedCount) = :afterCount AND collate(b.senderEmail as ucs_basic) > :afterSender) " +
+           "ORDER BY cnt DESC, collate(b.senderEmail as ucs_basic) ASC")
+    List<Object[]> findTopSendersSince(@Param("accountIds") List<Long> accountIds,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("afterCount") long afterCount,
+                                       @Param("afterSender") String afterSender,
+                                       Pageable pageable);
+}
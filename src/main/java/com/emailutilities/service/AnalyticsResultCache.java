@@ -0,0 +1,121 @@
+package com.emailutilities.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Caches analytics responses per (query, account set, parameters) in a size-bounded Caffeine
+ * cache, whose W-TinyLFU policy keeps frequently loaded dashboards over one-off queries.
+ *
+ * Every account has a version that is bumped when an ingest page for it commits. A cached result
+ * remembers the versions it was computed at, so it goes stale exactly when one of its accounts
+ * changes. The same versions form the ETag, which lets the controller answer 304 without
+ * computing anything. The user-to-accounts lookup is cached too, so a repeat load costs no DB work.
+ */
+@Service
+public class AnalyticsResultCache {
+
+    // Distinguishes ETags across restarts, when the in-memory versions start over
+    private final String bootId = Long.toHexString(System.currentTimeMillis());
+
+    private final Map<Long, AtomicLong> accountVersions = new ConcurrentHashMap<>();
+    private final Cache<Key, Entry> results;
+    private final Cache<Long, List<Long>> accountIdsByUser;
+
+    public AnalyticsResultCache(@Value("${analytics.cache.max-entries:10000}") long maxEntries) {
+        this.results = Caffeine.newBuilder().maximumSize(maxEntries).build();
+        this.accountIdsByUser = Caffeine.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    /**
+     * Identifies one analytics result; account IDs are sorted so their order doesn't matter
+     */
+    public record Key(String query, List<Long> accountIds, List<Object> params) {
+    }
+
+    private record Entry(String etag, Object value) {
+    }
+
+    public Key key(String query, List<Long> accountIds, Object... params) {
+        List<Long> sorted = accountIds.stream().sorted().distinct().collect(Collectors.toList());
+        return new Key(query, sorted, Arrays.asList(params));
+    }
+
+    /**
+     * Windowed results also change at midnight, so their key includes today's date
+     */
+    public Key windowedKey(String query, List<Long> accountIds, Object... params) {
+        Object[] withDate = Arrays.copyOf(params, params.length + 1);
+        withDate[params.length] = LocalDate.now();
+        return key(query, accountIds, withDate);
+    }
+
+    /**
+     * Current ETag for the key; changes whenever any of its accounts ingests new data
+     */
+    public String etag(Key key) {
+        // Versions only grow, so for a fixed account set their sum identifies the data state
+        long versionSum = 0;
+        for (Long accountId : key.accountIds()) {
+            AtomicLong version = accountVersions.get(accountId);
+            versionSum += version != null ? version.get() : 0;
+        }
+        return "\"" + bootId + "-" + Integer.toHexString(key.hashCode()) + "-" + versionSum + "\"";
+    }
+
+    /**
+     * Cached result for the key, recomputed if any of its accounts changed since it was stored
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key key, Supplier<T> loader) {
+        // Read the versions before computing, so data committed mid-computation leaves the entry stale
+        String etag = etag(key);
+        Entry entry = results.getIfPresent(key);
+        if (entry != null && entry.etag().equals(etag)) {
+            return (T) entry.value();
+        }
+
+        T value = loader.get();
+        results.put(key, new Entry(etag, value));
+        return value;
+    }
+
+    /**
+     * The user's account IDs, loaded once and kept until the user's accounts change
+     */
+    public List<Long> accountIds(Long userId, Supplier<List<Long>> loader) {
+        return accountIdsByUser.get(userId, id -> loader.get());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMetadataIngested(MetadataIngestedEvent event) {
+        invalidateAccount(event.accountId());
+    }
+
+    /**
+     * Mark every cached result that includes the account as stale
+     */
+    public void invalidateAccount(Long accountId) {
+        accountVersions.computeIfAbsent(accountId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * Forget the user's account list after an account is added or removed
+     */
+    public void invalidateUser(Long userId) {
+        accountIdsByUser.invalidate(userId);
+    }
+}
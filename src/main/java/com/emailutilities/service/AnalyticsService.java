@@ -1,35 +1,72 @@
 package com.emailutilities.service;
 
+import com.emailutilities.dto.RankingPage;
+import com.emailutilities.entity.DistinctSketch;
 import com.emailutilities.entity.EmailAccount;
-import com.emailutilities.entity.EmailMetadata;
+import com.emailutilities.entity.VolumeBucket;
+import com.emailutilities.repository.DistinctSketchRepository;
 import com.emailutilities.repository.EmailAccountRepository;
 import com.emailutilities.repository.EmailMetadataRepository;
+import com.emailutilities.repository.SenderStatsRepository;
+import com.emailutilities.repository.VolumeBucketRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class AnalyticsService {
 
     private final EmailMetadataRepository metadataRepository;
     private final EmailAccountRepository accountRepository;
+    private final SenderStatsRepository senderStatsRepository;
+    private final VolumeBucketRepository volumeBucketRepository;
+    private final DistinctSketchRepository distinctSketchRepository;
+    private final MetadataIngestService ingestService;
+    private final MetadataPartitionService partitionService;
+    private final AnalyticsSnapshotCache snapshotCache;
     private final GmailService gmailService;
     private final OutlookService outlookService;
+    private final TransactionTemplate readOnlyTransaction;
 
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("<([^>]+)>|([\\w.+-]+@[\\w.-]+)");
+    // Upper bound on one page of any ranking, so response size never tracks sender cardinality
+    private static final int MAX_RANKING_PAGE_SIZE = 500;
+
+    // Senders need at least this many emails to appear in the low reply ratio ranking
+    static final long LOW_REPLY_MIN_RECEIVED = 3;
 
     public AnalyticsService(EmailMetadataRepository metadataRepository,
                            EmailAccountRepository accountRepository,
+                           SenderStatsRepository senderStatsRepository,
+                           VolumeBucketRepository volumeBucketRepository,
+                           DistinctSketchRepository distinctSketchRepository,
+                           MetadataIngestService ingestService,
+                           MetadataPartitionService partitionService,
+                           AnalyticsSnapshotCache snapshotCache,
                            GmailService gmailService,
-                           OutlookService outlookService) {
+                           OutlookService outlookService,
+                           PlatformTransactionManager transactionManager) {
         this.metadataRepository = metadataRepository;
         this.accountRepository = accountRepository;
+        this.senderStatsRepository = senderStatsRepository;
+        this.volumeBucketRepository = volumeBucketRepository;
+        this.distinctSketchRepository = distinctSketchRepository;
+        this.ingestService = ingestService;
+        this.partitionService = partitionService;
+        this.snapshotCache = snapshotCache;
         this.gmailService = gmailService;
         this.outlookService = outlookService;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
     /**
@@ -67,7 +104,7 @@ public class AnalyticsService {
         int maxPages = 10; // Limit initial sync
         int page = 0;
 
-        String accountEmail = account.getEmailAddress().toLowerCase();
+        partitionService.ensureAccountPartition(account.getId());
 
         while (page < maxPages) {
             Map<String, Object> result;
@@ -87,49 +124,9 @@ public class AnalyticsService {
                 break;
             }
 
-            for (Map<String, Object> email : emails) {
-                String messageId = (String) email.get("id");
-
-                // Skip if already synced
-                if (metadataRepository.existsByMessageId(messageId)) {
-                    skipped++;
-                    continue;
-                }
-
-                EmailMetadata metadata = new EmailMetadata();
-                metadata.setAccountId(account.getId());
-                metadata.setMessageId(messageId);
-                metadata.setThreadId((String) email.get("threadId"));
-
-                // Parse sender
-                String from = (String) email.getOrDefault("from", "");
-                String[] senderParts = parseEmailAddress(from);
-                metadata.setSenderEmail(senderParts[0].toLowerCase());
-                metadata.setSenderName(senderParts[1]);
-
-                // Parse recipient
-                String to = (String) email.getOrDefault("to", "");
-                String[] recipientParts = parseEmailAddress(to);
-                metadata.setRecipientEmail(recipientParts[0].toLowerCase());
-
-                metadata.setSubject((String) email.getOrDefault("subject", ""));
-
-                // Parse date
-                String dateStr = (String) email.get("date");
-                metadata.setReceivedAt(parseDate(dateStr));
-
-                // Read status
-                Object isUnread = email.get("isUnread");
-                metadata.setRead(isUnread == null || !(Boolean) isUnread);
-
-                // Determine if from me
-                metadata.setFromMe(metadata.getSenderEmail().equalsIgnoreCase(accountEmail));
-
-                // TODO: Parse In-Reply-To header when available
-
-                metadataRepository.save(metadata);
-                synced++;
-            }
+            MetadataIngestService.IngestResult ingested = ingestService.ingestPage(account, emails);
+            synced += ingested.synced();
+            skipped += ingested.skipped();
 
             pageToken = (String) result.get("nextPageToken");
             if (pageToken == null) {
@@ -145,101 +142,113 @@ public class AnalyticsService {
      * Get top senders
      */
     public List<Map<String, Object>> getTopSenders(List<Long> accountIds, int limit, Integer days) {
+        return getTopSenders(accountIds, limit, days, null).items();
+    }
+
+    /**
+     * Get a page of top senders, continuing after the given cursor
+     */
+    public RankingPage getTopSenders(List<Long> accountIds, int limit, Integer days, String cursor) {
+        Cursor after = Cursor.decode(cursor);
+        Pageable page = PageRequest.of(0, clampLimit(limit));
         List<Object[]> results;
 
-        if (days != null) {
-            LocalDateTime since = LocalDateTime.now().minusDays(days);
-            results = metadataRepository.findTopSendersSince(accountIds, since);
+        Optional<AnalyticsSnapshot> snapshot = snapshotCache.forAccounts(accountIds);
+        if (snapshot.isPresent()) {
+            results = snapshot.get().topSenders(page.getPageSize(), days, after.count(), after.sender());
+        } else if (days != null) {
+            // Windows are answered from daily volume buckets, so they start at midnight
+            LocalDateTime since = LocalDate.now().minusDays(days).atStartOfDay();
+            results = volumeBucketRepository.findTopSendersSince(accountIds, since, after.count(), after.sender(), page);
         } else {
-            results = metadataRepository.findTopSenders(accountIds);
+            results = senderStatsRepository.findTopSenders(accountIds, after.count(), after.sender(), page);
         }
 
-        return results.stream()
-            .limit(limit)
+        List<Map<String, Object>> items = results.stream()
             .map(row -> Map.<String, Object>of(
                 "email", row[0],
                 "name", row[1] != null ? row[1] : "",
                 "count", ((Number) row[2]).intValue()
             ))
             .collect(Collectors.toList());
+        return new RankingPage(items, nextCursor(results, page, 2));
     }
 
     /**
      * Get senders ranked by unread emails
      */
     public List<Map<String, Object>> getUnreadBySender(List<Long> accountIds, int limit) {
-        List<Object[]> results = metadataRepository.findSendersByUnreadCount(accountIds);
+        return getUnreadBySender(accountIds, limit, null).items();
+    }
 
-        return results.stream()
-            .limit(limit)
+    /**
+     * Get a page of senders ranked by unread emails, continuing after the given cursor
+     */
+    public RankingPage getUnreadBySender(List<Long> accountIds, int limit, String cursor) {
+        Cursor after = Cursor.decode(cursor);
+        Pageable page = PageRequest.of(0, clampLimit(limit));
+        List<Object[]> results = snapshotCache.forAccounts(accountIds)
+            .map(snapshot -> snapshot.unreadBySender(page.getPageSize(), after.count(), after.sender()))
+            .orElseGet(() -> senderStatsRepository.findSendersByUnreadCount(accountIds, after.count(), after.sender(), page));
+
+        List<Map<String, Object>> items = results.stream()
             .map(row -> Map.<String, Object>of(
                 "email", row[0],
                 "name", row[1] != null ? row[1] : "",
                 "unreadCount", ((Number) row[2]).intValue()
             ))
             .collect(Collectors.toList());
+        return new RankingPage(items, nextCursor(results, page, 2));
     }
 
     /**
      * Get reply-to ranking (who user replies to most)
      */
     public List<Map<String, Object>> getReplyToRanking(List<Long> accountIds, int limit) {
-        List<Object[]> results = metadataRepository.countEmailsSentToRecipient(accountIds);
+        return getReplyToRanking(accountIds, limit, null).items();
+    }
 
-        return results.stream()
-            .filter(row -> row[0] != null && !((String) row[0]).isEmpty())
-            .limit(limit)
+    /**
+     * Get a page of the reply-to ranking, continuing after the given cursor
+     */
+    public RankingPage getReplyToRanking(List<Long> accountIds, int limit, String cursor) {
+        Cursor after = Cursor.decode(cursor);
+        Pageable page = PageRequest.of(0, clampLimit(limit));
+        List<Object[]> results = snapshotCache.forAccounts(accountIds)
+            .map(snapshot -> snapshot.topRecipients(page.getPageSize(), after.count(), after.sender()))
+            .orElseGet(() -> senderStatsRepository.findTopRecipients(accountIds, after.count(), after.sender(), page));
+
+        List<Map<String, Object>> items = results.stream()
             .map(row -> Map.<String, Object>of(
                 "email", row[0],
                 "sentCount", ((Number) row[1]).intValue()
             ))
             .collect(Collectors.toList());
+        return new RankingPage(items, nextCursor(results, page, 1));
     }
 
     /**
      * Get senders with low reply ratio
      */
     public List<Map<String, Object>> getLowReplyRatioSenders(List<Long> accountIds, int limit) {
-        // Get emails received from each sender
-        Map<String, Long> receivedCounts = metadataRepository.countEmailsReceivedBySender(accountIds)
-            .stream()
-            .collect(Collectors.toMap(
-                row -> ((String) row[0]).toLowerCase(),
-                row -> ((Number) row[1]).longValue()
-            ));
-
-        // Get replies sent to each recipient
-        Map<String, Long> replyCounts = metadataRepository.countRepliesSentToRecipient(accountIds)
-            .stream()
-            .filter(row -> row[0] != null)
-            .collect(Collectors.toMap(
-                row -> ((String) row[0]).toLowerCase(),
-                row -> ((Number) row[1]).longValue(),
-                (a, b) -> a + b
-            ));
-
-        // Calculate reply ratio for each sender
-        List<Map<String, Object>> results = new ArrayList<>();
-        for (Map.Entry<String, Long> entry : receivedCounts.entrySet()) {
-            String sender = entry.getKey();
-            long received = entry.getValue();
-            long replies = replyCounts.getOrDefault(sender, 0L);
-
-            double ratio = received > 0 ? (double) replies / received : 0;
-
-            results.add(Map.of(
-                "email", sender,
-                "received", received,
-                "replies", replies,
-                "replyRatio", Math.round(ratio * 100) / 100.0
-            ));
-        }
+        // Ratio, the 3-email minimum and the ordering are evaluated in the snapshot or the rollup
+        int pageSize = clampLimit(limit);
+        List<Object[]> results = snapshotCache.forAccounts(accountIds)
+            .map(snapshot -> snapshot.lowReplyRatioSenders(pageSize, LOW_REPLY_MIN_RECEIVED))
+            .orElseGet(() -> senderStatsRepository.findLowReplyRatioSenders(accountIds, LOW_REPLY_MIN_RECEIVED, PageRequest.of(0, pageSize)));
 
-        // Sort by reply ratio (ascending) and filter senders with enough emails
         return results.stream()
-            .filter(r -> ((Number) r.get("received")).longValue() >= 3) // At least 3 emails
-            .sorted(Comparator.comparingDouble(r -> ((Number) r.get("replyRatio")).doubleValue()))
-            .limit(limit)
+            .map(row -> {
+                long received = ((Number) row[1]).longValue();
+                long replies = ((Number) row[2]).longValue();
+                double ratio = received > 0 ? (double) replies / received : 0;
+                return Map.<String, Object>of(
+                    "email", row[0],
+                    "received", received,
+                    "replies", replies,
+                    "replyRatio", Math.round(ratio * 100) / 100.0
+                );
+            })
             .collect(Collectors.toList());
     }
 
@@ -247,61 +256,132 @@ public class AnalyticsService {
      * Get summary statistics
      */
     public Map<String, Object> getSummaryStats(List<Long> accountIds) {
-        Long totalEmails = metadataRepository.countTotalEmails(accountIds);
-        Long unreadEmails = metadataRepository.countUnreadEmails(accountIds);
-        Long uniqueSenders = metadataRepository.countUniqueSenders(accountIds);
-
-        return Map.of(
-            "totalEmails", totalEmails != null ? totalEmails : 0,
-            "unreadEmails", unreadEmails != null ? unreadEmails : 0,
-            "uniqueSenders", uniqueSenders != null ? uniqueSenders : 0,
-            "readRatio", totalEmails > 0 ? Math.round((1 - (double) unreadEmails / totalEmails) * 100) : 0
-        );
+        return getSummaryStats(accountIds, null, false);
     }
 
-    private String[] parseEmailAddress(String fromHeader) {
-        if (fromHeader == null || fromHeader.isEmpty()) {
-            return new String[]{"", ""};
+    /**
+     * Get summary statistics, optionally for the last N days. Unique senders and domains are
+     * estimated from HyperLogLog sketches (about 2% error) unless exact counting is requested.
+     */
+    public Map<String, Object> getSummaryStats(List<Long> accountIds, Integer days, boolean exact) {
+        if (accountIds.isEmpty()) {
+            return summary(0, 0, 0, 0, !exact);
+        }
+
+        LocalDate from = days != null ? LocalDate.now().minusDays(days) : null;
+        Optional<AnalyticsSnapshot> snapshot = from == null ? snapshotCache.forAccounts(accountIds) : Optional.empty();
+
+        long totalEmails;
+        long unreadEmails;
+        if (snapshot.isPresent()) {
+            totalEmails = snapshot.get().totalEmails();
+            unreadEmails = snapshot.get().unreadEmails();
+        } else if (from != null) {
+            // Windows are answered from daily volume buckets, so they start at midnight
+            List<Object[]> rows = volumeBucketRepository.sumSince(accountIds, VolumeBucket.Granularity.DAY,
+                VolumeBucket.ALL_SENDERS, from.atStartOfDay());
+            Object[] totals = rows.isEmpty() ? new Object[3] : rows.get(0);
+            totalEmails = toLong(totals[0]) + toLong(totals[2]);
+            unreadEmails = toLong(totals[1]);
+        } else {
+            totalEmails = toLong(metadataRepository.countTotalEmails(accountIds));
+            unreadEmails = toLong(metadataRepository.countUnreadEmails(accountIds));
         }
 
-        Matcher matcher = EMAIL_PATTERN.matcher(fromHeader);
-        String email = "";
-        if (matcher.find()) {
-            email = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        long uniqueSenders;
+        long uniqueDomains;
+        if (!exact) {
+            long[] estimates = estimateDistinct(accountIds, from);
+            uniqueSenders = estimates[0];
+            uniqueDomains = estimates[1];
+        } else if (from != null) {
+            uniqueSenders = toLong(metadataRepository.countUniqueSendersSince(accountIds, from.atStartOfDay()));
+            uniqueDomains = toLong(metadataRepository.countUniqueDomainsSince(accountIds, from.atStartOfDay()));
+        } else {
+            uniqueSenders = snapshot.isPresent()
+                ? snapshot.get().uniqueSenders()
+                : toLong(senderStatsRepository.countUniqueSenders(accountIds));
+            uniqueDomains = toLong(senderStatsRepository.countUniqueDomains(accountIds));
         }
 
-        // Extract name (everything before the email)
-        String name = fromHeader.replaceAll("<[^>]+>", "").trim();
-        name = name.replaceAll("\"", "").trim();
+        return summary(totalEmails, unreadEmails, uniqueSenders, uniqueDomains, !exact);
+    }
 
-        if (email.isEmpty()) {
-            email = fromHeader.trim();
+    /**
+     * Merge the all-time sketches, or the daily ones since from, into (unique senders, unique domains)
+     */
+    private long[] estimateDistinct(List<Long> accountIds, LocalDate from) {
+        HyperLogLog senders = new HyperLogLog();
+        HyperLogLog domains = new HyperLogLog();
+        Consumer<Object[]> merge = row -> (row[0] == DistinctSketch.Kind.SENDER ? senders : domains)
+            .merge(HyperLogLog.fromBytes((byte[]) row[1]));
+
+        if (from == null) {
+            distinctSketchRepository.findSketchesForDay(accountIds, DistinctSketch.ALL_TIME).forEach(merge);
+        } else {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Stream<Object[]> rows = distinctSketchRepository.streamSketchesSince(accountIds, from)) {
+                    rows.forEach(merge);
+                }
+            });
         }
+        return new long[]{senders.estimate(), domains.estimate()};
+    }
+
+    private Map<String, Object> summary(long totalEmails, long unreadEmails, long uniqueSenders,
+                                        long uniqueDomains, boolean approximate) {
+        return Map.of(
+            "totalEmails", totalEmails,
+            "unreadEmails", unreadEmails,
+            "uniqueSenders", uniqueSenders,
+            "uniqueDomains", uniqueDomains,
+            "approximate", approximate,
+            "readRatio", totalEmails > 0 ? Math.round((1 - (double) unreadEmails / totalEmails) * 100) : 0
+        );
+    }
+
+    private static long toLong(Object value) {
+        return value != null ? ((Number) value).longValue() : 0;
+    }
 
-        return new String[]{email, name};
+    static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_RANKING_PAGE_SIZE));
     }
 
-    private LocalDateTime parseDate(String dateStr) {
-        if (dateStr == null || dateStr.isEmpty()) {
-            return LocalDateTime.now();
+    /**
+     * Cursor for the row after the last one returned, or null if this was the last page
+     */
+    private String nextCursor(List<Object[]> results, Pageable page, int countColumn) {
+        if (results.size() < page.getPageSize()) {
+            return null;
         }
+        Object[] last = results.get(results.size() - 1);
+        return new Cursor(((Number) last[countColumn]).longValue(), (String) last[0]).encode();
+    }
 
-        try {
-            // Try ISO format first (Outlook)
-            if (dateStr.contains("T")) {
-                return LocalDateTime.parse(dateStr.substring(0, 19));
+    /**
+     * Keyset position in a (count DESC, sender ASC) ranking, passed to clients as an opaque token
+     */
+    record Cursor(long count, String sender) {
+
+        static final Cursor FIRST = new Cursor(Long.MAX_VALUE, "");
+
+        static Cursor decode(String token) {
+            if (token == null || token.isEmpty()) {
+                return FIRST;
             }
+            try {
+                String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                int separator = decoded.indexOf('|');
+                return new Cursor(Long.parseLong(decoded.substring(0, separator)), decoded.substring(separator + 1));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+        }
 
-            // Try RFC 2822 format (Gmail)
-            // Example: "Tue, 31 Dec 2024 10:30:00 -0800"
-            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern(
-                "EEE, d MMM yyyy HH:mm:ss Z", Locale.ENGLISH
-            );
-            java.time.ZonedDateTime zdt = java.time.ZonedDateTime.parse(dateStr, formatter);
-            return zdt.toLocalDateTime();
-        } catch (Exception e) {
-            // Fallback
-            return LocalDateTime.now();
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((count + "|" + sender).getBytes(StandardCharsets.UTF_8));
         }
     }
 }
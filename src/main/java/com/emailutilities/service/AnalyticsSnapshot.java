@@ -0,0 +1,382 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.EmailMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntPredicate;
+
+/**
+ * Columnar, in-memory copy of one user's email_metadata for interactive analytics.
+ *
+ * One row per email, stored column-wise in primitive arrays: the counterpart address as a
+ * dictionary id (sender for received mail, recipient for sent mail), the timestamp as epoch
+ * seconds, and read / fromMe / reply flags as bitsets. Per-address totals are kept alongside so
+ * all-time rankings cost O(addresses); windowed rankings scan the timestamp column.
+ *
+ * Rankings return rows shaped like the matching repository queries, so callers format both alike.
+ * Readers and the ingest listener are coordinated with a read/write lock.
+ */
+public class AnalyticsSnapshot {
+
+    private static final int INITIAL_ROWS = 1024;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Row columns
+    private int rows;
+    private int[] counterpart = new int[INITIAL_ROWS];
+    private long[] receivedAt = new long[INITIAL_ROWS];
+    private final BitSet read = new BitSet();
+    private final BitSet fromMe = new BitSet();
+    private final BitSet reply = new BitSet();
+
+    // Address dictionary
+    private final Map<String, Integer> addressIds = new HashMap<>();
+    private final List<String> addresses = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+
+    // Per-address totals, indexed by dictionary id
+    private long[] received = new long[INITIAL_ROWS];
+    private long[] unread = new long[INITIAL_ROWS];
+    private long[] sentTo = new long[INITIAL_ROWS];
+    private long[] replied = new long[INITIAL_ROWS];
+
+    // Message ID hash -> row, for read flag updates
+    private final MessageIndex messageIndex = new MessageIndex();
+
+    private long unreadRows;
+    private long dictionaryBytes;
+
+    /**
+     * Append one email; ignored if the snapshot already has it
+     */
+    void add(String messageId, String senderEmail, String senderName, String recipientEmail,
+             LocalDateTime at, boolean isRead, boolean isFromMe, boolean isReply) {
+        lock.writeLock().lock();
+        try {
+            long key = hash(messageId);
+            if (messageIndex.get(key) >= 0) return;
+
+            String address = isFromMe ? recipientEmail : senderEmail;
+            int id = addressId(address != null ? address : "");
+            if (!isFromMe && senderName != null && !senderName.isEmpty() && names.get(id).isEmpty()) {
+                names.set(id, senderName);
+                dictionaryBytes += 40 + 2L * senderName.length();
+            }
+
+            ensureRowCapacity(rows + 1);
+            int row = rows++;
+            counterpart[row] = id;
+            receivedAt[row] = at != null ? at.toEpochSecond(ZoneOffset.UTC) : 0;
+            read.set(row, isRead);
+            fromMe.set(row, isFromMe);
+            reply.set(row, isReply);
+            messageIndex.put(key, row);
+
+            if (!isRead) unreadRows++;
+            if (isFromMe) {
+                sentTo[id]++;
+                if (isReply) replied[id]++;
+            } else {
+                received[id]++;
+                if (!isRead) unread[id]++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void add(EmailMetadata metadata) {
+        add(metadata.getMessageId(), metadata.getSenderEmail(), metadata.getSenderName(),
+            metadata.getRecipientEmail(), metadata.getReceivedAt(), metadata.isRead(),
+            metadata.isFromMe(), metadata.getInReplyTo() != null);
+    }
+
+    /**
+     * Set a message's read flag; a no-op for unknown messages or unchanged flags
+     */
+    void setRead(String messageId, boolean isRead) {
+        lock.writeLock().lock();
+        try {
+            int row = messageIndex.get(hash(messageId));
+            if (row < 0 || read.get(row) == isRead) return;
+
+            read.set(row, isRead);
+            unreadRows += isRead ? -1 : 1;
+            if (!fromMe.get(row)) {
+                unread[counterpart[row]] += isRead ? -1 : 1;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Top senders; all-time from the totals, windowed by scanning the timestamp column.
+     * Rows are (email, name, count), keyset-ordered by (count DESC, email ASC).
+     */
+    public List<Object[]> topSenders(int limit, Integer days, long afterCount, String afterSender) {
+        lock.readLock().lock();
+        try {
+            if (days == null) {
+                return rank(id -> received[id], limit, afterCount, afterSender, true);
+            }
+
+            // Starts at midnight like the daily volume buckets answering this without a snapshot
+            long since = LocalDate.now().minusDays(days).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+            long[] windowCounts = new long[addresses.size()];
+            for (int row = 0; row < rows; row++) {
+                if (receivedAt[row] >= since && !fromMe.get(row)) {
+                    windowCounts[counterpart[row]]++;
+                }
+            }
+            return rank(id -> windowCounts[id], limit, afterCount, afterSender, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Senders by unread count, as (email, name, count)
+     */
+    public List<Object[]> unreadBySender(int limit, long afterCount, String afterSender) {
+        lock.readLock().lock();
+        try {
+            return rank(id -> unread[id], limit, afterCount, afterSender, true);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Addresses the user sends to most, as (email, count)
+     */
+    public List<Object[]> topRecipients(int limit, long afterCount, String afterSender) {
+        lock.readLock().lock();
+        try {
+            return rank(id -> addresses.get(id).isEmpty() ? 0 : sentTo[id], limit, afterCount, afterSender, false);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Senders with at least minReceived emails, lowest reply ratio first, as (email, received, replies)
+     */
+    public List<Object[]> lowReplyRatioSenders(int limit, long minReceived) {
+        lock.readLock().lock();
+        try {
+            Comparator<Integer> order = Comparator
+                .comparingDouble((Integer id) -> (double) replied[id] / received[id])
+                .thenComparing(Comparator.comparingLong((Integer id) -> received[id]).reversed())
+                .thenComparing(id -> addresses.get(id));
+            List<Integer> ids = topK(limit, order, id -> received[id] >= minReceived);
+
+            List<Object[]> result = new ArrayList<>(ids.size());
+            for (int id : ids) {
+                result.add(new Object[]{addresses.get(id), received[id], replied[id]});
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long totalEmails() {
+        lock.readLock().lock();
+        try {
+            return rows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long unreadEmails() {
+        lock.readLock().lock();
+        try {
+            return unreadRows;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long uniqueSenders() {
+        lock.readLock().lock();
+        try {
+            long count = 0;
+            for (int id = 0; id < addresses.size(); id++) {
+                if (received[id] > 0) count++;
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Approximate heap footprint, used by the cache's memory budget
+     */
+    long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long rowBytes = (long) counterpart.length * Integer.BYTES + (long) receivedAt.length * Long.BYTES
+                + 3L * (rows / 8 + 8) + messageIndex.estimatedBytes();
+            return rowBytes + (long) received.length * 4 * Long.BYTES + dictionaryBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private List<Object[]> rank(IntToLongFunction count, int limit, long afterCount, String afterSender, boolean withName) {
+        Comparator<Integer> order = Comparator
+            .comparingLong((Integer id) -> count.applyAsLong(id)).reversed()
+            .thenComparing(id -> addresses.get(id));
+        List<Integer> ids = topK(limit, order, id -> {
+            long c = count.applyAsLong(id);
+            return c > 0 && (c < afterCount || c == afterCount && addresses.get(id).compareTo(afterSender) > 0);
+        });
+
+        List<Object[]> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            result.add(withName
+                ? new Object[]{addresses.get(id), names.get(id), count.applyAsLong(id)}
+                : new Object[]{addresses.get(id), count.applyAsLong(id)});
+        }
+        return result;
+    }
+
+    /**
+     * Best k address ids under the given order, using a bounded heap whose head is the current worst
+     */
+    private List<Integer> topK(int k, Comparator<Integer> order, IntPredicate include) {
+        if (k <= 0) return List.of();
+        PriorityQueue<Integer> heap = new PriorityQueue<>(k, order.reversed());
+        for (int id = 0; id < addresses.size(); id++) {
+            if (!include.test(id)) continue;
+            if (heap.size() < k) {
+                heap.add(id);
+            } else if (order.compare(id, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(id);
+            }
+        }
+        List<Integer> result = new ArrayList<>(heap);
+        result.sort(order);
+        return result;
+    }
+
+    private int addressId(String address) {
+        Integer id = addressIds.get(address);
+        if (id != null) return id;
+
+        int newId = addresses.size();
+        addressIds.put(address, newId);
+        addresses.add(address);
+        names.add("");
+        // String, map entry and boxed id
+        dictionaryBytes += 40 + 2L * address.length() + 64;
+        if (newId >= received.length) {
+            int capacity = received.length * 2;
+            received = Arrays.copyOf(received, capacity);
+            unread = Arrays.copyOf(unread, capacity);
+            sentTo = Arrays.copyOf(sentTo, capacity);
+            replied = Arrays.copyOf(replied, capacity);
+        }
+        return newId;
+    }
+
+    private void ensureRowCapacity(int needed) {
+        if (needed <= counterpart.length) return;
+        int capacity = Math.max(needed, counterpart.length * 2);
+        counterpart = Arrays.copyOf(counterpart, capacity);
+        receivedAt = Arrays.copyOf(receivedAt, capacity);
+    }
+
+    /**
+     * 64-bit FNV-1a of the message ID; collisions are negligible at mailbox scale
+     */
+    private static long hash(String messageId) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : messageId.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Open-addressing long -> int map on primitive arrays (no boxing per email)
+     */
+    private static final class MessageIndex {
+
+        private static final long EMPTY = 0;
+
+        private long[] keys = new long[INITIAL_ROWS * 2];
+        private int[] values = new int[INITIAL_ROWS * 2];
+        private int size;
+
+        int get(long key) {
+            key = key == EMPTY ? 1 : key;
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == EMPTY) return -1;
+                if (keys[slot] == key) return values[slot];
+            }
+        }
+
+        void put(long key, int value) {
+            key = key == EMPTY ? 1 : key;
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+                if (keys[slot] == EMPTY) {
+                    keys[slot] = key;
+                    values[slot] = value;
+                    size++;
+                    return;
+                }
+                if (keys[slot] == key) {
+                    values[slot] = value;
+                    return;
+                }
+            }
+        }
+
+        long estimatedBytes() {
+            return (long) keys.length * (Long.BYTES + Integer.BYTES);
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int mix(long key) {
+            return (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        }
+    }
+}
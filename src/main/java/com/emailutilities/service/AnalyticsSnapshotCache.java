@@ -0,0 +1,202 @@
+package com.emailutilities.service;
+
+import com.emailutilities.repository.EmailMetadataRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * LRU cache of {@link AnalyticsSnapshot}s, one per user (keyed by the user's account set).
+ *
+ * A snapshot is built from email_metadata on first access and then kept current from committed
+ * ingest events, so reads never touch the database. Least recently used snapshots are evicted
+ * once the estimated footprint of all snapshots exceeds the memory budget.
+ */
+@Service
+public class AnalyticsSnapshotCache {
+
+    private final EmailMetadataRepository metadataRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${analytics.snapshot.enabled:true}")
+    private boolean enabled;
+
+    @Value("${analytics.snapshot.memory-budget-mb:256}")
+    private long memoryBudgetMb;
+
+    // How long accounts that did not fit stay on the database path before a build is tried again
+    @Value("${analytics.snapshot.too-large-retry-minutes:60}")
+    private long tooLargeRetryMinutes;
+
+    // Access-ordered, so iteration starts at the least recently used entry
+    private final LinkedHashMap<List<Long>, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    public AnalyticsSnapshotCache(EmailMetadataRepository metadataRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.metadataRepository = metadataRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * Snapshot covering exactly these accounts, building it on first use. Empty when snapshots are
+     * disabled or the accounts alone would not fit in the memory budget; callers then query the DB.
+     */
+    public Optional<AnalyticsSnapshot> forAccounts(List<Long> accountIds) {
+        if (!enabled || accountIds.isEmpty()) {
+            return Optional.empty();
+        }
+
+        List<Long> key = accountIds.stream().sorted().distinct().collect(Collectors.toList());
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.computeIfAbsent(key, k -> new Entry());
+        }
+
+        // One builder per key; concurrent callers for the same user wait for it
+        synchronized (entry) {
+            if (entry.snapshot == null && System.currentTimeMillis() >= entry.retryAfter) {
+                build(key, entry);
+            }
+        }
+        if (entry.snapshot == null) {
+            return Optional.empty();
+        }
+
+        evictOverBudget();
+        return Optional.of(entry.snapshot);
+    }
+
+    /**
+     * Apply a committed ingest page to every snapshot that covers its account
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMetadataIngested(MetadataIngestedEvent event) {
+        List<Entry> affected = new ArrayList<>();
+        synchronized (entries) {
+            for (Map.Entry<List<Long>, Entry> cached : entries.entrySet()) {
+                if (cached.getKey().contains(event.accountId())) {
+                    affected.add(cached.getValue());
+                }
+            }
+        }
+
+        for (Entry entry : affected) {
+            synchronized (entry.pending) {
+                // Still building: replay once the build finishes (adds are idempotent per message ID)
+                if (entry.building) {
+                    entry.pending.add(event);
+                    continue;
+                }
+            }
+            AnalyticsSnapshot snapshot = entry.snapshot;
+            if (snapshot != null) {
+                apply(snapshot, event);
+                entry.bytes = snapshot.estimatedBytes();
+            }
+        }
+    }
+
+    /**
+     * Drop every snapshot that includes the account, e.g. after it is removed
+     */
+    public void invalidateAccount(Long accountId) {
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.contains(accountId));
+        }
+    }
+
+    private void build(List<Long> key, Entry entry) {
+        synchronized (entry.pending) {
+            entry.building = true;
+        }
+
+        AnalyticsSnapshot snapshot = new AnalyticsSnapshot();
+        long budgetBytes = memoryBudgetMb * 1024 * 1024;
+        try {
+            boolean fits = Boolean.TRUE.equals(readOnlyTransaction.execute(status -> {
+                try (Stream<Object[]> rows = metadataRepository.streamSnapshotRows(key)) {
+                    Iterator<Object[]> it = rows.iterator();
+                    for (int n = 1; it.hasNext(); n++) {
+                        Object[] row = it.next();
+                        snapshot.add((String) row[0], (String) row[1], (String) row[2], (String) row[3],
+                            (LocalDateTime) row[4], (Boolean) row[5], (Boolean) row[6], (Boolean) row[7]);
+                        // Give up early on mailboxes that could never fit
+                        if (n % 50_000 == 0 && snapshot.estimatedBytes() > budgetBytes) {
+                            return false;
+                        }
+                    }
+                }
+                return snapshot.estimatedBytes() <= budgetBytes;
+            }));
+
+            if (!fits) {
+                // Budget or mailbox may change (deleted mail, other snapshots evicted), so retry later
+                entry.retryAfter = System.currentTimeMillis() + tooLargeRetryMinutes * 60_000;
+                System.out.println("Analytics snapshot for accounts " + key + " exceeds the memory budget; using the database");
+                return;
+            }
+
+            synchronized (entry.pending) {
+                for (MetadataIngestedEvent event : entry.pending) {
+                    apply(snapshot, event);
+                }
+                entry.pending.clear();
+                entry.snapshot = snapshot;
+                entry.bytes = snapshot.estimatedBytes();
+            }
+        } finally {
+            synchronized (entry.pending) {
+                entry.building = false;
+                entry.pending.clear();
+            }
+        }
+    }
+
+    private void apply(AnalyticsSnapshot snapshot, MetadataIngestedEvent event) {
+        event.inserted().forEach(snapshot::add);
+        event.markedRead().forEach(messageId -> snapshot.setRead(messageId, true));
+        event.markedUnread().forEach(messageId -> snapshot.setRead(messageId, false));
+    }
+
+    private void evictOverBudget() {
+        long budgetBytes = memoryBudgetMb * 1024 * 1024;
+        synchronized (entries) {
+            long total = 0;
+            for (Entry entry : entries.values()) {
+                total += entry.bytes;
+            }
+
+            // Least recently used first; the last entry is the one just returned and always survives
+            Iterator<Entry> it = entries.values().iterator();
+            while (total > budgetBytes && it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.snapshot != null && it.hasNext()) {
+                    total -= entry.bytes;
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private static final class Entry {
+        volatile AnalyticsSnapshot snapshot;
+        volatile long retryAfter;  // Set when the accounts did not fit in the memory budget
+        volatile long bytes;
+        boolean building;
+        final List<MetadataIngestedEvent> pending = new ArrayList<>();
+    }
+}
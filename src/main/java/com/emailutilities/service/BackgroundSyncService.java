@@ -2,6 +2,7 @@ package com.emailutilities.service;
 
 import com.emailutilities.entity.*;
 import com.emailutilities.repository.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
@@ -9,11 +10,6 @@ import java.time.LocalDateTime;
 import java.time.Duration;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.HashSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @Service
 public class BackgroundSyncService {
@@ -21,32 +17,50 @@ public class BackgroundSyncService {
     private final SyncJobRepository syncJobRepository;
     private final NotificationRepository notificationRepository;
     private final EmailAccountRepository accountRepository;
-    private final EmailMetadataRepository metadataRepository;
+    private final MetadataIngestService ingestService;
+    private final MetadataPartitionService partitionService;
     private final GmailService gmailService;
     private final OutlookService outlookService;
+    private final SyncCadencePolicy cadencePolicy;
+    private final MetricsService metricsService;
+    private final SyncProgressPublisher progressPublisher;
 
-    private static final Pattern EMAIL_PATTERN = Pattern.compile("<([^>]+)>|([\\w.+-]+@[\\w.-]+)");
+    @Value("${sync.max-pages:50}")
+    private int maxPages;
+
+    // Pause between pages to stay clear of provider rate limits
+    @Value("${sync.page-delay-ms:100}")
+    private long pageDelayMs;
 
     public BackgroundSyncService(SyncJobRepository syncJobRepository,
                                  NotificationRepository notificationRepository,
                                  EmailAccountRepository accountRepository,
-                                 EmailMetadataRepository metadataRepository,
+                                 MetadataIngestService ingestService,
+                                 MetadataPartitionService partitionService,
                                  GmailService gmailService,
-                                 OutlookService outlookService) {
+                                 OutlookService outlookService,
+                                 SyncCadencePolicy cadencePolicy,
+                                 MetricsService metricsService,
+                                 SyncProgressPublisher progressPublisher) {
         this.syncJobRepository = syncJobRepository;
         this.notificationRepository = notificationRepository;
         this.accountRepository = accountRepository;
-        this.metadataRepository = metadataRepository;
+        this.ingestService = ingestService;
+        this.partitionService = partitionService;
         this.gmailService = gmailService;
         this.outlookService = outlookService;
+        this.cadencePolicy = cadencePolicy;
+        this.metricsService = metricsService;
+        this.progressPublisher = progressPublisher;
     }
 
     /**
      * Start a new sync job
      */
     public SyncJob startSyncJob(Long userId, SyncJob.JobType type) {
-        // Check if there's already a running job
-        if (syncJobRepository.existsByUserIdAndStatus(userId, SyncJob.JobStatus.RUNNING)) {
+        // A pending job is about to run, so it blocks a new one just like a running job
+        if (syncJobRepository.existsByUserIdAndStatusIn(userId,
+                List.of(SyncJob.JobStatus.PENDING, SyncJob.JobStatus.RUNNING))) {
             throw new RuntimeException("A sync job is already running");
         }
 
@@ -62,7 +76,7 @@ public class BackgroundSyncService {
         job.setTotalEmailsSkipped(0);
         job.setStatusMessage("Starting sync...");
 
-        syncJobRepository.save(job);
+        saveAndPublish(job);
 
         // Start async processing
         processJobAsync(job.getId(), userId);
@@ -70,6 +84,32 @@ public class BackgroundSyncService {
         return job;
     }
 
+    /**
+     * Create a sync job for a single account. The caller is responsible for running it
+     * (see {@link #processJobAsync}) so that it can choose the executing thread.
+     */
+    public SyncJob createAccountSyncJob(Long userId, Long accountId, SyncJob.JobType type, boolean scheduled) {
+        if (syncJobRepository.existsByUserIdAndStatusIn(userId,
+                List.of(SyncJob.JobStatus.PENDING, SyncJob.JobStatus.RUNNING))) {
+            throw new RuntimeException("A sync job is already running");
+        }
+
+        EmailAccount account = accountRepository.findById(accountId)
+            .orElseThrow(() -> new RuntimeException("Account not found"));
+
+        SyncJob job = new SyncJob();
+        job.setUserId(userId);
+        job.setAccountId(accountId);
+        job.setScheduled(scheduled);
+        job.setType(type);
+        job.setStatus(SyncJob.JobStatus.PENDING);
+        job.setTotalAccounts(1);
+        job.setCurrentAccount(account.getEmailAddress());
+        job.setStatusMessage("Queued sync for " + account.getEmailAddress());
+
+        return saveAndPublish(job);
+    }
+
     /**
      * Process the sync job asynchronously
      */
@@ -81,9 +121,11 @@ public class BackgroundSyncService {
         try {
             job.setStatus(SyncJob.JobStatus.RUNNING);
             job.setStatusMessage("Fetching accounts...");
-            syncJobRepository.save(job);
+            saveAndPublish(job);
 
-            List<EmailAccount> accounts = accountRepository.findByUserId(userId);
+            List<EmailAccount> accounts = job.getAccountId() != null
+                ? accountRepository.findById(job.getAccountId()).map(List::of).orElse(List.of())
+                : accountRepository.findByUserId(userId);
             job.setTotalAccounts(accounts.size());
 
             int totalSynced = 0;
@@ -101,7 +143,7 @@ public class BackgroundSyncService {
                 job.setCurrentAccount(account.getEmailAddress());
                 job.setStatusMessage("Syncing " + account.getEmailAddress() + "...");
                 job.setProcessedAccounts(i);
-                syncJobRepository.save(job);
+                saveAndPublish(job);
 
                 try {
                     Map<String, Integer> result = syncAccountEmails(account, job);
@@ -112,9 +154,12 @@ public class BackgroundSyncService {
                     job = syncJobRepository.findById(jobId).orElse(job);
                     job.setTotalEmailsSynced(totalSynced);
                     job.setTotalEmailsSkipped(totalSkipped);
-                    syncJobRepository.save(job);
+                    saveAndPublish(job);
+
+                    rescheduleAccount(account.getId(), result.get("synced"), false);
                 } catch (Exception e) {
                     System.err.println("Error syncing " + account.getEmailAddress() + ": " + e.getMessage());
+                    rescheduleAccount(account.getId(), 0, true);
                     // Continue with other accounts
                 }
             }
@@ -125,17 +170,19 @@ public class BackgroundSyncService {
             job.setCompletedAt(LocalDateTime.now());
             job.setStatusMessage("Sync completed successfully");
             job.setCurrentAccount(null);
-            syncJobRepository.save(job);
+            saveAndPublish(job);
 
-            // Send notification
-            createNotification(userId, job);
+            // Background syncs run all day; only tell the user about the ones they asked for
+            if (!job.isScheduled()) {
+                createNotification(userId, job);
+            }
 
         } catch (Exception e) {
             job.setStatus(SyncJob.JobStatus.FAILED);
             job.setErrorMessage(e.getMessage());
             job.setCompletedAt(LocalDateTime.now());
             job.setStatusMessage("Sync failed: " + e.getMessage());
-            syncJobRepository.save(job);
+            saveAndPublish(job);
 
             // Send failure notification
             createNotification(userId, job);
@@ -149,12 +196,14 @@ public class BackgroundSyncService {
         int synced = 0;
         int skipped = 0;
         String pageToken = null;
-        int maxPages = 50; // Allow more pages for background sync
         int page = 0;
         long startTime = System.currentTimeMillis();
         int emailsProcessedThisAccount = 0;
 
-        String accountEmail = account.getEmailAddress().toLowerCase();
+        String provider = account.getProvider().name().toLowerCase();
+
+        // Outside the page transactions, so partition DDL never waits on an open ingest
+        partitionService.ensureAccountPartition(account.getId());
 
         while (page < maxPages) {
             // Check if job was cancelled
@@ -163,6 +212,7 @@ public class BackgroundSyncService {
                 break;
             }
 
+            long pageStart = System.nanoTime();
             Map<String, Object> result;
 
             if (account.getProvider() == EmailAccount.EmailProvider.GMAIL) {
@@ -181,48 +231,15 @@ public class BackgroundSyncService {
                 break;
             }
 
-            // Batch check for existing message IDs (more efficient)
-            List<String> messageIds = emails.stream()
-                .map(e -> (String) e.get("id"))
-                .collect(Collectors.toList());
-            Set<String> existingIds = new HashSet<>(
-                metadataRepository.findExistingMessageIds(messageIds)
-            );
-
-            for (Map<String, Object> email : emails) {
-                String messageId = (String) email.get("id");
-                emailsProcessedThisAccount++;
-
-                // Skip if already synced (using batch result)
-                if (existingIds.contains(messageId)) {
-                    skipped++;
-                    continue;
-                }
-
-                EmailMetadata metadata = new EmailMetadata();
-                metadata.setAccountId(account.getId());
-                metadata.setMessageId(messageId);
-                metadata.setThreadId((String) email.get("threadId"));
-
-                String from = (String) email.getOrDefault("from", "");
-                String[] senderParts = parseEmailAddress(from);
-                metadata.setSenderEmail(senderParts[0].toLowerCase());
-                metadata.setSenderName(senderParts[1]);
+            // Dedupe, insert and sender rollup update happen in one transaction
+            MetadataIngestService.IngestResult ingested = ingestService.ingestPage(account, emails);
+            emailsProcessedThisAccount += emails.size();
+            int skippedThisPage = ingested.skipped();
+            skipped += skippedThisPage;
 
-                String to = (String) email.getOrDefault("to", "");
-                String[] recipientParts = parseEmailAddress(to);
-                metadata.setRecipientEmail(recipientParts[0].toLowerCase());
-
-                metadata.setSubject((String) email.getOrDefault("subject", ""));
-                metadata.setReceivedAt(parseDate((String) email.get("date")));
-
-                Object isUnread = email.get("isUnread");
-                metadata.setRead(isUnread == null || !(Boolean) isUnread);
-                metadata.setFromMe(metadata.getSenderEmail().equalsIgnoreCase(accountEmail));
-
-                metadataRepository.save(metadata);
-                synced++;
-            }
+            int syncedThisPage = ingested.synced();
+            synced += syncedThisPage;
+            metricsService.recordSyncPage(provider, System.nanoTime() - pageStart, syncedThisPage, skippedThisPage);
 
             // Update job progress after each page
             page++;
@@ -243,16 +260,24 @@ public class BackgroundSyncService {
                 job.setEstimatedSecondsRemaining((int)(remaining / emailsPerSecond));
             }
 
-            syncJobRepository.save(job);
+            saveAndPublish(job);
 
             pageToken = (String) result.get("nextPageToken");
             if (pageToken == null) {
                 break;
             }
 
+            // Providers list newest first, so a page with nothing new means we've caught up. Keep
+            // paging while pages still carry read/unread changes; read-state changes on mail older
+            // than the first unchanged page are only reconciled by a full sync.
+            if (job.getType() == SyncJob.JobType.INCREMENTAL_SYNC && syncedThisPage == 0
+                    && ingested.readFlagsChanged() == 0) {
+                break;
+            }
+
             // Small delay to avoid rate limiting
             try {
-                Thread.sleep(100);
+                Thread.sleep(pageDelayMs);
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 break;
@@ -262,6 +287,29 @@ public class BackgroundSyncService {
         return Map.of("synced", synced, "skipped", skipped);
     }
 
+    /**
+     * Persist job progress and push it to SSE subscribers
+     */
+    private SyncJob saveAndPublish(SyncJob job) {
+        SyncJob saved = syncJobRepository.save(job);
+        progressPublisher.publish(saved);
+        return saved;
+    }
+
+    /**
+     * Let the cadence policy pick the account's next background sync
+     */
+    private void rescheduleAccount(Long accountId, int newEmails, boolean failed) {
+        accountRepository.findById(accountId).ifPresent(account -> {
+            if (failed) {
+                cadencePolicy.recordSyncFailure(account);
+            } else {
+                cadencePolicy.recordSyncResult(account, newEmails);
+            }
+            accountRepository.updateSyncSchedule(accountId, account.getSyncIntervalMinutes(), account.getNextSyncAt());
+        });
+    }
+
     /**
      * Create a notification for job completion
      */
@@ -298,48 +346,7 @@ public class BackgroundSyncService {
             job.setStatus(SyncJob.JobStatus.CANCELLED);
             job.setCompletedAt(LocalDateTime.now());
             job.setStatusMessage("Cancelled by user");
-            syncJobRepository.save(job);
-        }
-    }
-
-    private String[] parseEmailAddress(String fromHeader) {
-        if (fromHeader == null || fromHeader.isEmpty()) {
-            return new String[]{"", ""};
-        }
-
-        Matcher matcher = EMAIL_PATTERN.matcher(fromHeader);
-        String email = "";
-        if (matcher.find()) {
-            email = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
-        }
-
-        String name = fromHeader.replaceAll("<[^>]+>", "").trim();
-        name = name.replaceAll("\"", "").trim();
-
-        if (email.isEmpty()) {
-            email = fromHeader.trim();
-        }
-
-        return new String[]{email, name};
-    }
-
-    private LocalDateTime parseDate(String dateStr) {
-        if (dateStr == null || dateStr.isEmpty()) {
-            return LocalDateTime.now();
-        }
-
-        try {
-            if (dateStr.contains("T")) {
-                return LocalDateTime.parse(dateStr.substring(0, 19));
-            }
-
-            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern(
-                "EEE, d MMM yyyy HH:mm:ss Z", java.util.Locale.ENGLISH
-            );
-            java.time.ZonedDateTime zdt = java.time.ZonedDateTime.parse(dateStr, formatter);
-            return zdt.toLocalDateTime();
-        } catch (Exception e) {
-            return LocalDateTime.now();
+            saveAndPublish(job);
         }
     }
 }
@@ -0,0 +1,32 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.BulkJob;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+
+/**
+ * Pushes bulk job progress to Server-Sent Events subscribers, the same way as sync progress
+ * (see {@link SseProgressPublisher}). Status maps are {@link BulkJobService}'s.
+ */
+@Service
+public class BulkJobProgressPublisher extends SseProgressPublisher {
+
+    public BulkJobProgressPublisher(@Value("${bulk.progress.sse-timeout-ms:1800000}") long sseTimeoutMs) {
+        super(sseTimeoutMs);
+    }
+
+    @Override
+    protected boolean isFinished(Map<String, Object> status) {
+        Object jobStatus = status.get("status");
+        return jobStatus != BulkJob.JobStatus.PENDING && jobStatus != BulkJob.JobStatus.RUNNING;
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${bulk.progress.heartbeat-ms:15000}")
+    public void heartbeat() {
+        super.heartbeat();
+    }
+}
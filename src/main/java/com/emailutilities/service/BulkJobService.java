@@ -0,0 +1,783 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.BulkJob;
+import com.emailutilities.entity.BulkJobItem;
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.entity.Notification;
+import com.emailutilities.entity.SegregationHistory;
+import com.emailutilities.entity.Sender;
+import com.emailutilities.repository.BulkJobItemRepository;
+import com.emailutilities.repository.BulkJobRepository;
+import com.emailutilities.repository.EmailAccountRepository;
+import com.emailutilities.repository.EmailMetadataRepository;
+import com.emailutilities.repository.NotificationRepository;
+import com.emailutilities.repository.SegregationHistoryRepository;
+import com.emailutilities.repository.SenderRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Runs bulk moves and segregations in the background instead of inside the HTTP request.
+ *
+ * A job is persisted with one item per account and sender. Accounts are worked in parallel, each
+ * account's senders one after another so a mailbox never sees concurrent moves, and every item
+ * records its own progress. Jobs still running at shutdown are picked up again at startup. A
+ * resumed Gmail item continues after the last chunk of synced messages it finished labeling
+ * (labeling is idempotent, so only an interrupted chunk is sent, and counted, again); Outlook
+ * moves only find mail still outside the target.
+ */
+@Service
+public class BulkJobService {
+
+    private static final String SEGREGATED_ROOT = "Segregated";
+
+    // Minimum gap between job saves/publishes while emails are being moved
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private static final List<BulkJob.JobStatus> ACTIVE_STATUSES =
+        List.of(BulkJob.JobStatus.PENDING, BulkJob.JobStatus.RUNNING);
+
+    private final BulkJobRepository jobRepository;
+    private final BulkJobItemRepository itemRepository;
+    private final EmailAccountRepository accountRepository;
+    private final EmailMetadataRepository metadataRepository;
+    private final SenderRepository senderRepository;
+    private final SegregationHistoryRepository segregationHistoryRepository;
+    private final NotificationRepository notificationRepository;
+    private final GmailService gmailService;
+    private final OutlookService outlookService;
+    private final BulkJobProgressPublisher progressPublisher;
+    private final ExecutorService executor;
+
+    // Jobs running in this process, by job ID
+    private final Map<Long, ActiveJob> activeJobs = new ConcurrentHashMap<>();
+
+    private volatile boolean shuttingDown;
+
+    // Label Gmail messages by their synced IDs before falling back to a search
+    @Value("${bulk.gmail.local-message-ids:true}")
+    private boolean gmailLocalMessageIds;
+
+    public BulkJobService(BulkJobRepository jobRepository,
+                          BulkJobItemRepository itemRepository,
+                          EmailAccountRepository accountRepository,
+                          EmailMetadataRepository metadataRepository,
+                          SenderRepository senderRepository,
+                          SegregationHistoryRepository segregationHistoryRepository,
+                          NotificationRepository notificationRepository,
+                          GmailService gmailService,
+                          OutlookService outlookService,
+                          BulkJobProgressPublisher progressPublisher,
+                          @Value("${bulk.workers:4}") int workers) {
+        this.jobRepository = jobRepository;
+        this.itemRepository = itemRepository;
+        this.accountRepository = accountRepository;
+        this.metadataRepository = metadataRepository;
+        this.senderRepository = senderRepository;
+        this.segregationHistoryRepository = segregationHistoryRepository;
+        this.notificationRepository = notificationRepository;
+        this.gmailService = gmailService;
+        this.outlookService = outlookService;
+        this.progressPublisher = progressPublisher;
+        this.executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Running items are left RUNNING and resumed at the next startup
+        shuttingDown = true;
+        executor.shutdownNow();
+    }
+
+    /**
+     * Start moving the senders' emails into folderId, or into newFolderName (created where missing)
+     * in every account
+     */
+    public BulkJob startMove(Long userId, List<String> senderEmails, String folderId, String newFolderName) {
+        boolean newFolder = newFolderName != null && !newFolderName.isBlank();
+        if (!newFolder && (folderId == null || folderId.isBlank())) {
+            throw new IllegalArgumentException("A folderId or newFolderName is required");
+        }
+        return createJob(userId, BulkJob.JobType.MOVE, senderEmails,
+            newFolder ? null : folderId, newFolder ? newFolderName.trim() : null);
+    }
+
+    /**
+     * Start moving each sender's emails into Segregated/&lt;sender&gt; in every account
+     */
+    public BulkJob startSegregate(Long userId, List<String> senderEmails) {
+        return createJob(userId, BulkJob.JobType.SEGREGATE, senderEmails, null, null);
+    }
+
+    /**
+     * Ask a running job to stop after the current page. Finished senders stay moved and the job
+     * can be resumed later.
+     */
+    public void cancelJob(Long userId, Long jobId) {
+        BulkJob job = findOwnedJob(userId, jobId);
+        ActiveJob active = activeJobs.get(jobId);
+        if (active != null) {
+            active.cancelled = true;
+            synchronized (active) {
+                active.job.setStatusMessage("Cancelling...");
+                saveAndPublish(active);
+            }
+            return;
+        }
+        if (!ACTIVE_STATUSES.contains(job.getStatus())) {
+            throw new IllegalStateException("Job is not running");
+        }
+
+        // Persisted as running but not picked up by this process yet
+        for (BulkJobItem item : itemRepository.findByJobIdOrderById(jobId)) {
+            if (!isFinished(item.getStatus())) {
+                item.setStatus(BulkJobItem.ItemStatus.CANCELLED);
+                itemRepository.save(item);
+            }
+        }
+        job.setStatus(BulkJob.JobStatus.CANCELLED);
+        job.setCompletedAt(LocalDateTime.now());
+        job.setStatusMessage("Cancelled by user");
+        jobRepository.save(job);
+        progressPublisher.publish(userId, jobId, toStatusMap(job, itemRepository.findByJobIdOrderById(jobId)));
+    }
+
+    /**
+     * Run a cancelled or failed job again, retrying every sender that did not finish
+     */
+    public BulkJob resumeJob(Long userId, Long jobId) {
+        BulkJob job = findOwnedJob(userId, jobId);
+        if (activeJobs.containsKey(jobId) || ACTIVE_STATUSES.contains(job.getStatus())) {
+            throw new IllegalStateException("Job is already running");
+        }
+        if (job.getStatus() == BulkJob.JobStatus.COMPLETED && job.getFailedItems() == 0) {
+            throw new IllegalStateException("Job has already completed");
+        }
+        if (jobRepository.existsByUserIdAndStatusIn(userId, ACTIVE_STATUSES)) {
+            throw new IllegalStateException("A bulk job is already running");
+        }
+
+        List<BulkJobItem> items = itemRepository.findByJobIdOrderById(jobId);
+        for (BulkJobItem item : items) {
+            if (item.getStatus() == BulkJobItem.ItemStatus.FAILED || item.getStatus() == BulkJobItem.ItemStatus.CANCELLED) {
+                item.setStatus(BulkJobItem.ItemStatus.PENDING);
+                item.setError(null);
+                item.setCompletedAt(null);
+                itemRepository.save(item);
+            }
+        }
+        launch(job, items);
+        return job;
+    }
+
+    /**
+     * Pick up jobs that were running when the application last stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedJobs() {
+        for (BulkJob job : jobRepository.findByStatusIn(ACTIVE_STATUSES)) {
+            try {
+                System.out.println("Resuming bulk job " + job.getId() + " for user " + job.getUserId());
+                launch(job, itemRepository.findByJobIdOrderById(job.getId()));
+            } catch (Exception e) {
+                System.err.println("Failed to resume bulk job " + job.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Status of one of the user's jobs, with per-account and per-sender progress
+     */
+    public Map<String, Object> getJobStatus(Long userId, Long jobId) {
+        ActiveJob active = activeJobs.get(jobId);
+        if (active != null && active.job.getUserId().equals(userId)) {
+            synchronized (active) {
+                return toStatusMap(active.job, active.items);
+            }
+        }
+        BulkJob job = findOwnedJob(userId, jobId);
+        return toStatusMap(job, itemRepository.findByJobIdOrderById(jobId));
+    }
+
+    /**
+     * Status of the user's most recent job, if any
+     */
+    public Optional<Map<String, Object>> getLatestStatus(Long userId) {
+        return jobRepository.findFirstByUserIdOrderByStartedAtDesc(userId)
+            .map(job -> getJobStatus(userId, job.getId()));
+    }
+
+    public SseEmitter subscribeJob(Long userId, Long jobId, String lastEventId) {
+        findOwnedJob(userId, jobId);
+        return progressPublisher.subscribeJob(jobId, () -> getJobStatus(userId, jobId), lastEventId);
+    }
+
+    public SseEmitter subscribeUser(Long userId, String lastEventId) {
+        return progressPublisher.subscribeUser(userId, () -> getLatestStatus(userId).orElse(null), lastEventId);
+    }
+
+    private BulkJob createJob(Long userId, BulkJob.JobType type, List<String> senderEmails,
+                              String folderId, String newFolderName) {
+        if (jobRepository.existsByUserIdAndStatusIn(userId, ACTIVE_STATUSES)) {
+            throw new IllegalStateException("A bulk job is already running");
+        }
+
+        Set<String> senders = new LinkedHashSet<>();
+        if (senderEmails != null) {
+            for (String senderEmail : senderEmails) {
+                if (senderEmail != null && !senderEmail.isBlank()) {
+                    senders.add(senderEmail.trim());
+                }
+            }
+        }
+        if (senders.isEmpty()) {
+            throw new IllegalArgumentException("No senders given");
+        }
+
+        List<EmailAccount> accounts = accountRepository.findByUserId(userId).stream()
+            .filter(account -> account.getProvider() == EmailAccount.EmailProvider.GMAIL
+                || account.getProvider() == EmailAccount.EmailProvider.OUTLOOK)
+            .collect(Collectors.toList());
+        if (accounts.isEmpty()) {
+            throw new IllegalArgumentException("No Gmail or Outlook accounts");
+        }
+
+        BulkJob job = new BulkJob();
+        job.setUserId(userId);
+        job.setType(type);
+        job.setStatus(BulkJob.JobStatus.PENDING);
+        job.setFolderId(folderId);
+        job.setNewFolderName(newFolderName);
+        job.setTotalItems(accounts.size() * senders.size());
+        job.setStatusMessage("Queued " + senders.size() + " senders in " + accounts.size() + " accounts");
+        jobRepository.save(job);
+
+        List<BulkJobItem> items = new ArrayList<>();
+        for (EmailAccount account : accounts) {
+            for (String senderEmail : senders) {
+                BulkJobItem item = new BulkJobItem();
+                item.setJobId(job.getId());
+                item.setAccountId(account.getId());
+                item.setAccountEmail(account.getEmailAddress());
+                item.setSenderEmail(senderEmail);
+                item.setStatus(BulkJobItem.ItemStatus.PENDING);
+                items.add(item);
+            }
+        }
+        itemRepository.saveAll(items);
+
+        launch(job, items);
+        return job;
+    }
+
+    /**
+     * Run the job's unfinished items: one task per account on the bulk executor
+     */
+    private void launch(BulkJob job, List<BulkJobItem> items) {
+        ActiveJob active = new ActiveJob(job, items);
+        if (activeJobs.putIfAbsent(job.getId(), active) != null) {
+            throw new IllegalStateException("Job is already running");
+        }
+
+        synchronized (active) {
+            for (BulkJobItem item : items) {
+                // Interrupted mid-sender by a restart
+                if (item.getStatus() == BulkJobItem.ItemStatus.RUNNING) {
+                    item.setStatus(BulkJobItem.ItemStatus.PENDING);
+                    itemRepository.save(item);
+                }
+            }
+            job.setStatus(BulkJob.JobStatus.RUNNING);
+            job.setCompletedAt(null);
+            job.setErrorMessage(null);
+            recount(active);
+            job.setStatusMessage(job.getType() == BulkJob.JobType.SEGREGATE ? "Segregating emails..." : "Moving emails...");
+            saveAndPublish(active);
+        }
+
+        Map<Long, List<BulkJobItem>> byAccount = items.stream()
+            .filter(item -> item.getStatus() == BulkJobItem.ItemStatus.PENDING)
+            .collect(Collectors.groupingBy(BulkJobItem::getAccountId, LinkedHashMap::new, Collectors.toList()));
+
+        CompletableFuture<?>[] tasks = byAccount.entrySet().stream()
+            .map(entry -> CompletableFuture.runAsync(() -> runAccount(active, entry.getKey(), entry.getValue()), executor))
+            .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(tasks).whenComplete((ignored, error) -> finishJob(active, error));
+    }
+
+    private void runAccount(ActiveJob active, Long accountId, List<BulkJobItem> items) {
+        EmailAccount account = accountRepository.findById(accountId).orElse(null);
+        BulkJob.JobType type = active.job.getType();
+        String rootFolderId = null;  // SEGREGATE: the Segregated folder/label
+        String moveFolderId = null;  // MOVE: the target, resolved once per account
+
+        for (BulkJobItem item : items) {
+            if (isStopped(active)) {
+                break;
+            }
+            startItem(active, item);
+            try {
+                if (account == null) {
+                    throw new IllegalStateException("Account not found");
+                }
+
+                String targetId = item.getTargetFolderId();
+                if (targetId == null) {
+                    if (type == BulkJob.JobType.MOVE) {
+                        if (moveFolderId == null) {
+                            moveFolderId = resolveMoveFolder(active.job, account);
+                        }
+                        targetId = moveFolderId;
+                    } else {
+                        if (rootFolderId == null) {
+                            rootFolderId = getOrCreateFolder(account, SEGREGATED_ROOT, null);
+                        }
+                        String folderName = sanitizeFolderName(item.getSenderEmail());
+                        targetId = account.getProvider() == EmailAccount.EmailProvider.GMAIL
+                            ? gmailService.getOrCreateLabel(account.getId(), SEGREGATED_ROOT + "/" + folderName)
+                            : outlookService.getOrCreateFolder(account.getId(), folderName, rootFolderId);
+                    }
+                    synchronized (active) {
+                        item.setTargetFolderId(targetId);
+                    }
+                }
+
+                MoveProgress progress = new MoveProgress() {
+                    @Override
+                    public void moved(int count) {
+                        recordMoved(active, item, count);
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return isStopped(active);
+                    }
+                };
+                if (account.getProvider() == EmailAccount.EmailProvider.GMAIL) {
+                    moveGmailItem(active, account, item, targetId, progress);
+                } else {
+                    outlookService.moveEmailsBySenders(account.getId(), List.of(item.getSenderEmail()), targetId, progress);
+                }
+
+                if (shuttingDown) {
+                    break;
+                }
+                finishItem(active, item, active.cancelled ? BulkJobItem.ItemStatus.CANCELLED : BulkJobItem.ItemStatus.DONE, null);
+            } catch (Exception e) {
+                if (shuttingDown) {
+                    break;
+                }
+                System.err.println("Bulk job " + active.job.getId() + ": moving " + item.getSenderEmail()
+                    + " in " + item.getAccountEmail() + " failed: " + e.getMessage());
+                finishItem(active, item, BulkJobItem.ItemStatus.FAILED, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Label the sender's synced messages by ID, 1000 per batchModify call, then run the live search
+     * as a verification pass. It only finds what the local store lacks (mail newer than the last
+     * sync), so it is usually a single empty search. The item's cursor advances after each chunk;
+     * messages that already carry the label are sent anyway, since batchModify leaves them as they
+     * are and looking them up first would cost a live search per item.
+     */
+    private void moveGmailItem(ActiveJob active, EmailAccount account, BulkJobItem item, String labelId,
+                               MoveProgress progress) {
+        int labeled = 0;
+        int skipped = 0;
+        Optional<Long> senderId = gmailLocalMessageIds
+            ? senderRepository.findByEmail(item.getSenderEmail().toLowerCase()).map(Sender::getId)
+            : Optional.empty();
+        if (senderId.isPresent()) {
+            long cursor;
+            synchronized (active) {
+                cursor = item.getMessageCursor() != null ? item.getMessageCursor() : 0L;
+            }
+            List<Object[]> rows = metadataRepository.findMessageIdsBySender(account.getId(), senderId.get(), cursor);
+            for (int from = 0; from < rows.size() && !isStopped(active); from += GmailService.BATCH_MODIFY_MAX_IDS) {
+                List<Object[]> chunk = rows.subList(from, Math.min(from + GmailService.BATCH_MODIFY_MAX_IDS, rows.size()));
+                List<String> messageIds = chunk.stream()
+                    .map(row -> (String) row[1])
+                    .collect(Collectors.toList());
+                List<String> rejected = gmailService.addLabelToMessages(account.getId(), messageIds, labelId, progress);
+                if (isStopped(active)) {
+                    // The chunk may be partly labeled; a resume sends it again
+                    break;
+                }
+                labeled += messageIds.size() - rejected.size();
+                skipped += rejected.size();
+                recordChunk(active, item, (Long) chunk.get(chunk.size() - 1)[0], rejected.size());
+            }
+        }
+        if (isStopped(active)) {
+            return;
+        }
+        int found = gmailService.moveEmailsBySenders(account.getId(), List.of(item.getSenderEmail()), labelId, progress);
+        System.out.println("[Gmail] " + item.getSenderEmail() + " in " + account.getEmailAddress() + ": labeled "
+            + labeled + " known messages (" + skipped + " no longer in Gmail), verification search moved "
+            + found + " more");
+    }
+
+    private String resolveMoveFolder(BulkJob job, EmailAccount account) {
+        // Get-or-create rather than create, so a resumed job reuses the folder it made before
+        return job.getNewFolderName() != null
+            ? getOrCreateFolder(account, job.getNewFolderName(), null)
+            : job.getFolderId();
+    }
+
+    private String getOrCreateFolder(EmailAccount account, String name, String parentFolderId) {
+        return account.getProvider() == EmailAccount.EmailProvider.GMAIL
+            ? gmailService.getOrCreateLabel(account.getId(), name)
+            : outlookService.getOrCreateFolder(account.getId(), name, parentFolderId);
+    }
+
+    private void startItem(ActiveJob active, BulkJobItem item) {
+        synchronized (active) {
+            item.setStatus(BulkJobItem.ItemStatus.RUNNING);
+            if (item.getStartedAt() == null) {
+                item.setStartedAt(LocalDateTime.now());
+            }
+            itemRepository.save(item);
+            saveAndPublish(active);
+        }
+    }
+
+    private void recordMoved(ActiveJob active, BulkJobItem item, int count) {
+        synchronized (active) {
+            item.setMoved(item.getMoved() + count);
+            active.job.setTotalMoved(active.job.getTotalMoved() + count);
+            itemRepository.save(item);
+            if (System.currentTimeMillis() - active.lastSavedAt >= PROGRESS_INTERVAL_MS) {
+                saveAndPublish(active);
+            }
+        }
+    }
+
+    private void recordChunk(ActiveJob active, BulkJobItem item, Long lastRowId, int skipped) {
+        synchronized (active) {
+            item.setMessageCursor(lastRowId);
+            item.setSkipped(item.getSkipped() + skipped);
+            itemRepository.save(item);
+        }
+    }
+
+    private void finishItem(ActiveJob active, BulkJobItem item, BulkJobItem.ItemStatus status, String error) {
+        synchronized (active) {
+            item.setStatus(status);
+            item.setError(truncate(error));
+            item.setCompletedAt(LocalDateTime.now());
+            itemRepository.save(item);
+            recount(active);
+            saveAndPublish(active);
+        }
+    }
+
+    private void finishJob(ActiveJob active, Throwable error) {
+        if (shuttingDown) {
+            // Left running; picked up again at the next startup
+            return;
+        }
+        BulkJob job = active.job;
+        try {
+            synchronized (active) {
+                for (BulkJobItem item : active.items) {
+                    if (!isFinished(item.getStatus())) {
+                        item.setStatus(active.cancelled ? BulkJobItem.ItemStatus.CANCELLED : BulkJobItem.ItemStatus.FAILED);
+                        if (!active.cancelled) {
+                            item.setError(truncate(error != null ? error.getMessage() : "Not processed"));
+                        }
+                        itemRepository.save(item);
+                    }
+                }
+                recount(active);
+
+                if (job.getType() == BulkJob.JobType.SEGREGATE) {
+                    recordSegregations(active);
+                }
+
+                if (active.cancelled) {
+                    job.setStatus(BulkJob.JobStatus.CANCELLED);
+                } else if (job.getFailedItems() > 0 && job.getCompletedItems() == 0) {
+                    job.setStatus(BulkJob.JobStatus.FAILED);
+                    job.setErrorMessage(active.items.stream()
+                        .map(BulkJobItem::getError)
+                        .filter(message -> message != null)
+                        .findFirst()
+                        .orElse(null));
+                } else {
+                    job.setStatus(BulkJob.JobStatus.COMPLETED);
+                }
+                job.setCompletedAt(LocalDateTime.now());
+                job.setStatusMessage(String.format("Moved %d emails; %d of %d senders done across accounts%s%s",
+                    job.getTotalMoved(), job.getCompletedItems(), job.getTotalItems(),
+                    job.getFailedItems() > 0 ? ", " + job.getFailedItems() + " failed" : "",
+                    active.cancelled ? " (cancelled)" : ""));
+                saveAndPublish(active);
+            }
+            createNotification(job);
+        } catch (Exception e) {
+            System.err.println("Failed to finish bulk job " + job.getId() + ": " + e.getMessage());
+        } finally {
+            activeJobs.remove(job.getId());
+        }
+    }
+
+    /**
+     * Add each newly finished sender to the user's segregation history, once per item
+     */
+    private void recordSegregations(ActiveJob active) {
+        Map<String, List<BulkJobItem>> bySender = active.items.stream()
+            .filter(item -> item.getStatus() == BulkJobItem.ItemStatus.DONE && !item.isRecorded())
+            .collect(Collectors.groupingBy(item -> item.getSenderEmail().toLowerCase(), LinkedHashMap::new, Collectors.toList()));
+
+        for (Map.Entry<String, List<BulkJobItem>> entry : bySender.entrySet()) {
+            int moved = entry.getValue().stream().mapToInt(BulkJobItem::getMoved).sum();
+            recordSegregation(active.job.getUserId(), entry.getKey(),
+                SEGREGATED_ROOT + "/" + sanitizeFolderName(entry.getKey()), moved, SegregationHistory.OperationType.SEGREGATE);
+            for (BulkJobItem item : entry.getValue()) {
+                item.setRecorded(true);
+                itemRepository.save(item);
+            }
+        }
+    }
+
+    /**
+     * Record or update segregation history
+     */
+    private void recordSegregation(Long userId, String senderEmail, String folderName,
+                                   int emailsMoved, SegregationHistory.OperationType opType) {
+        Optional<SegregationHistory> existing = segregationHistoryRepository
+            .findByUserIdAndSenderEmail(userId, senderEmail.toLowerCase());
+
+        if (existing.isPresent()) {
+            // Update existing record
+            SegregationHistory history = existing.get();
+            history.setEmailsMoved(history.getEmailsMoved() + emailsMoved);
+            history.setRunCount(history.getRunCount() + 1);
+            history.setLastRunAt(LocalDateTime.now());
+            history.setFolderName(folderName);
+            history.setOperationType(opType);
+            segregationHistoryRepository.save(history);
+        } else {
+            // Create new record
+            SegregationHistory history = new SegregationHistory();
+            history.setUserId(userId);
+            history.setSenderEmail(senderEmail.toLowerCase());
+            history.setFolderName(folderName);
+            history.setEmailsMoved(emailsMoved);
+            history.setOperationType(opType);
+            history.setRunCount(1);
+            segregationHistoryRepository.save(history);
+        }
+    }
+
+    private void createNotification(BulkJob job) {
+        String operation = job.getType() == BulkJob.JobType.SEGREGATE ? "Segregation" : "Bulk Move";
+
+        Notification notification = new Notification();
+        notification.setUserId(job.getUserId());
+        if (job.getStatus() == BulkJob.JobStatus.COMPLETED) {
+            notification.setType(job.getFailedItems() > 0
+                ? Notification.NotificationType.WARNING
+                : Notification.NotificationType.INFO);
+            notification.setTitle(operation + " Complete");
+            notification.setMessage(job.getStatusMessage());
+        } else if (job.getStatus() == BulkJob.JobStatus.CANCELLED) {
+            notification.setType(Notification.NotificationType.INFO);
+            notification.setTitle(operation + " Cancelled");
+            notification.setMessage(job.getStatusMessage());
+        } else {
+            notification.setType(Notification.NotificationType.ERROR);
+            notification.setTitle(operation + " Failed");
+            notification.setMessage(operation + " failed: " + job.getErrorMessage());
+        }
+        notificationRepository.save(notification);
+    }
+
+    /**
+     * Persist the job and push its status to subscribers; callers hold the job's lock
+     */
+    private void saveAndPublish(ActiveJob active) {
+        BulkJob job = active.job;
+        jobRepository.save(job);
+        active.lastSavedAt = System.currentTimeMillis();
+        progressPublisher.publish(job.getUserId(), job.getId(), toStatusMap(job, active.items));
+    }
+
+    private void recount(ActiveJob active) {
+        int completed = 0;
+        int failed = 0;
+        for (BulkJobItem item : active.items) {
+            if (item.getStatus() == BulkJobItem.ItemStatus.DONE) completed++;
+            if (item.getStatus() == BulkJobItem.ItemStatus.FAILED) failed++;
+        }
+        active.job.setCompletedItems(completed);
+        active.job.setFailedItems(failed);
+    }
+
+    private boolean isStopped(ActiveJob active) {
+        return active.cancelled || shuttingDown;
+    }
+
+    private BulkJob findOwnedJob(Long userId, Long jobId) {
+        return jobRepository.findById(jobId)
+            .filter(job -> job.getUserId().equals(userId))
+            .orElseThrow(() -> new RuntimeException("Job not found"));
+    }
+
+    /**
+     * Status map shared by the SSE stream and the polling endpoints
+     */
+    static Map<String, Object> toStatusMap(BulkJob job, List<BulkJobItem> items) {
+        Map<Long, Tally> accounts = new LinkedHashMap<>();
+        Map<String, Tally> senders = new LinkedHashMap<>();
+        for (BulkJobItem item : items) {
+            Tally account = accounts.computeIfAbsent(item.getAccountId(), id -> new Tally());
+            account.add(item);
+            if (item.getStatus() == BulkJobItem.ItemStatus.RUNNING) {
+                account.current = item.getSenderEmail();
+            }
+            senders.computeIfAbsent(item.getSenderEmail(), email -> new Tally()).add(item);
+        }
+
+        List<Map<String, Object>> accountList = new ArrayList<>();
+        for (Map.Entry<Long, Tally> entry : accounts.entrySet()) {
+            Map<String, Object> map = entry.getValue().toMap();
+            map.put("accountId", entry.getKey());
+            map.put("accountEmail", entry.getValue().accountEmail != null ? entry.getValue().accountEmail : "");
+            map.put("currentSender", entry.getValue().current != null ? entry.getValue().current : "");
+            accountList.add(map);
+        }
+        List<Map<String, Object>> senderList = new ArrayList<>();
+        for (Map.Entry<String, Tally> entry : senders.entrySet()) {
+            Map<String, Object> map = entry.getValue().toMap();
+            map.put("senderEmail", entry.getKey());
+            map.put("error", entry.getValue().error != null ? entry.getValue().error : "");
+            senderList.add(map);
+        }
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", job.getId());
+        map.put("type", job.getType());
+        map.put("status", job.getStatus());
+        map.put("progress", job.getProgressPercent());
+        map.put("totalItems", job.getTotalItems());
+        map.put("completedItems", job.getCompletedItems());
+        map.put("failedItems", job.getFailedItems());
+        map.put("totalMoved", job.getTotalMoved());
+        map.put("statusMessage", job.getStatusMessage() != null ? job.getStatusMessage() : "");
+        map.put("errorMessage", job.getErrorMessage() != null ? job.getErrorMessage() : "");
+        map.put("startedAt", job.getStartedAt() != null ? job.getStartedAt().toString() : "");
+        map.put("completedAt", job.getCompletedAt() != null ? job.getCompletedAt().toString() : "");
+        map.put("accounts", accountList);
+        map.put("senders", senderList);
+        return map;
+    }
+
+    private static boolean isFinished(BulkJobItem.ItemStatus status) {
+        return status == BulkJobItem.ItemStatus.DONE
+            || status == BulkJobItem.ItemStatus.FAILED
+            || status == BulkJobItem.ItemStatus.CANCELLED;
+    }
+
+    private static String truncate(String message) {
+        return message != null && message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+
+    private static String sanitizeFolderName(String email) {
+        // Extract the part before @ and sanitize for folder name
+        String name = email.contains("@") ? email.substring(0, email.indexOf("@")) : email;
+        // Remove invalid characters
+        return name.replaceAll("[^a-zA-Z0-9._-]", "_");
+    }
+
+    /**
+     * A job running in this process. Its entity and items are only touched under its lock.
+     */
+    private static class ActiveJob {
+        final BulkJob job;
+        final List<BulkJobItem> items;
+        volatile boolean cancelled;
+        long lastSavedAt;
+
+        ActiveJob(BulkJob job, List<BulkJobItem> items) {
+            this.job = job;
+            this.items = items;
+        }
+    }
+
+    /**
+     * Item counts for one account or one sender
+     */
+    private static class Tally {
+        int total;
+        int pending;
+        int running;
+        int done;
+        int failed;
+        long moved;
+        long skipped;
+        String accountEmail;
+        String current;
+        String error;
+
+        void add(BulkJobItem item) {
+            total++;
+            moved += item.getMoved();
+            skipped += item.getSkipped();
+            accountEmail = item.getAccountEmail();
+            switch (item.getStatus()) {
+                case PENDING -> pending++;
+                case RUNNING -> running++;
+                case DONE -> done++;
+                case FAILED -> {
+                    failed++;
+                    if (error == null) error = item.getError();
+                }
+                default -> { }
+            }
+        }
+
+        String status() {
+            if (running > 0) return "RUNNING";
+            if (done == total) return "DONE";
+            if (pending > 0) return "PENDING";
+            return failed > 0 ? "FAILED" : "CANCELLED";
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("status", status());
+            map.put("total", total);
+            map.put("done", done);
+            map.put("failed", failed);
+            map.put("moved", moved);
+            map.put("skipped", skipped);
+            return map;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.emailutilities.service;
+
+import com.emailutilities.repository.SenderStatsRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Computes the whole analytics dashboard in one pass over sender_stats.
+ *
+ * Every ranking is derived from the same grouped row stream, each keeping only a bounded top-K
+ * heap. The summary and a windowed top-senders ranking (days != null) come from elsewhere, so they
+ * run concurrently with the pass instead of after it. The summary is always the one
+ * {@link AnalyticsService#getSummaryStats(List)} returns, so it doesn't depend on which path served
+ * the rankings. When the user's {@link AnalyticsSnapshot} is available, the rankings are served
+ * from it instead.
+ */
+@Service
+public class CombinedAnalyticsService {
+
+    private final SenderStatsRepository senderStatsRepository;
+    private final AnalyticsService analyticsService;
+    private final AnalyticsSnapshotCache snapshotCache;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ExecutorService executor;
+
+    public CombinedAnalyticsService(SenderStatsRepository senderStatsRepository,
+                                    AnalyticsService analyticsService,
+                                    AnalyticsSnapshotCache snapshotCache,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${analytics.parallelism:4}") int parallelism) {
+        this.senderStatsRepository = senderStatsRepository;
+        this.analyticsService = analyticsService;
+        this.snapshotCache = snapshotCache;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.executor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "analytics-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Summary, top senders, unread-by-sender, reply ranking and low reply ratio in one call
+     */
+    public Map<String, Object> getAllAnalytics(List<Long> accountIds, int requestedLimit, Integer days) {
+        // Same bound as the single-ranking endpoints; it also caps the heaps below
+        int limit = AnalyticsService.clampLimit(requestedLimit);
+        if (accountIds.isEmpty()) {
+            return new Dashboard(limit).toMap(analyticsService.getSummaryStats(accountIds));
+        }
+
+        // With an in-memory snapshot every section is a sub-millisecond lookup; no fan-out needed
+        if (snapshotCache.forAccounts(accountIds).isPresent()) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("summary", analyticsService.getSummaryStats(accountIds));
+            result.put("topSenders", analyticsService.getTopSenders(accountIds, limit, days));
+            result.put("unreadBySender", analyticsService.getUnreadBySender(accountIds, limit));
+            result.put("replyRanking", analyticsService.getReplyToRanking(accountIds, limit));
+            result.put("lowReplyRatio", analyticsService.getLowReplyRatioSenders(accountIds, limit));
+            return result;
+        }
+
+        CompletableFuture<List<Map<String, Object>>> windowedTopSenders = days != null
+            ? CompletableFuture.supplyAsync(() -> analyticsService.getTopSenders(accountIds, limit, days), executor)
+            : CompletableFuture.completedFuture(null);
+        CompletableFuture<Map<String, Object>> summary =
+            CompletableFuture.supplyAsync(() -> analyticsService.getSummaryStats(accountIds), executor);
+        CompletableFuture<Dashboard> rollupPass = CompletableFuture.supplyAsync(() -> scan(accountIds, limit), executor);
+
+        try {
+            Dashboard dashboard = rollupPass.join();
+            List<Map<String, Object>> windowed = windowedTopSenders.join();
+            Map<String, Object> result = dashboard.toMap(summary.join());
+            if (windowed != null) {
+                result.put("topSenders", windowed);
+            }
+            return result;
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private Dashboard scan(List<Long> accountIds, int limit) {
+        return readOnlyTransaction.execute(status -> {
+            Dashboard dashboard = new Dashboard(limit);
+            try (Stream<Object[]> rows = senderStatsRepository.streamSenderTotals(accountIds)) {
+                rows.forEach(dashboard::accept);
+            }
+            return dashboard;
+        });
+    }
+
+    /**
+     * Totals for one address across the user's accounts
+     */
+    private record SenderTotals(String email, String name, long received, long unread, long sentTo, long replied) {
+
+        double replyRatio() {
+            return received > 0 ? (double) replied / received : 0;
+        }
+    }
+
+    /**
+     * Accumulates every dashboard ranking from a single pass over the grouped rollup
+     */
+    private static final class Dashboard {
+
+        private static final Comparator<SenderTotals> BY_SENDER = Comparator.comparing(SenderTotals::email);
+
+        private final TopK topSenders;
+        private final TopK unreadBySender;
+        private final TopK replyRanking;
+        private final TopK lowReplyRatio;
+
+        Dashboard(int limit) {
+            // Ties break on address, matching the keyset order of the single-ranking endpoints
+            topSenders = new TopK(limit, Comparator.comparingLong(SenderTotals::received).reversed().thenComparing(BY_SENDER));
+            unreadBySender = new TopK(limit, Comparator.comparingLong(SenderTotals::unread).reversed().thenComparing(BY_SENDER));
+            replyRanking = new TopK(limit, Comparator.comparingLong(SenderTotals::sentTo).reversed().thenComparing(BY_SENDER));
+            lowReplyRatio = new TopK(limit, Comparator.comparingDouble(SenderTotals::replyRatio)
+                .thenComparing(Comparator.comparingLong(SenderTotals::received).reversed())
+                .thenComparing(BY_SENDER));
+        }
+
+        void accept(Object[] row) {
+            SenderTotals sender = new SenderTotals(
+                (String) row[0],
+                row[1] != null ? (String) row[1] : "",
+                ((Number) row[2]).longValue(),
+                ((Number) row[3]).longValue(),
+                ((Number) row[4]).longValue(),
+                ((Number) row[5]).longValue());
+
+            if (sender.received() > 0) {
+                topSenders.offer(sender);
+            }
+            if (sender.unread() > 0) {
+                unreadBySender.offer(sender);
+            }
+            if (sender.sentTo() > 0 && !sender.email().isEmpty()) {
+                replyRanking.offer(sender);
+            }
+            if (sender.received() >= AnalyticsService.LOW_REPLY_MIN_RECEIVED) {
+                lowReplyRatio.offer(sender);
+            }
+        }
+
+        Map<String, Object> toMap(Map<String, Object> summary) {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("summary", summary);
+            result.put("topSenders", topSenders.sorted().stream()
+                .map(s -> Map.<String, Object>of("email", s.email(), "name", s.name(), "count", (int) s.received()))
+                .collect(Collectors.toList()));
+            result.put("unreadBySender", unreadBySender.sorted().stream()
+                .map(s -> Map.<String, Object>of("email", s.email(), "name", s.name(), "unreadCount", (int) s.unread()))
+                .collect(Collectors.toList()));
+            result.put("replyRanking", replyRanking.sorted().stream()
+                .map(s -> Map.<String, Object>of("email", s.email(), "sentCount", (int) s.sentTo()))
+                .collect(Collectors.toList()));
+            result.put("lowReplyRatio", lowReplyRatio.sorted().stream()
+                .map(s -> Map.<String, Object>of(
+                    "email", s.email(),
+                    "received", s.received(),
+                    "replies", s.replied(),
+                    "replyRatio", Math.round(s.replyRatio() * 100) / 100.0))
+                .collect(Collectors.toList()));
+            return result;
+        }
+    }
+
+    /**
+     * Keeps the best k elements seen so far; the heap head is the current worst
+     */
+    private static final class TopK {
+
+        private final int k;
+        private final Comparator<SenderTotals> order;
+        private final PriorityQueue<SenderTotals> heap;
+
+        TopK(int k, Comparator<SenderTotals> order) {
+            this.k = Math.max(0, k);
+            this.order = order;
+            this.heap = new PriorityQueue<>(order.reversed());
+        }
+
+        void offer(SenderTotals sender) {
+            if (k == 0) return;
+            if (heap.size() < k) {
+                heap.add(sender);
+            } else if (order.compare(sender, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(sender);
+            }
+        }
+
+        List<SenderTotals> sorted() {
+            List<SenderTotals> result = new ArrayList<>(heap);
+            result.sort(order);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.emailutilities.service;
+
+import com.emailutilities.dto.RankingPage;
+import com.emailutilities.repository.DomainRepository;
+import com.emailutilities.repository.EmailMetadataRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Analytics per registrable domain (organization), so mail from news.brand.com, mail.brand.com
+ * and brand.com is counted together. Rankings group email_metadata by its domain ID using
+ * idx_email_metadata_domain_rollup and look up names only for the page returned.
+ */
+@Service
+public class DomainAnalyticsService {
+
+    // Upper bound on one page of any ranking, as for the sender rankings
+    private static final int MAX_RANKING_PAGE_SIZE = 500;
+
+    private final EmailMetadataRepository metadataRepository;
+    private final DomainRepository domainRepository;
+    private final SenderDirectory senderDirectory;
+    private final PublicSuffixList publicSuffixList;
+
+    public DomainAnalyticsService(EmailMetadataRepository metadataRepository,
+                                  DomainRepository domainRepository,
+                                  SenderDirectory senderDirectory,
+                                  PublicSuffixList publicSuffixList) {
+        this.metadataRepository = metadataRepository;
+        this.domainRepository = domainRepository;
+        this.senderDirectory = senderDirectory;
+        this.publicSuffixList = publicSuffixList;
+    }
+
+    /**
+     * A page of domains ranked by received emails, optionally over the last N days
+     */
+    public RankingPage getTopDomains(List<Long> accountIds, int limit, Integer days, String cursor) {
+        AnalyticsService.Cursor after = AnalyticsService.Cursor.decode(cursor);
+        Pageable page = PageRequest.of(0, clampLimit(limit));
+        if (accountIds.isEmpty()) return new RankingPage(List.of(), null);
+
+        List<Object[]> results = days != null
+            ? metadataRepository.findTopDomainsSince(accountIds, LocalDate.now().minusDays(days).atStartOfDay(),
+                after.count(), afterDomainId(after), page)
+            : metadataRepository.findTopDomains(accountIds, after.count(), afterDomainId(after), page);
+
+        Map<Long, String> names = names(results);
+        List<Map<String, Object>> items = results.stream()
+            .map(row -> Map.<String, Object>of(
+                "domain", names.getOrDefault((Long) row[0], ""),
+                "count", ((Number) row[1]).intValue(),
+                "senders", ((Number) row[2]).intValue()
+            ))
+            .collect(Collectors.toList());
+        return new RankingPage(items, nextCursor(results, page));
+    }
+
+    /**
+     * A page of domains ranked by unread emails
+     */
+    public RankingPage getUnreadByDomain(List<Long> accountIds, int limit, String cursor) {
+        AnalyticsService.Cursor after = AnalyticsService.Cursor.decode(cursor);
+        Pageable page = PageRequest.of(0, clampLimit(limit));
+        if (accountIds.isEmpty()) return new RankingPage(List.of(), null);
+
+        List<Object[]> results = metadataRepository.findDomainsByUnreadCount(accountIds, after.count(),
+            afterDomainId(after), page);
+
+        Map<Long, String> names = names(results);
+        List<Map<String, Object>> items = results.stream()
+            .map(row -> Map.<String, Object>of(
+                "domain", names.getOrDefault((Long) row[0], ""),
+                "unreadCount", ((Number) row[1]).intValue()
+            ))
+            .collect(Collectors.toList());
+        return new RankingPage(items, nextCursor(results, page));
+    }
+
+    /**
+     * Daily volume from a domain between from (inclusive) and to (exclusive). Any host or address
+     * under the domain is accepted, e.g. news.brand.com gives the trend for brand.com.
+     */
+    public Map<String, Object> getDomainTrend(List<Long> accountIds, String domain, LocalDate from, LocalDate to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        String name = publicSuffixList.registrableDomain(domain.trim());
+
+        List<Map<String, Object>> series = new ArrayList<>();
+        if (!accountIds.isEmpty()) {
+            domainRepository.findByName(name).ifPresent(found -> {
+                for (Object[] row : metadataRepository.countDailyByDomain(accountIds, found.getId(),
+                        from.atStartOfDay(), to.atStartOfDay())) {
+                    series.add(Map.of(
+                        "bucket", row[0].toString(),
+                        "received", ((Number) row[1]).longValue(),
+                        "unread", ((Number) row[2]).longValue()
+                    ));
+                }
+            });
+        }
+        return Map.of("domain", name, "series", series);
+    }
+
+    private Map<Long, String> names(List<Object[]> results) {
+        return senderDirectory.domainNames(results.stream().map(row -> (Long) row[0]).collect(Collectors.toList()));
+    }
+
+    private static long afterDomainId(AnalyticsService.Cursor after) {
+        try {
+            return after.sender().isEmpty() ? 0 : Long.parseLong(after.sender());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Cursor for the row after the last one returned, or null if this was the last page
+     */
+    private static String nextCursor(List<Object[]> results, Pageable page) {
+        if (results.size() < page.getPageSize()) {
+            return null;
+        }
+        Object[] last = results.get(results.size() - 1);
+        return new AnalyticsService.Cursor(((Number) last[1]).longValue(), last[0].toString()).encode();
+    }
+
+    private static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_RANKING_PAGE_SIZE));
+    }
+}
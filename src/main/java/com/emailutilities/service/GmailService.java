@@ -16,9 +16,19 @@ import java.util.*;
 public class GmailService {
 
     private final EmailAccountRepository emailAccountRepository;
+    private final MetricsService metricsService;
     private final RestTemplate restTemplate = new RestTemplate();
 
-    private static final String GMAIL_API_BASE = "https://gmail.googleapis.com/gmail/v1/users/me";
+    // messages/batchModify accepts at most 1000 IDs per call; messages.list returns at most 500
+    public static final int BATCH_MODIFY_MAX_IDS = 1000;
+    private static final int LIST_MAX_RESULTS = 500;
+
+    // Overridable so the sync benchmark can point the client at a local simulator
+    @Value("${gmail.api-base:https://gmail.googleapis.com/gmail/v1/users/me}")
+    private String gmailApiBase;
+
+    @Value("${oauth.google.token-uri:https://oauth2.googleapis.com/token}")
+    private String googleTokenUri;
 
     @Value("${oauth.google.client-id:}")
     private String googleClientId;
@@ -26,8 +36,10 @@ public class GmailService {
     @Value("${oauth.google.client-secret:}")
     private String googleClientSecret;
 
-    public GmailService(EmailAccountRepository emailAccountRepository) {
+    public GmailService(EmailAccountRepository emailAccountRepository, MetricsService metricsService) {
         this.emailAccountRepository = emailAccountRepository;
+        this.metricsService = metricsService;
+        this.restTemplate.getInterceptors().add(metricsService.providerCallInterceptor("gmail"));
     }
 
     /**
@@ -50,10 +62,11 @@ public class GmailService {
 
         HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(body, headers);
 
+        long refreshStart = System.nanoTime();
         try {
             @SuppressWarnings("unchecked")
             Map<String, Object> response = restTemplate.postForObject(
-                "https://oauth2.googleapis.com/token",
+                googleTokenUri,
                 request,
                 Map.class
             );
@@ -74,10 +87,12 @@ public class GmailService {
                 account.setLastSyncError(null);
                 emailAccountRepository.save(account);
                 System.out.println("Successfully refreshed access token for: " + account.getEmailAddress());
+                metricsService.recordTokenRefresh("gmail", true, System.nanoTime() - refreshStart);
                 return newAccessToken;
             }
             throw new RuntimeException("Failed to refresh token - no access_token in response");
         } catch (Exception e) {
+            metricsService.recordTokenRefresh("gmail", false, System.nanoTime() - refreshStart);
             System.err.println("Token refresh failed: " + e.getMessage());
             throw new RuntimeException("Failed to refresh token: " + e.getMessage());
         }
@@ -141,7 +156,7 @@ public class GmailService {
             headers.setBearerAuth(accessToken);
             HttpEntity<Void> entity = new HttpEntity<>(headers);
 
-            String listUrl = GMAIL_API_BASE + "/messages?maxResults=" + maxResults;
+            String listUrl = gmailApiBase + "/messages?maxResults=" + maxResults;
             if (inboxOnly) {
                 listUrl += "&labelIds=INBOX";
             }
@@ -234,7 +249,9 @@ public class GmailService {
             headers.setBearerAuth(accessToken);
             HttpEntity<Void> entity = new HttpEntity<>(headers);
 
-            String detailUrl = GMAIL_API_BASE + "/messages/" + messageId + "?format=metadata&metadataHeaders=From&metadataHeaders=To&metadataHeaders=Subject&metadataHeaders=Date";
+            String detailUrl = gmailApiBase + "/messages/" + messageId + "?format=metadata&metadataHeaders=From&metadataHeaders=To&metadataHeaders=Subject&metadataHeaders=Date" +
+                "&metadataHeaders=Message-ID&metadataHeaders=In-Reply-To&metadataHeaders=References" +
+                "&metadataHeaders=List-Unsubscribe&metadataHeaders=List-Id&metadataHeaders=Precedence";
 
             @SuppressWarnings("unchecked")
             Map<String, Object> message = restTemplate.exchange(
@@ -256,15 +273,28 @@ public class GmailService {
             String to = "";
             String subject = "";
             String date = "";
+            String rfcMessageId = "";
+            String inReplyTo = "";
+            String references = "";
+            String listUnsubscribe = "";
+            String listId = "";
+            String precedence = "";
 
             for (Map<String, String> header : headersData) {
                 String name = header.get("name");
                 String value = header.get("value");
-                switch (name) {
-                    case "From" -> from = value;
-                    case "To" -> to = value;
-                    case "Subject" -> subject = value;
-                    case "Date" -> date = value;
+                // Senders vary the case of these (Message-ID vs Message-Id)
+                switch (name.toLowerCase()) {
+                    case "from" -> from = value;
+                    case "to" -> to = value;
+                    case "subject" -> subject = value;
+                    case "date" -> date = value;
+                    case "message-id" -> rfcMessageId = value;
+                    case "in-reply-to" -> inReplyTo = value;
+                    case "references" -> references = value;
+                    case "list-unsubscribe" -> listUnsubscribe = value;
+                    case "list-id" -> listId = value;
+                    case "precedence" -> precedence = value;
                 }
             }
 
@@ -273,16 +303,22 @@ public class GmailService {
             List<String> labelIds = (List<String>) message.get("labelIds");
             boolean isUnread = labelIds != null && labelIds.contains("UNREAD");
 
-            return Map.of(
-                "id", messageId,
-                "from", from,
-                "to", to,
-                "subject", subject,
-                "date", date,
-                "snippet", message.getOrDefault("snippet", ""),
-                "isUnread", isUnread,
-                "threadId", message.getOrDefault("threadId", "")
-            );
+            Map<String, Object> email = new HashMap<>();
+            email.put("id", messageId);
+            email.put("from", from);
+            email.put("to", to);
+            email.put("subject", subject);
+            email.put("date", date);
+            email.put("snippet", message.getOrDefault("snippet", ""));
+            email.put("isUnread", isUnread);
+            email.put("threadId", message.getOrDefault("threadId", ""));
+            email.put("rfcMessageId", rfcMessageId);
+            email.put("inReplyTo", inReplyTo);
+            email.put("references", references);
+            email.put("listUnsubscribe", listUnsubscribe);
+            email.put("listId", listId);
+            email.put("precedence", precedence);
+            return email;
 
         } catch (Exception e) {
             System.err.println("Failed to fetch message " + messageId + ": " + e.getMessage());
@@ -303,7 +339,7 @@ public class GmailService {
         headers.setBearerAuth(accessToken);
         HttpEntity<Void> entity = new HttpEntity<>(headers);
 
-        String url = GMAIL_API_BASE + "/messages/" + messageId + "?format=full";
+        String url = gmailApiBase + "/messages/" + messageId + "?format=full";
 
         @SuppressWarnings("unchecked")
         Map<String, Object> message = restTemplate.exchange(
@@ -416,7 +452,7 @@ public class GmailService {
 
             @SuppressWarnings("unchecked")
             Map<String, Object> response = restTemplate.exchange(
-                GMAIL_API_BASE + "/labels",
+                gmailApiBase + "/labels",
                 HttpMethod.GET,
                 entity,
                 Map.class
@@ -473,7 +509,7 @@ public class GmailService {
             headers.setBearerAuth(accessToken);
             HttpEntity<Void> entity = new HttpEntity<>(headers);
 
-            String listUrl = GMAIL_API_BASE + "/messages?maxResults=" + maxResults + "&labelIds=" + labelId;
+            String listUrl = gmailApiBase + "/messages?maxResults=" + maxResults + "&labelIds=" + labelId;
 
             @SuppressWarnings("unchecked")
             Map<String, Object> listResponse = restTemplate.exchange(
@@ -541,7 +577,7 @@ public class GmailService {
             HttpEntity<Map<String, Object>> entity = new HttpEntity<>(body, headers);
 
             restTemplate.postForObject(
-                GMAIL_API_BASE + "/messages/" + messageId + "/modify",
+                gmailApiBase + "/messages/" + messageId + "/modify",
                 entity,
                 Map.class
             );
@@ -579,7 +615,7 @@ public class GmailService {
 
         @SuppressWarnings("unchecked")
         Map<String, Object> response = restTemplate.postForObject(
-            GMAIL_API_BASE + "/labels",
+            gmailApiBase + "/labels",
             entity,
             Map.class
         );
@@ -614,7 +650,7 @@ public class GmailService {
 
             @SuppressWarnings("unchecked")
             Map<String, Object> response = restTemplate.exchange(
-                GMAIL_API_BASE + "/labels",
+                gmailApiBase + "/labels",
                 HttpMethod.GET,
                 entity,
                 Map.class
@@ -657,7 +693,7 @@ public class GmailService {
 
         @SuppressWarnings("unchecked")
         Map<String, Object> response = restTemplate.postForObject(
-            GMAIL_API_BASE + "/labels",
+            gmailApiBase + "/labels",
             entity,
             Map.class
         );
@@ -690,7 +726,7 @@ public class GmailService {
         HttpEntity<Void> entity = new HttpEntity<>(headers);
 
         // First test: search all emails without filter
-        String allUrl = GMAIL_API_BASE + "/messages?maxResults=1";
+        String allUrl = gmailApiBase + "/messages?maxResults=1";
         try {
             @SuppressWarnings("unchecked")
             Map<String, Object> allResponse = restTemplate.exchange(allUrl, HttpMethod.GET, entity, Map.class).getBody();
@@ -700,7 +736,7 @@ public class GmailService {
         }
 
         String query = "from:" + senderEmail;
-        String url = GMAIL_API_BASE + "/messages?maxResults=1&q=" +
+        String url = gmailApiBase + "/messages?maxResults=1&q=" +
             java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8);
 
         System.out.println("[Gmail Debug] Query: " + query);
@@ -721,6 +757,14 @@ public class GmailService {
      * Move all emails from specified senders to a label (skips already-labeled emails)
      */
     public int moveEmailsBySenders(Long accountId, List<String> senderEmails, String toLabelId) {
+        return moveEmailsBySenders(accountId, senderEmails, toLabelId, MoveProgress.NONE);
+    }
+
+    /**
+     * Same, reporting each modified page to the progress callback and stopping between pages once it
+     * is cancelled. Already-labeled emails are excluded, so re-running an interrupted move is safe.
+     */
+    public int moveEmailsBySenders(Long accountId, List<String> senderEmails, String toLabelId, MoveProgress progress) {
         EmailAccount account = emailAccountRepository.findById(accountId)
             .orElseThrow(() -> new RuntimeException("Account not found"));
 
@@ -732,9 +776,9 @@ public class GmailService {
 
         for (String senderEmail : senderEmails) {
             String pageToken = null;
-            int maxPages = 100; // Safety limit
+            int maxPages = 20; // Safety limit (10,000 emails per sender)
 
-            for (int page = 0; page < maxPages; page++) {
+            for (int page = 0; page < maxPages && !progress.isCancelled(); page++) {
                 // Search for emails from this sender, EXCLUDING those already with target label
                 HttpHeaders headers = new HttpHeaders();
                 headers.setBearerAuth(accessToken);
@@ -743,41 +787,13 @@ public class GmailService {
                 // Build query: from:sender -label:TargetLabel (exclude already-labeled)
                 String query = "from:" + senderEmail;
 
-                // On first page, check how many emails exist without exclusion (for logging)
-                if (page == 0 && labelName != null) {
-                    // Check emails from sender (without label exclusion)
-                    String testUrl1 = GMAIL_API_BASE + "/messages?maxResults=1&q=" +
-                        java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8);
-                    // Check emails from sender WITH label (already segregated)
-                    String alreadyLabeledQuery = query + " label:\"" + labelName + "\"";
-                    String testUrl2 = GMAIL_API_BASE + "/messages?maxResults=1&q=" +
-                        java.net.URLEncoder.encode(alreadyLabeledQuery, java.nio.charset.StandardCharsets.UTF_8);
-
-                    try {
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> resp1 = restTemplate.exchange(testUrl1, HttpMethod.GET, entity, Map.class).getBody();
-                        @SuppressWarnings("unchecked")
-                        Map<String, Object> resp2 = restTemplate.exchange(testUrl2, HttpMethod.GET, entity, Map.class).getBody();
-
-                        int totalEmails = resp1 != null ? (int) resp1.getOrDefault("resultSizeEstimate", 0) : 0;
-                        int alreadyLabeled = resp2 != null ? (int) resp2.getOrDefault("resultSizeEstimate", 0) : 0;
-
-                        System.out.println("[Gmail Segregate] Sender: " + senderEmail);
-                        System.out.println("[Gmail Segregate] Total emails from sender: " + totalEmails);
-                        System.out.println("[Gmail Segregate] Already have label '" + labelName + "': " + alreadyLabeled);
-                        System.out.println("[Gmail Segregate] New emails to move: " + (totalEmails - alreadyLabeled));
-                    } catch (Exception e) {
-                        System.err.println("[Gmail Segregate] Check failed: " + e.getMessage());
-                    }
-                }
-
                 // Now build the actual query with label exclusion
                 if (labelName != null && !labelName.isEmpty()) {
                     // Quote the label name to handle slashes and spaces
                     query += " -label:\"" + labelName + "\"";
                 }
 
-                String url = GMAIL_API_BASE + "/messages?maxResults=100&q=" +
+                String url = gmailApiBase + "/messages?maxResults=" + LIST_MAX_RESULTS + "&q=" +
                     java.net.URLEncoder.encode(query, java.nio.charset.StandardCharsets.UTF_8);
                 if (pageToken != null) {
                     url += "&pageToken=" + pageToken;
@@ -826,12 +842,13 @@ public class GmailService {
                     HttpEntity<Map<String, Object>> modifyEntity = new HttpEntity<>(modifyBody, modifyHeaders);
 
                     restTemplate.postForObject(
-                        GMAIL_API_BASE + "/messages/batchModify",
+                        gmailApiBase + "/messages/batchModify",
                         modifyEntity,
                         Void.class
                     );
 
                     totalMoved += messages.size();
+                    progress.moved(messages.size());
                 }
 
                 pageToken = (String) response.get("nextPageToken");
@@ -847,6 +864,69 @@ public class GmailService {
         return totalMoved;
     }
 
+    /**
+     * Add a label to messages whose IDs are already known (from email_metadata), with one
+     * messages/batchModify call per 1000 IDs instead of searching for them page by page. Each
+     * labeled batch is reported to the progress callback; the move stops between batches once it is
+     * cancelled. Gmail rejects a whole batch for one ID it doesn't know (a message deleted since the
+     * last sync), so a rejected batch is split in half and retried until those IDs are isolated.
+     *
+     * @return the IDs Gmail rejected on their own
+     */
+    public List<String> addLabelToMessages(Long accountId, List<String> messageIds, String toLabelId, MoveProgress progress) {
+        EmailAccount account = emailAccountRepository.findById(accountId)
+            .orElseThrow(() -> new RuntimeException("Account not found"));
+
+        String accessToken = account.getAccessToken();
+
+        // Proactively refresh if token expires within 5 minutes
+        if (account.getTokenExpiresAt() != null &&
+            account.getTokenExpiresAt().isBefore(java.time.LocalDateTime.now().plusMinutes(5))) {
+            accessToken = refreshAccessToken(account);
+        }
+
+        Deque<List<String>> batches = new ArrayDeque<>();
+        for (int from = 0; from < messageIds.size(); from += BATCH_MODIFY_MAX_IDS) {
+            batches.add(messageIds.subList(from, Math.min(from + BATCH_MODIFY_MAX_IDS, messageIds.size())));
+        }
+        List<String> rejected = new ArrayList<>();
+        while (!batches.isEmpty() && !progress.isCancelled()) {
+            List<String> batch = batches.poll();
+            try {
+                try {
+                    batchAddLabel(accessToken, batch, toLabelId);
+                } catch (HttpClientErrorException.Unauthorized e) {
+                    accessToken = refreshAccessToken(account);
+                    batchAddLabel(accessToken, batch, toLabelId);
+                }
+            } catch (HttpClientErrorException.BadRequest | HttpClientErrorException.NotFound e) {
+                if (batch.size() == 1) {
+                    System.err.println("[Gmail] Message " + batch.get(0) + " rejected by batchModify: " + e.getMessage());
+                    rejected.add(batch.get(0));
+                } else {
+                    int half = batch.size() / 2;
+                    batches.addFirst(batch.subList(half, batch.size()));
+                    batches.addFirst(batch.subList(0, half));
+                }
+                continue;
+            }
+            progress.moved(batch.size());
+        }
+        return rejected;
+    }
+
+    private void batchAddLabel(String accessToken, List<String> messageIds, String labelId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(accessToken);
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        Map<String, Object> body = Map.of(
+            "ids", messageIds,
+            "addLabelIds", List.of(labelId)
+        );
+        restTemplate.postForObject(gmailApiBase + "/messages/batchModify", new HttpEntity<>(body, headers), Void.class);
+    }
+
     /**
      * Get label name by ID (for query exclusion)
      */
@@ -858,7 +938,7 @@ public class GmailService {
 
             @SuppressWarnings("unchecked")
             Map<String, Object> label = restTemplate.exchange(
-                GMAIL_API_BASE + "/labels/" + labelId,
+                gmailApiBase + "/labels/" + labelId,
                 HttpMethod.GET,
                 entity,
                 Map.class
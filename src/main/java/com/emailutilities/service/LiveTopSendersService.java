@@ -0,0 +1,123 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.entity.EmailMetadata;
+import com.emailutilities.repository.EmailAccountRepository;
+import com.emailutilities.repository.SenderStatsRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Live approximate top senders per user, fed by committed ingest pages.
+ *
+ * Each user gets a {@link SpaceSaving} sketch seeded once from the sender_stats rollup; after that
+ * every synced page updates it in memory, so the ranking moves while a backfill is still running
+ * and reading it never queries the database. Memory is bounded by the sketch capacity times the
+ * number of users kept (least recently used users are dropped).
+ */
+@Service
+public class LiveTopSendersService {
+
+    private final EmailAccountRepository accountRepository;
+    private final SenderStatsRepository senderStatsRepository;
+
+    @Value("${analytics.heavy-hitters.capacity:1000}")
+    private int capacity;
+
+    @Value("${analytics.heavy-hitters.max-users:1000}")
+    private int maxUsers;
+
+    // Access-ordered so the least recently used user is dropped first
+    private final LinkedHashMap<Long, SpaceSaving> sketches = new LinkedHashMap<>(16, 0.75f, true);
+
+    public LiveTopSendersService(EmailAccountRepository accountRepository,
+                                 SenderStatsRepository senderStatsRepository) {
+        this.accountRepository = accountRepository;
+        this.senderStatsRepository = senderStatsRepository;
+    }
+
+    /**
+     * Approximate top senders for the user: count may overestimate by at most maxError
+     */
+    public List<Map<String, Object>> getTopSenders(Long userId, int limit) {
+        SpaceSaving sketch = sketchFor(userId);
+        synchronized (sketch) {
+            return sketch.top(Math.max(1, limit)).stream()
+                .map(estimate -> Map.<String, Object>of(
+                    "email", estimate.key(),
+                    "count", estimate.count(),
+                    "maxError", estimate.error()
+                ))
+                .collect(Collectors.toList());
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMetadataIngested(MetadataIngestedEvent event) {
+        SpaceSaving sketch;
+        synchronized (sketches) {
+            sketch = sketches.get(event.userId());
+        }
+        // Not tracked yet: seeding from the rollup already includes this committed page
+        if (sketch == null) {
+            sketchFor(event.userId());
+            return;
+        }
+
+        synchronized (sketch) {
+            for (EmailMetadata metadata : event.inserted()) {
+                if (!metadata.isFromMe()) {
+                    sketch.add(metadata.getSenderEmail(), 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the user's sketch, e.g. after an account is removed; it is re-seeded on next use
+     */
+    public void invalidateUser(Long userId) {
+        synchronized (sketches) {
+            sketches.remove(userId);
+        }
+    }
+
+    private SpaceSaving sketchFor(Long userId) {
+        synchronized (sketches) {
+            SpaceSaving existing = sketches.get(userId);
+            if (existing != null) {
+                return existing;
+            }
+        }
+
+        // Seed outside the map lock; the first writer wins if two threads race here
+        SpaceSaving seeded = new SpaceSaving(capacity);
+        List<Long> accountIds = accountRepository.findByUserId(userId).stream()
+            .map(EmailAccount::getId)
+            .collect(Collectors.toList());
+        if (!accountIds.isEmpty()) {
+            List<Object[]> rows = senderStatsRepository.findTopSenders(accountIds, Long.MAX_VALUE, "",
+                PageRequest.of(0, capacity));
+            for (Object[] row : rows) {
+                seeded.add((String) row[0], ((Number) row[2]).longValue());
+            }
+        }
+
+        synchronized (sketches) {
+            SpaceSaving existing = sketches.putIfAbsent(userId, seeded);
+            if (sketches.size() > maxUsers) {
+                Long eldest = sketches.keySet().iterator().next();
+                sketches.remove(eldest);
+            }
+            return existing != null ? existing : seeded;
+        }
+    }
+}
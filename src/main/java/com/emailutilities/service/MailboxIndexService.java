@@ -0,0 +1,684 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.entity.EmailMetadata;
+import com.emailutilities.repository.EmailAccountRepository;
+import com.emailutilities.repository.EmailMetadataRepository;
+import jakarta.annotation.PreDestroy;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.DrillDownQuery;
+import org.apache.lucene.facet.DrillSideways;
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Embedded Lucene index of a user's email metadata for faceted search: subject text combined with
+ * facets on account, sender domain, read state, fromMe and month.
+ *
+ * Users opt in by building their index (see {@link #rebuildAsync}); from then on committed ingest
+ * pages are queued and a single indexer thread applies them in batches, so syncs only pay for an
+ * enqueue. Changes become searchable near-real-time after each batch and are committed to disk
+ * periodically. A rebuild splits each account's ID range into segments read and indexed in parallel.
+ *
+ * A read-flag change for an email a running rebuild has not indexed yet is remembered and, once the
+ * rebuild is over, re-applied from the flag then stored in email_metadata, since the rebuild may
+ * have indexed a row read before the change.
+ */
+@Service
+public class MailboxIndexService {
+
+    private static final String[] FACET_DIMS = {"account", "domain", "read", "fromMe", "month"};
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_OFFSET = 10_000;
+    private static final int FACET_VALUES = 20;
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyy-MM");
+    private static final int READ_RECHECK_BATCH = 1000;
+
+    private final EmailMetadataRepository metadataRepository;
+    private final EmailAccountRepository accountRepository;
+    private final SenderDirectory senderDirectory;
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final boolean enabled;
+    private final Path root;
+    private final int batchSize;
+    private final int rebuildThreads;
+
+    private final BlockingQueue<MetadataIngestedEvent> queue;
+    private final Map<Long, UserIndex> indexes = new ConcurrentHashMap<>();
+    private final Set<Long> rebuilding = ConcurrentHashMap.newKeySet();
+    // Users whose index missed pages (queue full or a failed batch) until their next rebuild
+    private final Set<Long> stale = ConcurrentHashMap.newKeySet();
+    // Read-flag changes skipped during a rebuild, by user and account; only the indexer thread uses it
+    private final Map<Long, Map<Long, Set<String>>> skippedReadChanges = new HashMap<>();
+    // Deleted accounts, so queued pages and running rebuilds don't index them again
+    private final Set<Long> removedAccounts = ConcurrentHashMap.newKeySet();
+    private final FacetsConfig facetsConfig = new FacetsConfig();
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final ExecutorService rebuildExecutor;
+    private volatile Thread indexer;
+
+    public MailboxIndexService(EmailMetadataRepository metadataRepository,
+                               EmailAccountRepository accountRepository,
+                               SenderDirectory senderDirectory,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${search.mailbox-index.enabled:false}") boolean enabled,
+                               @Value("${search.mailbox-index.directory:./mailbox-index}") String directory,
+                               @Value("${search.mailbox-index.batch-size:2000}") int batchSize,
+                               @Value("${search.mailbox-index.queue-capacity:10000}") int queueCapacity,
+                               @Value("${search.mailbox-index.rebuild-threads:4}") int rebuildThreads) {
+        this.metadataRepository = metadataRepository;
+        this.accountRepository = accountRepository;
+        this.senderDirectory = senderDirectory;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.root = Paths.get(directory);
+        this.batchSize = Math.max(1, batchSize);
+        this.rebuildThreads = Math.max(1, rebuildThreads);
+        this.queue = new LinkedBlockingQueue<>(Math.max(1, queueCapacity));
+        this.rebuildExecutor = Executors.newFixedThreadPool(this.rebuildThreads, runnable -> {
+            Thread thread = new Thread(runnable, "mailbox-index-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * One user's writer, with a searcher manager over it for near-real-time reads
+     */
+    private final class UserIndex {
+        final Directory directory;
+        final IndexWriter writer;
+        final SearcherManager searcherManager;
+        private IndexReader facetReader;
+        private SortedSetDocValuesReaderState facetState;
+
+        UserIndex(Path path) throws IOException {
+            Files.createDirectories(path);
+            this.directory = FSDirectory.open(path);
+            IndexWriterConfig config = new IndexWriterConfig(analyzer);
+            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            config.setRAMBufferSizeMB(64);
+            this.writer = new IndexWriter(directory, config);
+            this.searcherManager = new SearcherManager(writer, null);
+        }
+
+        /**
+         * Facet ordinals for the searcher's reader, rebuilt only when a refresh replaced the reader
+         */
+        synchronized SortedSetDocValuesReaderState facetState(IndexSearcher searcher) throws IOException {
+            if (facetReader != searcher.getIndexReader()) {
+                facetState = new DefaultSortedSetDocValuesReaderState(searcher.getIndexReader(), facetsConfig);
+                facetReader = searcher.getIndexReader();
+            }
+            return facetState;
+        }
+
+        void close() throws IOException {
+            searcherManager.close();
+            writer.close();
+            directory.close();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void startIndexer() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::runIndexer, "mailbox-indexer");
+        thread.setDaemon(true);
+        thread.start();
+        indexer = thread;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+        Thread thread = indexer;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (Map.Entry<Long, UserIndex> entry : indexes.entrySet()) {
+            try {
+                entry.getValue().writer.commit();
+                entry.getValue().close();
+            } catch (IOException e) {
+                System.err.println("Failed to close mailbox index of user " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Queue a committed page for users with an index; never blocks the sync that produced it
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMetadataIngested(MetadataIngestedEvent event) {
+        if (!enabled || !hasIndex(event.userId())) {
+            return;
+        }
+        if (!queue.offer(event)) {
+            if (stale.add(event.userId())) {
+                System.err.println("Mailbox index queue full; index of user " + event.userId() + " needs a rebuild");
+            }
+        }
+    }
+
+    /**
+     * Flush every index to disk; searches see changes earlier, this only bounds what a crash loses
+     */
+    @Scheduled(fixedDelayString = "${search.mailbox-index.commit-interval-ms:30000}")
+    public void commitAll() {
+        for (Map.Entry<Long, UserIndex> entry : indexes.entrySet()) {
+            try {
+                if (entry.getValue().writer.hasUncommittedChanges()) {
+                    entry.getValue().writer.commit();
+                }
+            } catch (IOException e) {
+                System.err.println("Failed to commit mailbox index of user " + entry.getKey() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public boolean isRebuilding(Long userId) {
+        return rebuilding.contains(userId);
+    }
+
+    /**
+     * Drop a deleted account's emails from the user's index. The account facet's drill-down term
+     * identifies them, so indexes built before this needed no new field.
+     */
+    public void removeAccount(Long userId, Long accountId) {
+        removedAccounts.add(accountId);
+        if (!enabled || !hasIndex(userId)) {
+            return;
+        }
+        try {
+            UserIndex index = indexFor(userId);
+            deleteAccountDocuments(index, accountId);
+            index.searcherManager.maybeRefresh();
+        } catch (IOException | RuntimeException e) {
+            stale.add(userId);
+            System.err.println("Failed to remove account " + accountId + " from the mailbox index of user "
+                + userId + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Build the user's index from email_metadata, replacing whatever it held. Each account's ID range
+     * is split into segments that are streamed and indexed concurrently; pages ingested meanwhile are
+     * applied as usual, and searches during the rebuild may see a partial index.
+     */
+    @Async
+    public void rebuildAsync(Long userId) {
+        requireEnabled();
+        if (!rebuilding.add(userId)) {
+            System.out.println("Mailbox index rebuild for user " + userId + " is already running");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        try {
+            UserIndex index = indexFor(userId);
+            stale.remove(userId);
+            index.writer.deleteAll();
+
+            List<Callable<Long>> segments = new ArrayList<>();
+            List<Long> accountIds = new ArrayList<>();
+            for (EmailAccount account : accountRepository.findByUserId(userId)) {
+                Long accountId = account.getId();
+                accountIds.add(accountId);
+                Long minId = metadataRepository.findMinId(accountId).orElse(null);
+                Long maxId = metadataRepository.findMaxId(accountId).orElse(null);
+                if (minId == null || maxId == null) continue;
+
+                long step = Math.max(1, (maxId - minId + rebuildThreads) / rebuildThreads);
+                for (long afterId = minId - 1; afterId < maxId; afterId += step) {
+                    long from = afterId;
+                    long upTo = Math.min(afterId + step, maxId);
+                    segments.add(() -> indexSegment(index, accountId, from, upTo));
+                }
+            }
+
+            long documents = 0;
+            for (Future<Long> segment : rebuildExecutor.invokeAll(segments)) {
+                documents += segment.get();
+            }
+            // Accounts deleted while their segments were streamed
+            for (Long accountId : accountIds) {
+                if (removedAccounts.contains(accountId)) {
+                    deleteAccountDocuments(index, accountId);
+                }
+            }
+            index.writer.commit();
+            index.searcherManager.maybeRefreshBlocking();
+            System.out.println("Rebuilt mailbox index of user " + userId + ": " + documents + " emails in "
+                + segments.size() + " segments, " + (System.currentTimeMillis() - start) + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            stale.add(userId);
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            stale.add(userId);
+            System.err.println("Mailbox index rebuild for user " + userId + " failed: " + e.getMessage());
+        } finally {
+            rebuilding.remove(userId);
+        }
+    }
+
+    /**
+     * Search the user's index: subject text (simple query syntax: +, |, -, "phrase", prefix*) within
+     * the facet filters, best match first and newest first among equals. Filters on different facets
+     * are combined with AND, several values of one facet with OR. Facet counts are drill-sideways:
+     * each facet is counted as if its own filter were not applied, so other values stay selectable.
+     */
+    public Map<String, Object> search(Long userId, String text, Map<String, List<String>> filters,
+                                      int limit, String cursor) {
+        requireEnabled();
+        if (!hasIndex(userId)) {
+            throw new IllegalStateException("No mailbox index for this user yet; build it first");
+        }
+        int offset = decodeOffset(cursor);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        UserIndex index = indexFor(userId);
+        try {
+            IndexSearcher searcher = index.searcherManager.acquire();
+            try {
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("rebuilding", rebuilding.contains(userId));
+                result.put("stale", stale.contains(userId));
+                if (searcher.getIndexReader().numDocs() == 0) {
+                    result.put("total", 0L);
+                    result.put("hits", List.of());
+                    result.put("facets", Map.of());
+                    result.put("nextCursor", null);
+                    return result;
+                }
+
+                DrillDownQuery query = new DrillDownQuery(facetsConfig, parseText(text));
+                for (String dim : FACET_DIMS) {
+                    for (String value : filters.getOrDefault(dim, List.of())) {
+                        query.add(dim, value);
+                    }
+                }
+
+                DrillSideways sideways = new DrillSideways(searcher, facetsConfig, index.facetState(searcher));
+                Sort sort = new Sort(SortField.FIELD_SCORE, new SortField("receivedAt", SortField.Type.LONG, true));
+                DrillSideways.DrillSidewaysResult found = sideways.search(query, null, null, offset + pageSize, sort, true);
+
+                TopDocs hits = found.hits;
+                List<Map<String, Object>> items = new ArrayList<>(pageSize);
+                for (int i = offset; i < hits.scoreDocs.length; i++) {
+                    ScoreDoc hit = hits.scoreDocs[i];
+                    Document stored = searcher.storedFields().document(hit.doc);
+                    Map<String, Object> item = new LinkedHashMap<>();
+                    item.put("messageId", stored.get("messageId"));
+                    item.put("accountId", stored.getField("accountId").numericValue().longValue());
+                    item.put("sender", stored.get("sender"));
+                    item.put("domain", stored.get("domain"));
+                    item.put("subject", stored.get("subject"));
+                    item.put("receivedAt", receivedAt(stored).toString());
+                    item.put("isRead", Boolean.parseBoolean(stored.get("read")));
+                    item.put("isFromMe", Boolean.parseBoolean(stored.get("fromMe")));
+                    item.put("score", Float.isNaN(hit.score) ? null : hit.score);
+                    items.add(item);
+                }
+
+                Map<String, Object> facets = new LinkedHashMap<>();
+                for (String dim : FACET_DIMS) {
+                    facets.put(dim, facetValues(found, dim));
+                }
+
+                result.put("total", hits.totalHits.value);
+                result.put("hits", items);
+                result.put("facets", facets);
+                result.put("nextCursor", hits.scoreDocs.length == offset + pageSize && offset + pageSize <= MAX_OFFSET
+                    ? String.valueOf(offset + pageSize)
+                    : null);
+                return result;
+            } finally {
+                index.searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void runIndexer() {
+        List<MetadataIngestedEvent> batch = new ArrayList<>();
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                MetadataIngestedEvent first = queue.poll(1, TimeUnit.SECONDS);
+                recheckSkippedReadChanges();
+                if (first == null) continue;
+                batch.add(first);
+                int changes = changeCount(first);
+                MetadataIngestedEvent next;
+                while (changes < batchSize && (next = queue.poll()) != null) {
+                    batch.add(next);
+                    changes += changeCount(next);
+                }
+                applyBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (RuntimeException e) {
+                System.err.println("Mailbox indexer failed on a batch: " + e.getMessage());
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Apply queued pages user by user: inserts first, then read-flag changes (which re-index the
+     * stored document), then one refresh per user so the batch becomes searchable
+     */
+    private void applyBatch(List<MetadataIngestedEvent> batch) {
+        Map<Long, List<MetadataIngestedEvent>> byUser = batch.stream()
+            .collect(Collectors.groupingBy(MetadataIngestedEvent::userId, LinkedHashMap::new, Collectors.toList()));
+
+        Set<Long> domainIds = new HashSet<>();
+        for (MetadataIngestedEvent event : batch) {
+            for (EmailMetadata metadata : event.inserted()) {
+                domainIds.add(metadata.getDomainId());
+            }
+        }
+        Map<Long, String> domains = domainIds.isEmpty() ? Map.of() : senderDirectory.domainNames(domainIds);
+
+        for (Map.Entry<Long, List<MetadataIngestedEvent>> entry : byUser.entrySet()) {
+            Long userId = entry.getKey();
+            try {
+                UserIndex index = indexFor(userId);
+                Map<String, Boolean> readChanges = new LinkedHashMap<>();
+                Map<String, Long> accountIds = new HashMap<>();
+                for (MetadataIngestedEvent event : entry.getValue()) {
+                    if (removedAccounts.contains(event.accountId())) continue;
+                    for (EmailMetadata metadata : event.inserted()) {
+                        index.writer.updateDocument(new Term("messageId", metadata.getMessageId()), toDocument(
+                            metadata.getMessageId(), metadata.getAccountId(), metadata.getSenderEmail(),
+                            domains.getOrDefault(metadata.getDomainId(), ""), metadata.getSubject(),
+                            metadata.getReceivedAt(), metadata.isRead(), metadata.isFromMe()));
+                    }
+                    for (String messageId : event.markedRead()) {
+                        readChanges.put(messageId, true);
+                        accountIds.put(messageId, event.accountId());
+                    }
+                    for (String messageId : event.markedUnread()) {
+                        readChanges.put(messageId, false);
+                        accountIds.put(messageId, event.accountId());
+                    }
+                }
+                if (!readChanges.isEmpty()) {
+                    applyReadChanges(userId, index, readChanges, accountIds);
+                }
+                index.searcherManager.maybeRefresh();
+            } catch (IOException | RuntimeException e) {
+                stale.add(userId);
+                System.err.println("Failed to index a batch for user " + userId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void applyReadChanges(Long userId, UserIndex index, Map<String, Boolean> readChanges,
+                                  Map<String, Long> accountIds) throws IOException {
+        // Inserts from this batch must be visible to find their documents
+        index.searcherManager.maybeRefreshBlocking();
+        IndexSearcher searcher = index.searcherManager.acquire();
+        try {
+            for (Map.Entry<String, Boolean> change : readChanges.entrySet()) {
+                Term id = new Term("messageId", change.getKey());
+                TopDocs found = searcher.search(new TermQuery(id), 1);
+                if (found.scoreDocs.length == 0) {
+                    // Not re-indexed by the running rebuild yet, which may then index the old flag
+                    if (rebuilding.contains(userId)) {
+                        skippedReadChanges.computeIfAbsent(userId, k -> new HashMap<>())
+                            .computeIfAbsent(accountIds.get(change.getKey()), k -> new HashSet<>())
+                            .add(change.getKey());
+                    }
+                    continue;
+                }
+                Document stored = searcher.storedFields().document(found.scoreDocs[0].doc);
+                if (Boolean.parseBoolean(stored.get("read")) == change.getValue()) continue;
+                index.writer.updateDocument(id, toDocument(stored.get("messageId"),
+                    stored.getField("accountId").numericValue().longValue(), stored.get("sender"),
+                    stored.get("domain"), stored.get("subject"), receivedAt(stored), change.getValue(),
+                    Boolean.parseBoolean(stored.get("fromMe"))));
+            }
+        } finally {
+            index.searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Re-apply read-flag changes skipped during rebuilds that have finished, from the flags now in
+     * email_metadata. Runs on the indexer thread, so a later page's change is applied after this.
+     */
+    private void recheckSkippedReadChanges() {
+        for (Iterator<Map.Entry<Long, Map<Long, Set<String>>>> it = skippedReadChanges.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, Map<Long, Set<String>>> entry = it.next();
+            Long userId = entry.getKey();
+            if (rebuilding.contains(userId)) continue;
+            it.remove();
+            try {
+                UserIndex index = indexFor(userId);
+                Map<String, Boolean> readChanges = new LinkedHashMap<>();
+                Map<String, Long> accountIds = new HashMap<>();
+                for (Map.Entry<Long, Set<String>> account : entry.getValue().entrySet()) {
+                    if (removedAccounts.contains(account.getKey())) continue;
+                    List<String> messageIds = new ArrayList<>(account.getValue());
+                    for (int from = 0; from < messageIds.size(); from += READ_RECHECK_BATCH) {
+                        List<String> chunk = messageIds.subList(from, Math.min(from + READ_RECHECK_BATCH, messageIds.size()));
+                        for (Object[] row : metadataRepository.findReadStates(account.getKey(), chunk)) {
+                            readChanges.put((String) row[0], (Boolean) row[1]);
+                            accountIds.put((String) row[0], account.getKey());
+                        }
+                    }
+                }
+                if (!readChanges.isEmpty()) {
+                    applyReadChanges(userId, index, readChanges, accountIds);
+                    index.searcherManager.maybeRefresh();
+                }
+            } catch (IOException | RuntimeException e) {
+                stale.add(userId);
+                System.err.println("Failed to re-apply read changes for user " + userId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void deleteAccountDocuments(UserIndex index, Long accountId) throws IOException {
+        DrillDownQuery account = new DrillDownQuery(facetsConfig);
+        account.add("account", Long.toString(accountId));
+        index.writer.deleteDocuments(account);
+    }
+
+    private long indexSegment(UserIndex index, Long accountId, long afterId, long upToId) {
+        return readOnlyTransaction.execute(status -> {
+            long count = 0;
+            try (Stream<Object[]> rows = metadataRepository.streamIndexRows(accountId, afterId, upToId)) {
+                for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+                    String messageId = (String) row[0];
+                    index.writer.updateDocument(new Term("messageId", messageId), toDocument(messageId, accountId,
+                        (String) row[1], (String) row[2], (String) row[3], (LocalDateTime) row[4],
+                        (Boolean) row[5], (Boolean) row[6]));
+                    count++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return count;
+        });
+    }
+
+    private Document toDocument(String messageId, long accountId, String sender, String domain, String subject,
+                                LocalDateTime receivedAt, boolean read, boolean fromMe) throws IOException {
+        String domainLabel = domain != null && !domain.isEmpty() ? domain : "unknown";
+        long receivedMillis = receivedAt.toInstant(ZoneOffset.UTC).toEpochMilli();
+
+        Document document = new Document();
+        document.add(new StringField("messageId", messageId, Field.Store.YES));
+        document.add(new TextField("subject", subject != null ? subject : "", Field.Store.YES));
+        document.add(new StoredField("accountId", accountId));
+        document.add(new StoredField("sender", sender != null ? sender : ""));
+        document.add(new StoredField("domain", domainLabel));
+        document.add(new StoredField("read", Boolean.toString(read)));
+        document.add(new StoredField("fromMe", Boolean.toString(fromMe)));
+        document.add(new StoredField("receivedAt", receivedMillis));
+        document.add(new NumericDocValuesField("receivedAt", receivedMillis));
+
+        document.add(new SortedSetDocValuesFacetField("account", Long.toString(accountId)));
+        document.add(new SortedSetDocValuesFacetField("domain", domainLabel));
+        document.add(new SortedSetDocValuesFacetField("read", Boolean.toString(read)));
+        document.add(new SortedSetDocValuesFacetField("fromMe", Boolean.toString(fromMe)));
+        document.add(new SortedSetDocValuesFacetField("month", MONTH.format(receivedAt)));
+        return facetsConfig.build(document);
+    }
+
+    private Query parseText(String text) {
+        if (text == null || text.isBlank()) {
+            return new MatchAllDocsQuery();
+        }
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, "subject");
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query query = parser.parse(text.trim());
+        // Only stop words or operators
+        return query != null ? query : new MatchAllDocsQuery();
+    }
+
+    private static List<Map<String, Object>> facetValues(DrillSideways.DrillSidewaysResult found, String dim) throws IOException {
+        FacetResult result;
+        try {
+            result = found.facets.getTopChildren(FACET_VALUES, dim);
+        } catch (IllegalArgumentException e) {
+            // No document has a value for this facet yet
+            return List.of();
+        }
+        if (result == null) return List.of();
+        List<Map<String, Object>> values = new ArrayList<>(result.labelValues.length);
+        for (LabelAndValue labelValue : result.labelValues) {
+            values.add(Map.of("value", labelValue.label, "count", labelValue.value.longValue()));
+        }
+        return values;
+    }
+
+    private static LocalDateTime receivedAt(Document stored) {
+        long millis = stored.getField("receivedAt").numericValue().longValue();
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+
+    private static int changeCount(MetadataIngestedEvent event) {
+        return event.inserted().size() + event.markedRead().size() + event.markedUnread().size();
+    }
+
+    private boolean hasIndex(Long userId) {
+        return indexes.containsKey(userId) || Files.isDirectory(userPath(userId));
+    }
+
+    private UserIndex indexFor(Long userId) {
+        return indexes.computeIfAbsent(userId, id -> {
+            try {
+                return new UserIndex(userPath(id));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Cannot open mailbox index of user " + id, e);
+            }
+        });
+    }
+
+    private Path userPath(Long userId) {
+        return root.resolve("user-" + userId);
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new IllegalStateException("Mailbox index is disabled (search.mailbox-index.enabled)");
+        }
+    }
+
+    private static int decodeOffset(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(cursor);
+            if (offset < 0 || offset > MAX_OFFSET) throw new NumberFormatException();
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,585 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.DistinctSketch;
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.entity.EmailMetadata;
+import com.emailutilities.entity.ReplyEdge;
+import com.emailutilities.entity.ReplyLatencyStats;
+import com.emailutilities.entity.SenderStats;
+import com.emailutilities.entity.VolumeBucket;
+import com.emailutilities.repository.DistinctSketchRepository;
+import com.emailutilities.repository.EmailAccountRepository;
+import com.emailutilities.repository.EmailMetadataRepository;
+import com.emailutilities.repository.ReplyEdgeRepository;
+import com.emailutilities.repository.SenderStatsRepository;
+import com.emailutilities.repository.VolumeBucketRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Writes one page of provider emails into email_metadata and keeps the sender_stats
+ * rollup, reply edges and latencies, volume_buckets cube, distinct-count sketches and sender
+ * classifications in step, all in a single transaction. Sender and recipient addresses are stored as senders IDs, and each
+ * row carries the domain ID of its sender's registrable domain.
+ */
+@Service
+public class MetadataIngestService {
+
+    private final EmailMetadataRepository metadataRepository;
+    private final EmailAccountRepository accountRepository;
+    private final SenderStatsRepository senderStatsRepository;
+    private final VolumeBucketRepository volumeBucketRepository;
+    private final DistinctSketchRepository distinctSketchRepository;
+    private final ReplyEdgeRepository replyEdgeRepository;
+    private final ReplyLatencyService replyLatencyService;
+    private final SenderClassificationService classificationService;
+    private final SenderDirectory senderDirectory;
+    private final MetricsService metricsService;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate pageTransaction;
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("<([^>]+)>|([\\w.+-]+@[\\w.-]+)");
+    private static final Pattern MESSAGE_ID_PATTERN = Pattern.compile("<[^<>\\s]+>");
+
+    public MetadataIngestService(EmailMetadataRepository metadataRepository,
+                                 EmailAccountRepository accountRepository,
+                                 SenderStatsRepository senderStatsRepository,
+                                 VolumeBucketRepository volumeBucketRepository,
+                                 DistinctSketchRepository distinctSketchRepository,
+                                 ReplyEdgeRepository replyEdgeRepository,
+                                 ReplyLatencyService replyLatencyService,
+                                 SenderClassificationService classificationService,
+                                 SenderDirectory senderDirectory,
+                                 MetricsService metricsService,
+                                 ApplicationEventPublisher eventPublisher,
+                                 PlatformTransactionManager transactionManager) {
+        this.metadataRepository = metadataRepository;
+        this.accountRepository = accountRepository;
+        this.senderStatsRepository = senderStatsRepository;
+        this.volumeBucketRepository = volumeBucketRepository;
+        this.distinctSketchRepository = distinctSketchRepository;
+        this.replyEdgeRepository = replyEdgeRepository;
+        this.replyLatencyService = replyLatencyService;
+        this.classificationService = classificationService;
+        this.senderDirectory = senderDirectory;
+        this.metricsService = metricsService;
+        this.eventPublisher = eventPublisher;
+        this.pageTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Result of ingesting one page
+     */
+    public record IngestResult(int synced, int skipped, int readFlagsChanged) {
+    }
+
+    /**
+     * Insert new emails from a provider page, update read flags of ones we already have,
+     * and apply both to the sender rollup
+     */
+    public IngestResult ingestPage(EmailAccount account, List<Map<String, Object>> emails) {
+        String accountEmail = account.getEmailAddress().toLowerCase();
+
+        // Addresses are interned before the page transaction opens, so syncs that meet the same
+        // new sender never wait on each other while holding a page's locks
+        List<EmailMetadata> parsed = new ArrayList<>(emails.size());
+        Map<String, String> addresses = new HashMap<>();
+        for (Map<String, Object> email : emails) {
+            Object isUnread = email.get("isUnread");
+            EmailMetadata metadata = toMetadata(account.getId(), accountEmail, email, isUnread == null || !(Boolean) isUnread);
+            parsed.add(metadata);
+            addresses.merge(metadata.getSenderEmail(), metadata.isFromMe() ? "" : nullToEmpty(metadata.getSenderName()),
+                (a, b) -> a.isEmpty() ? b : a);
+            addresses.putIfAbsent(metadata.getRecipientEmail(), "");
+        }
+        Map<String, SenderDirectory.SenderKey> keys = senderDirectory.intern(addresses);
+        for (EmailMetadata metadata : parsed) {
+            SenderDirectory.SenderKey sender = keys.get(metadata.getSenderEmail());
+            metadata.setSenderId(sender.senderId());
+            metadata.setDomainId(sender.domainId());
+            metadata.setRecipientId(keys.get(metadata.getRecipientEmail()).senderId());
+        }
+
+        return pageTransaction.execute(status -> writePage(account, parsed));
+    }
+
+    private IngestResult writePage(EmailAccount account, List<EmailMetadata> parsed) {
+        // The rollups, buckets, sketches and classifications below are read, changed in Java and
+        // written back; serialize pages per account so concurrent syncs can't lose increments or
+        // race each other's inserts
+        accountRepository.lockForIngest(account.getId());
+
+        List<String> messageIds = parsed.stream()
+            .map(EmailMetadata::getMessageId)
+            .collect(Collectors.toList());
+
+        // Batched dedupe that also returns what we stored for each existing message
+        Map<String, Object[]> existing = new HashMap<>();
+        for (Object[] row : metricsService.timeDedupeQuery(() -> metadataRepository.findReadStates(account.getId(), messageIds))) {
+            existing.put((String) row[0], row);
+        }
+
+        Map<String, SenderStatsDelta> deltas = new HashMap<>();
+        Map<BucketKey, long[]> volume = new HashMap<>();
+        Map<SketchKey, Set<String>> distinct = new HashMap<>();
+        List<EmailMetadata> newMetadata = new ArrayList<>();
+        List<String> nowRead = new ArrayList<>();
+        List<String> nowUnread = new ArrayList<>();
+        int skipped = 0;
+
+        for (EmailMetadata metadata : parsed) {
+            String messageId = metadata.getMessageId();
+            boolean read = metadata.isRead();
+
+            Object[] stored = existing.get(messageId);
+            if (stored != null) {
+                skipped++;
+                // Only mail we received counts toward unread; reconcile if the flag flipped upstream
+                boolean storedRead = (Boolean) stored[1];
+                boolean storedFromMe = (Boolean) stored[3];
+                if (storedRead != read && !storedFromMe) {
+                    (read ? nowRead : nowUnread).add(messageId);
+                    deltas.computeIfAbsent((String) stored[2], k -> new SenderStatsDelta()).unread += read ? -1 : 1;
+                    addVolume(volume, (String) stored[2], (LocalDateTime) stored[4], 0, read ? -1 : 1, 0);
+                }
+                continue;
+            }
+
+            newMetadata.add(metadata);
+            // Guard against the same message appearing twice on one page
+            existing.put(messageId, new Object[]{messageId, read, metadata.getSenderEmail(), metadata.isFromMe(), metadata.getReceivedAt()});
+
+            String counterpart = metadata.isFromMe() ? metadata.getRecipientEmail() : metadata.getSenderEmail();
+            deltas.computeIfAbsent(counterpart, k -> new SenderStatsDelta()).add(metadata);
+            if (metadata.isFromMe()) {
+                addVolume(volume, metadata.getSenderEmail(), metadata.getReceivedAt(), 0, 0, 1);
+            } else {
+                addVolume(volume, metadata.getSenderEmail(), metadata.getReceivedAt(), 1, read ? 0 : 1, 0);
+                addDistinct(distinct, metadata.getSenderEmail(), metadata.getDomainId(), metadata.getReceivedAt().toLocalDate());
+            }
+        }
+
+        // One saveAll per page; IDENTITY keys still mean one insert statement per new email
+        if (!newMetadata.isEmpty()) {
+            metricsService.timeMetadataWrite(newMetadata.size(), () -> metadataRepository.saveAll(newMetadata));
+        }
+        if (!nowRead.isEmpty()) {
+            metadataRepository.updateReadFlag(account.getId(), nowRead, true);
+        }
+        if (!nowUnread.isEmpty()) {
+            metadataRepository.updateReadFlag(account.getId(), nowUnread, false);
+        }
+
+        applyReplyEdges(account.getId(), newMetadata, deltas);
+        applyToRollup(account.getId(), deltas);
+        applyToVolumeBuckets(account.getId(), volume);
+        applyToSketches(account.getId(), distinct);
+        classificationService.apply(account.getId(), newMetadata);
+
+        if (!newMetadata.isEmpty() || !nowRead.isEmpty() || !nowUnread.isEmpty()) {
+            eventPublisher.publishEvent(new MetadataIngestedEvent(account.getId(), account.getUser().getId(), newMetadata, nowRead, nowUnread));
+        }
+
+        return new IngestResult(newMetadata.size(), skipped, nowRead.size() + nowUnread.size());
+    }
+
+    /**
+     * Record an edge for every new reply and resolve it against the email it answers.
+     *
+     * Resolving the owner's reply attributes it to the parent's sender: until then it counts
+     * toward the reply's recipient (as SenderStatsDelta already did), and resolving moves the count.
+     * Every resolved reply to the other side's email also yields one reply-latency sample.
+     */
+    private void applyReplyEdges(Long accountId, List<EmailMetadata> newMetadata,
+                                 Map<String, SenderStatsDelta> deltas) {
+        Map<String, Parent> parents = new HashMap<>();
+        List<ReplyEdge> newEdges = new ArrayList<>();
+        for (EmailMetadata metadata : newMetadata) {
+            if (metadata.getRfcMessageId() != null) {
+                parents.put(metadata.getRfcMessageId(),
+                    new Parent(metadata.getSenderEmail(), metadata.getReceivedAt(), metadata.isFromMe()));
+            }
+            if (metadata.getInReplyTo() != null) {
+                ReplyEdge edge = new ReplyEdge();
+                edge.setAccountId(accountId);
+                edge.setReplyMessageId(metadata.getMessageId());
+                edge.setParentRfcMessageId(metadata.getInReplyTo());
+                edge.setFromMe(metadata.isFromMe());
+                edge.setCounterpartEmail(metadata.isFromMe() ? metadata.getRecipientEmail() : metadata.getSenderEmail());
+                edge.setRepliedAt(metadata.getReceivedAt());
+                newEdges.add(edge);
+            }
+        }
+        if (newEdges.isEmpty() && parents.isEmpty()) return;
+
+        // Earlier replies whose parent arrived on this page (the common case during a backfill)
+        List<ReplyEdge> waiting = parents.isEmpty() ? List.of()
+            : replyEdgeRepository.findByAccountIdAndParentRfcMessageIdInAndResolvedFalse(accountId, parents.keySet());
+
+        // Parents of this page's replies that were ingested on an earlier page
+        Set<String> earlierParents = newEdges.stream()
+            .map(ReplyEdge::getParentRfcMessageId)
+            .filter(id -> !parents.containsKey(id))
+            .collect(Collectors.toSet());
+        if (!earlierParents.isEmpty()) {
+            for (Object[] row : metadataRepository.findByRfcMessageIds(accountId, earlierParents)) {
+                parents.putIfAbsent((String) row[0], new Parent((String) row[1], (LocalDateTime) row[2], (Boolean) row[3]));
+            }
+        }
+
+        List<ReplyLatencyService.Sample> latencies = new ArrayList<>();
+        List<ReplyEdge> changed = new ArrayList<>(newEdges);
+        for (ReplyEdge edge : newEdges) {
+            resolveReplyEdge(edge, parents, deltas, latencies);
+        }
+        for (ReplyEdge edge : waiting) {
+            if (resolveReplyEdge(edge, parents, deltas, latencies)) {
+                changed.add(edge);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            replyEdgeRepository.saveAll(changed);
+        }
+        replyLatencyService.apply(accountId, latencies);
+    }
+
+    private boolean resolveReplyEdge(ReplyEdge edge, Map<String, Parent> parents,
+                                     Map<String, SenderStatsDelta> deltas, List<ReplyLatencyService.Sample> latencies) {
+        Parent parent = parents.get(edge.getParentRfcMessageId());
+        if (parent == null) return false;
+        edge.setResolved(true);
+
+        // Only a reply across the conversation (me to them, them to me) is measured or re-attributed
+        if (edge.isFromMe() == parent.fromMe()) return true;
+
+        if (edge.isFromMe() && !parent.sender().equals(edge.getCounterpartEmail())) {
+            deltas.computeIfAbsent(edge.getCounterpartEmail(), k -> new SenderStatsDelta()).replied--;
+            deltas.computeIfAbsent(parent.sender(), k -> new SenderStatsDelta()).replied++;
+            edge.setCounterpartEmail(parent.sender());
+        }
+
+        // Clock skew between servers can put a reply "before" its parent; such pairs are skipped
+        long seconds = Duration.between(parent.at(), edge.getRepliedAt()).getSeconds();
+        if (seconds >= 0) {
+            latencies.add(new ReplyLatencyService.Sample(edge.getCounterpartEmail(),
+                edge.isFromMe() ? ReplyLatencyStats.Direction.ME : ReplyLatencyStats.Direction.THEM, seconds));
+        }
+        return true;
+    }
+
+    /**
+     * What reply resolution needs to know about the email being replied to
+     */
+    private record Parent(String sender, LocalDateTime at, boolean fromMe) {
+    }
+
+    /**
+     * Merge per-page deltas into sender_stats with one read and one saveAll (updates are JDBC-batched,
+     * new rows inserted one by one)
+     */
+    private void applyToRollup(Long accountId, Map<String, SenderStatsDelta> deltas) {
+        if (deltas.isEmpty()) return;
+
+        Map<String, SenderStats> rows = senderStatsRepository.findByAccountIdAndSenderEmailIn(accountId, deltas.keySet())
+            .stream()
+            .collect(Collectors.toMap(SenderStats::getSenderEmail, s -> s));
+
+        for (Map.Entry<String, SenderStatsDelta> entry : deltas.entrySet()) {
+            SenderStats stats = rows.computeIfAbsent(entry.getKey(), email -> {
+                SenderStats created = new SenderStats();
+                created.setAccountId(accountId);
+                created.setSenderEmail(email);
+                return created;
+            });
+            entry.getValue().applyTo(stats);
+        }
+
+        senderStatsRepository.saveAll(rows.values());
+    }
+
+    /**
+     * Record one email's contribution to its daily per-sender bucket and the all-sender day and hour buckets
+     */
+    private void addVolume(Map<BucketKey, long[]> volume, String sender, LocalDateTime at,
+                           long received, long unread, long fromMe) {
+        LocalDateTime day = at.truncatedTo(ChronoUnit.DAYS);
+        LocalDateTime hour = at.truncatedTo(ChronoUnit.HOURS);
+        for (BucketKey key : List.of(
+                new BucketKey(VolumeBucket.Granularity.DAY, sender, day),
+                new BucketKey(VolumeBucket.Granularity.DAY, VolumeBucket.ALL_SENDERS, day),
+                new BucketKey(VolumeBucket.Granularity.HOUR, VolumeBucket.ALL_SENDERS, hour))) {
+            long[] counts = volume.computeIfAbsent(key, k -> new long[3]);
+            counts[0] += received;
+            counts[1] += unread;
+            counts[2] += fromMe;
+        }
+    }
+
+    /**
+     * Merge per-page volume deltas into volume_buckets with one read and one saveAll (updates are
+     * JDBC-batched, new rows inserted one by one)
+     */
+    private void applyToVolumeBuckets(Long accountId, Map<BucketKey, long[]> volume) {
+        if (volume.isEmpty()) return;
+
+        Set<LocalDateTime> starts = new HashSet<>();
+        Set<String> senders = new HashSet<>();
+        for (BucketKey key : volume.keySet()) {
+            starts.add(key.start());
+            senders.add(key.sender());
+        }
+
+        Map<BucketKey, VolumeBucket> rows = new HashMap<>();
+        for (VolumeBucket bucket : volumeBucketRepository.findForUpdate(accountId, starts, senders)) {
+            rows.put(new BucketKey(bucket.getGranularity(), bucket.getSenderEmail(), bucket.getBucketStart()), bucket);
+        }
+
+        List<VolumeBucket> changed = new ArrayList<>(volume.size());
+        for (Map.Entry<BucketKey, long[]> entry : volume.entrySet()) {
+            BucketKey key = entry.getKey();
+            VolumeBucket bucket = rows.computeIfAbsent(key, k -> {
+                VolumeBucket created = new VolumeBucket();
+                created.setAccountId(accountId);
+                created.setGranularity(k.granularity());
+                created.setSenderEmail(k.sender());
+                created.setBucketStart(k.start());
+                return created;
+            });
+            long[] counts = entry.getValue();
+            bucket.setReceivedCount(bucket.getReceivedCount() + counts[0]);
+            bucket.setUnreadCount(Math.max(0, bucket.getUnreadCount() + counts[1]));
+            bucket.setFromMeCount(bucket.getFromMeCount() + counts[2]);
+            changed.add(bucket);
+        }
+
+        volumeBucketRepository.saveAll(changed);
+    }
+
+    private record BucketKey(VolumeBucket.Granularity granularity, String sender, LocalDateTime start) {
+    }
+
+    /**
+     * Record a received email's sender and registrable sender domain in its day's sketches and the
+     * all-time ones. Domains are added by domain ID, so news.brand.com and brand.com count once.
+     */
+    private void addDistinct(Map<SketchKey, Set<String>> distinct, String sender, Long domainId, LocalDate day) {
+        String domain = Long.toString(domainId);
+        for (LocalDate sketchDay : List.of(day, DistinctSketch.ALL_TIME)) {
+            distinct.computeIfAbsent(new SketchKey(DistinctSketch.Kind.SENDER, sketchDay), k -> new HashSet<>()).add(sender);
+            distinct.computeIfAbsent(new SketchKey(DistinctSketch.Kind.DOMAIN, sketchDay), k -> new HashSet<>()).add(domain);
+        }
+    }
+
+    /**
+     * Add the page's senders and domains to the stored sketches, writing back only the ones that changed
+     */
+    private void applyToSketches(Long accountId, Map<SketchKey, Set<String>> distinct) {
+        if (distinct.isEmpty()) return;
+
+        Set<LocalDate> days = distinct.keySet().stream().map(SketchKey::day).collect(Collectors.toSet());
+        Map<SketchKey, DistinctSketch> rows = new HashMap<>();
+        for (DistinctSketch sketch : distinctSketchRepository.findByAccountIdAndSketchDayIn(accountId, days)) {
+            rows.put(new SketchKey(sketch.getKind(), sketch.getSketchDay()), sketch);
+        }
+
+        List<DistinctSketch> changed = new ArrayList<>();
+        for (Map.Entry<SketchKey, Set<String>> entry : distinct.entrySet()) {
+            DistinctSketch row = rows.get(entry.getKey());
+            HyperLogLog sketch = row != null ? HyperLogLog.fromBytes(row.getRegisters()) : new HyperLogLog();
+
+            boolean updated = false;
+            for (String value : entry.getValue()) {
+                updated |= sketch.add(value);
+            }
+            // Once a sketch has seen a sender again most pages change nothing, so skip the write
+            if (!updated) continue;
+
+            if (row == null) {
+                row = new DistinctSketch();
+                row.setAccountId(accountId);
+                row.setKind(entry.getKey().kind());
+                row.setSketchDay(entry.getKey().day());
+            }
+            row.setRegisters(sketch.toBytes());
+            changed.add(row);
+        }
+
+        if (!changed.isEmpty()) {
+            distinctSketchRepository.saveAll(changed);
+        }
+    }
+
+    private record SketchKey(DistinctSketch.Kind kind, LocalDate day) {
+    }
+
+    /**
+     * Part of an address after the first '@', or the whole value if it has none (senders.domain)
+     */
+    static String domainOf(String email) {
+        return email.substring(email.indexOf('@') + 1);
+    }
+
+    private EmailMetadata toMetadata(Long accountId, String accountEmail, Map<String, Object> email, boolean read) {
+        EmailMetadata metadata = new EmailMetadata();
+        metadata.setAccountId(accountId);
+        metadata.setMessageId((String) email.get("id"));
+        metadata.setThreadId((String) email.get("threadId"));
+
+        String from = (String) email.getOrDefault("from", "");
+        String[] senderParts = parseEmailAddress(from);
+        metadata.setSenderEmail(senderParts[0].toLowerCase());
+        metadata.setSenderName(senderParts[1]);
+
+        String to = (String) email.getOrDefault("to", "");
+        String[] recipientParts = parseEmailAddress(to);
+        metadata.setRecipientEmail(recipientParts[0].toLowerCase());
+
+        metadata.setSubject((String) email.getOrDefault("subject", ""));
+        metadata.setRfcMessageId(firstMessageId((String) email.get("rfcMessageId")));
+        // References lists the whole thread oldest first, so its last entry is the direct parent
+        String inReplyTo = firstMessageId((String) email.get("inReplyTo"));
+        metadata.setInReplyTo(inReplyTo != null ? inReplyTo : lastMessageId((String) email.get("references")));
+        metadata.setListUnsubscribe(emptyToNull((String) email.get("listUnsubscribe")));
+        metadata.setListId(emptyToNull((String) email.get("listId")));
+        metadata.setPrecedence(emptyToNull((String) email.get("precedence")));
+        metadata.setReceivedAt(parseDate((String) email.get("date")));
+        metadata.setRead(read);
+        metadata.setFromMe(metadata.getSenderEmail().equalsIgnoreCase(accountEmail));
+        return metadata;
+    }
+
+    /**
+     * Accumulated change to one sender_stats row
+     */
+    private static final class SenderStatsDelta {
+        long received;
+        long unread;
+        long sentTo;
+        long replied;
+        String senderName;
+        LocalDateTime firstSeen;
+        LocalDateTime lastSeen;
+
+        void add(EmailMetadata metadata) {
+            if (metadata.isFromMe()) {
+                sentTo++;
+                if (metadata.getInReplyTo() != null) replied++;
+            } else {
+                received++;
+                if (!metadata.isRead()) unread++;
+                if (metadata.getSenderName() != null && !metadata.getSenderName().isEmpty()) {
+                    senderName = metadata.getSenderName();
+                }
+            }
+            LocalDateTime at = metadata.getReceivedAt();
+            if (firstSeen == null || at.isBefore(firstSeen)) firstSeen = at;
+            if (lastSeen == null || at.isAfter(lastSeen)) lastSeen = at;
+        }
+
+        void applyTo(SenderStats stats) {
+            stats.setReceivedCount(stats.getReceivedCount() + received);
+            stats.setUnreadCount(Math.max(0, stats.getUnreadCount() + unread));
+            stats.setSentToCount(stats.getSentToCount() + sentTo);
+            stats.setRepliedCount(Math.max(0, stats.getRepliedCount() + replied));
+            if (senderName != null && (stats.getSenderName() == null || stats.getSenderName().isEmpty())) {
+                stats.setSenderName(senderName);
+            }
+            if (firstSeen != null && (stats.getFirstSeenAt() == null || firstSeen.isBefore(stats.getFirstSeenAt()))) {
+                stats.setFirstSeenAt(firstSeen);
+            }
+            if (lastSeen != null && (stats.getLastSeenAt() == null || lastSeen.isAfter(stats.getLastSeenAt()))) {
+                stats.setLastSeenAt(lastSeen);
+            }
+        }
+    }
+
+    private String[] parseEmailAddress(String fromHeader) {
+        if (fromHeader == null || fromHeader.isEmpty()) {
+            return new String[]{"", ""};
+        }
+
+        Matcher matcher = EMAIL_PATTERN.matcher(fromHeader);
+        String email = "";
+        if (matcher.find()) {
+            email = matcher.group(1) != null ? matcher.group(1) : matcher.group(2);
+        }
+
+        String name = fromHeader.replaceAll("<[^>]+>", "").trim();
+        name = name.replaceAll("\"", "").trim();
+
+        if (email.isEmpty()) {
+            email = fromHeader.trim();
+        }
+
+        return new String[]{email, name};
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private String firstMessageId(String header) {
+        if (header == null || header.isEmpty()) return null;
+        Matcher matcher = MESSAGE_ID_PATTERN.matcher(header);
+        return matcher.find() ? fitColumn(matcher.group()) : null;
+    }
+
+    private String lastMessageId(String header) {
+        if (header == null || header.isEmpty()) return null;
+        Matcher matcher = MESSAGE_ID_PATTERN.matcher(header);
+        String last = null;
+        while (matcher.find()) {
+            last = matcher.group();
+        }
+        return last != null ? fitColumn(last) : null;
+    }
+
+    // An ID too long for the column can't be matched reliably anyway; dropping it beats failing the page
+    private String fitColumn(String messageId) {
+        return messageId.length() <= 255 ? messageId : null;
+    }
+
+    private LocalDateTime parseDate(String dateStr) {
+        if (dateStr == null || dateStr.isEmpty()) {
+            return LocalDateTime.now();
+        }
+
+        try {
+            // Try ISO format first (Outlook)
+            if (dateStr.contains("T")) {
+                return LocalDateTime.parse(dateStr.substring(0, 19));
+            }
+
+            // RFC 2822 format (Gmail), e.g. "Tue, 31 Dec 2024 10:30:00 -0800"
+            java.time.format.DateTimeFormatter formatter = java.time.format.DateTimeFormatter.ofPattern(
+                "EEE, d MMM yyyy HH:mm:ss Z", Locale.ENGLISH
+            );
+            java.time.ZonedDateTime zdt = java.time.ZonedDateTime.parse(dateStr, formatter);
+            return zdt.toLocalDateTime();
+        } catch (Exception e) {
+            return LocalDateTime.now();
+        }
+    }
+}
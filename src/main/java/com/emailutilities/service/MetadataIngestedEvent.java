@@ -0,0 +1,16 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.EmailMetadata;
+
+import java.util.List;
+
+/**
+ * Published by {@link MetadataIngestService} for every ingested page. Listeners that keep derived
+ * in-memory state should use @TransactionalEventListener so they only see committed pages.
+ */
+public record MetadataIngestedEvent(Long accountId,
+                                    Long userId,
+                                    List<EmailMetadata> inserted,
+                                    List<String> markedRead,
+                                    List<String> markedUnread) {
+}
@@ -0,0 +1,146 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.repository.EmailAccountRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Manages the per-account partitions of email_metadata on PostgreSQL (see the V5 migration).
+ *
+ * Each account gets its own partition before its first sync, optionally split by month of
+ * receivedAt; a nightly job creates upcoming months and moves rows out of an account's default
+ * sub-partition. Partition DDL runs outside the ingest transaction so it never holds a lock on
+ * email_metadata while a page is written. On a database without partitioning (the H2 benchmark)
+ * every method falls back to plain row operations.
+ */
+@Service
+public class MetadataPartitionService {
+
+    // Per-account tables whose rows are derived from email_metadata
+    private static final List<String> ROLLUP_TABLES = List.of(
+        "sender_stats", "volume_buckets", "distinct_sketches", "reply_edges", "reply_latency_stats",
+        "sender_classifications");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmailAccountRepository accountRepository;
+
+    @Value("${metadata.partitioning.monthly:false}")
+    private boolean monthly;
+
+    @Value("${metadata.partitioning.months-ahead:2}")
+    private int monthsAhead;
+
+    // Accounts known to have a partition, so syncs only issue DDL once per account per process
+    private final Set<Long> partitionedAccounts = ConcurrentHashMap.newKeySet();
+    private volatile Boolean partitioned;
+
+    public MetadataPartitionService(JdbcTemplate jdbcTemplate, EmailAccountRepository accountRepository) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.accountRepository = accountRepository;
+    }
+
+    /**
+     * Make sure the account has its own partition; call before syncing it, outside any transaction
+     */
+    public void ensureAccountPartition(Long accountId) {
+        if (!isPartitioned() || partitionedAccounts.contains(accountId)) {
+            return;
+        }
+        Boolean created = jdbcTemplate.queryForObject(
+            "SELECT ensure_email_metadata_partition(?, ?)", Boolean.class, accountId, monthly);
+        if (Boolean.TRUE.equals(created)) {
+            System.out.println("Created email_metadata partition for account " + accountId);
+            maintainMonths(accountId);
+        }
+        partitionedAccounts.add(accountId);
+    }
+
+    /**
+     * Remove an account's email metadata and everything derived from it. With partitioning the
+     * metadata goes as a single DROP TABLE rather than a DELETE of every row.
+     */
+    public void purgeAccount(Long accountId) {
+        if (isPartitioned()) {
+            jdbcTemplate.queryForObject("SELECT drop_email_metadata_partition(?)", Boolean.class, accountId);
+            partitionedAccounts.remove(accountId);
+        } else {
+            jdbcTemplate.update("DELETE FROM email_metadata WHERE account_id = ?", accountId);
+        }
+        for (String table : ROLLUP_TABLES) {
+            jdbcTemplate.update("DELETE FROM " + table + " WHERE account_id = ?", accountId);
+        }
+    }
+
+    /**
+     * Nightly: create the coming months' sub-partitions and split out any months that landed in
+     * an account's default sub-partition (e.g. old mail from a backfill)
+     */
+    @Scheduled(cron = "${metadata.partitioning.maintenance-cron:0 15 3 * * *}")
+    public void maintainMonthlyPartitions() {
+        if (!monthly || !isPartitioned()) {
+            return;
+        }
+        for (EmailAccount account : accountRepository.findAll()) {
+            try {
+                maintainMonths(account.getId());
+            } catch (Exception e) {
+                System.err.println("Partition maintenance failed for account " + account.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void maintainMonths(Long accountId) {
+        String defaultPartition = "email_metadata_a" + accountId + "_default";
+        Boolean splitByMonth = jdbcTemplate.queryForObject(
+            "SELECT to_regclass(?) IS NOT NULL", Boolean.class, defaultPartition);
+        if (!Boolean.TRUE.equals(splitByMonth)) {
+            return;
+        }
+
+        Set<LocalDate> months = new LinkedHashSet<>(jdbcTemplate.queryForList(
+            "SELECT DISTINCT CAST(date_trunc('month', received_at) AS DATE) FROM " + defaultPartition, LocalDate.class));
+        LocalDate thisMonth = LocalDate.now().withDayOfMonth(1);
+        for (int i = 0; i <= monthsAhead; i++) {
+            months.add(thisMonth.plusMonths(i));
+        }
+
+        int created = 0;
+        for (LocalDate month : months) {
+            Boolean added = jdbcTemplate.queryForObject(
+                "SELECT ensure_email_metadata_month(?, ?)", Boolean.class, accountId, Date.valueOf(month));
+            if (Boolean.TRUE.equals(added)) {
+                created++;
+            }
+        }
+        if (created > 0) {
+            System.out.println("Created " + created + " monthly email_metadata partitions for account " + accountId);
+        }
+    }
+
+    private boolean isPartitioned() {
+        if (partitioned == null) {
+            Integer count;
+            try {
+                count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM pg_partitioned_table p JOIN pg_class c ON c.oid = p.partrelid " +
+                    "WHERE c.relname = 'email_metadata'", Integer.class);
+            } catch (DataAccessException e) {
+                // Not PostgreSQL
+                count = 0;
+            }
+            partitioned = count != null && count > 0;
+        }
+        return partitioned;
+    }
+}
@@ -0,0 +1,145 @@
+package com.emailutilities.service;
+
+import com.emailutilities.dto.RankingPage;
+import com.emailutilities.entity.Sender;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Full-text search over the local email_metadata store by subject, sender name and sender address,
+ * so finding mail doesn't need a rate-limited provider search.
+ *
+ * On PostgreSQL the subject is matched against email_metadata.subject_search and the sender against
+ * senders.search_vector (both GIN-indexed, see V11) and results are ranked with ts_rank_cd, sender
+ * matches first. The two matches are separate queries joined with UNION ALL, so each can use its own
+ * index; an OR across them would scan every email of the accounts. PostgreSQL is the only supported
+ * database, so there is no embedded fallback.
+ */
+@Service
+public class MetadataSearchService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    // Deep pages get slower with OFFSET; nobody pages this far through search results
+    private static final int MAX_OFFSET = 10_000;
+
+    // Subject matches (GIN on subject_search) and sender matches (GIN on senders.search_vector, then
+    // idx_email_metadata_sender_account) are summed per email, so a sender match outranks any
+    // subject-only match; ts_rank_cd stays well below 1 for subjects. Only the page's rows are
+    // joined back for their columns, by primary key.
+    private static final String POSTGRES_SEARCH =
+        "WITH q AS (SELECT websearch_to_tsquery('english', :query) AS subject_query, " +
+        "                  websearch_to_tsquery('simple', :query) AS sender_query), " +
+        "hits AS (" +
+        "  SELECT e.account_id, e.received_at, e.id, ts_rank_cd(e.subject_search, q.subject_query) AS rank " +
+        "  FROM email_metadata e, q " +
+        "  WHERE e.account_id IN (:accountIds) AND e.subject_search @@ q.subject_query " +
+        "  UNION ALL " +
+        "  SELECT e.account_id, e.received_at, e.id, 1.0 " +
+        "  FROM senders s, q, email_metadata e " +
+        "  WHERE s.search_vector @@ q.sender_query AND e.sender_id = s.id AND e.account_id IN (:accountIds)), " +
+        "page AS (" +
+        "  SELECT account_id, received_at, id, SUM(rank) AS rank FROM hits " +
+        "  GROUP BY account_id, received_at, id " +
+        "  ORDER BY rank DESC, received_at DESC, id DESC " +
+        "  LIMIT :limit OFFSET :offset) " +
+        "SELECT e.message_id, e.thread_id, e.account_id, e.sender_id, e.subject, e.received_at, e.is_read, p.rank " +
+        "FROM page p JOIN email_metadata e " +
+        "  ON e.account_id = p.account_id AND e.received_at = p.received_at AND e.id = p.id " +
+        "ORDER BY p.rank DESC, p.received_at DESC, p.id DESC";
+
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final SenderDirectory senderDirectory;
+    private final MetricsService metricsService;
+
+    public MetadataSearchService(NamedParameterJdbcTemplate namedJdbcTemplate,
+                                 SenderDirectory senderDirectory,
+                                 MetricsService metricsService) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.senderDirectory = senderDirectory;
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * One page of the accounts' emails matching the query, best match first. The cursor is the
+     * nextCursor of the previous page.
+     */
+    public RankingPage search(List<Long> accountIds, String query, int limit, String cursor) {
+        if (query == null || query.isBlank()) {
+            throw new IllegalArgumentException("Search query is required");
+        }
+        int offset = decodeOffset(cursor);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        if (accountIds.isEmpty()) return new RankingPage(List.of(), null);
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("query", query.trim())
+            .addValue("accountIds", accountIds)
+            .addValue("limit", pageSize)
+            .addValue("offset", offset);
+
+        List<Object[]> rows = metricsService.timeSearchQuery(
+            () -> namedJdbcTemplate.query(POSTGRES_SEARCH, params, (rs, i) -> toRow(rs)));
+
+        Map<Long, Sender> senders = senderDirectory.describe(rows.stream()
+            .map(row -> (Long) row[3])
+            .collect(Collectors.toSet()));
+
+        List<Map<String, Object>> items = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Sender sender = senders.get((Long) row[3]);
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("messageId", row[0]);
+            item.put("threadId", row[1]);
+            item.put("accountId", row[2]);
+            item.put("sender", sender != null ? sender.getEmail() : "");
+            item.put("senderName", sender != null && sender.getName() != null ? sender.getName() : "");
+            item.put("subject", row[4]);
+            item.put("receivedAt", row[5] != null ? row[5].toString() : null);
+            item.put("isRead", row[6]);
+            item.put("rank", row[7]);
+            items.add(item);
+        }
+
+        String nextCursor = rows.size() == pageSize && offset + pageSize <= MAX_OFFSET
+            ? String.valueOf(offset + pageSize)
+            : null;
+        return new RankingPage(items, nextCursor);
+    }
+
+    private static Object[] toRow(ResultSet rs) throws SQLException {
+        Timestamp receivedAt = rs.getTimestamp(6);
+        return new Object[]{
+            rs.getString(1),
+            rs.getString(2),
+            rs.getLong(3),
+            rs.getLong(4),
+            rs.getString(5),
+            receivedAt != null ? receivedAt.toLocalDateTime() : null,
+            rs.getBoolean(7),
+            Math.round(rs.getDouble(8) * 10000) / 10000.0
+        };
+    }
+
+    private static int decodeOffset(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        try {
+            int offset = Integer.parseInt(cursor);
+            if (offset < 0 || offset > MAX_OFFSET) throw new NumberFormatException();
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
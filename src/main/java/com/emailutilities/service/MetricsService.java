@@ -0,0 +1,188 @@
+package com.emailutilities.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer instrumentation for sync, provider and repository hot paths.
+ * Meters are exported through Actuator (see management.* in application.properties).
+ */
+@Service
+public class MetricsService {
+
+    // Path segments kept verbatim when naming provider endpoints; anything else is an ID
+    private static final Set<String> KNOWN_PATH_SEGMENTS = Set.of(
+        "gmail", "v1", "users", "me", "messages", "labels", "batchModify", "modify", "threads",
+        "v1.0", "beta", "mailFolders", "childFolders", "move", "archive",
+        "common", "oauth2", "v2.0", "token"
+    );
+
+    private final MeterRegistry registry;
+
+    private final Counter spamCacheHits;
+    private final Counter spamCacheMisses;
+
+    public MetricsService(MeterRegistry registry) {
+        this.registry = registry;
+
+        this.spamCacheHits = Counter.builder("spam.cache.requests")
+            .tag("result", "hit")
+            .description("Spamhaus lookups answered from the local cache")
+            .register(registry);
+        this.spamCacheMisses = Counter.builder("spam.cache.requests")
+            .tag("result", "miss")
+            .description("Spamhaus lookups that required a DNS query")
+            .register(registry);
+
+        Gauge.builder("spam.cache.hit.ratio", this, MetricsService::spamCacheHitRatio)
+            .description("Fraction of Spamhaus lookups answered from cache since startup")
+            .register(registry);
+    }
+
+    /**
+     * RestTemplate interceptor that times every provider call by provider, endpoint and status
+     */
+    public ClientHttpRequestInterceptor providerCallInterceptor(String provider) {
+        return (request, body, execution) -> {
+            long start = System.nanoTime();
+            String status = "IO_ERROR";
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                status = String.valueOf(response.getStatusCode().value());
+                return response;
+            } finally {
+                Timer.builder("provider.call")
+                    .description("Latency of calls to the Gmail and Microsoft Graph APIs")
+                    .tag("provider", provider)
+                    .tag("endpoint", request.getMethod() + " " + endpointOf(request.getURI()))
+                    .tag("status", status)
+                    .register(registry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        };
+    }
+
+    /**
+     * Record an OAuth access token refresh
+     */
+    public void recordTokenRefresh(String provider, boolean success, long durationNanos) {
+        Timer.builder("provider.token.refresh")
+            .description("OAuth access token refreshes")
+            .tag("provider", provider)
+            .tag("outcome", success ? "success" : "failure")
+            .register(registry)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time the batched "which of these message IDs do we already have" query
+     */
+    public <T> T timeDedupeQuery(Supplier<T> query) {
+        return Timer.builder("metadata.dedupe.query")
+            .description("Batched message ID deduplication queries")
+            .register(registry)
+            .record(query);
+    }
+
+    /**
+     * Time one page of a full-text search over email metadata
+     */
+    public <T> T timeSearchQuery(Supplier<T> query) {
+        return Timer.builder("metadata.search.query")
+            .description("Full-text email metadata search queries")
+            .register(registry)
+            .record(query);
+    }
+
+    /**
+     * Time the write of one page of new email metadata rows
+     */
+    public void timeMetadataWrite(int rows, Runnable write) {
+        Timer.builder("metadata.batch.write")
+            .description("Email metadata inserts per ingested page")
+            .register(registry)
+            .record(write);
+        DistributionSummary.builder("metadata.batch.rows")
+            .description("Rows per metadata page write")
+            .register(registry)
+            .record(rows);
+    }
+
+    /**
+     * Record how long one page of a provider sync took end to end (fetch, dedupe and write)
+     */
+    public void recordSyncPage(String provider, long durationNanos, int synced, int skipped) {
+        Timer.builder("sync.page")
+            .description("Latency of one sync page including provider fetch and DB writes")
+            .tag("provider", provider)
+            .register(registry)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("sync.emails")
+            .tag("provider", provider)
+            .tag("outcome", "synced")
+            .register(registry)
+            .increment(synced);
+        Counter.builder("sync.emails")
+            .tag("provider", provider)
+            .tag("outcome", "skipped")
+            .register(registry)
+            .increment(skipped);
+    }
+
+    /**
+     * Record a Spamhaus cache lookup
+     */
+    public void recordSpamCacheLookup(boolean hit) {
+        if (hit) {
+            spamCacheHits.increment();
+        } else {
+            spamCacheMisses.increment();
+        }
+    }
+
+    /**
+     * Record a Spamhaus DNS query
+     */
+    public void recordSpamDnsLookup(String zone, String outcome, long durationNanos) {
+        Timer.builder("spam.dns.lookup")
+            .description("Spamhaus DNSBL queries")
+            .tag("zone", zone)
+            .tag("outcome", outcome)
+            .register(registry)
+            .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private double spamCacheHitRatio() {
+        double hits = spamCacheHits.count();
+        double total = hits + spamCacheMisses.count();
+        return total > 0 ? hits / total : 0;
+    }
+
+    /**
+     * Collapse a provider URL to a low-cardinality endpoint name, e.g. /gmail/v1/users/me/messages/{id}
+     */
+    static String endpointOf(URI uri) {
+        String path = uri.getPath();
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+
+        StringBuilder endpoint = new StringBuilder();
+        for (String segment : path.split("/")) {
+            if (segment.isEmpty()) continue;
+            endpoint.append('/').append(KNOWN_PATH_SEGMENTS.contains(segment) ? segment : "{id}");
+        }
+        return endpoint.length() > 0 ? endpoint.toString() : "/";
+    }
+}
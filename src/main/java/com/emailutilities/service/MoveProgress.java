@@ -0,0 +1,23 @@
+package com.emailutilities.service;
+
+/**
+ * Callback for long-running provider moves: reports emails moved page by page and lets the
+ * caller stop the move between pages
+ */
+public interface MoveProgress {
+
+    MoveProgress NONE = new MoveProgress() {
+        @Override
+        public void moved(int count) {
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+    };
+
+    void moved(int count);
+
+    boolean isCancelled();
+}
@@ -16,10 +16,18 @@ import java.util.*;
 public class OutlookService {
 
     private final EmailAccountRepository emailAccountRepository;
+    private final MetricsService metricsService;
     private final RestTemplate restTemplate = new RestTemplate();
 
-    private static final String GRAPH_API_BASE = "https://graph.microsoft.com/v1.0/me";
-    private static final String GRAPH_API_BETA = "https://graph.microsoft.com/beta/me";
+    // Overridable so the sync benchmark can point the client at a local simulator
+    @Value("${graph.api-base:https://graph.microsoft.com/v1.0/me}")
+    private String graphApiBase;
+
+    @Value("${graph.api-beta:https://graph.microsoft.com/beta/me}")
+    private String graphApiBeta;
+
+    @Value("${oauth.microsoft.token-uri:https://login.microsoftonline.com/common/oauth2/v2.0/token}")
+    private String microsoftTokenUri;
 
     @Value("${oauth.microsoft.client-id:}")
     private String microsoftClientId;
@@ -27,8 +35,10 @@ public class OutlookService {
     @Value("${oauth.microsoft.client-secret:}")
     private String microsoftClientSecret;
 
-    public OutlookService(EmailAccountRepository emailAccountRepository) {
+    public OutlookService(EmailAccountRepository emailAccountRepository, MetricsService metricsService) {
         this.emailAccountRepository = emailAccountRepository;
+        this.metricsService = metricsService;
+        this.restTemplate.getInterceptors().add(metricsService.providerCallInterceptor("outlook"));
     }
 
     /**
@@ -51,10 +61,11 @@ public class OutlookService {
 
         HttpEntity<MultiValueMap<String, String>> request = new HttpEntity<>(body, headers);
 
+        long refreshStart = System.nanoTime();
         try {
             @SuppressWarnings("unchecked")
             Map<String, Object> response = restTemplate.postForObject(
-                "https://login.microsoftonline.com/common/oauth2/v2.0/token",
+                microsoftTokenUri,
                 request,
                 Map.class
             );
@@ -77,10 +88,12 @@ public class OutlookService {
                 account.setLastSyncError(null);
                 emailAccountRepository.save(account);
                 System.out.println("Successfully refreshed access token for: " + account.getEmailAddress());
+                metricsService.recordTokenRefresh("outlook", true, System.nanoTime() - refreshStart);
                 return newAccessToken;
             }
             throw new RuntimeException("Failed to refresh token - no access_token in response");
         } catch (Exception e) {
+            metricsService.recordTokenRefresh("outlook", false, System.nanoTime() - refreshStart);
             System.err.println("Token refresh failed: " + e.getMessage());
             throw new RuntimeException("Failed to refresh token: " + e.getMessage());
         }
@@ -161,8 +174,9 @@ public class OutlookService {
             if (skipToken != null && !skipToken.isEmpty()) {
                 url = skipToken;
             } else {
-                url = GRAPH_API_BETA + "/mailFolders/archive/messages?$top=" + maxResults +
+                url = graphApiBeta + "/mailFolders/archive/messages?$top=" + maxResults +
                     "&$select=id,subject,from,toRecipients,receivedDateTime,bodyPreview,isRead,conversationId,parentFolderId" +
+                    ",internetMessageId,internetMessageHeaders" +
                     "&$orderby=receivedDateTime desc";
             }
 
@@ -258,8 +272,9 @@ public class OutlookService {
                     filter.append("receivedDateTime ge ").append(after);
                 }
 
-                url = GRAPH_API_BASE + "/messages?$top=" + maxResults +
+                url = graphApiBase + "/messages?$top=" + maxResults +
                     "&$select=id,subject,from,toRecipients,receivedDateTime,bodyPreview,isRead,conversationId,parentFolderId" +
+                    ",internetMessageId,internetMessageHeaders" +
                     "&$orderby=receivedDateTime desc";
 
                 if (filter.length() > 0) {
@@ -348,16 +363,47 @@ public class OutlookService {
 
         Boolean isRead = (Boolean) msg.get("isRead");
 
-        return Map.of(
-            "id", msg.getOrDefault("id", ""),
-            "from", fromStr,
-            "to", toStr,
-            "subject", msg.getOrDefault("subject", ""),
-            "date", msg.getOrDefault("receivedDateTime", ""),
-            "snippet", msg.getOrDefault("bodyPreview", ""),
-            "isUnread", isRead != null && !isRead,
-            "threadId", msg.getOrDefault("conversationId", "")
-        );
+        // Reply and mailing-list headers are only available through internetMessageHeaders
+        String inReplyTo = "";
+        String references = "";
+        String listUnsubscribe = "";
+        String listId = "";
+        String precedence = "";
+        @SuppressWarnings("unchecked")
+        List<Map<String, String>> internetHeaders = (List<Map<String, String>>) msg.get("internetMessageHeaders");
+        if (internetHeaders != null) {
+            for (Map<String, String> header : internetHeaders) {
+                String name = header.getOrDefault("name", "");
+                if (name.equalsIgnoreCase("In-Reply-To")) {
+                    inReplyTo = header.getOrDefault("value", "");
+                } else if (name.equalsIgnoreCase("References")) {
+                    references = header.getOrDefault("value", "");
+                } else if (name.equalsIgnoreCase("List-Unsubscribe")) {
+                    listUnsubscribe = header.getOrDefault("value", "");
+                } else if (name.equalsIgnoreCase("List-Id")) {
+                    listId = header.getOrDefault("value", "");
+                } else if (name.equalsIgnoreCase("Precedence")) {
+                    precedence = header.getOrDefault("value", "");
+                }
+            }
+        }
+
+        Map<String, Object> email = new HashMap<>();
+        email.put("id", msg.getOrDefault("id", ""));
+        email.put("from", fromStr);
+        email.put("to", toStr);
+        email.put("subject", msg.getOrDefault("subject", ""));
+        email.put("date", msg.getOrDefault("receivedDateTime", ""));
+        email.put("snippet", msg.getOrDefault("bodyPreview", ""));
+        email.put("isUnread", isRead != null && !isRead);
+        email.put("threadId", msg.getOrDefault("conversationId", ""));
+        email.put("rfcMessageId", msg.getOrDefault("internetMessageId", ""));
+        email.put("inReplyTo", inReplyTo);
+        email.put("references", references);
+        email.put("listUnsubscribe", listUnsubscribe);
+        email.put("listId", listId);
+        email.put("precedence", precedence);
+        return email;
     }
 
     /**
@@ -390,7 +436,7 @@ public class OutlookService {
             headers.setBearerAuth(accessToken);
             HttpEntity<Void> entity = new HttpEntity<>(headers);
 
-            String url = GRAPH_API_BASE + "/messages/" + messageId;
+            String url = graphApiBase + "/messages/" + messageId;
 
             @SuppressWarnings("unchecked")
             Map<String, Object> msg = restTemplate.exchange(
@@ -487,7 +533,7 @@ public class OutlookService {
             // Fetch main mailbox folders
             @SuppressWarnings("unchecked")
             Map<String, Object> response = restTemplate.exchange(
-                GRAPH_API_BASE + "/mailFolders?$top=50",
+                graphApiBase + "/mailFolders?$top=50",
                 HttpMethod.GET,
                 entity,
                 Map.class
@@ -512,7 +558,7 @@ public class OutlookService {
             try {
                 @SuppressWarnings("unchecked")
                 Map<String, Object> archiveResponse = restTemplate.exchange(
-                    GRAPH_API_BETA + "/mailFolders/archive/childFolders?$top=100",
+                    graphApiBeta + "/mailFolders/archive/childFolders?$top=100",
                     HttpMethod.GET,
                     entity,
                     Map.class
@@ -537,7 +583,7 @@ public class OutlookService {
                 // Also add the root archive folder itself
                 @SuppressWarnings("unchecked")
                 Map<String, Object> archiveRootResponse = restTemplate.exchange(
-                    GRAPH_API_BETA + "/mailFolders/archive",
+                    graphApiBeta + "/mailFolders/archive",
                     HttpMethod.GET,
                     entity,
                     Map.class
@@ -595,7 +641,7 @@ public class OutlookService {
             headers.setBearerAuth(accessToken);
             HttpEntity<Void> entity = new HttpEntity<>(headers);
 
-            String url = GRAPH_API_BASE + "/mailFolders/" + folderId + "/messages?$top=" + maxResults +
+            String url = graphApiBase + "/mailFolders/" + folderId + "/messages?$top=" + maxResults +
                 "&$select=id,subject,from,toRecipients,receivedDateTime,bodyPreview,isRead,conversationId" +
                 "&$orderby=receivedDateTime desc";
 
@@ -662,7 +708,7 @@ public class OutlookService {
             HttpEntity<Map<String, String>> entity = new HttpEntity<>(body, headers);
 
             restTemplate.postForObject(
-                GRAPH_API_BASE + "/messages/" + messageId + "/move",
+                graphApiBase + "/messages/" + messageId + "/move",
                 entity,
                 Map.class
             );
@@ -712,9 +758,9 @@ public class OutlookService {
 
             String url;
             if (parentFolderId != null && !parentFolderId.isEmpty()) {
-                url = GRAPH_API_BASE + "/mailFolders/" + parentFolderId + "/childFolders";
+                url = graphApiBase + "/mailFolders/" + parentFolderId + "/childFolders";
             } else {
-                url = GRAPH_API_BASE + "/mailFolders";
+                url = graphApiBase + "/mailFolders";
             }
 
             @SuppressWarnings("unchecked")
@@ -760,10 +806,10 @@ public class OutlookService {
             // Search for existing folder
             String url;
             if (parentFolderId != null && !parentFolderId.isEmpty()) {
-                url = GRAPH_API_BASE + "/mailFolders/" + parentFolderId + "/childFolders?$filter=displayName eq '" +
+                url = graphApiBase + "/mailFolders/" + parentFolderId + "/childFolders?$filter=displayName eq '" +
                     folderName.replace("'", "''") + "'";
             } else {
-                url = GRAPH_API_BASE + "/mailFolders?$filter=displayName eq '" +
+                url = graphApiBase + "/mailFolders?$filter=displayName eq '" +
                     folderName.replace("'", "''") + "'";
             }
 
@@ -794,6 +840,14 @@ public class OutlookService {
      * Move all emails from specified senders to a folder
      */
     public int moveEmailsBySenders(Long accountId, List<String> senderEmails, String toFolderId) {
+        return moveEmailsBySenders(accountId, senderEmails, toFolderId, MoveProgress.NONE);
+    }
+
+    /**
+     * Same, reporting each page's moves to the progress callback and stopping between pages once it
+     * is cancelled. Emails already in the folder are excluded, so re-running an interrupted move is safe.
+     */
+    public int moveEmailsBySenders(Long accountId, List<String> senderEmails, String toFolderId, MoveProgress progress) {
         EmailAccount account = emailAccountRepository.findById(accountId)
             .orElseThrow(() -> new RuntimeException("Account not found"));
 
@@ -804,10 +858,11 @@ public class OutlookService {
             accessToken = refreshAccessToken(account);
         }
 
-        return moveEmailsBySendersWithToken(account, accessToken, senderEmails, toFolderId, true);
+        return moveEmailsBySendersWithToken(account, accessToken, senderEmails, toFolderId, progress, true);
     }
 
-    private int moveEmailsBySendersWithToken(EmailAccount account, String accessToken, List<String> senderEmails, String toFolderId, boolean allowRetry) {
+    private int moveEmailsBySendersWithToken(EmailAccount account, String accessToken, List<String> senderEmails, String toFolderId,
+                                             MoveProgress progress, boolean allowRetry) {
         try {
             int totalMoved = 0;
 
@@ -819,12 +874,12 @@ public class OutlookService {
                 // Search for emails from this sender, EXCLUDING those already in target folder
                 String filter = "from/emailAddress/address eq '" + senderEmail.replace("'", "''") + "'" +
                     " and parentFolderId ne '" + toFolderId + "'";
-                String url = GRAPH_API_BASE + "/messages?$filter=" +
+                String url = graphApiBase + "/messages?$filter=" +
                     java.net.URLEncoder.encode(filter, java.nio.charset.StandardCharsets.UTF_8) +
                     "&$select=id,parentFolderId&$top=100";
 
                 String nextLink = url;
-                while (nextLink != null) {
+                while (nextLink != null && !progress.isCancelled()) {
                     @SuppressWarnings("unchecked")
                     Map<String, Object> response = restTemplate.exchange(
                         nextLink,
@@ -840,6 +895,7 @@ public class OutlookService {
                     @SuppressWarnings("unchecked")
                     List<Map<String, Object>> messages = (List<Map<String, Object>>) response.get("value");
 
+                    int movedThisPage = 0;
                     for (Map<String, Object> msg : messages) {
                         String messageId = (String) msg.get("id");
                         // Double-check: skip if already in target folder
@@ -850,11 +906,15 @@ public class OutlookService {
                         try {
                             moveEmailWithToken(account, accessToken, messageId, toFolderId, false);
                             totalMoved++;
+                            movedThisPage++;
                         } catch (Exception e) {
                             System.err.println("Failed to move message " + messageId + ": " + e.getMessage());
                         }
                     }
 
+                    if (movedThisPage > 0) {
+                        progress.moved(movedThisPage);
+                    }
                     nextLink = (String) response.get("@odata.nextLink");
                 }
             }
@@ -864,7 +924,7 @@ public class OutlookService {
         } catch (HttpClientErrorException.Unauthorized e) {
             if (allowRetry) {
                 String newToken = refreshAccessToken(account);
-                return moveEmailsBySendersWithToken(account, newToken, senderEmails, toFolderId, false);
+                return moveEmailsBySendersWithToken(account, newToken, senderEmails, toFolderId, progress, false);
             }
             throw new RuntimeException("Access token expired. Please re-authenticate.");
         }
@@ -0,0 +1,409 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.repository.EmailAccountRepository;
+import com.emailutilities.repository.EmailMetadataRepository;
+import com.emailutilities.repository.SenderStatsRepository;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.LocalOutputFile;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.MessageTypeParser;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Writes Parquet snapshots of email_metadata and the sender_stats rollup for offline analysis
+ * (Spark, DuckDB) under a local directory, in Hive-style partitions:
+ *
+ *   email_metadata/user_id=U/account_id=A/month=yyyy-MM/part-FROM-TO.parquet
+ *   sender_stats/user_id=U/account_id=A/sender_stats.parquet
+ *
+ * Each run appends the account's rows with IDs above the last snapshot's (recorded in the
+ * account's _snapshot.properties) as new part files, one per month they fall in; the rollup is
+ * rewritten whole. Rows are streamed from a server-side cursor in receivedAt order and written
+ * one row group at a time, so memory use is bounded by the row group size. A full snapshot
+ * rewrites the account from scratch, which also picks up read-flag changes to older rows.
+ *
+ * The new watermark is read under the account's ingest lock. IDs are assigned inside ingest page
+ * transactions, which hold that lock, so no lower ID can still be uncommitted when it is read.
+ */
+@Service
+public class ParquetSnapshotService {
+
+    private static final MessageType METADATA_SCHEMA = MessageTypeParser.parseMessageType(
+        "message email_metadata {\n" +
+        "  required int64 id;\n" +
+        "  required binary message_id (STRING);\n" +
+        "  optional binary thread_id (STRING);\n" +
+        "  required int64 sender_id;\n" +
+        "  required binary sender (STRING);\n" +
+        "  optional binary sender_name (STRING);\n" +
+        "  optional int64 recipient_id;\n" +
+        "  optional binary recipient (STRING);\n" +
+        "  required binary domain (STRING);\n" +
+        "  optional binary subject (STRING);\n" +
+        "  required int64 received_at (TIMESTAMP(MILLIS,false));\n" +
+        "  required boolean is_read;\n" +
+        "  required boolean is_from_me;\n" +
+        "  optional binary rfc_message_id (STRING);\n" +
+        "  optional binary in_reply_to (STRING);\n" +
+        "}");
+
+    private static final MessageType SENDER_STATS_SCHEMA = MessageTypeParser.parseMessageType(
+        "message sender_stats {\n" +
+        "  required binary sender (STRING);\n" +
+        "  optional binary sender_name (STRING);\n" +
+        "  required int64 received_count;\n" +
+        "  required int64 unread_count;\n" +
+        "  required int64 sent_to_count;\n" +
+        "  required int64 replied_count;\n" +
+        "  optional int64 first_seen_at (TIMESTAMP(MILLIS,false));\n" +
+        "  optional int64 last_seen_at (TIMESTAMP(MILLIS,false));\n" +
+        "}");
+
+    // Sender columns repeat heavily within an account; IDs, subjects and Message-IDs are nearly unique
+    // and are left plain
+    private static final List<String> METADATA_DICTIONARY_COLUMNS = List.of(
+        "thread_id", "sender_id", "sender", "sender_name", "recipient_id", "recipient", "domain");
+
+    private static final String MANIFEST = "_snapshot.properties";
+    private static final String LAST_ID = "lastId";
+
+    private final EmailMetadataRepository metadataRepository;
+    private final SenderStatsRepository senderStatsRepository;
+    private final EmailAccountRepository accountRepository;
+    private final TransactionTemplate readOnlyTransaction;
+    private final TransactionTemplate lockTransaction;
+
+    @Value("${export.parquet.enabled:false}")
+    private boolean enabled;
+
+    @Value("${export.parquet.directory:./snapshots}")
+    private String directory;
+
+    @Value("${export.parquet.row-group-mb:64}")
+    private int rowGroupMb;
+
+    // Accounts being snapshotted, so a manual run and the nightly one never write the same files
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    public ParquetSnapshotService(EmailMetadataRepository metadataRepository,
+                                  SenderStatsRepository senderStatsRepository,
+                                  EmailAccountRepository accountRepository,
+                                  PlatformTransactionManager transactionManager) {
+        this.metadataRepository = metadataRepository;
+        this.senderStatsRepository = senderStatsRepository;
+        this.accountRepository = accountRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.lockTransaction = new TransactionTemplate(transactionManager);
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Nightly incremental snapshot of every account
+     */
+    @Scheduled(cron = "${export.parquet.cron:0 30 4 * * *}")
+    public void snapshotAll() {
+        if (!enabled) {
+            return;
+        }
+        snapshotAccounts(accountRepository.findAll(), false);
+    }
+
+    /**
+     * Snapshot the given accounts in the background (per user or per account, on request)
+     */
+    @Async
+    public void snapshotAccountsAsync(List<EmailAccount> accounts, boolean full) {
+        snapshotAccounts(accounts, full);
+    }
+
+    private void snapshotAccounts(List<EmailAccount> accounts, boolean full) {
+        for (EmailAccount account : accounts) {
+            try {
+                snapshotAccount(account, full);
+            } catch (Exception e) {
+                System.err.println("Parquet snapshot failed for account " + account.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Append the account's new rows (or, if full, rewrite all of them) and rewrite its rollup
+     */
+    public void snapshotAccount(EmailAccount account, boolean full) throws IOException {
+        Long accountId = account.getId();
+        if (!running.add(accountId)) {
+            System.out.println("Parquet snapshot of account " + accountId + " already running; skipped");
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            String partition = "user_id=" + account.getUser().getId() + "/account_id=" + accountId;
+            Path metadataDir = Paths.get(directory, "email_metadata", partition);
+            if (full) {
+                deleteRecursively(metadataDir);
+            }
+            Files.createDirectories(metadataDir);
+
+            Path manifestPath = metadataDir.resolve(MANIFEST);
+            Properties manifest = readManifest(manifestPath);
+            long afterId = Long.parseLong(manifest.getProperty(LAST_ID, "0"));
+            removeUncommitted(metadataDir, afterId);
+
+            long upToId = committedMaxId(accountId);
+            long rows = upToId > afterId ? writeMetadata(metadataDir, accountId, afterId, upToId) : 0;
+            long senders = writeSenderStats(Paths.get(directory, "sender_stats", partition), accountId);
+
+            // Advancing the watermark last makes the run's part files count; a failed run leaves them
+            // to be removed by the next one
+            manifest.setProperty(LAST_ID, String.valueOf(Math.max(afterId, upToId)));
+            manifest.setProperty("snapshotAt", LocalDateTime.now().toString());
+            writeManifest(manifestPath, manifest);
+
+            System.out.println("Parquet snapshot of account " + accountId + (full ? " (full)" : "") + ": "
+                + rows + " emails, " + senders + " senders in " + (System.currentTimeMillis() - start) + " ms");
+        } finally {
+            running.remove(accountId);
+        }
+    }
+
+    /**
+     * Highest email_metadata ID of the account once any ingest page in flight has committed; a
+     * plain max(id) could pass over a lower ID that a concurrent page commits afterwards
+     */
+    private long committedMaxId(Long accountId) {
+        return lockTransaction.execute(status -> {
+            accountRepository.lockForIngest(accountId);
+            return metadataRepository.findMaxId(accountId).orElse(0L);
+        });
+    }
+
+    private long writeMetadata(Path metadataDir, Long accountId, long afterId, long upToId) {
+        String fileName = "part-" + (afterId + 1) + "-" + upToId + ".parquet";
+        SimpleGroupFactory groups = new SimpleGroupFactory(METADATA_SCHEMA);
+
+        return readOnlyTransaction.execute(status -> {
+            long count = 0;
+            MonthFile current = null;
+            try (Stream<Object[]> rows = metadataRepository.streamParquetRows(accountId, afterId, upToId)) {
+                Iterator<Object[]> it = rows.iterator();
+                while (it.hasNext()) {
+                    Object[] row = it.next();
+                    YearMonth month = YearMonth.from((LocalDateTime) row[10]);
+                    if (current == null || !current.month.equals(month)) {
+                        if (current != null) {
+                            current.commit();
+                            current = null;
+                        }
+                        Path monthDir = metadataDir.resolve("month=" + month);
+                        current = new MonthFile(month, monthDir.resolve(fileName), metadataWriterFor(monthDir, fileName));
+                    }
+                    current.writer.write(toMetadataGroup(groups, row));
+                    count++;
+                }
+                if (current != null) {
+                    current.commit();
+                    current = null;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                if (current != null) current.abort();
+            }
+            return count;
+        });
+    }
+
+    private long writeSenderStats(Path statsDir, Long accountId) throws IOException {
+        Files.createDirectories(statsDir);
+        Path target = statsDir.resolve("sender_stats.parquet");
+        Path temp = statsDir.resolve(".sender_stats.parquet.inprogress");
+        SimpleGroupFactory groups = new SimpleGroupFactory(SENDER_STATS_SCHEMA);
+
+        long count = readOnlyTransaction.execute(status -> {
+            long written = 0;
+            try (Stream<Object[]> rows = senderStatsRepository.streamSnapshotRows(accountId);
+                 ParquetWriter<Group> writer = builder(temp, SENDER_STATS_SCHEMA).withDictionaryEncoding("sender_name", true).build()) {
+                Iterator<Object[]> it = rows.iterator();
+                while (it.hasNext()) {
+                    Object[] row = it.next();
+                    Group group = groups.newGroup()
+                        .append("sender", (String) row[0]);
+                    appendString(group, "sender_name", row[1]);
+                    group.append("received_count", ((Number) row[2]).longValue())
+                        .append("unread_count", ((Number) row[3]).longValue())
+                        .append("sent_to_count", ((Number) row[4]).longValue())
+                        .append("replied_count", ((Number) row[5]).longValue());
+                    if (row[6] != null) group.append("first_seen_at", epochMillis(row[6]));
+                    if (row[7] != null) group.append("last_seen_at", epochMillis(row[7]));
+                    writer.write(group);
+                    written++;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return written;
+        });
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    private ParquetWriter<Group> metadataWriterFor(Path monthDir, String fileName) throws IOException {
+        Files.createDirectories(monthDir);
+        ExampleParquetWriter.Builder builder = builder(monthDir.resolve("." + fileName + ".inprogress"), METADATA_SCHEMA);
+        for (String column : METADATA_DICTIONARY_COLUMNS) {
+            builder.withDictionaryEncoding(column, true);
+        }
+        return builder.build();
+    }
+
+    private ExampleParquetWriter.Builder builder(Path file, MessageType schema) {
+        return ExampleParquetWriter.builder(new LocalOutputFile(file))
+            .withConf(new Configuration(false))
+            .withType(schema)
+            .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+            .withCompressionCodec(CompressionCodecName.SNAPPY)
+            .withRowGroupSize(rowGroupMb * 1024L * 1024L)
+            .withDictionaryEncoding(false);
+    }
+
+    private static Group toMetadataGroup(SimpleGroupFactory groups, Object[] row) {
+        Group group = groups.newGroup()
+            .append("id", ((Number) row[0]).longValue())
+            .append("message_id", (String) row[1]);
+        appendString(group, "thread_id", row[2]);
+        group.append("sender_id", ((Number) row[3]).longValue())
+            .append("sender", (String) row[4]);
+        appendString(group, "sender_name", row[5]);
+        if (row[6] != null) group.append("recipient_id", ((Number) row[6]).longValue());
+        appendString(group, "recipient", row[7]);
+        group.append("domain", (String) row[8]);
+        appendString(group, "subject", row[9]);
+        group.append("received_at", epochMillis(row[10]))
+            .append("is_read", (Boolean) row[11])
+            .append("is_from_me", (Boolean) row[12]);
+        appendString(group, "rfc_message_id", row[13]);
+        appendString(group, "in_reply_to", row[14]);
+        return group;
+    }
+
+    private static void appendString(Group group, String field, Object value) {
+        if (value != null) group.append(field, (String) value);
+    }
+
+    // Timestamps are stored as they are in the database, without a zone (isAdjustedToUTC=false)
+    private static long epochMillis(Object value) {
+        return ((LocalDateTime) value).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    /**
+     * Part files starting right after the watermark, or still in progress, come from a run that
+     * failed before advancing it
+     */
+    private static void removeUncommitted(Path metadataDir, long afterId) throws IOException {
+        String orphanPrefix = "part-" + (afterId + 1) + "-";
+        try (Stream<Path> files = Files.walk(metadataDir, 2)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (Files.isRegularFile(file) && (name.startsWith(orphanPrefix) || name.endsWith(".inprogress"))) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) return;
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    private static Properties readManifest(Path path) throws IOException {
+        Properties manifest = new Properties();
+        if (Files.exists(path)) {
+            try (InputStream in = Files.newInputStream(path)) {
+                manifest.load(in);
+            }
+        }
+        return manifest;
+    }
+
+    private static void writeManifest(Path path, Properties manifest) throws IOException {
+        Path temp = path.resolveSibling("." + path.getFileName() + ".inprogress");
+        try (OutputStream out = Files.newOutputStream(temp)) {
+            manifest.store(out, "Parquet snapshot state; delete to re-export the account from scratch");
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * One month's part file of the current run, written under a hidden name (ignored by Spark and
+     * DuckDB) and renamed into place once complete
+     */
+    private static final class MonthFile {
+        final YearMonth month;
+        final Path target;
+        final ParquetWriter<Group> writer;
+
+        MonthFile(YearMonth month, Path target, ParquetWriter<Group> writer) {
+            this.month = month;
+            this.target = target;
+            this.writer = writer;
+        }
+
+        Path temp() {
+            return target.resolveSibling("." + target.getFileName() + ".inprogress");
+        }
+
+        void commit() throws IOException {
+            writer.close();
+            Files.move(temp(), target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        void abort() {
+            try {
+                writer.close();
+                Files.deleteIfExists(temp());
+            } catch (IOException ignored) {
+                // Leftovers are removed by the next run
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.emailutilities.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Registrable domain (eTLD+1) lookup against the Public Suffix List bundled as
+ * public_suffix_list.dat, so news.brand.com, mail.brand.com and brand.com all resolve to brand.com
+ * while bbc.co.uk stays separate from other .co.uk domains.
+ *
+ * Rules are held in a character trie read right to left ("co.uk" is stored as k, u, '.', o, c),
+ * with each node's children as a sibling list in flat arrays. A lookup walks array indexes over the
+ * address it is given and returns an offset into it, so it allocates nothing.
+ */
+@Component
+public class PublicSuffixList {
+
+    private static final String RESOURCE = "/public_suffix_list.dat";
+    private static final String PRIVATE_SECTION = "===BEGIN PRIVATE DOMAINS===";
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    // Node flags: a rule ends here, "*.<this>" is a rule, "!<this>" is an exception
+    private static final byte RULE = 1;
+    private static final byte WILDCARD = 2;
+    private static final byte EXCEPTION = 4;
+
+    private char[] labels = new char[1 << 15];
+    private int[] firstChild = new int[1 << 15];
+    private int[] nextSibling = new int[1 << 15];
+    private byte[] flags = new byte[1 << 15];
+    private int size;
+
+    /**
+     * @param includePrivateDomains also apply the list's private section (e.g. github.io, blogspot.com)
+     */
+    public PublicSuffixList(@Value("${domains.public-suffix.include-private:false}") boolean includePrivateDomains) {
+        firstChild[ROOT] = NONE;
+        nextSibling[ROOT] = NONE;
+        size = 1;
+
+        int rules = 0;
+        try (InputStream in = PublicSuffixList.class.getResourceAsStream(RESOURCE)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing " + RESOURCE + " on the classpath");
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.startsWith("//")) {
+                    if (!includePrivateDomains && line.contains(PRIVATE_SECTION)) break;
+                    continue;
+                }
+                if (line.isEmpty()) continue;
+                int space = line.indexOf(' ');
+                addRule((space < 0 ? line : line.substring(0, space)).toLowerCase());
+                rules++;
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read " + RESOURCE, e);
+        }
+        System.out.println("Loaded " + rules + " public suffix rules (" + size + " trie nodes)");
+    }
+
+    /**
+     * Registrable domain of an address or host name, e.g. "brand.com" for "Alerts@News.Brand.com"
+     */
+    public String registrableDomain(String address) {
+        String lower = address.toLowerCase();
+        int from = lower.indexOf('@') + 1;
+        return lower.substring(registrableStart(lower, from, lower.length()));
+    }
+
+    /**
+     * Start of the registrable domain of the lower-case host in text[from, to): the label before the
+     * longest matching public suffix. A host that is itself a public suffix, or has a single label,
+     * is returned whole (from).
+     */
+    public int registrableStart(CharSequence text, int from, int to) {
+        // The implicit "*" rule makes the last label a public suffix when nothing longer matches
+        int suffixStart = labelStart(text, from, to);
+        int node = ROOT;
+        int end = to;
+        while (true) {
+            int start = labelStart(text, from, end);
+            int next = node;
+            for (int i = end - 1; i >= start && next != NONE; i--) {
+                next = child(next, text.charAt(i));
+            }
+            if (next == NONE) {
+                break;
+            }
+            if ((flags[next] & EXCEPTION) != 0) {
+                // "!www.ck": the suffix is the rule without its leftmost label
+                suffixStart = end + 1;
+                break;
+            }
+            if ((flags[next] & RULE) != 0) {
+                suffixStart = start;
+            }
+            if (start == from) {
+                break;
+            }
+            end = start - 1;
+            if ((flags[next] & WILDCARD) != 0) {
+                suffixStart = labelStart(text, from, end);
+            }
+            node = child(next, '.');
+            if (node == NONE) {
+                break;
+            }
+        }
+
+        if (suffixStart <= from) {
+            return from;
+        }
+        return labelStart(text, from, suffixStart - 1);
+    }
+
+    private static int labelStart(CharSequence text, int from, int end) {
+        int i = end;
+        while (i > from && text.charAt(i - 1) != '.') {
+            i--;
+        }
+        return i;
+    }
+
+    private int child(int node, char c) {
+        for (int n = firstChild[node]; n != NONE; n = nextSibling[n]) {
+            if (labels[n] == c) {
+                return n;
+            }
+        }
+        return NONE;
+    }
+
+    private void addRule(String rule) {
+        byte flag = RULE;
+        if (rule.startsWith("!")) {
+            flag = EXCEPTION;
+            rule = rule.substring(1);
+        } else if (rule.startsWith("*.")) {
+            flag = WILDCARD;
+            rule = rule.substring(2);
+        }
+
+        int node = ROOT;
+        for (int i = rule.length() - 1; i >= 0; i--) {
+            char c = rule.charAt(i);
+            int next = child(node, c);
+            if (next == NONE) {
+                next = newNode(c);
+                nextSibling[next] = firstChild[node];
+                firstChild[node] = next;
+            }
+            node = next;
+        }
+        flags[node] |= flag;
+    }
+
+    private int newNode(char c) {
+        if (size == labels.length) {
+            int capacity = size * 2;
+            labels = Arrays.copyOf(labels, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+        }
+        labels[size] = c;
+        firstChild[size] = NONE;
+        nextSibling[size] = NONE;
+        return size++;
+    }
+}
@@ -0,0 +1,130 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.ReplyLatencyStats;
+import com.emailutilities.repository.ReplyLatencyStatsRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reply latency per counterpart, in both directions. Samples come from reply edges as
+ * {@link MetadataIngestService} resolves them, so each reply is measured exactly once
+ * against its own parent and no thread is ever re-scanned.
+ */
+@Service
+public class ReplyLatencyService {
+
+    private static final int MAX_COUNTERPARTS = 500;
+
+    private final ReplyLatencyStatsRepository latencyRepository;
+
+    public ReplyLatencyService(ReplyLatencyStatsRepository latencyRepository) {
+        this.latencyRepository = latencyRepository;
+    }
+
+    /**
+     * Time from a parent email to the reply to it
+     */
+    public record Sample(String counterpart, ReplyLatencyStats.Direction direction, long seconds) {
+    }
+
+    private record StatsKey(String counterpart, ReplyLatencyStats.Direction direction) {
+    }
+
+    /**
+     * Fold one ingest page's samples into the running stats; runs in the caller's transaction
+     */
+    public void apply(Long accountId, List<Sample> samples) {
+        if (samples.isEmpty()) return;
+
+        Map<StatsKey, List<Long>> byKey = new HashMap<>();
+        for (Sample sample : samples) {
+            byKey.computeIfAbsent(new StatsKey(sample.counterpart(), sample.direction()), k -> new ArrayList<>())
+                .add(sample.seconds());
+        }
+
+        Map<StatsKey, ReplyLatencyStats> rows = new HashMap<>();
+        List<String> counterparts = byKey.keySet().stream().map(StatsKey::counterpart).distinct().collect(Collectors.toList());
+        for (ReplyLatencyStats stats : latencyRepository.findByAccountIdAndCounterpartEmailIn(accountId, counterparts)) {
+            rows.put(new StatsKey(stats.getCounterpartEmail(), stats.getDirection()), stats);
+        }
+
+        List<ReplyLatencyStats> changed = new ArrayList<>(byKey.size());
+        for (Map.Entry<StatsKey, List<Long>> entry : byKey.entrySet()) {
+            ReplyLatencyStats stats = rows.computeIfAbsent(entry.getKey(), k -> {
+                ReplyLatencyStats created = new ReplyLatencyStats();
+                created.setAccountId(accountId);
+                created.setCounterpartEmail(k.counterpart());
+                created.setDirection(k.direction());
+                return created;
+            });
+
+            LatencyDigest digest = LatencyDigest.fromBytes(stats.getDigest());
+            for (long seconds : entry.getValue()) {
+                digest.add(seconds);
+                stats.setReplyCount(stats.getReplyCount() + 1);
+                stats.setTotalSeconds(stats.getTotalSeconds() + seconds);
+            }
+            stats.setDigest(digest.toBytes());
+            changed.add(stats);
+        }
+
+        latencyRepository.saveAll(changed);
+    }
+
+    /**
+     * Reply latency for the counterparts with the most measured replies, or for one counterpart
+     */
+    public List<Map<String, Object>> getReplyLatency(List<Long> accountIds, int limit, String counterpart) {
+        if (accountIds.isEmpty()) return List.of();
+
+        List<String> counterparts = counterpart != null
+            ? List.of(counterpart.toLowerCase())
+            : latencyRepository.findTopCounterparts(accountIds, PageRequest.of(0, Math.max(1, Math.min(limit, MAX_COUNTERPARTS))))
+                .stream()
+                .map(row -> (String) row[0])
+                .collect(Collectors.toList());
+        if (counterparts.isEmpty()) return List.of();
+
+        // Merge each counterpart's rows across the user's accounts
+        Map<StatsKey, long[]> totals = new HashMap<>();
+        Map<StatsKey, LatencyDigest> digests = new HashMap<>();
+        for (ReplyLatencyStats stats : latencyRepository.findByAccountIdInAndCounterpartEmailIn(accountIds, counterparts)) {
+            StatsKey key = new StatsKey(stats.getCounterpartEmail(), stats.getDirection());
+            long[] total = totals.computeIfAbsent(key, k -> new long[2]);
+            total[0] += stats.getReplyCount();
+            total[1] += stats.getTotalSeconds();
+            digests.computeIfAbsent(key, k -> new LatencyDigest()).merge(LatencyDigest.fromBytes(stats.getDigest()));
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(counterparts.size());
+        for (String email : counterparts) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("email", email);
+            row.put("myReplies", summarize(totals, digests, new StatsKey(email, ReplyLatencyStats.Direction.ME)));
+            row.put("theirReplies", summarize(totals, digests, new StatsKey(email, ReplyLatencyStats.Direction.THEM)));
+            result.add(row);
+        }
+        return result;
+    }
+
+    private Map<String, Object> summarize(Map<StatsKey, long[]> totals, Map<StatsKey, LatencyDigest> digests, StatsKey key) {
+        long[] total = totals.get(key);
+        if (total == null || total[0] == 0) {
+            return null;
+        }
+        LatencyDigest digest = digests.get(key);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", total[0]);
+        summary.put("meanSeconds", total[1] / total[0]);
+        summary.put("p50Seconds", digest.quantile(0.5));
+        summary.put("p90Seconds", digest.quantile(0.9));
+        return summary;
+    }
+}
@@ -0,0 +1,220 @@
+package com.emailutilities.service;
+
+import com.emailutilities.dto.RankingPage;
+import com.emailutilities.entity.EmailMetadata;
+import com.emailutilities.entity.Sender;
+import com.emailutilities.entity.SenderClassification;
+import com.emailutilities.entity.SenderStats;
+import com.emailutilities.repository.SenderClassificationRepository;
+import com.emailutilities.repository.SenderStatsRepository;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Bulk / transactional / personal classification of senders. {@link MetadataIngestService} feeds
+ * each page's new emails in, the header counters in sender_classifications are updated and the
+ * touched senders re-scored by {@link SenderClassifier}, so the newsletter cleanup views are a
+ * ranking over an indexed table rather than a scan of email_metadata.
+ */
+@Service
+public class SenderClassificationService {
+
+    // Upper bound on one page of any ranking, as for the sender rankings
+    private static final int MAX_RANKING_PAGE_SIZE = 500;
+
+    private static final int LIST_ID_LENGTH = 255;
+    private static final int LIST_UNSUBSCRIBE_LENGTH = 1024;
+
+    private final SenderClassificationRepository classificationRepository;
+    private final SenderStatsRepository senderStatsRepository;
+    private final SenderDirectory senderDirectory;
+
+    public SenderClassificationService(SenderClassificationRepository classificationRepository,
+                                       SenderStatsRepository senderStatsRepository,
+                                       SenderDirectory senderDirectory) {
+        this.classificationRepository = classificationRepository;
+        this.senderStatsRepository = senderStatsRepository;
+        this.senderDirectory = senderDirectory;
+    }
+
+    /**
+     * Accumulated change to one sender's classification counters
+     */
+    private static final class ClassificationDelta {
+        String email;
+        long received;
+        long listUnsubscribe;
+        long listId;
+        long bulkPrecedence;
+        long sentTo;
+        String latestListId;
+        String latestListUnsubscribe;
+        LocalDateTime lastSeen;
+
+        void addReceived(EmailMetadata metadata) {
+            received++;
+            LocalDateTime at = metadata.getReceivedAt();
+            boolean latest = lastSeen == null || !at.isBefore(lastSeen);
+            if (latest) lastSeen = at;
+            if (metadata.getListUnsubscribe() != null) {
+                listUnsubscribe++;
+                if (latest || latestListUnsubscribe == null) latestListUnsubscribe = metadata.getListUnsubscribe();
+            }
+            if (metadata.getListId() != null) {
+                listId++;
+                if (latest || latestListId == null) latestListId = metadata.getListId();
+            }
+            if (SenderClassifier.isBulkPrecedence(metadata.getPrecedence())) bulkPrecedence++;
+        }
+
+        void applyTo(SenderClassification classification) {
+            classification.setReceivedCount(classification.getReceivedCount() + received);
+            classification.setListUnsubscribeCount(classification.getListUnsubscribeCount() + listUnsubscribe);
+            classification.setListIdCount(classification.getListIdCount() + listId);
+            classification.setBulkPrecedenceCount(classification.getBulkPrecedenceCount() + bulkPrecedence);
+            classification.setSentToCount(classification.getSentToCount() + sentTo);
+            // Backfills arrive newest first, so only a newer email replaces the stored headers
+            boolean newer = lastSeen != null
+                && (classification.getLastSeenAt() == null || !lastSeen.isBefore(classification.getLastSeenAt()));
+            if (latestListId != null && (newer || classification.getListId() == null)) {
+                classification.setListId(truncate(latestListId, LIST_ID_LENGTH));
+            }
+            if (latestListUnsubscribe != null && (newer || classification.getListUnsubscribe() == null)) {
+                classification.setListUnsubscribe(truncate(latestListUnsubscribe, LIST_UNSUBSCRIBE_LENGTH));
+            }
+            if (newer) classification.setLastSeenAt(lastSeen);
+        }
+    }
+
+    /**
+     * Fold one ingest page's new emails into the classifications; runs in the caller's transaction.
+     * Mail received counts toward its sender's headers, mail sent counts toward its recipient.
+     */
+    public void apply(Long accountId, List<EmailMetadata> newMetadata) {
+        if (newMetadata.isEmpty()) return;
+
+        Map<Long, ClassificationDelta> deltas = new HashMap<>();
+        for (EmailMetadata metadata : newMetadata) {
+            if (metadata.isFromMe()) {
+                if (metadata.getRecipientId() == null || metadata.getRecipientEmail() == null
+                        || metadata.getRecipientEmail().isEmpty()) {
+                    continue;
+                }
+                ClassificationDelta delta = deltas.computeIfAbsent(metadata.getRecipientId(), id -> new ClassificationDelta());
+                delta.email = metadata.getRecipientEmail();
+                delta.sentTo++;
+            } else {
+                ClassificationDelta delta = deltas.computeIfAbsent(metadata.getSenderId(), id -> new ClassificationDelta());
+                delta.email = metadata.getSenderEmail();
+                delta.addReceived(metadata);
+            }
+        }
+
+        Map<Long, SenderClassification> rows = classificationRepository.findByAccountIdAndSenderIdIn(accountId, deltas.keySet())
+            .stream()
+            .collect(Collectors.toMap(SenderClassification::getSenderId, c -> c));
+
+        for (Map.Entry<Long, ClassificationDelta> entry : deltas.entrySet()) {
+            SenderClassification classification = rows.computeIfAbsent(entry.getKey(), senderId -> {
+                SenderClassification created = new SenderClassification();
+                created.setAccountId(accountId);
+                created.setSenderId(senderId);
+                created.setAutomatedAddress(SenderClassifier.isAutomatedAddress(entry.getValue().email));
+                return created;
+            });
+            entry.getValue().applyTo(classification);
+            SenderClassifier.classify(classification);
+        }
+
+        classificationRepository.saveAll(rows.values());
+    }
+
+    /**
+     * A page of senders in one category ranked by received emails, with their unread counts and the
+     * latest List-Unsubscribe header so a client can offer one-click unsubscribe
+     */
+    public RankingPage getSendersByCategory(List<Long> accountIds, SenderClassification.Category category,
+                                            int limit, String cursor) {
+        AnalyticsService.Cursor after = AnalyticsService.Cursor.decode(cursor);
+        Pageable page = PageRequest.of(0, Math.max(1, Math.min(limit, MAX_RANKING_PAGE_SIZE)));
+        if (accountIds.isEmpty()) return new RankingPage(List.of(), null);
+
+        List<Object[]> results = classificationRepository.findSendersByCategory(accountIds, category,
+            after.count(), afterSenderId(after), page);
+        if (results.isEmpty()) return new RankingPage(List.of(), null);
+
+        Map<Long, Sender> senders = senderDirectory.describe(results.stream().map(row -> (Long) row[0]).collect(Collectors.toList()));
+        Map<String, Long> unread = new HashMap<>();
+        List<String> emails = senders.values().stream().map(Sender::getEmail).collect(Collectors.toList());
+        for (SenderStats stats : senderStatsRepository.findByAccountIdInAndSenderEmailIn(accountIds, emails)) {
+            unread.merge(stats.getSenderEmail(), stats.getUnreadCount(), Long::sum);
+        }
+
+        List<Map<String, Object>> items = new ArrayList<>(results.size());
+        for (Object[] row : results) {
+            Sender sender = senders.get((Long) row[0]);
+            String email = sender != null ? sender.getEmail() : "";
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("email", email);
+            item.put("name", sender != null && sender.getName() != null ? sender.getName() : "");
+            item.put("category", category);
+            item.put("count", ((Number) row[1]).longValue());
+            item.put("unreadCount", unread.getOrDefault(email, 0L));
+            item.put("score", ((Number) row[2]).intValue());
+            item.put("lastSeenAt", row[3] != null ? row[3].toString() : null);
+            item.put("listId", row[4]);
+            item.put("listUnsubscribe", row[5]);
+            items.add(item);
+        }
+
+        String nextCursor = null;
+        if (results.size() == page.getPageSize()) {
+            Object[] last = results.get(results.size() - 1);
+            nextCursor = new AnalyticsService.Cursor(((Number) last[1]).longValue(), last[0].toString()).encode();
+        }
+        return new RankingPage(items, nextCursor);
+    }
+
+    /**
+     * Senders and received emails per category, e.g. for the headline of a cleanup view
+     */
+    public Map<String, Object> getCategorySummary(List<Long> accountIds) {
+        Map<SenderClassification.Category, Map<String, Object>> byCategory = new EnumMap<>(SenderClassification.Category.class);
+        for (SenderClassification.Category category : SenderClassification.Category.values()) {
+            byCategory.put(category, Map.of("senders", 0L, "received", 0L));
+        }
+        if (!accountIds.isEmpty()) {
+            for (Object[] row : classificationRepository.summarizeByCategory(accountIds)) {
+                byCategory.put((SenderClassification.Category) row[0], Map.of(
+                    "senders", ((Number) row[1]).longValue(),
+                    "received", ((Number) row[2]).longValue()
+                ));
+            }
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        byCategory.forEach((category, counts) -> result.put(category.name(), counts));
+        return result;
+    }
+
+    private static long afterSenderId(AnalyticsService.Cursor after) {
+        try {
+            return after.sender().isEmpty() ? 0 : Long.parseLong(after.sender());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+
+    private static String truncate(String value, int length) {
+        return value.length() <= length ? value : value.substring(0, length);
+    }
+}
@@ -0,0 +1,91 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.SenderClassification;
+
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Scores a sender from the mailing-list headers on the mail it sent and from whether the owner
+ * writes back to it.
+ *
+ * The bulk score is the weighted share of received emails carrying List-Unsubscribe (required of
+ * bulk senders by the large mailbox providers, so the strongest signal), List-Id and a Precedence
+ * of bulk, list or junk. A high score makes the sender BULK; an automated address or a weaker
+ * score makes it TRANSACTIONAL; anything else, and anyone the owner writes to, is PERSONAL.
+ */
+public final class SenderClassifier {
+
+    private static final double LIST_UNSUBSCRIBE_WEIGHT = 0.45;
+    private static final double LIST_ID_WEIGHT = 0.35;
+    private static final double PRECEDENCE_WEIGHT = 0.20;
+
+    static final int BULK_THRESHOLD = 50;
+    // Bulk mail the owner has written to (e.g. answered a newsletter) needs near-certain headers
+    static final int CORRESPONDED_BULK_THRESHOLD = 80;
+    static final int TRANSACTIONAL_THRESHOLD = 20;
+
+    private static final Set<String> AUTOMATED_LOCAL_PARTS = Set.of(
+        "noreply", "no-reply", "no_reply", "donotreply", "do-not-reply", "do_not_reply",
+        "notification", "notifications", "notify", "alert", "alerts", "mailer-daemon", "postmaster",
+        "bounce", "bounces", "receipts", "billing", "invoice", "invoices", "orders", "order",
+        "account", "accounts", "security", "verify", "auto-confirm", "automated"
+    );
+
+    private SenderClassifier() {
+    }
+
+    /**
+     * Whether the address's local part names a machine rather than a person
+     */
+    public static boolean isAutomatedAddress(String email) {
+        int at = email.indexOf('@');
+        if (at <= 0) return false;
+        String local = email.substring(0, at).toLowerCase(Locale.ROOT);
+        // Tags such as noreply+abc123 identify the same mailbox
+        int plus = local.indexOf('+');
+        if (plus > 0) local = local.substring(0, plus);
+        return AUTOMATED_LOCAL_PARTS.contains(local) || local.startsWith("noreply") || local.startsWith("no-reply");
+    }
+
+    /**
+     * Whether a Precedence header value marks mass mail
+     */
+    public static boolean isBulkPrecedence(String precedence) {
+        if (precedence == null) return false;
+        String value = precedence.trim().toLowerCase(Locale.ROOT);
+        return value.equals("bulk") || value.equals("list") || value.equals("junk");
+    }
+
+    /**
+     * Bulk likelihood from 0 to 100 given the header counters
+     */
+    public static int score(SenderClassification classification) {
+        long received = classification.getReceivedCount();
+        if (received <= 0) return 0;
+        double score = LIST_UNSUBSCRIBE_WEIGHT * Math.min(1.0, (double) classification.getListUnsubscribeCount() / received)
+            + LIST_ID_WEIGHT * Math.min(1.0, (double) classification.getListIdCount() / received)
+            + PRECEDENCE_WEIGHT * Math.min(1.0, (double) classification.getBulkPrecedenceCount() / received);
+        return (int) Math.round(score * 100);
+    }
+
+    /**
+     * Re-score the classification and set its category
+     */
+    public static void classify(SenderClassification classification) {
+        int score = score(classification);
+        classification.setScore(score);
+
+        boolean corresponded = classification.getSentToCount() > 0;
+        SenderClassification.Category category;
+        if (classification.getReceivedCount() > 0
+                && score >= (corresponded ? CORRESPONDED_BULK_THRESHOLD : BULK_THRESHOLD)) {
+            category = SenderClassification.Category.BULK;
+        } else if (!corresponded && (classification.isAutomatedAddress() || score >= TRANSACTIONAL_THRESHOLD)) {
+            category = SenderClassification.Category.TRANSACTIONAL;
+        } else {
+            category = SenderClassification.Category.PERSONAL;
+        }
+        classification.setCategory(category);
+    }
+}
@@ -0,0 +1,149 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.Domain;
+import com.emailutilities.entity.Sender;
+import com.emailutilities.repository.DomainRepository;
+import com.emailutilities.repository.SenderRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Interns addresses into the senders dimension, and their registrable domains into domains.
+ * An in-process cache maps address to IDs, so a page of mostly familiar senders costs no queries
+ * and no domain lookups; misses are looked up and created in one short transaction of their own.
+ */
+@Service
+public class SenderDirectory {
+
+    private static final int MAX_ATTEMPTS = 3;
+
+    /**
+     * An address's sender ID and the ID of its registrable domain
+     */
+    public record SenderKey(long senderId, long domainId) {
+    }
+
+    private final SenderRepository senderRepository;
+    private final DomainRepository domainRepository;
+    private final PublicSuffixList publicSuffixList;
+    private final TransactionTemplate transactionTemplate;
+    private final Cache<String, SenderKey> keysByEmail;
+
+    public SenderDirectory(SenderRepository senderRepository,
+                           DomainRepository domainRepository,
+                           PublicSuffixList publicSuffixList,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${ingest.sender-cache.max-entries:200000}") long maxEntries) {
+        this.senderRepository = senderRepository;
+        this.domainRepository = domainRepository;
+        this.publicSuffixList = publicSuffixList;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.keysByEmail = Caffeine.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    /**
+     * Keys for the given lower-cased addresses, creating senders (and domains) for new ones.
+     * Values are display names (or "") used only when a sender is created.
+     */
+    public Map<String, SenderKey> intern(Map<String, String> namesByEmail) {
+        Map<String, SenderKey> keys = new HashMap<>(keysByEmail.getAllPresent(namesByEmail.keySet()));
+        if (keys.size() == namesByEmail.size()) {
+            return keys;
+        }
+
+        List<String> missing = namesByEmail.keySet().stream()
+            .filter(email -> !keys.containsKey(email))
+            .collect(Collectors.toList());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Map<String, SenderKey> created = transactionTemplate.execute(status -> lookUpOrCreate(missing, namesByEmail));
+                keysByEmail.putAll(created);
+                keys.putAll(created);
+                return keys;
+            } catch (DataIntegrityViolationException e) {
+                // Another sync created one of these senders or domains first; the next lookup finds it
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Address and display name for each ID, e.g. to label a ranking computed over sender IDs
+     */
+    public Map<Long, Sender> describe(Collection<Long> ids) {
+        return senderRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Sender::getId, sender -> sender));
+    }
+
+    /**
+     * Name of each domain ID, to label a ranking computed over domain IDs
+     */
+    public Map<Long, String> domainNames(Collection<Long> ids) {
+        return domainRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Domain::getId, Domain::getName));
+    }
+
+    private Map<String, SenderKey> lookUpOrCreate(List<String> emails, Map<String, String> namesByEmail) {
+        Map<String, SenderKey> keys = new HashMap<>();
+        for (Sender sender : senderRepository.findByEmailIn(emails)) {
+            keys.put(sender.getEmail(), new SenderKey(sender.getId(), sender.getDomainId()));
+        }
+
+        List<String> newEmails = emails.stream()
+            .filter(email -> !keys.containsKey(email))
+            .collect(Collectors.toList());
+        if (newEmails.isEmpty()) {
+            return keys;
+        }
+
+        Map<String, String> registrable = new HashMap<>();
+        for (String email : newEmails) {
+            registrable.put(email, publicSuffixList.registrableDomain(email));
+        }
+        Map<String, Long> domainIds = internDomains(new HashSet<>(registrable.values()));
+
+        List<Sender> created = new ArrayList<>();
+        for (String email : newEmails) {
+            String name = namesByEmail.get(email);
+            created.add(new Sender(null, email, MetadataIngestService.domainOf(email),
+                domainIds.get(registrable.get(email)), name == null || name.isEmpty() ? null : name));
+        }
+        for (Sender sender : senderRepository.saveAllAndFlush(created)) {
+            keys.put(sender.getEmail(), new SenderKey(sender.getId(), sender.getDomainId()));
+        }
+        return keys;
+    }
+
+    private Map<String, Long> internDomains(Set<String> names) {
+        Map<String, Long> ids = new HashMap<>();
+        for (Domain domain : domainRepository.findByNameIn(names)) {
+            ids.put(domain.getName(), domain.getId());
+        }
+        List<Domain> created = names.stream()
+            .filter(name -> !ids.containsKey(name))
+            .map(name -> new Domain(null, name))
+            .collect(Collectors.toList());
+        for (Domain domain : domainRepository.saveAllAndFlush(created)) {
+            ids.put(domain.getName(), domain.getId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,130 @@
+package com.emailutilities.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving heavy-hitters sketch: tracks at most capacity keys with approximate counts.
+ *
+ * A new key evicts the key with the smallest count and inherits that count as its error, so any
+ * reported count overestimates the true count by at most its error, and every key whose true
+ * count exceeds total / capacity is guaranteed to be tracked. Counters sit in an indexed min-heap,
+ * making each update O(log capacity). Not thread-safe; callers synchronize.
+ */
+public final class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+    private final Counter[] heap;
+    private int size;
+    private long total;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.counters = new HashMap<>(this.capacity * 2);
+        this.heap = new Counter[this.capacity];
+    }
+
+    /**
+     * One tracked key; count - error is a guaranteed lower bound on the true count
+     */
+    public record Estimate(String key, long count, long error) {
+    }
+
+    public void add(String key, long weight) {
+        total += weight;
+        Counter counter = counters.get(key);
+        if (counter != null) {
+            counter.count += weight;
+            siftDown(counter.position);
+            return;
+        }
+
+        if (size < capacity) {
+            counter = new Counter(key, weight, 0);
+            counter.position = size;
+            heap[size++] = counter;
+            counters.put(key, counter);
+            siftUp(counter.position);
+            return;
+        }
+
+        // Replace the current minimum; its count becomes the newcomer's error bound
+        Counter min = heap[0];
+        counters.remove(min.key);
+        min.key = key;
+        min.error = min.count;
+        min.count += weight;
+        counters.put(key, min);
+        siftDown(0);
+    }
+
+    /**
+     * The n keys with the highest estimated counts, highest first
+     */
+    public List<Estimate> top(int n) {
+        List<Counter> sorted = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            sorted.add(heap[i]);
+        }
+        sorted.sort(Comparator.<Counter>comparingLong(c -> c.count).reversed().thenComparing(c -> c.key));
+
+        List<Estimate> result = new ArrayList<>(Math.min(n, sorted.size()));
+        for (int i = 0; i < sorted.size() && i < n; i++) {
+            Counter counter = sorted.get(i);
+            result.add(new Estimate(counter.key, counter.count, counter.error));
+        }
+        return result;
+    }
+
+    /**
+     * Total weight added, tracked or not
+     */
+    public long total() {
+        return total;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (heap[parent].count <= heap[i].count) break;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) break;
+            int smallest = left + 1 < size && heap[left + 1].count < heap[left].count ? left + 1 : left;
+            if (heap[i].count <= heap[smallest].count) break;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        Counter tmp = heap[a];
+        heap[a] = heap[b];
+        heap[b] = tmp;
+        heap[a].position = a;
+        heap[b].position = b;
+    }
+
+    private static final class Counter {
+        String key;
+        long count;
+        long error;
+        int position;
+
+        Counter(String key, long count, long error) {
+            this.key = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+}
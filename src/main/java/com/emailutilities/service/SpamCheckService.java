@@ -21,6 +21,8 @@ public class SpamCheckService {
     private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
     private static final long CACHE_TTL_MS = 3600000; // 1 hour
 
+    private final MetricsService metricsService;
+
     // Spamhaus return codes - see https://www.spamhaus.org/faq/section/DNSBL%20Usage
     private static final Map<String, String> ZEN_CODES = Map.ofEntries(
         Map.entry("127.0.0.2", "SBL - Spamhaus Block List (known spam source)"),
@@ -46,6 +48,10 @@ public class SpamCheckService {
         Map.entry("127.0.1.106", "DBL - Abused legit botnet C&C")
     );
 
+    public SpamCheckService(MetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
     /**
      * Check if an IP address is listed in Spamhaus ZEN
      */
@@ -57,7 +63,9 @@ public class SpamCheckService {
         // Check cache first
         String cacheKey = "ip:" + ipAddress;
         CacheEntry cached = cache.get(cacheKey);
-        if (cached != null && !cached.isExpired()) {
+        boolean cacheHit = cached != null && !cached.isExpired();
+        metricsService.recordSpamCacheLookup(cacheHit);
+        if (cacheHit) {
             return cached.result;
         }
 
@@ -71,7 +79,7 @@ public class SpamCheckService {
             String reversedIp = octets[3] + "." + octets[2] + "." + octets[1] + "." + octets[0];
             String query = reversedIp + "." + SPAMHAUS_ZEN;
 
-            String[] results = dnsLookup(query);
+            String[] results = dnsLookup(query, "zen");
             if (results != null && results.length > 0) {
                 String code = results[0];
                 String reason = ZEN_CODES.getOrDefault(code, "Listed in Spamhaus ZEN (" + code + ")");
@@ -106,13 +114,15 @@ public class SpamCheckService {
         // Check cache first
         String cacheKey = "domain:" + domain;
         CacheEntry cached = cache.get(cacheKey);
-        if (cached != null && !cached.isExpired()) {
+        boolean cacheHit = cached != null && !cached.isExpired();
+        metricsService.recordSpamCacheLookup(cacheHit);
+        if (cacheHit) {
             return cached.result;
         }
 
         try {
             String query = domain + "." + SPAMHAUS_DBL;
-            String[] results = dnsLookup(query);
+            String[] results = dnsLookup(query, "dbl");
 
             if (results != null && results.length > 0) {
                 String code = results[0];
@@ -198,7 +208,9 @@ public class SpamCheckService {
     /**
      * Perform DNS lookup
      */
-    private String[] dnsLookup(String query) {
+    private String[] dnsLookup(String query, String zone) {
+        long start = System.nanoTime();
+        String outcome = "clean";
         try {
             Hashtable<String, String> env = new Hashtable<>();
             env.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
@@ -211,13 +223,17 @@ public class SpamCheckService {
 
             if (attrs.get("A") != null) {
                 String result = attrs.get("A").get().toString();
+                outcome = "listed";
                 return new String[]{result};
             }
         } catch (NamingException e) {
             // NXDOMAIN means not listed - this is expected for clean IPs/domains
             if (!e.getMessage().contains("NXDOMAIN")) {
+                outcome = "error";
                 System.err.println("DNS lookup error for " + query + ": " + e.getMessage());
             }
+        } finally {
+            metricsService.recordSpamDnsLookup(zone, outcome, System.nanoTime() - start);
         }
         return null;
     }
@@ -0,0 +1,252 @@
+package com.emailutilities.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
+
+/**
+ * Pushes background job progress to Server-Sent Events subscribers, per user (whichever job runs
+ * next) or per job (completes when it finishes). Subclasses say when a status map is finished and
+ * schedule {@link #heartbeat()}.
+ *
+ * The latest status of every recent job is kept in memory and published as deltas ("progress",
+ * then "complete"). Each event carries an id of the job and its per-job sequence
+ * ("jobId-sequence"); a client reconnecting with the id of the job's latest event only gets the
+ * retry interval, any other gets a fresh snapshot, which supersedes missed deltas.
+ *
+ * A subscriber is attached before its snapshot is read and sent, and events to one emitter are
+ * sent under its lock, so a delta or completion published meanwhile is either already in the
+ * snapshot or delivered after it.
+ */
+public abstract class SseProgressPublisher {
+
+    private static final long RETRY_MS = 3000;
+
+    // How long finished jobs stay in memory for late subscribers and status polls
+    private static final long FINISHED_JOB_RETENTION_MINUTES = 60;
+
+    private final Map<Long, JobState> latestByJob = new ConcurrentHashMap<>();
+    private final Map<Long, Long> latestJobByUser = new ConcurrentHashMap<>();
+    private final Map<Long, LocalDateTime> finishedAt = new ConcurrentHashMap<>();
+
+    private final Map<Long, List<SseEmitter>> emittersByUser = new ConcurrentHashMap<>();
+    private final Map<Long, List<SseEmitter>> emittersByJob = new ConcurrentHashMap<>();
+
+    private final long sseTimeoutMs;
+
+    protected SseProgressPublisher(long sseTimeoutMs) {
+        this.sseTimeoutMs = sseTimeoutMs;
+    }
+
+    /**
+     * Whether a status map published or snapshotted by this publisher is a finished job's
+     */
+    protected abstract boolean isFinished(Map<String, Object> status);
+
+    /**
+     * Publish a job's current status map; subscribers receive only the fields that changed
+     */
+    public void publish(Long userId, Long jobId, Map<String, Object> current) {
+        JobState[] replaced = new JobState[1];
+        JobState state = latestByJob.compute(jobId, (id, old) -> {
+            replaced[0] = old;
+            return new JobState(current, old != null ? old.sequence() + 1 : 1);
+        });
+        Map<String, Object> previous = replaced[0] != null ? replaced[0].status() : null;
+        latestJobByUser.put(userId, jobId);
+
+        Map<String, Object> delta = new LinkedHashMap<>();
+        delta.put("jobId", jobId);
+        for (Map.Entry<String, Object> entry : current.entrySet()) {
+            if (previous == null || !Objects.equals(previous.get(entry.getKey()), entry.getValue())) {
+                delta.put(entry.getKey(), entry.getValue());
+            }
+        }
+
+        boolean finished = isFinished(current);
+        String eventName = finished ? "complete" : "progress";
+        String eventId = state.eventId(jobId);
+
+        send(emittersByUser.get(userId), eventName, eventId, delta);
+        send(emittersByJob.get(jobId), eventName, eventId, delta);
+
+        if (finished) {
+            finishedAt.put(jobId, LocalDateTime.now());
+            List<SseEmitter> jobEmitters = emittersByJob.remove(jobId);
+            if (jobEmitters != null) {
+                jobEmitters.forEach(SseProgressPublisher::complete);
+            }
+        } else {
+            // Resumed after finishing
+            finishedAt.remove(jobId);
+        }
+    }
+
+    /**
+     * Subscribe to the user's jobs, starting from the latest one in memory, or else from the
+     * fallback (null if the user has no jobs)
+     */
+    public SseEmitter subscribeUser(Long userId, Supplier<Map<String, Object>> fallback, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        synchronized (emitter) {
+            attach(emittersByUser, userId, emitter);
+            Long jobId = latestJobByUser.get(userId);
+            JobState state = jobId != null ? latestByJob.get(jobId) : null;
+            sendSnapshot(emitter, state != null ? state.status() : fallback.get(),
+                state != null ? state.eventId(jobId) : null, lastEventId);
+        }
+        return emitter;
+    }
+
+    /**
+     * Subscribe to one job, starting from its state in memory, or else from the fallback (null if
+     * unknown); the stream completes when the job finishes
+     */
+    public SseEmitter subscribeJob(Long jobId, Supplier<Map<String, Object>> fallback, String lastEventId) {
+        SseEmitter emitter = new SseEmitter(sseTimeoutMs);
+        synchronized (emitter) {
+            attach(emittersByJob, jobId, emitter);
+            JobState state = latestByJob.get(jobId);
+            Map<String, Object> snapshot = state != null ? state.status() : fallback.get();
+            sendSnapshot(emitter, snapshot, state != null ? state.eventId(jobId) : null, lastEventId);
+
+            // Finished before or while attaching; the publisher may have completed it already
+            if (snapshot != null && isFinished(snapshot)) {
+                detach(emittersByJob, jobId, emitter);
+                complete(emitter);
+            }
+        }
+        return emitter;
+    }
+
+    /**
+     * Latest in-memory state of a job, if it was published since startup
+     */
+    public Optional<Map<String, Object>> latestForJob(Long jobId) {
+        return Optional.ofNullable(latestByJob.get(jobId)).map(JobState::status);
+    }
+
+    /**
+     * Latest in-memory state of the user's most recent job, if any was published since startup
+     */
+    public Optional<Map<String, Object>> latestForUser(Long userId) {
+        Long jobId = latestJobByUser.get(userId);
+        return jobId != null ? latestForJob(jobId) : Optional.empty();
+    }
+
+    /**
+     * Keep idle connections alive through proxies and drop finished jobs after a while
+     */
+    public void heartbeat() {
+        Supplier<SseEmitter.SseEventBuilder> ping = () -> SseEmitter.event().comment("heartbeat");
+        emittersByUser.values().forEach(emitters -> emitters.forEach(emitter -> sendOrDrop(emitters, emitter, ping)));
+        emittersByJob.values().forEach(emitters -> emitters.forEach(emitter -> sendOrDrop(emitters, emitter, ping)));
+
+        LocalDateTime cutoff = LocalDateTime.now().minusMinutes(FINISHED_JOB_RETENTION_MINUTES);
+        finishedAt.entrySet().removeIf(entry -> {
+            if (entry.getValue().isBefore(cutoff)) {
+                latestByJob.remove(entry.getKey());
+                latestJobByUser.values().remove(entry.getKey());
+                return true;
+            }
+            return false;
+        });
+    }
+
+    private void attach(Map<Long, List<SseEmitter>> registry, Long key, SseEmitter emitter) {
+        registry.compute(key, (k, emitters) -> {
+            List<SseEmitter> list = emitters != null ? emitters : new CopyOnWriteArrayList<>();
+            list.add(emitter);
+            return list;
+        });
+        emitter.onCompletion(() -> detach(registry, key, emitter));
+        emitter.onTimeout(() -> detach(registry, key, emitter));
+        emitter.onError(e -> detach(registry, key, emitter));
+    }
+
+    private void detach(Map<Long, List<SseEmitter>> registry, Long key, SseEmitter emitter) {
+        registry.computeIfPresent(key, (k, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+
+    private void sendSnapshot(SseEmitter emitter, Map<String, Object> snapshot, String eventId, String lastEventId) {
+        // Reconnected without missing anything - only the retry interval needs re-sending
+        if (snapshot != null && eventId != null && eventId.equals(lastEventId)) {
+            try {
+                emitter.send(SseEmitter.event().reconnectTime(RETRY_MS).comment("resumed"));
+            } catch (IOException e) {
+                emitter.completeWithError(e);
+            }
+            return;
+        }
+
+        // A snapshot carries every field, so it also covers deltas missed while disconnected
+        SseEmitter.SseEventBuilder event = SseEmitter.event()
+            .name("snapshot")
+            .reconnectTime(RETRY_MS)
+            .data(snapshot != null ? snapshot : Map.of("status", "NO_JOBS"));
+        if (eventId != null) {
+            event.id(eventId);
+        }
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void send(List<SseEmitter> emitters, String eventName, String eventId, Map<String, Object> data) {
+        if (emitters == null || emitters.isEmpty()) return;
+
+        // Event builders are single-use, so build one per emitter
+        Supplier<SseEmitter.SseEventBuilder> event = () -> SseEmitter.event()
+            .name(eventName)
+            .id(eventId)
+            .data(data);
+        for (SseEmitter emitter : emitters) {
+            sendOrDrop(emitters, emitter, event);
+        }
+    }
+
+    private void sendOrDrop(List<SseEmitter> emitters, SseEmitter emitter, Supplier<SseEmitter.SseEventBuilder> event) {
+        try {
+            // Waits for a subscriber still sending its snapshot
+            synchronized (emitter) {
+                emitter.send(event.get());
+            }
+        } catch (Exception e) {
+            // Client went away; the servlet container will clean up the async request
+            emitters.remove(emitter);
+        }
+    }
+
+    private static void complete(SseEmitter emitter) {
+        synchronized (emitter) {
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                // Already completed
+            }
+        }
+    }
+
+    /**
+     * A job's latest status map and the sequence number of the event that published it
+     */
+    private record JobState(Map<String, Object> status, long sequence) {
+        String eventId(Long jobId) {
+            return jobId + "-" + sequence;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.EmailAccount;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides how often each account is synced in the background.
+ * Busy mailboxes are polled more often, dormant ones back off towards the maximum.
+ */
+@Component
+public class SyncCadencePolicy {
+
+    @Value("${sync.scheduler.min-interval-minutes:15}")
+    private int minIntervalMinutes;
+
+    @Value("${sync.scheduler.max-interval-minutes:1440}")
+    private int maxIntervalMinutes;
+
+    @Value("${sync.scheduler.default-interval-minutes:60}")
+    private int defaultIntervalMinutes;
+
+    // New emails per sync at which an account counts as "hot"
+    @Value("${sync.scheduler.busy-threshold:20}")
+    private int busyThreshold;
+
+    // +/- fraction of the interval applied at random so accounts don't fire together
+    @Value("${sync.scheduler.jitter-ratio:0.2}")
+    private double jitterRatio;
+
+    /**
+     * Adapt the account's interval to the number of new emails found and schedule its next sync
+     */
+    public void recordSyncResult(EmailAccount account, int newEmails) {
+        int interval = currentInterval(account);
+
+        if (newEmails == 0) {
+            interval = interval * 2;
+        } else if (newEmails >= busyThreshold) {
+            interval = interval / 2;
+        }
+
+        interval = Math.max(minIntervalMinutes, Math.min(maxIntervalMinutes, interval));
+        account.setSyncIntervalMinutes(interval);
+        account.setNextSyncAt(nextRunAfter(interval));
+    }
+
+    /**
+     * Push the next sync out after a failure, without shortening the interval
+     */
+    public void recordSyncFailure(EmailAccount account) {
+        int interval = Math.min(maxIntervalMinutes, currentInterval(account) * 2);
+        account.setSyncIntervalMinutes(interval);
+        account.setNextSyncAt(nextRunAfter(interval));
+    }
+
+    /**
+     * Provisional next run used while a sync is queued, so the account isn't enqueued twice
+     */
+    public LocalDateTime provisionalNextSync(EmailAccount account) {
+        return nextRunAfter(currentInterval(account));
+    }
+
+    /**
+     * Short retry delay used when an account could not be enqueued this tick
+     */
+    public LocalDateTime retrySoon() {
+        return nextRunAfter(Math.max(1, minIntervalMinutes / 3));
+    }
+
+    private int currentInterval(EmailAccount account) {
+        Integer interval = account.getSyncIntervalMinutes();
+        return interval != null && interval > 0 ? interval : defaultIntervalMinutes;
+    }
+
+    private LocalDateTime nextRunAfter(int intervalMinutes) {
+        double jitter = jitterRatio > 0
+            ? 1 + ThreadLocalRandom.current().nextDouble(-jitterRatio, jitterRatio)
+            : 1;
+        long seconds = Math.max(60, Math.round(intervalMinutes * 60 * jitter));
+        return LocalDateTime.now().plusSeconds(seconds);
+    }
+}
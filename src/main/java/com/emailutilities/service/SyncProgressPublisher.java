@@ -0,0 +1,87 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.SyncJob;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Pushes sync job progress to Server-Sent Events subscribers straight from the sync engine
+ * (see {@link SseProgressPublisher}).
+ *
+ * The latest state of every recent job is kept in memory, so subscribers (and the status
+ * endpoints) are served without reading sync_jobs.
+ */
+@Service
+public class SyncProgressPublisher extends SseProgressPublisher {
+
+    public SyncProgressPublisher(@Value("${sync.progress.sse-timeout-ms:1800000}") long sseTimeoutMs) {
+        super(sseTimeoutMs);
+    }
+
+    /**
+     * Publish the job's current state; subscribers receive only the fields that changed
+     */
+    public void publish(SyncJob job) {
+        publish(job.getUserId(), job.getId(), toStatusMap(job));
+    }
+
+    /**
+     * Subscribe to progress of whichever sync job the user runs next (or is running now)
+     */
+    public SseEmitter subscribeUser(Long userId, String lastEventId) {
+        return subscribeUser(userId, () -> null, lastEventId);
+    }
+
+    /**
+     * Subscribe to progress of one job; the stream completes when the job finishes. persisted is
+     * the stored job, for jobs that finished before startup.
+     */
+    public SseEmitter subscribeJob(Long jobId, SyncJob persisted, String lastEventId) {
+        return subscribeJob(jobId, () -> persisted != null ? toStatusMap(persisted) : null, lastEventId);
+    }
+
+    /**
+     * Keep idle connections alive through proxies and drop finished jobs after a while
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${sync.progress.heartbeat-ms:15000}")
+    public void heartbeat() {
+        super.heartbeat();
+    }
+
+    /**
+     * Status map shared by the SSE stream and the polling endpoints
+     */
+    public static Map<String, Object> toStatusMap(SyncJob job) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("jobId", job.getId());
+        map.put("status", job.getStatus());
+        map.put("progress", job.getProgressPercent());
+        map.put("totalAccounts", job.getTotalAccounts());
+        map.put("processedAccounts", job.getProcessedAccounts());
+        map.put("totalEmailsSynced", job.getTotalEmailsSynced());
+        map.put("totalEmailsSkipped", job.getTotalEmailsSkipped());
+        map.put("totalEmailsProcessed", job.getTotalEmailsProcessed());
+        map.put("currentPage", job.getCurrentPage());
+        map.put("emailsPerSecond", job.getEmailsPerSecond());
+        map.put("estimatedSecondsRemaining", job.getEstimatedSecondsRemaining());
+        map.put("currentAccount", job.getCurrentAccount() != null ? job.getCurrentAccount() : "");
+        map.put("statusMessage", job.getStatusMessage() != null ? job.getStatusMessage() : "");
+        map.put("startedAt", job.getStartedAt() != null ? job.getStartedAt().toString() : "");
+        map.put("completedAt", job.getCompletedAt() != null ? job.getCompletedAt().toString() : "");
+        return map;
+    }
+
+    @Override
+    protected boolean isFinished(Map<String, Object> status) {
+        Object jobStatus = status.get("status");
+        return jobStatus == SyncJob.JobStatus.COMPLETED
+            || jobStatus == SyncJob.JobStatus.FAILED
+            || jobStatus == SyncJob.JobStatus.CANCELLED;
+    }
+}
@@ -0,0 +1,107 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.EmailAccount;
+import com.emailutilities.entity.SyncJob;
+import com.emailutilities.repository.EmailAccountRepository;
+import com.emailutilities.repository.SyncJobRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps every connected account fresh by enqueueing incremental syncs on a per-account cadence
+ */
+@Service
+public class SyncSchedulerService {
+
+    private static final List<EmailAccount.EmailProvider> SYNCABLE_PROVIDERS =
+        List.of(EmailAccount.EmailProvider.GMAIL, EmailAccount.EmailProvider.OUTLOOK);
+
+    private final EmailAccountRepository accountRepository;
+    private final SyncJobRepository syncJobRepository;
+    private final BackgroundSyncService backgroundSyncService;
+    private final SyncCadencePolicy cadencePolicy;
+
+    @Value("${sync.scheduler.enabled:true}")
+    private boolean enabled;
+
+    // Max accounts enqueued per tick, so a backlog drains gradually
+    @Value("${sync.scheduler.batch-size:20}")
+    private int batchSize;
+
+    public SyncSchedulerService(EmailAccountRepository accountRepository,
+                                SyncJobRepository syncJobRepository,
+                                BackgroundSyncService backgroundSyncService,
+                                SyncCadencePolicy cadencePolicy) {
+        this.accountRepository = accountRepository;
+        this.syncJobRepository = syncJobRepository;
+        this.backgroundSyncService = backgroundSyncService;
+        this.cadencePolicy = cadencePolicy;
+    }
+
+    /**
+     * Enqueue incremental syncs for all accounts that are due
+     */
+    @Scheduled(fixedDelayString = "${sync.scheduler.tick-ms:60000}",
+               initialDelayString = "${sync.scheduler.initial-delay-ms:30000}")
+    public void enqueueDueAccounts() {
+        if (!enabled) return;
+
+        List<EmailAccount> due = accountRepository.findDueForSync(
+            SYNCABLE_PROVIDERS, LocalDateTime.now(), PageRequest.of(0, batchSize));
+
+        // Sync jobs are one-at-a-time per user, so only one account per user per tick
+        Set<Long> usersEnqueued = new HashSet<>();
+
+        for (EmailAccount account : due) {
+            Long userId = account.getUser().getId();
+            if (!usersEnqueued.add(userId) || isUserSyncing(userId)) {
+                reschedule(account, cadencePolicy.retrySoon());
+                continue;
+            }
+
+            try {
+                enqueue(userId, account, true);
+            } catch (Exception e) {
+                System.err.println("Failed to enqueue sync for " + account.getEmailAddress() + ": " + e.getMessage());
+                reschedule(account, cadencePolicy.retrySoon());
+            }
+        }
+    }
+
+    /**
+     * Sync a single account now, on behalf of the user
+     */
+    public SyncJob syncNow(Long accountId) {
+        EmailAccount account = accountRepository.findById(accountId)
+            .orElseThrow(() -> new RuntimeException("Account not found"));
+        return enqueue(account.getUser().getId(), account, false);
+    }
+
+    private SyncJob enqueue(Long userId, EmailAccount account, boolean scheduled) {
+        SyncJob job = backgroundSyncService.createAccountSyncJob(
+            userId, account.getId(), SyncJob.JobType.INCREMENTAL_SYNC, scheduled);
+
+        // Hold the slot until the job finishes and the cadence policy picks the real next run
+        reschedule(account, cadencePolicy.provisionalNextSync(account));
+
+        // Called through the Spring proxy, so this runs on the async executor
+        backgroundSyncService.processJobAsync(job.getId(), userId);
+        return job;
+    }
+
+    private void reschedule(EmailAccount account, LocalDateTime nextSyncAt) {
+        accountRepository.updateSyncSchedule(account.getId(), account.getSyncIntervalMinutes(), nextSyncAt);
+    }
+
+    private boolean isUserSyncing(Long userId) {
+        return syncJobRepository.existsByUserIdAndStatusIn(userId,
+            List.of(SyncJob.JobStatus.PENDING, SyncJob.JobStatus.RUNNING));
+    }
+}
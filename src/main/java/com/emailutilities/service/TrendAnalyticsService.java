@@ -0,0 +1,120 @@
+package com.emailutilities.service;
+
+import com.emailutilities.entity.VolumeBucket;
+import com.emailutilities.repository.VolumeBucketRepository;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Volume and trend analytics served from the volume_buckets cube. A date range costs one
+ * bucket per day (or hour) instead of a scan over the emails in it.
+ */
+@Service
+public class TrendAnalyticsService {
+
+    // Hourly series are capped so a careless range can't return hundreds of thousands of points
+    private static final int MAX_HOURLY_DAYS = 92;
+
+    private final VolumeBucketRepository volumeBucketRepository;
+
+    public TrendAnalyticsService(VolumeBucketRepository volumeBucketRepository) {
+        this.volumeBucketRepository = volumeBucketRepository;
+    }
+
+    /**
+     * Email volume per day or hour between from (inclusive) and to (exclusive)
+     */
+    public List<Map<String, Object>> getVolumeOverTime(List<Long> accountIds, LocalDate from, LocalDate to,
+                                                       VolumeBucket.Granularity granularity) {
+        validateRange(from, to, granularity);
+        if (accountIds.isEmpty()) return List.of();
+
+        List<Object[]> rows = volumeBucketRepository.sumByBucket(accountIds, granularity, VolumeBucket.ALL_SENDERS,
+            from.atStartOfDay(), to.atStartOfDay());
+        return toSeries(rows);
+    }
+
+    /**
+     * Daily volume from one sender between from (inclusive) and to (exclusive)
+     */
+    public List<Map<String, Object>> getSenderTrend(List<Long> accountIds, String senderEmail, LocalDate from, LocalDate to) {
+        validateRange(from, to, VolumeBucket.Granularity.DAY);
+        if (accountIds.isEmpty()) return List.of();
+
+        List<Object[]> rows = volumeBucketRepository.sumByBucket(accountIds, VolumeBucket.Granularity.DAY,
+            senderEmail.toLowerCase(), from.atStartOfDay(), to.atStartOfDay());
+        return toSeries(rows);
+    }
+
+    /**
+     * Received volume by hour of day and by day of week, summed from hourly buckets
+     */
+    public Map<String, Object> getBusiestHours(List<Long> accountIds, LocalDate from, LocalDate to) {
+        // Only 24 + 7 numbers go back to the client, so any range is fine here
+        validateRange(from, to, VolumeBucket.Granularity.DAY);
+
+        long[] byHour = new long[24];
+        long[] byWeekday = new long[7];
+        if (!accountIds.isEmpty()) {
+            List<Object[]> rows = volumeBucketRepository.sumByBucket(accountIds, VolumeBucket.Granularity.HOUR,
+                VolumeBucket.ALL_SENDERS, from.atStartOfDay(), to.atStartOfDay());
+            for (Object[] row : rows) {
+                LocalDateTime start = (LocalDateTime) row[0];
+                long received = ((Number) row[1]).longValue();
+                byHour[start.getHour()] += received;
+                byWeekday[start.getDayOfWeek().getValue() - 1] += received;
+            }
+        }
+
+        List<Map<String, Object>> hours = new ArrayList<>(24);
+        for (int hour = 0; hour < 24; hour++) {
+            hours.add(Map.of("hour", hour, "received", byHour[hour]));
+        }
+        List<Map<String, Object>> weekdays = new ArrayList<>(7);
+        for (DayOfWeek day : DayOfWeek.values()) {
+            weekdays.add(Map.of("day", day.name(), "received", byWeekday[day.getValue() - 1]));
+        }
+
+        int busiestHour = 0;
+        for (int hour = 1; hour < 24; hour++) {
+            if (byHour[hour] > byHour[busiestHour]) busiestHour = hour;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("from", from.toString());
+        result.put("to", to.toString());
+        result.put("busiestHour", busiestHour);
+        result.put("byHour", hours);
+        result.put("byWeekday", weekdays);
+        return result;
+    }
+
+    private List<Map<String, Object>> toSeries(List<Object[]> rows) {
+        List<Map<String, Object>> series = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            series.add(Map.of(
+                "bucket", row[0].toString(),
+                "received", ((Number) row[1]).longValue(),
+                "unread", ((Number) row[2]).longValue(),
+                "sent", ((Number) row[3]).longValue()
+            ));
+        }
+        return series;
+    }
+
+    private void validateRange(LocalDate from, LocalDate to, VolumeBucket.Granularity granularity) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        if (granularity == VolumeBucket.Granularity.HOUR && from.plusDays(MAX_HOURLY_DAYS).isBefore(to)) {
+            throw new IllegalArgumentException("Hourly ranges are limited to " + MAX_HOURLY_DAYS + " days");
+        }
+    }
+}
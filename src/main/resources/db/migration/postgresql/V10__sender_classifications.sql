@@ -0,0 +1,26 @@
+-- Bulk / transactional / personal classification per account and sender, maintained on ingest
+-- from the List-Unsubscribe, List-Id and Precedence headers. Those headers were never stored, so
+-- existing senders are classified as their next emails arrive (or after a resync).
+
+CREATE TABLE IF NOT EXISTS sender_classifications (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    sender_id BIGINT NOT NULL,
+    category VARCHAR(16) NOT NULL,
+    score INTEGER NOT NULL,
+    automated_address BOOLEAN NOT NULL,
+    received_count BIGINT NOT NULL,
+    list_unsubscribe_count BIGINT NOT NULL,
+    list_id_count BIGINT NOT NULL,
+    bulk_precedence_count BIGINT NOT NULL,
+    sent_to_count BIGINT NOT NULL,
+    list_id VARCHAR(255),
+    list_unsubscribe VARCHAR(1024),
+    last_seen_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6),
+    CONSTRAINT uk_sender_classifications_account_sender UNIQUE (account_id, sender_id)
+);
+
+-- Newsletter cleanup: accountId IN (...) AND category = ?, ranked by received emails per sender
+CREATE INDEX IF NOT EXISTS idx_sender_classifications_category
+    ON sender_classifications (account_id, category, received_count, sender_id);
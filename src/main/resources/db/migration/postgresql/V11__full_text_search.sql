@@ -0,0 +1,28 @@
+-- Full-text search over subjects and senders.
+--
+-- email_metadata.subject_search is a plain tsvector column kept current by a trigger rather than a
+-- generated column: the partition functions (V5) build partitions with LIKE email_metadata and copy
+-- rows with INSERT ... SELECT *, which a generated column would reject. The trigger and the GIN
+-- index are defined on the partitioned table, so every existing and future partition gets them.
+-- Subjects use the english configuration (stemming, stop words); names and addresses use simple.
+
+ALTER TABLE email_metadata ADD COLUMN IF NOT EXISTS subject_search TSVECTOR;
+
+CREATE TRIGGER email_metadata_subject_search
+    BEFORE INSERT OR UPDATE OF subject ON email_metadata
+    FOR EACH ROW EXECUTE FUNCTION tsvector_update_trigger(subject_search, 'pg_catalog.english', subject);
+
+UPDATE email_metadata SET subject_search = to_tsvector('english', coalesce(subject, ''));
+
+-- Subject search: accountId IN (...) prunes to the accounts' partitions, then the GIN index
+CREATE INDEX IF NOT EXISTS idx_email_metadata_subject_search
+    ON email_metadata USING GIN (subject_search);
+
+-- Display name, the full address, its domain and each part of the address as separate words, so
+-- "acme", "acme.com" and "billing@acme.com" all find billing@acme.com
+ALTER TABLE senders ADD COLUMN IF NOT EXISTS search_vector TSVECTOR
+    GENERATED ALWAYS AS (to_tsvector('simple',
+        coalesce(name, '') || ' ' || email || ' ' || domain || ' ' || translate(email, '@.+_-', '     '))) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_senders_search_vector
+    ON senders USING GIN (search_vector);
@@ -0,0 +1,41 @@
+-- Background bulk move / segregation jobs. Each job is split into one item per account and
+-- sender, which records its own progress so a job interrupted by a restart (or cancelled)
+-- can be resumed without redoing finished senders.
+
+CREATE TABLE IF NOT EXISTS bulk_jobs (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    type VARCHAR(16) NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    folder_id VARCHAR(255),
+    new_folder_name VARCHAR(255),
+    total_items INTEGER NOT NULL,
+    completed_items INTEGER NOT NULL,
+    failed_items INTEGER NOT NULL,
+    total_moved BIGINT NOT NULL,
+    status_message VARCHAR(255),
+    error_message VARCHAR(1024),
+    started_at TIMESTAMP(6),
+    completed_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+CREATE INDEX IF NOT EXISTS idx_bulk_jobs_user ON bulk_jobs (user_id, started_at);
+CREATE INDEX IF NOT EXISTS idx_bulk_jobs_status ON bulk_jobs (status);
+
+CREATE TABLE IF NOT EXISTS bulk_job_items (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    job_id BIGINT NOT NULL,
+    account_id BIGINT NOT NULL,
+    account_email VARCHAR(255),
+    sender_email VARCHAR(255) NOT NULL,
+    status VARCHAR(16) NOT NULL,
+    moved INTEGER NOT NULL,
+    target_folder_id VARCHAR(255),
+    recorded BOOLEAN NOT NULL,
+    error VARCHAR(1024),
+    started_at TIMESTAMP(6),
+    completed_at TIMESTAMP(6)
+);
+
+CREATE INDEX IF NOT EXISTS idx_bulk_job_items_job ON bulk_job_items (job_id, id);
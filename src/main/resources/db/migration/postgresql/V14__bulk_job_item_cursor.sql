@@ -0,0 +1,6 @@
+-- Gmail bulk moves label a sender's synced messages in email_metadata ID order. The item keeps
+-- the ID of the last one labeled, so a resumed item continues after it, and counts the messages
+-- Gmail rejected because they were deleted after the last sync.
+
+ALTER TABLE bulk_job_items ADD COLUMN IF NOT EXISTS message_cursor BIGINT;
+ALTER TABLE bulk_job_items ADD COLUMN IF NOT EXISTS skipped INTEGER NOT NULL DEFAULT 0;
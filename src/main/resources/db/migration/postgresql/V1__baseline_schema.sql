@@ -0,0 +1,270 @@
+-- Baseline schema, as previously generated by Hibernate's ddl-auto=update.
+-- Idempotent so it also applies cleanly to databases created before Flyway was introduced
+-- (those are baselined at version 0, see spring.flyway.baseline-version). Such databases have
+-- the tables but not the columns added since, so every one of those is also added below.
+
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email VARCHAR(255) NOT NULL UNIQUE,
+    password_hash VARCHAR(255) NOT NULL,
+    display_name VARCHAR(255),
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS email_accounts (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users (id),
+    email_address VARCHAR(255) NOT NULL,
+    provider VARCHAR(255) NOT NULL,
+    imap_host VARCHAR(255),
+    imap_port INTEGER,
+    imap_ssl BOOLEAN,
+    smtp_host VARCHAR(255),
+    smtp_port INTEGER,
+    smtp_tls BOOLEAN,
+    access_token TEXT,
+    refresh_token TEXT,
+    token_expires_at TIMESTAMP(6),
+    username VARCHAR(255),
+    encrypted_password VARCHAR(500),
+    sync_status VARCHAR(255),
+    last_sync_at TIMESTAMP(6),
+    last_sync_error VARCHAR(255),
+    next_sync_at TIMESTAMP(6),
+    sync_interval_minutes INTEGER,
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+-- Background sync scheduling, added after the ddl-auto=update schema
+ALTER TABLE email_accounts ADD COLUMN IF NOT EXISTS next_sync_at TIMESTAMP(6);
+ALTER TABLE email_accounts ADD COLUMN IF NOT EXISTS sync_interval_minutes INTEGER;
+
+CREATE TABLE IF NOT EXISTS sync_jobs (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    status VARCHAR(255) NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    account_id BIGINT,
+    scheduled BOOLEAN NOT NULL DEFAULT FALSE,
+    total_accounts INTEGER NOT NULL DEFAULT 0,
+    processed_accounts INTEGER NOT NULL DEFAULT 0,
+    total_emails_synced INTEGER NOT NULL DEFAULT 0,
+    total_emails_skipped INTEGER NOT NULL DEFAULT 0,
+    total_emails_processed INTEGER NOT NULL DEFAULT 0,
+    estimated_total_emails INTEGER NOT NULL DEFAULT 0,
+    current_account VARCHAR(255),
+    status_message VARCHAR(255),
+    current_page INTEGER NOT NULL DEFAULT 0,
+    emails_per_second BIGINT NOT NULL DEFAULT 0,
+    estimated_seconds_remaining INTEGER NOT NULL DEFAULT 0,
+    started_at TIMESTAMP(6),
+    completed_at TIMESTAMP(6),
+    error_message VARCHAR(255)
+);
+
+-- Columns the old DatabaseMigration runner added to sync_jobs by hand
+ALTER TABLE sync_jobs ADD COLUMN IF NOT EXISTS current_page INTEGER DEFAULT 0;
+ALTER TABLE sync_jobs ADD COLUMN IF NOT EXISTS emails_per_second BIGINT DEFAULT 0;
+ALTER TABLE sync_jobs ADD COLUMN IF NOT EXISTS estimated_seconds_remaining INTEGER DEFAULT 0;
+ALTER TABLE sync_jobs ADD COLUMN IF NOT EXISTS total_emails_processed INTEGER DEFAULT 0;
+ALTER TABLE sync_jobs ADD COLUMN IF NOT EXISTS estimated_total_emails INTEGER DEFAULT 0;
+ALTER TABLE sync_jobs ADD COLUMN IF NOT EXISTS scheduled BOOLEAN DEFAULT FALSE;
+-- Single-account jobs, added after the ddl-auto=update schema
+ALTER TABLE sync_jobs ADD COLUMN IF NOT EXISTS account_id BIGINT;
+
+CREATE TABLE IF NOT EXISTS email_metadata (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    message_id VARCHAR(255) NOT NULL UNIQUE,
+    thread_id VARCHAR(255),
+    sender_email VARCHAR(255) NOT NULL,
+    sender_name VARCHAR(255),
+    recipient_email VARCHAR(255),
+    subject VARCHAR(255),
+    received_at TIMESTAMP(6) NOT NULL,
+    is_read BOOLEAN NOT NULL,
+    is_from_me BOOLEAN NOT NULL,
+    rfc_message_id VARCHAR(255),
+    in_reply_to VARCHAR(255),
+    synced_at TIMESTAMP(6)
+);
+
+-- Reply threading, added after the ddl-auto=update schema (in_reply_to predates it)
+ALTER TABLE email_metadata ADD COLUMN IF NOT EXISTS rfc_message_id VARCHAR(255);
+ALTER TABLE email_metadata ADD COLUMN IF NOT EXISTS in_reply_to VARCHAR(255);
+
+CREATE INDEX IF NOT EXISTS idx_sender_email ON email_metadata (sender_email);
+CREATE INDEX IF NOT EXISTS idx_account_id ON email_metadata (account_id);
+CREATE INDEX IF NOT EXISTS idx_thread_id ON email_metadata (thread_id);
+CREATE INDEX IF NOT EXISTS idx_received_at ON email_metadata (received_at);
+CREATE INDEX IF NOT EXISTS idx_account_received ON email_metadata (account_id, received_at);
+CREATE INDEX IF NOT EXISTS idx_account_rfc_message ON email_metadata (account_id, rfc_message_id);
+
+CREATE TABLE IF NOT EXISTS sender_stats (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    sender_email VARCHAR(255) NOT NULL,
+    sender_name VARCHAR(255),
+    received_count BIGINT NOT NULL,
+    unread_count BIGINT NOT NULL,
+    sent_to_count BIGINT NOT NULL,
+    replied_count BIGINT NOT NULL,
+    first_seen_at TIMESTAMP(6),
+    last_seen_at TIMESTAMP(6),
+    CONSTRAINT uk_sender_stats_account_sender UNIQUE (account_id, sender_email)
+);
+
+CREATE INDEX IF NOT EXISTS idx_sender_stats_received ON sender_stats (account_id, received_count);
+CREATE INDEX IF NOT EXISTS idx_sender_stats_unread ON sender_stats (account_id, unread_count);
+
+CREATE TABLE IF NOT EXISTS volume_buckets (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    granularity VARCHAR(8) NOT NULL,
+    sender_email VARCHAR(255) NOT NULL,
+    bucket_start TIMESTAMP(6) NOT NULL,
+    received_count BIGINT NOT NULL,
+    unread_count BIGINT NOT NULL,
+    from_me_count BIGINT NOT NULL,
+    CONSTRAINT uk_volume_bucket UNIQUE (account_id, granularity, sender_email, bucket_start)
+);
+
+CREATE TABLE IF NOT EXISTS distinct_sketches (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    kind VARCHAR(8) NOT NULL,
+    sketch_day DATE NOT NULL,
+    registers BYTEA NOT NULL,
+    CONSTRAINT uk_distinct_sketch UNIQUE (account_id, kind, sketch_day)
+);
+
+CREATE TABLE IF NOT EXISTS reply_edges (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    reply_message_id VARCHAR(255) NOT NULL,
+    parent_rfc_message_id VARCHAR(255) NOT NULL,
+    from_me BOOLEAN NOT NULL,
+    counterpart_email VARCHAR(255),
+    replied_at TIMESTAMP(6) NOT NULL,
+    resolved BOOLEAN NOT NULL
+);
+
+-- Provider message IDs are unique per account only (the same mailbox can be connected twice), so
+-- the global constraint of the ddl-auto=update schema is replaced
+ALTER TABLE reply_edges DROP CONSTRAINT IF EXISTS reply_edges_reply_message_id_key;
+CREATE UNIQUE INDEX IF NOT EXISTS uk_reply_edges_account_reply ON reply_edges (account_id, reply_message_id);
+
+CREATE INDEX IF NOT EXISTS idx_reply_edge_parent ON reply_edges (account_id, parent_rfc_message_id);
+CREATE INDEX IF NOT EXISTS idx_reply_edge_counterpart ON reply_edges (account_id, counterpart_email);
+
+CREATE TABLE IF NOT EXISTS reply_latency_stats (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    account_id BIGINT NOT NULL,
+    counterpart_email VARCHAR(255) NOT NULL,
+    direction VARCHAR(8) NOT NULL,
+    reply_count BIGINT NOT NULL,
+    total_seconds BIGINT NOT NULL,
+    digest BYTEA NOT NULL,
+    CONSTRAINT uk_reply_latency UNIQUE (account_id, counterpart_email, direction)
+);
+
+CREATE INDEX IF NOT EXISTS idx_reply_latency_count ON reply_latency_stats (account_id, reply_count);
+
+CREATE TABLE IF NOT EXISTS notifications (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    type VARCHAR(255) NOT NULL,
+    title VARCHAR(255) NOT NULL,
+    message TEXT,
+    is_read BOOLEAN NOT NULL,
+    action_url VARCHAR(255),
+    related_job_id BIGINT,
+    created_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS segregation_history (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    sender_email VARCHAR(255) NOT NULL,
+    folder_name VARCHAR(255),
+    emails_moved INTEGER NOT NULL,
+    operation_type VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6),
+    last_run_at TIMESTAMP(6),
+    run_count INTEGER NOT NULL,
+    UNIQUE (user_id, sender_email)
+);
+
+CREATE TABLE IF NOT EXISTS contact_lists (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users (id),
+    name VARCHAR(255) NOT NULL,
+    description VARCHAR(255),
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS contacts (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    contact_list_id BIGINT NOT NULL REFERENCES contact_lists (id),
+    email VARCHAR(255) NOT NULL,
+    display_name VARCHAR(255),
+    first_name VARCHAR(255),
+    last_name VARCHAR(255),
+    company VARCHAR(255),
+    notes VARCHAR(255),
+    email_count INTEGER,
+    last_email_at TIMESTAMP(6),
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS email_lists (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users (id),
+    name VARCHAR(255) NOT NULL,
+    list_type VARCHAR(255) NOT NULL,
+    description VARCHAR(255),
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS email_list_entries (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email_list_id BIGINT NOT NULL REFERENCES email_lists (id),
+    pattern VARCHAR(255) NOT NULL,
+    match_type VARCHAR(255),
+    notes VARCHAR(255),
+    created_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS rules (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id BIGINT NOT NULL REFERENCES users (id),
+    name VARCHAR(255) NOT NULL,
+    description VARCHAR(255),
+    enabled BOOLEAN,
+    priority INTEGER,
+    stop_processing BOOLEAN,
+    condition_logic VARCHAR(255),
+    created_at TIMESTAMP(6),
+    updated_at TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS rule_actions (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    rule_id BIGINT NOT NULL REFERENCES rules (id),
+    action_type VARCHAR(255) NOT NULL,
+    action_value VARCHAR(255),
+    execution_order INTEGER
+);
+
+CREATE TABLE IF NOT EXISTS rule_conditions (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    rule_id BIGINT NOT NULL REFERENCES rules (id),
+    field VARCHAR(255) NOT NULL,
+    operator VARCHAR(255) NOT NULL,
+    condition_value VARCHAR(255) NOT NULL
+);
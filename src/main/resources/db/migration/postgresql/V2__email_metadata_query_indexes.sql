@@ -0,0 +1,42 @@
+-- Composite, covering and partial indexes matched to the EmailMetadataRepository queries, so each
+-- analytics query is answered by an index-only scan of just the rows it filters on.
+-- Built CONCURRENTLY so an existing email_metadata table stays writable; Flyway runs this script
+-- outside a transaction.
+
+-- Windowed sender rankings and distinct counts:
+-- accountId IN (...) AND isFromMe = false AND receivedAt >= :since, grouped by senderEmail
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_email_metadata_received_senders
+    ON email_metadata (account_id, received_at) INCLUDE (sender_email, sender_name)
+    WHERE is_from_me = false;
+
+-- All-time sender aggregates and a sender's threads:
+-- accountId IN (...) AND isFromMe = false [AND senderEmail = ?], grouped by senderEmail
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_email_metadata_sender_rollup
+    ON email_metadata (account_id, sender_email) INCLUDE (sender_name, thread_id)
+    WHERE is_from_me = false;
+
+-- Senders ranked by unread: accountId IN (...) AND isFromMe = false AND isRead = false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_email_metadata_unread_senders
+    ON email_metadata (account_id, sender_email) INCLUDE (sender_name)
+    WHERE is_from_me = false AND is_read = false;
+
+-- Unread total: accountId IN (...) AND isRead = false
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_email_metadata_unread
+    ON email_metadata (account_id)
+    WHERE is_read = false;
+
+-- Replies in threads: accountId IN (...) AND isFromMe = true AND threadId IN (...)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_email_metadata_sent_threads
+    ON email_metadata (account_id, thread_id)
+    WHERE is_from_me = true;
+
+-- Per-account counts for one sender: senderEmail = ? grouped by accountId
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_email_metadata_sender_account
+    ON email_metadata (sender_email, account_id);
+
+-- Superseded: sender_email leads idx_email_metadata_sender_account, account_id leads
+-- idx_account_received, and thread and date lookups are always scoped to an account
+DROP INDEX CONCURRENTLY IF EXISTS idx_sender_email;
+DROP INDEX CONCURRENTLY IF EXISTS idx_account_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_thread_id;
+DROP INDEX CONCURRENTLY IF EXISTS idx_received_at;
@@ -0,0 +1,44 @@
+-- Build the sender_stats and volume_buckets rollups from existing email_metadata on databases that
+-- predate them. From then on they are maintained incrementally by MetadataIngestService, so each
+-- backfill only runs into an empty table.
+
+INSERT INTO sender_stats (account_id, sender_email, sender_name, received_count, unread_count,
+                          sent_to_count, replied_count, first_seen_at, last_seen_at)
+SELECT account_id, counterpart, MAX(CASE WHEN is_from_me THEN NULL ELSE sender_name END),
+       SUM(CASE WHEN is_from_me THEN 0 ELSE 1 END),
+       SUM(CASE WHEN is_from_me OR is_read THEN 0 ELSE 1 END),
+       SUM(CASE WHEN is_from_me THEN 1 ELSE 0 END),
+       SUM(CASE WHEN is_from_me AND in_reply_to IS NOT NULL THEN 1 ELSE 0 END),
+       MIN(received_at), MAX(received_at)
+FROM (SELECT m.*, COALESCE(CASE WHEN m.is_from_me THEN m.recipient_email ELSE m.sender_email END, '')
+          AS counterpart
+      FROM email_metadata m) e
+WHERE NOT EXISTS (SELECT 1 FROM sender_stats)
+GROUP BY account_id, counterpart;
+
+-- One statement, so every branch sees volume_buckets as it was before the insert
+INSERT INTO volume_buckets (account_id, granularity, sender_email, bucket_start,
+                            received_count, unread_count, from_me_count)
+SELECT account_id, 'DAY', sender_email, DATE_TRUNC('day', received_at),
+       SUM(CASE WHEN is_from_me THEN 0 ELSE 1 END),
+       SUM(CASE WHEN is_from_me OR is_read THEN 0 ELSE 1 END),
+       SUM(CASE WHEN is_from_me THEN 1 ELSE 0 END)
+FROM email_metadata
+WHERE NOT EXISTS (SELECT 1 FROM volume_buckets)
+GROUP BY account_id, sender_email, DATE_TRUNC('day', received_at)
+UNION ALL
+SELECT account_id, 'DAY', '*', DATE_TRUNC('day', received_at),
+       SUM(CASE WHEN is_from_me THEN 0 ELSE 1 END),
+       SUM(CASE WHEN is_from_me OR is_read THEN 0 ELSE 1 END),
+       SUM(CASE WHEN is_from_me THEN 1 ELSE 0 END)
+FROM email_metadata
+WHERE NOT EXISTS (SELECT 1 FROM volume_buckets)
+GROUP BY account_id, DATE_TRUNC('day', received_at)
+UNION ALL
+SELECT account_id, 'HOUR', '*', DATE_TRUNC('hour', received_at),
+       SUM(CASE WHEN is_from_me THEN 0 ELSE 1 END),
+       SUM(CASE WHEN is_from_me OR is_read THEN 0 ELSE 1 END),
+       SUM(CASE WHEN is_from_me THEN 1 ELSE 0 END)
+FROM email_metadata
+WHERE NOT EXISTS (SELECT 1 FROM volume_buckets)
+GROUP BY account_id, DATE_TRUNC('hour', received_at);
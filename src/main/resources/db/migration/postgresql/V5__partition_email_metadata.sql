@@ -0,0 +1,170 @@
+-- Partition email_metadata by account: LIST on account_id with one partition per account
+-- (email_metadata_a<id>), so queries scoped by accountId prune to that account's partition and
+-- removing an account drops a table instead of deleting millions of rows. With
+-- metadata.partitioning.monthly each account partition is further split by month of received_at
+-- (email_metadata_a<id>_m<yyyymm>, plus a per-account default for months not created yet).
+-- Rows of accounts without a partition yet land in email_metadata_default.
+--
+-- Existing rows are copied into the new table in this migration, in one transaction.
+--
+-- A message is unique per (account_id, message_id). That pair holds the LIST key, but a unique
+-- constraint on the parent would have to be created on every sub-partition too, and a
+-- month-split account can't have one without received_at; so the constraint is added to each
+-- unsplit account partition (and the default one) instead. Month-split accounts rely on the
+-- ingest dedupe, which runs under the account's row lock.
+
+-- Serializes partition DDL, which may be requested for the same account from several syncs
+CREATE OR REPLACE FUNCTION lock_email_metadata_partitions() RETURNS VOID LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('email_metadata_partitions'));
+END;
+$$;
+
+-- Give an account its own partition, moving over any rows that already landed in the default one.
+-- Returns false if the partition already existed.
+CREATE OR REPLACE FUNCTION ensure_email_metadata_partition(p_account_id BIGINT, p_monthly BOOLEAN)
+RETURNS BOOLEAN LANGUAGE plpgsql AS $$
+DECLARE
+    part TEXT := 'email_metadata_a' || p_account_id;
+BEGIN
+    PERFORM lock_email_metadata_partitions();
+    IF to_regclass(part) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    -- Built detached and attached afterwards, so the default partition's rows can move in first
+    IF p_monthly THEN
+        EXECUTE format('CREATE TABLE %I (LIKE email_metadata INCLUDING DEFAULTS) PARTITION BY RANGE (received_at)', part);
+        EXECUTE format('CREATE TABLE %I PARTITION OF %I DEFAULT', part || '_default', part);
+    ELSE
+        EXECUTE format('CREATE TABLE %I (LIKE email_metadata INCLUDING DEFAULTS)', part);
+        EXECUTE format('ALTER TABLE %I ADD CONSTRAINT %I UNIQUE (account_id, message_id)', part, part || '_message_key');
+    END IF;
+    EXECUTE format('INSERT INTO %I SELECT * FROM email_metadata_default WHERE account_id = %s', part, p_account_id);
+    DELETE FROM email_metadata_default WHERE account_id = p_account_id;
+    EXECUTE format('ALTER TABLE email_metadata ATTACH PARTITION %I FOR VALUES IN (%s)', part, p_account_id);
+    RETURN TRUE;
+END;
+$$;
+
+-- Give a month its own sub-partition in a monthly-partitioned account, moving its rows out of the
+-- account's default sub-partition. Returns false if it existed or the account isn't split by month.
+CREATE OR REPLACE FUNCTION ensure_email_metadata_month(p_account_id BIGINT, p_month DATE)
+RETURNS BOOLEAN LANGUAGE plpgsql AS $$
+DECLARE
+    part TEXT := 'email_metadata_a' || p_account_id;
+    month_start TIMESTAMP := date_trunc('month', p_month::timestamp);
+    month_end TIMESTAMP := date_trunc('month', p_month::timestamp) + INTERVAL '1 month';
+    month_part TEXT := part || '_m' || to_char(month_start, 'YYYYMM');
+BEGIN
+    PERFORM lock_email_metadata_partitions();
+    IF to_regclass(month_part) IS NOT NULL OR to_regclass(part || '_default') IS NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE email_metadata INCLUDING DEFAULTS)', month_part);
+    EXECUTE format('INSERT INTO %I SELECT * FROM %I WHERE received_at >= %L AND received_at < %L',
+        month_part, part || '_default', month_start, month_end);
+    EXECUTE format('DELETE FROM %I WHERE received_at >= %L AND received_at < %L',
+        part || '_default', month_start, month_end);
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+        part, month_part, month_start, month_end);
+    RETURN TRUE;
+END;
+$$;
+
+-- Remove all of an account's email_metadata. Returns false if the account had no partition, in
+-- which case its rows (if any) are deleted from the default partition.
+CREATE OR REPLACE FUNCTION drop_email_metadata_partition(p_account_id BIGINT)
+RETURNS BOOLEAN LANGUAGE plpgsql AS $$
+DECLARE
+    part TEXT := 'email_metadata_a' || p_account_id;
+BEGIN
+    PERFORM lock_email_metadata_partitions();
+    IF to_regclass(part) IS NULL THEN
+        DELETE FROM email_metadata_default WHERE account_id = p_account_id;
+        RETURN FALSE;
+    END IF;
+    EXECUTE format('DROP TABLE %I', part);
+    RETURN TRUE;
+END;
+$$;
+
+ALTER TABLE email_metadata RENAME TO email_metadata_unpartitioned;
+
+CREATE TABLE email_metadata (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY,
+    account_id BIGINT NOT NULL,
+    message_id VARCHAR(255) NOT NULL,
+    thread_id VARCHAR(255),
+    sender_email VARCHAR(255) NOT NULL,
+    sender_name VARCHAR(255),
+    recipient_email VARCHAR(255),
+    subject VARCHAR(255),
+    received_at TIMESTAMP(6) NOT NULL,
+    is_read BOOLEAN NOT NULL,
+    is_from_me BOOLEAN NOT NULL,
+    rfc_message_id VARCHAR(255),
+    in_reply_to VARCHAR(255),
+    synced_at TIMESTAMP(6),
+    CONSTRAINT pk_email_metadata PRIMARY KEY (account_id, received_at, id)
+) PARTITION BY LIST (account_id);
+
+CREATE TABLE email_metadata_default PARTITION OF email_metadata DEFAULT;
+ALTER TABLE email_metadata_default ADD CONSTRAINT uk_email_metadata_default_message UNIQUE (account_id, message_id);
+
+-- Partition every existing account (and its months) up front, so the copy goes straight to its target
+DO $$
+DECLARE
+    existing_account BIGINT;
+    existing_month DATE;
+BEGIN
+    FOR existing_account IN SELECT id FROM email_accounts UNION SELECT DISTINCT account_id FROM email_metadata_unpartitioned LOOP
+        PERFORM ensure_email_metadata_partition(existing_account, ${monthly-partitions});
+        IF ${monthly-partitions} THEN
+            FOR existing_month IN SELECT DISTINCT date_trunc('month', received_at)::date
+                                  FROM email_metadata_unpartitioned WHERE account_id = existing_account LOOP
+                PERFORM ensure_email_metadata_month(existing_account, existing_month);
+            END LOOP;
+        END IF;
+    END LOOP;
+END;
+$$;
+
+INSERT INTO email_metadata (id, account_id, message_id, thread_id, sender_email, sender_name, recipient_email,
+                            subject, received_at, is_read, is_from_me, rfc_message_id, in_reply_to, synced_at)
+OVERRIDING SYSTEM VALUE
+SELECT id, account_id, message_id, thread_id, sender_email, sender_name, recipient_email,
+       subject, received_at, is_read, is_from_me, rfc_message_id, in_reply_to, synced_at
+FROM email_metadata_unpartitioned;
+
+SELECT setval(pg_get_serial_sequence('email_metadata', 'id'), COALESCE(MAX(id), 0) + 1, false) FROM email_metadata;
+
+DROP TABLE email_metadata_unpartitioned;
+
+-- The V2 query indexes, now defined on the partitioned table and created on every partition.
+-- (account_id, received_at) is the primary key's prefix, so idx_account_received is not recreated.
+CREATE INDEX idx_account_rfc_message ON email_metadata (account_id, rfc_message_id);
+
+CREATE INDEX idx_email_metadata_received_senders
+    ON email_metadata (account_id, received_at) INCLUDE (sender_email, sender_name)
+    WHERE is_from_me = false;
+
+CREATE INDEX idx_email_metadata_sender_rollup
+    ON email_metadata (account_id, sender_email) INCLUDE (sender_name, thread_id)
+    WHERE is_from_me = false;
+
+CREATE INDEX idx_email_metadata_unread_senders
+    ON email_metadata (account_id, sender_email) INCLUDE (sender_name)
+    WHERE is_from_me = false AND is_read = false;
+
+CREATE INDEX idx_email_metadata_unread
+    ON email_metadata (account_id)
+    WHERE is_read = false;
+
+CREATE INDEX idx_email_metadata_sent_threads
+    ON email_metadata (account_id, thread_id)
+    WHERE is_from_me = true;
+
+CREATE INDEX idx_email_metadata_sender_account
+    ON email_metadata (sender_email, account_id);
@@ -0,0 +1,68 @@
+-- Normalize sender and recipient addresses into a shared senders dimension. email_metadata keeps
+-- integer sender_id / recipient_id instead of repeating address strings on every row, so the
+-- analytics indexes hold 8-byte keys and rankings group by integers; names are looked up only for
+-- the rows a query returns.
+--
+-- Existing rows are rewritten once in this migration, in one transaction.
+
+CREATE TABLE IF NOT EXISTS senders (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email VARCHAR(255) NOT NULL,
+    domain VARCHAR(255) NOT NULL,
+    name VARCHAR(255),
+    CONSTRAINT uk_senders_email UNIQUE (email)
+);
+
+CREATE INDEX IF NOT EXISTS idx_senders_domain ON senders (domain);
+
+-- Every address seen so far, with a display name from a received email where there is one
+INSERT INTO senders (email, domain, name)
+SELECT email, substring(email FROM position('@' IN email) + 1), MAX(name)
+FROM (
+    SELECT LOWER(sender_email) AS email, CASE WHEN is_from_me THEN NULL ELSE NULLIF(sender_name, '') END AS name
+    FROM email_metadata
+    UNION ALL
+    SELECT LOWER(recipient_email), NULL
+    FROM email_metadata
+    WHERE recipient_email IS NOT NULL
+) addresses
+GROUP BY email
+ON CONFLICT (email) DO NOTHING;
+
+ALTER TABLE email_metadata ADD COLUMN sender_id BIGINT;
+ALTER TABLE email_metadata ADD COLUMN recipient_id BIGINT;
+
+UPDATE email_metadata e
+SET sender_id = (SELECT s.id FROM senders s WHERE s.email = LOWER(e.sender_email)),
+    recipient_id = (SELECT r.id FROM senders r WHERE r.email = LOWER(e.recipient_email));
+
+ALTER TABLE email_metadata ALTER COLUMN sender_id SET NOT NULL;
+
+-- The sender indexes are rebuilt on the integer keys
+DROP INDEX IF EXISTS idx_email_metadata_received_senders;
+DROP INDEX IF EXISTS idx_email_metadata_sender_rollup;
+DROP INDEX IF EXISTS idx_email_metadata_unread_senders;
+DROP INDEX IF EXISTS idx_email_metadata_sender_account;
+
+ALTER TABLE email_metadata DROP COLUMN sender_email;
+ALTER TABLE email_metadata DROP COLUMN sender_name;
+ALTER TABLE email_metadata DROP COLUMN recipient_email;
+
+-- Windowed sender rankings and distinct counts, grouped by sender_id
+CREATE INDEX idx_email_metadata_received_senders
+    ON email_metadata (account_id, received_at) INCLUDE (sender_id)
+    WHERE is_from_me = false;
+
+-- All-time sender aggregates and a sender's threads
+CREATE INDEX idx_email_metadata_sender_rollup
+    ON email_metadata (account_id, sender_id) INCLUDE (thread_id)
+    WHERE is_from_me = false;
+
+-- Senders ranked by unread
+CREATE INDEX idx_email_metadata_unread_senders
+    ON email_metadata (account_id, sender_id)
+    WHERE is_from_me = false AND is_read = false;
+
+-- A sender's volume per account
+CREATE INDEX idx_email_metadata_sender_account
+    ON email_metadata (sender_id, account_id);
@@ -0,0 +1,12 @@
+-- Registrable domains (eTLD+1) for domain and organization analytics. senders and email_metadata
+-- get a domain_id; V8 fills it in for existing rows (the Public Suffix List lookup runs in Java)
+-- and V9 makes it mandatory and indexes it.
+
+CREATE TABLE IF NOT EXISTS domains (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name VARCHAR(255) NOT NULL,
+    CONSTRAINT uk_domains_name UNIQUE (name)
+);
+
+ALTER TABLE senders ADD COLUMN IF NOT EXISTS domain_id BIGINT;
+ALTER TABLE email_metadata ADD COLUMN IF NOT EXISTS domain_id BIGINT;
@@ -0,0 +1,9 @@
+-- Every sender and email now has a registrable domain (backfilled by V8)
+ALTER TABLE senders ALTER COLUMN domain_id SET NOT NULL;
+ALTER TABLE email_metadata ALTER COLUMN domain_id SET NOT NULL;
+
+-- Domain rankings, unread by domain and a domain's daily trend:
+-- accountId IN (...) AND isFromMe = false [AND domainId = ? AND receivedAt in range], grouped by domainId
+CREATE INDEX idx_email_metadata_domain_rollup
+    ON email_metadata (account_id, domain_id, received_at) INCLUDE (sender_id, is_read)
+    WHERE is_from_me = false;